@@ -1,16 +1,26 @@
 package ai.basic.x1.adapter.api.config;
 
+import ai.basic.x1.adapter.port.cache.CacheInvalidationBus;
+import ai.basic.x1.adapter.port.cache.TwoLevelCacheManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.cache.RedisCacheManagerBuilderCustomizer;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.CacheKeyPrefix;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
 import java.time.Duration;
+import java.util.Set;
 
 /**
  * @author Zhujh
@@ -19,6 +29,18 @@ import java.time.Duration;
 @EnableCaching
 public class CacheConfig extends CachingConfigurerSupport {
 
+    /**
+     * Caches with an in-process tier in front of Redis
+     */
+    @Value("${cache.local.names:user}")
+    private String[] localCacheNames;
+
+    @Value("${cache.local.maximumSize:10000}")
+    private long localMaximumSize;
+
+    @Value("${cache.local.ttl:30000}")
+    private long localTtl;
+
     /**
      * config Cache，include TTL、Prefix etc.
      * @param jsonRedisSerializer
@@ -45,4 +67,27 @@ public class CacheConfig extends CachingConfigurerSupport {
                 .withCacheConfiguration("user", defaultCacheConfig
                         .entryTtl(Duration.ofMinutes(12 * 60)));
     }
+
+    /**
+     * Redis cache manager configured by the customizers, the configured local caches get an in-process tier
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     RedisCacheManagerBuilderCustomizer redisCacheManagerBuilderCustomizer,
+                                     CacheInvalidationBus cacheInvalidationBus) {
+        var builder = RedisCacheManager.builder(redisConnectionFactory);
+        redisCacheManagerBuilderCustomizer.customize(builder);
+        var redisCacheManager = builder.build();
+        redisCacheManager.initializeCaches();
+        return new TwoLevelCacheManager(redisCacheManager, cacheInvalidationBus, Set.of(localCacheNames),
+                localMaximumSize, Duration.ofMillis(localTtl));
+    }
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate stringRedisTemplate,
+                                                     RedisMessageListenerContainer redisMessageListenerContainer) {
+        var cacheInvalidationBus = new CacheInvalidationBus(stringRedisTemplate);
+        redisMessageListenerContainer.addMessageListener(cacheInvalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        return cacheInvalidationBus;
+    }
 }
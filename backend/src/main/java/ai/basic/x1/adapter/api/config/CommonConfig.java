@@ -6,10 +6,13 @@ import ai.basic.x1.usecase.*;
 import ai.basic.x1.util.lock.DistributedLock;
 import ai.basic.x1.util.lock.IDistributedLock;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -75,6 +78,11 @@ public class CommonConfig implements WebMvcConfigurer {
         return new FileUseCase();
     }
 
+    @Bean
+    public ThumbnailUseCase thumbnailUseCase() {
+        return new ThumbnailUseCase();
+    }
+
     @Bean
     public ExportUseCase exportUseCase() {
         return new ExportUseCase();
@@ -110,14 +118,30 @@ public class CommonConfig implements WebMvcConfigurer {
         return new OntologyUseCase();
     }
 
+    /**
+     * Shared Redis pub/sub subscriptions, e.g. unlock notifications and cache invalidations
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
     @Bean(name = "distributedLock")
-    public IDistributedLock distributedLock(StringRedisTemplate stringRedisTemplate) {
-        return new DistributedLock(stringRedisTemplate, "ai:basicai:xtreme1:commonLock", 5000);
+    public IDistributedLock distributedLock(StringRedisTemplate stringRedisTemplate,
+                                            RedisMessageListenerContainer redisMessageListenerContainer,
+                                            MeterRegistry meterRegistry) {
+        return new DistributedLock(stringRedisTemplate, redisMessageListenerContainer, meterRegistry,
+                "ai:basicai:xtreme1:commonLock", 5000);
     }
 
     @Bean(name = "similarityDistributedLock")
-    public IDistributedLock similarityDistributedLock(StringRedisTemplate stringRedisTemplate) {
-        return new DistributedLock(stringRedisTemplate, "ai:basicai:xtreme1:similarityLock", 300000);
+    public IDistributedLock similarityDistributedLock(StringRedisTemplate stringRedisTemplate,
+                                                      RedisMessageListenerContainer redisMessageListenerContainer,
+                                                      MeterRegistry meterRegistry) {
+        return new DistributedLock(stringRedisTemplate, redisMessageListenerContainer, meterRegistry,
+                "ai:basicai:xtreme1:similarityLock", 300000);
     }
 
 
@@ -1,6 +1,9 @@
 package ai.basic.x1.adapter.api.config;
 
 import ai.basic.x1.adapter.api.job.*;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -30,10 +33,35 @@ import static ai.basic.x1.util.Constants.*;
 @Configuration
 public class JobConfig {
     private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Consumer names carry the host and process, so that consumers of different nodes never share pending messages
+     */
+    private static final String INSTANCE_ID = NetUtil.getLocalHostName() + "-" + RuntimeUtil.getPid();
+
+    @Value("${model.consumer.count:2}")
+    private int consumerCount;
+
+    @Value("${model.consumer.batchSize:10}")
+    private int consumerBatchSize;
+
+    /**
+     * Name of a consumer of this instance
+     *
+     * @param baseName Consumer base name
+     * @param suffix   Consumer index or role
+     * @return Consumer name unique across nodes
+     */
+    public static String consumerName(String baseName, Object suffix) {
+        return baseName + "-" + INSTANCE_ID + "-" + suffix;
+    }
+
     @Bean
     public Executor dataRedisStreamExecutor() {
+        // Every consumer keeps a thread polling the stream
+        int poolSize = Math.max(PROCESSORS, consumerCount);
         AtomicInteger index = new AtomicInteger(1);
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(PROCESSORS, PROCESSORS, 0, TimeUnit.SECONDS,
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.SECONDS,
                 new LinkedBlockingDeque<>(), r -> {
             Thread thread = new Thread(r);
             thread.setName("dataRedisConsumer-executor" + index.getAndIncrement());
@@ -45,8 +73,9 @@ public class JobConfig {
 
     @Bean
     public Executor datasetRedisStreamExecutor() {
+        int poolSize = Math.max(PROCESSORS, consumerCount);
         AtomicInteger index = new AtomicInteger(1);
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(PROCESSORS, PROCESSORS, 0, TimeUnit.SECONDS,
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.SECONDS,
                 new LinkedBlockingDeque<>(), r -> {
             Thread thread = new Thread(r);
             thread.setName("datasetRedisConsumer-executor" + index.getAndIncrement());
@@ -69,11 +98,49 @@ public class JobConfig {
         return executor;
     }
 
+    @Bean
+    public Executor modelRunExecutor(@Value("${model.consumer.workerThreads:32}") int workerThreads) {
+        AtomicInteger index = new AtomicInteger(1);
+        // Queued tasks are bounded by the concurrency limits of the dispatcher
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingDeque<>(), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("modelRun-executor" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return executor;
+    }
+
+    @Bean
+    public ModelRunDispatcher modelRunDispatcher(Executor modelRunExecutor,
+                                                 @Value("${model.consumer.initialConcurrencyPerModel:2}") int initialConcurrency,
+                                                 @Value("${model.consumer.maxConcurrencyPerModel:16}") int maxConcurrency,
+                                                 @Value("${model.consumer.latencyTolerance:2.0}") double latencyTolerance) {
+        return new ModelRunDispatcher(modelRunExecutor, initialConcurrency, maxConcurrency, latencyTolerance);
+    }
+
+    @Bean
+    public DataModelJobConsumerListener dataModelJobConsumerListener(RedisTemplate redisTemplate,
+                                                                     ModelRunDispatcher modelRunDispatcher,
+                                                                     ApplicationContext applicationContext) {
+        return new DataModelJobConsumerListener(DATA_MODEL_RUN_STREAM_KEY, MODEL_RUN_CONSUMER_GROUP, redisTemplate, modelRunDispatcher, applicationContext);
+    }
+
+    @Bean
+    public DatasetModelJobConsumerListener datasetModelJobConsumerListener(RedisTemplate redisTemplate,
+                                                                           ModelRunDispatcher modelRunDispatcher,
+                                                                           ApplicationContext applicationContext,
+                                                                           @Value("${model.consumer.maxRetries:3}") int maxRetries) {
+        return new DatasetModelJobConsumerListener(DATASET_MODEL_RUN_STREAM_KEY, DATASET_MODEL_RUN_CONSUMER_GROUP, redisTemplate,
+                modelRunDispatcher, applicationContext, maxRetries);
+    }
+
     @Bean(initMethod = "start", destroyMethod = "stop")
     public StreamMessageListenerContainer<String, ObjectRecord<String, String>> dataStreamMessageListenerContainer(Executor dataRedisStreamExecutor,
                                                                                                                RedisConnectionFactory redisConnectionFactory,
                                                                                                                RedisTemplate redisTemplate,
-                                                                                                               ApplicationContext applicationContext
+                                                                                                               DataModelJobConsumerListener dataModelJobConsumerListener
     ) {
 
         try {
@@ -84,7 +151,7 @@ public class JobConfig {
         StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, ObjectRecord<String, String>> options =
                 StreamMessageListenerContainer.StreamMessageListenerContainerOptions
                         .builder()
-                        .batchSize(10)
+                        .batchSize(consumerBatchSize)
                         .executor(dataRedisStreamExecutor)
                         .keySerializer(RedisSerializer.string())
                         .hashKeySerializer(RedisSerializer.string())
@@ -97,14 +164,16 @@ public class JobConfig {
                         .build();
         StreamMessageListenerContainer<String, ObjectRecord<String, String>> streamMessageListenerContainer =
                 StreamMessageListenerContainer.create(redisConnectionFactory, options);
-        StreamMessageListenerContainer.ConsumerStreamReadRequest<String> dataStreamReadRequest = StreamMessageListenerContainer
-                .StreamReadRequest
-                .builder(StreamOffset.create(DATA_MODEL_RUN_STREAM_KEY, ReadOffset.lastConsumed()))
-                .consumer(Consumer.from(MODEL_RUN_CONSUMER_GROUP, MODEL_RUN_CONSUMER_NAME))
-                .autoAcknowledge(false)
-                .cancelOnError(throwable -> false)
-                .build();
-        streamMessageListenerContainer.register(dataStreamReadRequest, new DataModelJobConsumerListener(DATA_MODEL_RUN_STREAM_KEY, MODEL_RUN_CONSUMER_GROUP, redisTemplate, applicationContext));
+        for (int i = 0; i < consumerCount; i++) {
+            StreamMessageListenerContainer.ConsumerStreamReadRequest<String> dataStreamReadRequest = StreamMessageListenerContainer
+                    .StreamReadRequest
+                    .builder(StreamOffset.create(DATA_MODEL_RUN_STREAM_KEY, ReadOffset.lastConsumed()))
+                    .consumer(Consumer.from(MODEL_RUN_CONSUMER_GROUP, consumerName(MODEL_RUN_CONSUMER_NAME, i)))
+                    .autoAcknowledge(false)
+                    .cancelOnError(throwable -> false)
+                    .build();
+            streamMessageListenerContainer.register(dataStreamReadRequest, dataModelJobConsumerListener);
+        }
         return streamMessageListenerContainer;
     }
 
@@ -112,7 +181,7 @@ public class JobConfig {
     public StreamMessageListenerContainer<String, ObjectRecord<String, String>> streamMessageListenerContainerDataset(Executor datasetRedisStreamExecutor,
                                                                                                                RedisConnectionFactory redisConnectionFactory,
                                                                                                                RedisTemplate redisTemplate,
-                                                                                                               ApplicationContext applicationContext
+                                                                                                               DatasetModelJobConsumerListener datasetModelJobConsumerListener
     ) {
         try {
             redisTemplate.opsForStream().createGroup(DATASET_MODEL_RUN_STREAM_KEY, DATASET_MODEL_RUN_CONSUMER_GROUP);
@@ -122,7 +191,7 @@ public class JobConfig {
         StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, ObjectRecord<String, String>> options =
                 StreamMessageListenerContainer.StreamMessageListenerContainerOptions
                         .builder()
-                        .batchSize(10)
+                        .batchSize(consumerBatchSize)
                         .executor(datasetRedisStreamExecutor)
                         .keySerializer(RedisSerializer.string())
                         .hashKeySerializer(RedisSerializer.string())
@@ -136,14 +205,16 @@ public class JobConfig {
         StreamMessageListenerContainer<String, ObjectRecord<String, String>> streamMessageListenerContainer =
                 StreamMessageListenerContainer.create(redisConnectionFactory, options);
 
-        StreamMessageListenerContainer.ConsumerStreamReadRequest<String> datasetStreamReadRequest = StreamMessageListenerContainer
-                .StreamReadRequest
-                .builder(StreamOffset.create(DATASET_MODEL_RUN_STREAM_KEY, ReadOffset.lastConsumed()))
-                .consumer(Consumer.from(DATASET_MODEL_RUN_CONSUMER_GROUP, DATASET_MODEL_RUN_CONSUMER_NAME))
-                .autoAcknowledge(false)
-                .cancelOnError(throwable -> false)
-                .build();
-        streamMessageListenerContainer.register(datasetStreamReadRequest, new DatasetModelJobConsumerListener(DATASET_MODEL_RUN_STREAM_KEY, DATASET_MODEL_RUN_CONSUMER_GROUP, redisTemplate, applicationContext));
+        for (int i = 0; i < consumerCount; i++) {
+            StreamMessageListenerContainer.ConsumerStreamReadRequest<String> datasetStreamReadRequest = StreamMessageListenerContainer
+                    .StreamReadRequest
+                    .builder(StreamOffset.create(DATASET_MODEL_RUN_STREAM_KEY, ReadOffset.lastConsumed()))
+                    .consumer(Consumer.from(DATASET_MODEL_RUN_CONSUMER_GROUP, consumerName(DATASET_MODEL_RUN_CONSUMER_NAME, i)))
+                    .autoAcknowledge(false)
+                    .cancelOnError(throwable -> false)
+                    .build();
+            streamMessageListenerContainer.register(datasetStreamReadRequest, datasetModelJobConsumerListener);
+        }
         return streamMessageListenerContainer;
     }
 
@@ -0,0 +1,51 @@
+package ai.basic.x1.adapter.api.config;
+
+import ai.basic.x1.entity.enums.UploadStageEnum;
+import ai.basic.x1.util.pipeline.UploadPipeline;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Gauges of the executors and the upload pipeline, the domain timers and counters are in
+ * {@link ai.basic.x1.adapter.port.metrics.DomainMetrics}
+ *
+ * @author andy
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Pool size, active threads and queue size of every thread pool bean, tagged with the bean name
+     */
+    @Bean
+    public MeterBinder executorMetrics(Map<String, Executor> executors) {
+        return registry -> executors.forEach((name, executor) -> {
+            if (executor instanceof ThreadPoolExecutor) {
+                new ExecutorServiceMetrics((ThreadPoolExecutor) executor, name, Tags.empty()).bindTo(registry);
+            }
+        });
+    }
+
+    @Bean
+    public MeterBinder uploadPipelineMetrics(UploadPipeline uploadPipeline) {
+        return registry -> {
+            for (var stage : UploadStageEnum.values()) {
+                Gauge.builder("upload.pipeline.queue", uploadPipeline, p -> p.getQueueSize(stage))
+                        .tag("stage", stage.name())
+                        .register(registry);
+            }
+            Gauge.builder("upload.pipeline.waiting", uploadPipeline, p -> p.getScheduler().getWaitingCount())
+                    .register(registry);
+            Gauge.builder("upload.pipeline.running", uploadPipeline, p -> p.getScheduler().getRunningCount())
+                    .register(registry);
+        };
+    }
+}
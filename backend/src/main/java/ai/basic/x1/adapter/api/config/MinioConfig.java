@@ -7,6 +7,12 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Minio config
  *
@@ -30,4 +36,22 @@ public class MinioConfig {
         return new ExtendMinioClient(ExtendMinioClient.builder().endpoint(minioProp.getEndpoint()).credentials(minioProp.getAccessKey(), minioProp.getSecretKey()).build());
     }
 
+    /**
+     * Executor of batch uploads, its size bounds the connections used for uploading
+     *
+     * @return minioUploadExecutor
+     */
+    @Bean(value = "minioUploadExecutor")
+    public ExecutorService minioUploadExecutor() {
+        var parallelism = minioProp.getUpload().getParallelism();
+        var index = new AtomicInteger(1);
+        return new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.SECONDS,
+                new LinkedBlockingDeque<>(), r -> {
+            var thread = new Thread(r);
+            thread.setName("minioUpload-executor" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
 }
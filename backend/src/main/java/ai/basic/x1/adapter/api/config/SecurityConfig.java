@@ -41,7 +41,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                         .authenticationEntryPoint(new JSONAuthenticationEntryPoint(new ApiResult(UsecaseCode.LOGIN_STATUS_TIMEOUT,
                                 UsecaseCode.LOGIN_STATUS_TIMEOUT.getMessage()), HttpStatus.UNAUTHORIZED)))
                 .authorizeRequests(authConfigurer -> authConfigurer.
-                        antMatchers("/actuator/**", "/user/register", "/user/login", "/ontology/exportAsJson")
+                        antMatchers("/actuator/**", "/user/register", "/user/login", "/ontology/exportAsJson", "/file/thumbnail/**")
                         .permitAll()
                         .anyRequest().authenticated());
     }
@@ -0,0 +1,55 @@
+package ai.basic.x1.adapter.api.config;
+
+import ai.basic.x1.entity.enums.UploadStageEnum;
+import ai.basic.x1.util.pipeline.FairTaskScheduler;
+import ai.basic.x1.util.pipeline.UploadPipeline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+
+/**
+ * @author fyb
+ */
+@Configuration
+public class UploadConfig {
+
+    @Value("${upload.pipeline.maxRunning:4}")
+    private int maxRunning;
+
+    @Value("${upload.pipeline.maxRunningPerUser:2}")
+    private int maxRunningPerUser;
+
+    @Value("${upload.pipeline.maxRunningPerDataset:2}")
+    private int maxRunningPerDataset;
+
+    @Value("${upload.pipeline.stageQueueCapacity:16}")
+    private int stageQueueCapacity;
+
+    @Value("${upload.pipeline.maxInFlightChunks:8}")
+    private int maxInFlightChunks;
+
+    @Value("${upload.pipeline.concurrency.scan:2}")
+    private int scanConcurrency;
+
+    @Value("${upload.pipeline.concurrency.upload:4}")
+    private int uploadConcurrency;
+
+    @Value("${upload.pipeline.concurrency.thumbnail:2}")
+    private int thumbnailConcurrency;
+
+    @Value("${upload.pipeline.concurrency.insert:2}")
+    private int insertConcurrency;
+
+    @Bean
+    public UploadPipeline uploadPipeline() {
+        var scheduler = new FairTaskScheduler("upload", maxRunning, maxRunningPerUser, maxRunningPerDataset);
+        var stageConcurrency = new EnumMap<UploadStageEnum, Integer>(UploadStageEnum.class);
+        stageConcurrency.put(UploadStageEnum.SCAN, scanConcurrency);
+        stageConcurrency.put(UploadStageEnum.UPLOAD, uploadConcurrency);
+        stageConcurrency.put(UploadStageEnum.THUMBNAIL, thumbnailConcurrency);
+        stageConcurrency.put(UploadStageEnum.INSERT, insertConcurrency);
+        return new UploadPipeline(scheduler, stageConcurrency, stageQueueCapacity, maxInFlightChunks);
+    }
+}
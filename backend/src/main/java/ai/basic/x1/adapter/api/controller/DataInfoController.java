@@ -13,6 +13,7 @@ import ai.basic.x1.entity.enums.SplitTargetDataTypeEnum;
 import ai.basic.x1.entity.enums.SplitTypeEnum;
 import ai.basic.x1.usecase.*;
 import ai.basic.x1.usecase.exception.UsecaseCode;
+import ai.basic.x1.util.CursorPage;
 import ai.basic.x1.util.DefaultConverter;
 import ai.basic.x1.util.ModelParamUtils;
 import ai.basic.x1.util.Page;
@@ -99,6 +100,18 @@ public class DataInfoController extends BaseDatasetController {
         return dataInfoPage.convert(this::convertDataInfoDTO);
     }
 
+    @GetMapping("findByCursor")
+    public CursorPage<DataInfoDTO> findByCursor(@RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "10") Integer pageSize,
+                                                @RequestParam(defaultValue = "false") Boolean withTotal,
+                                                @Validated DataInfoQueryDTO dataInfoQueryDTO) {
+        var dataInfoQueryBO = DefaultConverter.convert(dataInfoQueryDTO, DataInfoQueryBO.class);
+        assert dataInfoQueryBO != null;
+        dataInfoQueryBO.setPageSize(pageSize);
+        var dataInfoPage = dataInfoUsecase.findByCursor(dataInfoQueryBO, cursor, withTotal);
+        return dataInfoPage.convert(this::convertDataInfoDTO);
+    }
+
     @GetMapping("info/{id}")
     public DataInfoDTO info(@PathVariable Long id) {
         var dataInfoBO = dataInfoUsecase.findById(id);
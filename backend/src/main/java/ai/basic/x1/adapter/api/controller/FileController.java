@@ -0,0 +1,43 @@
+package ai.basic.x1.adapter.api.controller;
+
+import ai.basic.x1.entity.enums.RelationEnum;
+import ai.basic.x1.usecase.FileUseCase;
+import ai.basic.x1.usecase.ThumbnailUseCase;
+import ai.basic.x1.usecase.exception.UsecaseCode;
+import ai.basic.x1.usecase.exception.UsecaseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * @author fyb
+ */
+@RestController
+@RequestMapping("/file")
+public class FileController {
+
+    @Autowired
+    private FileUseCase fileUseCase;
+
+    @Autowired
+    private ThumbnailUseCase thumbnailUseCase;
+
+    /**
+     * Redirect to a thumbnail, generating it on first access. The url is signed instead of authenticated, as images
+     * load it without the token
+     */
+    @GetMapping("/thumbnail/{fileId}/{relation}")
+    public void thumbnail(@PathVariable Long fileId, @PathVariable RelationEnum relation, @RequestParam Long expires,
+                          @RequestParam String signature, HttpServletResponse response) throws IOException {
+        if (!fileUseCase.isThumbnailUrlValid(fileId, relation, expires, signature)) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Thumbnail url is invalid or expired");
+        }
+        response.sendRedirect(thumbnailUseCase.getThumbnail(fileId, relation).getUrl());
+    }
+}
@@ -9,10 +9,12 @@ import ai.basic.x1.adapter.port.dao.mybatis.model.DataAnnotationObject;
 import ai.basic.x1.adapter.port.dao.mybatis.model.ModelDataResult;
 import ai.basic.x1.adapter.port.dao.mybatis.model.ModelDatasetResult;
 import ai.basic.x1.adapter.port.dao.mybatis.model.ModelRunRecord;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoCountDAO;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoIncrDAO;
+import ai.basic.x1.adapter.port.dao.redis.ModelRunProgressDAO;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
 import ai.basic.x1.adapter.port.minio.MinioProp;
 import ai.basic.x1.adapter.port.minio.MinioService;
+import ai.basic.x1.adapter.port.rpc.RpcDeadline;
+import ai.basic.x1.adapter.port.rpc.RpcHttpClient;
 import ai.basic.x1.adapter.port.rpc.dto.*;
 import ai.basic.x1.entity.*;
 import ai.basic.x1.entity.enums.ModelCodeEnum;
@@ -21,20 +23,19 @@ import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ListUtil;
-import cn.hutool.core.date.StopWatch;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.TypeReference;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.*;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -43,6 +44,7 @@ import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -67,9 +69,7 @@ public abstract class AbstractModelMessageHandler<T> {
     protected ModelRunRecordDAO modelRunRecordDAO;
 
     @Autowired
-    private ModelSerialNoCountDAO modelSerialNoCountDAO;
-    @Autowired
-    private ModelSerialNoIncrDAO modelSerialNoIncrDAO;
+    private ModelRunProgressDAO modelRunProgressDAO;
     protected ObjectMapper objectMapper;
 
     @Autowired
@@ -81,9 +81,39 @@ public abstract class AbstractModelMessageHandler<T> {
     @Autowired
     protected MinioProp minioProp;
 
+    @Autowired
+    protected RpcHttpClient rpcHttpClient;
+
+    @Autowired
+    protected DomainMetrics domainMetrics;
+
+    @Autowired
+    protected ModelRunEvaluator modelRunEvaluator;
+
     @Value("${file.tempPath:/tmp/xtreme1/}")
     protected String tempPath;
 
+    @Value("${rpc.timeout.resultEvaluate:300000}")
+    private long resultEvaluateTimeout;
+
+    /**
+     * Deadline of one model run, remote calls of the run never wait past it
+     */
+    @Value("${model.run.timeout:600000}")
+    private long modelRunTimeout;
+
+    /**
+     * Model results read per page when assembling the metrics files
+     */
+    @Value("${model.metrics.pageSize:500}")
+    private int metricsPageSize;
+
+    /**
+     * In the incremental evaluation mode the run record metrics are refreshed every this many finished data
+     */
+    @Value("${model.evaluation.refreshInterval:100}")
+    private int evaluationRefreshInterval;
+
     private static final String TYPE_HANDLER = "typeHandler=com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler";
 
 
@@ -94,8 +124,6 @@ public abstract class AbstractModelMessageHandler<T> {
                 ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
     }
 
-    private static final Integer RETRY_COUNT = 3;
-
     /**
      * model run implement by subClass
      *
@@ -115,7 +143,17 @@ public abstract class AbstractModelMessageHandler<T> {
     abstract void syncModelAnnotationResult(ModelTaskInfoBO modelTaskInfo, ModelMessageBO modelMessage);
 
     abstract void assembleCalculateMetricsData(List<ModelDatasetResult> modelDatasetResults, List<DataAnnotationObject> dataAnnotationObjectList,
-                                               String groundTruthFilePath, String modelRunFilePath);
+                                               ModelMetricsFileWriter writer);
+
+    /**
+     * Ground truth boxes of one data for the incremental evaluation
+     */
+    abstract List<ModelEvaluationBox> assembleGroundTruthBoxes(List<DataAnnotationObject> dataAnnotationObjects);
+
+    /**
+     * Model run boxes of one data for the incremental evaluation
+     */
+    abstract List<ModelEvaluationBox> assembleModelRunBoxes(JSONObject modelResult);
 
     abstract String getResultEvaluateUrl();
 
@@ -126,17 +164,15 @@ public abstract class AbstractModelMessageHandler<T> {
      */
     public abstract ModelCodeEnum getModelCodeEnum();
 
+    /**
+     * Call the remote model, transport errors and busy responses are retried by {@link RpcHttpClient}
+     */
     public ApiResult<T> getRetryAbleApiResult(ModelMessageBO modelMessageBO) {
         ApiResult<T> apiResult = null;
-        int count = 0;
-        while (count <= RETRY_COUNT && ObjectUtil.isNull(apiResult)) {
-            try {
-                apiResult = callRemoteService(modelMessageBO);
-                break;
-            } catch (Throwable throwable) {
-                log.error("call remote service is error", throwable);
-            }
-            count++;
+        try {
+            apiResult = callRemoteService(modelMessageBO);
+        } catch (Throwable throwable) {
+            log.error("call remote service is error", throwable);
         }
         if (apiResult != null && apiResult.getCode() == UsecaseCode.OK) {
             return apiResult;
@@ -150,26 +186,38 @@ public abstract class AbstractModelMessageHandler<T> {
     }
 
     public boolean handleDataModelRun(ModelMessageBO modelMessageBO) {
+        var sample = domainMetrics.startTimer();
+        var success = false;
         try {
-            var modelResult = modelRun(modelMessageBO);
-            return saveToModelDataResult(modelMessageBO, modelResult);
+            var modelResult = RpcDeadline.callWithin(modelRunTimeout, () -> modelRun(modelMessageBO));
+            success = saveToModelDataResult(modelMessageBO, modelResult);
+            return success;
         } catch (Exception e) {
             log.error("{} handleDataModelRun exception: {}", getModelCodeEnum(), e);
             return false;
+        } finally {
+            domainMetrics.recordModelRun(sample, getModelCodeEnum(), "data", success);
         }
     }
 
     public boolean handleDatasetModelRun(ModelMessageBO modelMessageBO) {
+        Timer.Sample sample = null;
+        var success = false;
         try {
             if (isNotExistModelRunRecord(modelMessageBO)) {
                 return true;
             }
-            var modelResult = modelRun(modelMessageBO);
-            if (UsecaseCode.OK.getCode().equals(modelResult.getCode())) {
+            sample = domainMetrics.startTimer();
+            var modelResult = RpcDeadline.callWithin(modelRunTimeout, () -> modelRun(modelMessageBO));
+            success = UsecaseCode.OK.getCode().equals(modelResult.getCode());
+            if (success) {
                 syncModelAnnotationResult(modelResult, modelMessageBO);
             }
             if (saveToModelDatasetResult(modelMessageBO, modelResult)) {
-                updateProgress(modelMessageBO);
+                if (success && modelRunEvaluator.isIncremental()) {
+                    accumulateEvaluation(modelMessageBO, modelResult);
+                }
+                updateProgress(modelMessageBO, success);
             } else {
                 log.warn("update model_dataset_result fail! modelMessageBO is {} ", JSONUtil.toJsonStr(modelMessageBO));
             }
@@ -177,6 +225,44 @@ public abstract class AbstractModelMessageHandler<T> {
         } catch (Exception e) {
             log.error("{} handleDatasetModelRun exception: {}", getModelCodeEnum(), e);
             return false;
+        } finally {
+            if (sample != null) {
+                domainMetrics.recordModelRun(sample, getModelCodeEnum(), "dataset", success);
+            }
+        }
+    }
+
+    /**
+     * Finish a data of a dataset model run without running the model, e.g. it has been deleted or retried too often,
+     * it is counted as a failure unless it already has a result
+     *
+     * @param modelMessageBO Message of the data
+     * @param errorMessage   Error message saved to the result
+     */
+    public void failDatasetModelRun(ModelMessageBO modelMessageBO, String errorMessage) {
+        var modelResult = ModelTaskInfoBO.builder().code(UsecaseCode.ERROR.getCode()).message(errorMessage).build();
+        if (saveToModelDatasetResult(modelMessageBO, modelResult)) {
+            updateProgress(modelMessageBO, false);
+        }
+    }
+
+    /**
+     * Evaluate one finished data, only data with ground truth are evaluated, the same as by the result evaluation
+     * service. Evaluation failures never fail the model run.
+     */
+    private void accumulateEvaluation(ModelMessageBO modelMessage, ModelTaskInfoBO modelResult) {
+        try {
+            var dataAnnotationObjects = dataAnnotationObjectDAO.list(Wrappers.lambdaQuery(DataAnnotationObject.class)
+                    .eq(DataAnnotationObject::getDataId, modelMessage.getDataId())
+                    .eq(DataAnnotationObject::getSourceId, -1L));
+            var groundTruthBoxes = assembleGroundTruthBoxes(dataAnnotationObjects);
+            if (CollUtil.isEmpty(groundTruthBoxes)) {
+                return;
+            }
+            modelRunEvaluator.accumulate(modelMessage.getModelSerialNo(), groundTruthBoxes,
+                    assembleModelRunBoxes(JSONUtil.parseObj(modelResult)));
+        } catch (Exception e) {
+            log.warn("Evaluate model result error,modelSerialNo:{},dataId:{}", modelMessage.getModelSerialNo(), modelMessage.getDataId(), e);
         }
     }
 
@@ -213,17 +299,26 @@ public abstract class AbstractModelMessageHandler<T> {
         );
     }
 
-    public void updateProgress(ModelMessageBO modelMessage) {
+    /**
+     * Count a finished data, the finished and failed counts and the completion check are one atomic Redis call
+     *
+     * @param modelMessage Model message
+     * @param success      Whether the model run of the data succeeded
+     */
+    public void updateProgress(ModelMessageBO modelMessage, boolean success) {
         Long key = modelMessage.getModelSerialNo();
-        int currentPosition = modelSerialNoIncrDAO.incrModelSerialNo(key);
-        Integer lastPosition = modelSerialNoCountDAO.getCount(key);
-        if (currentPosition == 1) {
+        var progress = modelRunProgressDAO.finish(key, success);
+        if (progress.getDone() == 1) {
             modelRunRecordStart(modelMessage);
         }
-        if (currentPosition == lastPosition) {
-            long sizeFailure = getSizeFailure(modelMessage);
+        if (modelRunEvaluator.isIncremental() && !progress.isCompleted() && progress.getDone() % evaluationRefreshInterval == 0) {
+            updateModelRunRecordMetrics(modelMessage);
+        }
+        if (progress.isCompleted()) {
+            // Failures of runs started before the upgrade were not counted in Redis
+            long sizeFailure = progress.isLegacy() ? getSizeFailure(modelMessage) : progress.getFailure();
             if (sizeFailure > 0) {
-                RunStatusEnum runStatus = sizeFailure == currentPosition ? RunStatusEnum.FAILURE : RunStatusEnum.SUCCESS_WITH_ERROR;
+                RunStatusEnum runStatus = sizeFailure == progress.getDone() ? RunStatusEnum.FAILURE : RunStatusEnum.SUCCESS_WITH_ERROR;
                 modelRunRecordFailure(modelMessage, runStatus);
             } else {
                 modelRunRecordSuccess(modelMessage);
@@ -251,37 +346,48 @@ public abstract class AbstractModelMessageHandler<T> {
         modelRunRecordDAO.update(wrapper);
     }
 
+    /**
+     * Partial metrics of a running run
+     */
+    private void updateModelRunRecordMetrics(ModelMessageBO modelMessage) {
+        try {
+            var modelResultEvaluateRespDTO = modelRunEvaluator.getMetrics(modelMessage.getModelSerialNo());
+            if (ObjectUtil.isNull(modelResultEvaluateRespDTO)) {
+                return;
+            }
+            modelRunRecordDAO.update(Wrappers.lambdaUpdate(ModelRunRecord.class)
+                    .set(ModelRunRecord::getMetrics, JSONUtil.parseObj(modelResultEvaluateRespDTO), TYPE_HANDLER)
+                    .eq(ModelRunRecord::getModelSerialNo, modelMessage.getModelSerialNo())
+                    .eq(ModelRunRecord::getStatus, RunStatusEnum.RUNNING));
+        } catch (Exception e) {
+            log.warn("Update model run metrics error,modelSerialNo:{}", modelMessage.getModelSerialNo(), e);
+        }
+    }
+
     private void modelRunRecordSuccess(ModelMessageBO modelMessage) {
-        var modelResultEvaluateRespDTO = calculateMetrics(modelMessage);
+        var modelResultEvaluateRespDTO = modelRunEvaluator.isIncremental()
+                ? modelRunEvaluator.getMetrics(modelMessage.getModelSerialNo()) : calculateMetrics(modelMessage);
         updateModelRunRecordStatus(modelMessage, RunStatusEnum.SUCCESS, null, modelResultEvaluateRespDTO);
     }
 
+    /**
+     * Stream the successful results of the run page by page into the metrics files, then upload them and call the
+     * result evaluation
+     */
     private ModelResultEvaluateRespDTO calculateMetrics(ModelMessageBO modelMessage) {
-        var lambdaQueryWrapper = Wrappers.lambdaQuery(ModelDatasetResult.class);
-        lambdaQueryWrapper.select(ModelDatasetResult::getId, ModelDatasetResult::getDataId);
-        lambdaQueryWrapper.eq(ModelDatasetResult::getModelSerialNo, modelMessage.getModelSerialNo());
-        var modelDatasetResultList = modelDatasetResultDAO.list(lambdaQueryWrapper);
         var uuid = IdUtil.fastSimpleUUID();
         var groundTruthFilePath = String.format("%s%s/groundTruth.json", tempPath, uuid);
         var modelRunFilePath = String.format("%s%s/modelRun.json", tempPath, uuid);
-        if (CollUtil.isNotEmpty(modelDatasetResultList)) {
-            var modelDatasetResultSplitList = ListUtil.split(modelDatasetResultList, 100);
-            modelDatasetResultSplitList.forEach(subModelDatasetResultList -> {
-                var dataIds = subModelDatasetResultList.stream().map(ModelDatasetResult::getDataId).collect(Collectors.toList());
-                var ids = subModelDatasetResultList.stream().map(ModelDatasetResult::getId).collect(Collectors.toList());
-                var modelDatasetResults = modelDatasetResultDAO.listByIds(ids);
-                var annotationObjectLambdaQueryWrapper = Wrappers.lambdaQuery(DataAnnotationObject.class);
-                annotationObjectLambdaQueryWrapper.in(DataAnnotationObject::getDataId, dataIds);
-                annotationObjectLambdaQueryWrapper.eq(DataAnnotationObject::getSourceId, -1L);
-                var dataAnnotationObjectList = dataAnnotationObjectDAO.list(annotationObjectLambdaQueryWrapper);
-                assembleCalculateMetricsData(modelDatasetResults, dataAnnotationObjectList, groundTruthFilePath, modelRunFilePath);
-            });
-        }
         var rootPath = String.format("model_%s", modelMessage.getModelId());
-        var groundTruthFile = FileUtil.file(groundTruthFilePath);
-        var modelRunFile = FileUtil.file(modelRunFilePath);
-        if (!FileUtil.isEmpty(groundTruthFile)) {
-            var fileList = List.of(groundTruthFile, modelRunFile);
+        try {
+            var writer = new ModelMetricsFileWriter(groundTruthFilePath, modelRunFilePath);
+            try (writer) {
+                writeMetricsData(modelMessage.getModelSerialNo(), writer);
+            }
+            if (writer.getDataNum() == 0) {
+                return null;
+            }
+            var fileList = List.of(writer.getGroundTruthFile(), writer.getModelRunFile());
             ModelResultEvaluateReqDTO modelResultEvaluateReqDTO = null;
             try {
                 minioService.uploadFileList(minioProp.getBucketName(), rootPath, tempPath, fileList);
@@ -299,23 +405,47 @@ public abstract class AbstractModelMessageHandler<T> {
                     return apiResult.getData();
                 }
             }
-            FileUtil.clean(groundTruthFilePath);
-            FileUtil.clean(modelRunFilePath);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Write metrics file error,modelSerialNo:{}", modelMessage.getModelSerialNo(), e);
+        } finally {
+            FileUtil.del(String.format("%s%s", tempPath, uuid));
         }
         return null;
     }
 
+    /**
+     * Keyset pages on the unique key (model_serial_no, data_id), each page with one ground truth query
+     */
+    private void writeMetricsData(Long modelSerialNo, ModelMetricsFileWriter writer) {
+        var lastDataId = 0L;
+        while (true) {
+            var modelDatasetResults = modelDatasetResultDAO.list(Wrappers.lambdaQuery(ModelDatasetResult.class)
+                    .eq(ModelDatasetResult::getModelSerialNo, modelSerialNo)
+                    .eq(ModelDatasetResult::getIsSuccess, true)
+                    .gt(ModelDatasetResult::getDataId, lastDataId)
+                    .orderByAsc(ModelDatasetResult::getDataId)
+                    .last("LIMIT " + metricsPageSize));
+            if (CollUtil.isEmpty(modelDatasetResults)) {
+                return;
+            }
+            var dataIds = modelDatasetResults.stream().map(ModelDatasetResult::getDataId).collect(Collectors.toList());
+            var dataAnnotationObjectList = dataAnnotationObjectDAO.list(Wrappers.lambdaQuery(DataAnnotationObject.class)
+                    .in(DataAnnotationObject::getDataId, dataIds)
+                    .eq(DataAnnotationObject::getSourceId, -1L));
+            assembleCalculateMetricsData(modelDatasetResults, dataAnnotationObjectList, writer);
+            if (modelDatasetResults.size() < metricsPageSize) {
+                return;
+            }
+            lastDataId = CollUtil.getLast(dataIds);
+        }
+    }
+
     public ApiResult<ModelResultEvaluateRespDTO> getRetryModelResultEvaluate(ModelResultEvaluateReqDTO modelResultEvaluateReqDTO) {
         ApiResult<ModelResultEvaluateRespDTO> apiResult = null;
-        int count = 0;
-        while (count <= RETRY_COUNT && ObjectUtil.isNull(apiResult)) {
-            try {
-                apiResult = callResultEvaluateRemoteService(modelResultEvaluateReqDTO);
-                break;
-            } catch (Throwable throwable) {
-                log.error("call remote service is error", throwable);
-            }
-            count++;
+        try {
+            apiResult = callResultEvaluateRemoteService(modelResultEvaluateReqDTO);
+        } catch (Throwable throwable) {
+            log.error("call remote service is error", throwable);
         }
         if (apiResult != null && apiResult.getCode() == UsecaseCode.OK) {
             return apiResult;
@@ -330,23 +460,15 @@ public abstract class AbstractModelMessageHandler<T> {
 
     private ApiResult<ModelResultEvaluateRespDTO> callResultEvaluateRemoteService(ModelResultEvaluateReqDTO modelResultEvaluateReqDTO) {
         try {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
             String requestBody = JSONUtil.toJsonStr(modelResultEvaluateReqDTO);
             String resultEvaluateUrl = getResultEvaluateUrl();
-            HttpRequest httpRequest = HttpUtil.createPost(resultEvaluateUrl)
-                    .body(requestBody, ContentType.JSON.getValue());
-            HttpResponse httpResponse = httpRequest.execute();
-            stopWatch.stop();
-            log.info(String.format("call resultEvaluateService took: %dms,req:%s ,resp:%s", stopWatch.getLastTaskTimeMillis(), requestBody, httpResponse.body()));
-            if (httpResponse.getStatus() == HttpStatus.HTTP_OK) {
-                ApiResult<ModelResultEvaluateRespDTO> apiResult = JSONUtil.toBean(httpResponse.body(), new TypeReference<>() {
-                }, false);
-                return apiResult;
-            } else {
-                log.error("resultEvaluate run error!,{}", httpResponse.body());
-                throw new UsecaseException("resultEvaluate run error!");
-            }
+            String responseBody = rpcHttpClient.postJson("resultEvaluate", resultEvaluateUrl, requestBody, resultEvaluateTimeout);
+            ApiResult<ModelResultEvaluateRespDTO> apiResult = JSONUtil.toBean(responseBody, new TypeReference<>() {
+            }, false);
+            return apiResult;
+        } catch (RpcHttpClient.HttpStatusException httpStatusException) {
+            log.error("resultEvaluate run error!,{}", httpStatusException.getBody());
+            throw new UsecaseException("resultEvaluate run error!");
         } catch (Throwable throwable) {
             log.error("call result evaluate service error.", throwable);
             throw new UsecaseException("resultEvaluate run error!");
@@ -367,7 +489,9 @@ public abstract class AbstractModelMessageHandler<T> {
             errorMsg = null;
         }
 
-        updateModelRunRecordStatus(modelMessage, runStatus, errorMsg, null);
+        var modelResultEvaluateRespDTO = runStatus == RunStatusEnum.SUCCESS_WITH_ERROR && modelRunEvaluator.isIncremental()
+                ? modelRunEvaluator.getMetrics(modelMessage.getModelSerialNo()) : null;
+        updateModelRunRecordStatus(modelMessage, runStatus, errorMsg, modelResultEvaluateRespDTO);
     }
 
     private long getSizeFailure(ModelMessageBO modelMessage) {
@@ -379,8 +503,8 @@ public abstract class AbstractModelMessageHandler<T> {
 
     private void removeCounter(Long key) {
         try {
-            modelSerialNoIncrDAO.removeModelSerialNo(key);
-            modelSerialNoCountDAO.removeModelSerialNoCount(key);
+            modelRunProgressDAO.remove(key);
+            modelRunEvaluator.remove(key);
         } catch (Throwable throwable) {
             log.error("clean {} redis key error", key, throwable);
         }
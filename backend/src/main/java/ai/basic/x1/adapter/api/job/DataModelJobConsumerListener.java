@@ -19,12 +19,15 @@ public class DataModelJobConsumerListener implements StreamListener<String, Obje
     private String group;
     private String streamKey;
     private RedisTemplate<String, Object> redisTemplate;
+    private ModelRunDispatcher modelRunDispatcher;
     private ConcurrentHashMap<String, AbstractModelMessageHandler> modelMessageHandlerMap = new ConcurrentHashMap<>();
 
-    public DataModelJobConsumerListener(String streamKey, String group, RedisTemplate<String, Object> redisTemplate, ApplicationContext applicationContext) {
+    public DataModelJobConsumerListener(String streamKey, String group, RedisTemplate<String, Object> redisTemplate,
+                                        ModelRunDispatcher modelRunDispatcher, ApplicationContext applicationContext) {
         this.streamKey = streamKey;
         this.group = group;
         this.redisTemplate = redisTemplate;
+        this.modelRunDispatcher = modelRunDispatcher;
         for (AbstractModelMessageHandler messageHandler : applicationContext.getBeansOfType(AbstractModelMessageHandler.class).values()) {
             modelMessageHandlerMap.put(messageHandler.getModelCodeEnum().name(), messageHandler);
         }
@@ -36,8 +39,9 @@ public class DataModelJobConsumerListener implements StreamListener<String, Obje
         String modelMessageBOJSONStr = (String) message.getValue();
         log.info("receive data message:{}",modelMessageBOJSONStr);
         ModelMessageBO modelMessageBO = JSONUtil.toBean(modelMessageBOJSONStr, ModelMessageBO.class);
-        if (modelMessageHandlerMap.get(modelMessageBO.getModelCode().name()).handleDataModelRun(modelMessageBO)) {
-            redisTemplate.opsForStream().acknowledge(streamKey, group, message.getId());
-        }
+        var modelCode = modelMessageBO.getModelCode().name();
+        var messageHandler = modelMessageHandlerMap.get(modelCode);
+        modelRunDispatcher.dispatch(streamKey, message.getId().getValue(), modelCode, () -> messageHandler.handleDataModelRun(modelMessageBO),
+                () -> redisTemplate.opsForStream().acknowledge(streamKey, group, message.getId()));
     }
 }
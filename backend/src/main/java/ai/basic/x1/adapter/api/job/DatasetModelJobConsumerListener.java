@@ -3,7 +3,13 @@ package ai.basic.x1.adapter.api.job;
 import ai.basic.x1.adapter.api.context.RequestContext;
 import ai.basic.x1.adapter.api.context.RequestContextHolder;
 import ai.basic.x1.adapter.api.context.UserInfo;
+import ai.basic.x1.entity.DataInfoBO;
 import ai.basic.x1.entity.ModelMessageBO;
+import ai.basic.x1.usecase.DataInfoUseCase;
+import ai.basic.x1.usecase.ModelUseCase;
+import ai.basic.x1.util.DefaultConverter;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
@@ -11,7 +17,10 @@ import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.stream.StreamListener;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * @author andy
@@ -22,12 +31,26 @@ public class DatasetModelJobConsumerListener implements StreamListener<String, O
     private String group;
     private String streamKey;
     private RedisTemplate<String, Object> redisTemplate;
+    private ModelRunDispatcher modelRunDispatcher;
     private ConcurrentHashMap<String, AbstractModelMessageHandler> modelMessageHandlerMap = new ConcurrentHashMap<>();
+    private DataInfoUseCase dataInfoUseCase;
+    private ModelUseCase modelUseCase;
 
-    public DatasetModelJobConsumerListener(String streamKey, String group, RedisTemplate<String, Object> redisTemplate, ApplicationContext applicationContext) {
+    /**
+     * Times the failed data of a message are sent again before they are counted as failures
+     */
+    private int maxRetries;
+
+    public DatasetModelJobConsumerListener(String streamKey, String group, RedisTemplate<String, Object> redisTemplate,
+                                           ModelRunDispatcher modelRunDispatcher, ApplicationContext applicationContext,
+                                           int maxRetries) {
         this.streamKey = streamKey;
         this.group = group;
         this.redisTemplate = redisTemplate;
+        this.modelRunDispatcher = modelRunDispatcher;
+        this.maxRetries = maxRetries;
+        this.dataInfoUseCase = applicationContext.getBean(DataInfoUseCase.class);
+        this.modelUseCase = applicationContext.getBean(ModelUseCase.class);
         for (AbstractModelMessageHandler messageHandler : applicationContext.getBeansOfType(AbstractModelMessageHandler.class).values()) {
             modelMessageHandlerMap.put(messageHandler.getModelCodeEnum().name(), messageHandler);
         }
@@ -39,10 +62,83 @@ public class DatasetModelJobConsumerListener implements StreamListener<String, O
         String modelMessageBOJSONStr = (String) message.getValue();
         log.info("receive message:{}", modelMessageBOJSONStr);
         ModelMessageBO modelMessageBO = JSONUtil.toBean(modelMessageBOJSONStr, ModelMessageBO.class);
-        buildRequestContext(modelMessageBO.getCreatedBy());
-        if (modelMessageHandlerMap.get(modelMessageBO.getModelCode().name()).handleDatasetModelRun(modelMessageBO)) {
-            redisTemplate.opsForStream().acknowledge(streamKey, group, message.getId());
+        var modelCode = modelMessageBO.getModelCode().name();
+        var messageHandler = modelMessageHandlerMap.get(modelCode);
+        modelRunDispatcher.dispatch(streamKey, message.getId().getValue(), modelCode, () -> {
+            buildRequestContext(modelMessageBO.getCreatedBy());
+            try {
+                var failedDataIds = new ArrayList<Long>();
+                for (var dataModelMessageBO : splitMessage(modelMessageBO, messageHandler)) {
+                    if (!messageHandler.handleDatasetModelRun(dataModelMessageBO)) {
+                        failedDataIds.add(dataModelMessageBO.getDataId());
+                    }
+                }
+                return retryFailedData(modelMessageBO, failedDataIds, messageHandler);
+            } finally {
+                RequestContextHolder.cleanContext();
+            }
+        }, () -> redisTemplate.opsForStream().acknowledge(streamKey, group, message.getId()));
+    }
+
+    /**
+     * Batched messages only carry data ids, load the data with their files and build a message per data. Data deleted
+     * since the message was sent are finished as failures, so that the run still completes
+     */
+    private List<ModelMessageBO> splitMessage(ModelMessageBO modelMessageBO, AbstractModelMessageHandler messageHandler) {
+        if (CollUtil.isEmpty(modelMessageBO.getDataIds())) {
+            return List.of(modelMessageBO);
+        }
+        var dataInfoBOList = dataInfoUseCase.listByIds(modelMessageBO.getDataIds(), false);
+        var dataInfoMap = dataInfoBOList.stream().collect(Collectors.toMap(DataInfoBO::getId, dataInfoBO -> dataInfoBO, (k1, k2) -> k1));
+        var messages = new ArrayList<ModelMessageBO>(dataInfoBOList.size());
+        modelMessageBO.getDataIds().forEach(dataId -> {
+            var dataModelMessageBO = toDataMessage(modelMessageBO, dataId);
+            var dataInfoBO = dataInfoMap.get(dataId);
+            if (ObjectUtil.isNull(dataInfoBO)) {
+                messageHandler.failDatasetModelRun(dataModelMessageBO, "Data has been deleted");
+                return;
+            }
+            dataModelMessageBO.setDataInfo(dataInfoBO);
+            messages.add(dataModelMessageBO);
+        });
+        return messages;
+    }
+
+    /**
+     * Send the failed data of a batched message again as a new message, so that the handled data of the batch are not
+     * run again. Data retried maxRetries times are finished as failures.
+     *
+     * @return Whether the message can be acknowledged
+     */
+    private boolean retryFailedData(ModelMessageBO modelMessageBO, List<Long> failedDataIds,
+                                    AbstractModelMessageHandler messageHandler) {
+        if (failedDataIds.isEmpty()) {
+            return true;
+        }
+        if (CollUtil.isEmpty(modelMessageBO.getDataIds())) {
+            // A message of a single data is recovered from the pending list instead
+            return false;
+        }
+        var retryCount = ObjectUtil.defaultIfNull(modelMessageBO.getRetryCount(), 0);
+        if (retryCount >= maxRetries) {
+            log.error("Model run of data {} failed {} times, modelSerialNo:{}", failedDataIds, retryCount + 1,
+                    modelMessageBO.getModelSerialNo());
+            failedDataIds.forEach(dataId -> messageHandler.failDatasetModelRun(toDataMessage(modelMessageBO, dataId),
+                    "Model run failed " + (retryCount + 1) + " times"));
+            return true;
         }
+        var retryMessageBO = DefaultConverter.convert(modelMessageBO, ModelMessageBO.class);
+        retryMessageBO.setDataIds(failedDataIds);
+        retryMessageBO.setRetryCount(retryCount + 1);
+        modelUseCase.sendModelDatasetMessage(List.of(retryMessageBO));
+        return true;
+    }
+
+    private ModelMessageBO toDataMessage(ModelMessageBO modelMessageBO, Long dataId) {
+        var dataModelMessageBO = DefaultConverter.convert(modelMessageBO, ModelMessageBO.class);
+        dataModelMessageBO.setDataIds(null);
+        dataModelMessageBO.setDataId(dataId);
+        return dataModelMessageBO;
     }
 
     private void buildRequestContext(Long userId) {
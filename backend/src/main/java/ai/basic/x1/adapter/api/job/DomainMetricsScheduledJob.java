@@ -0,0 +1,94 @@
+package ai.basic.x1.adapter.api.job;
+
+import ai.basic.x1.adapter.port.dao.DatasetSimilarityJobDAO;
+import ai.basic.x1.adapter.port.dao.mybatis.model.DatasetSimilarityJob;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ai.basic.x1.util.Constants.*;
+
+/**
+ * Samples the gauges that need Redis or database queries, so that a metrics scrape never waits for them.
+ * <ul>
+ *     <li>`model.run.stream.pending`: messages read but not acknowledged, the model run queue depth in progress</li>
+ *     <li>`model.run.stream.length`: messages kept in the stream</li>
+ *     <li>`similarity.job.pending`, `similarity.job.lag`: waiting similarity jobs and the age of the oldest one</li>
+ * </ul>
+ *
+ * @author andy
+ */
+@Component
+@Slf4j
+public class DomainMetricsScheduledJob {
+
+    private static final Map<String, String> STREAM_GROUPS = Map.of(
+            DATA_MODEL_RUN_STREAM_KEY, MODEL_RUN_CONSUMER_GROUP,
+            DATASET_MODEL_RUN_STREAM_KEY, DATASET_MODEL_RUN_CONSUMER_GROUP);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private RedisTemplate<String, Object> streamRedisTemplate;
+    @Autowired
+    private DatasetSimilarityJobDAO datasetSimilarityJobDAO;
+
+    private final Map<String, AtomicLong> streamPending = Map.of(
+            DATA_MODEL_RUN_STREAM_KEY, new AtomicLong(), DATASET_MODEL_RUN_STREAM_KEY, new AtomicLong());
+    private final Map<String, AtomicLong> streamLength = Map.of(
+            DATA_MODEL_RUN_STREAM_KEY, new AtomicLong(), DATASET_MODEL_RUN_STREAM_KEY, new AtomicLong());
+    private final AtomicLong similarityJobPending = new AtomicLong();
+    private final AtomicLong similarityJobLagSeconds = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        STREAM_GROUPS.keySet().forEach(streamKey -> {
+            Gauge.builder("model.run.stream.pending", streamPending.get(streamKey), AtomicLong::get)
+                    .tag("stream", streamKey)
+                    .register(meterRegistry);
+            Gauge.builder("model.run.stream.length", streamLength.get(streamKey), AtomicLong::get)
+                    .tag("stream", streamKey)
+                    .register(meterRegistry);
+        });
+        Gauge.builder("similarity.job.pending", similarityJobPending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("similarity.job.lag", similarityJobLagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.sample.interval:15000}")
+    public void sample() {
+        STREAM_GROUPS.forEach((streamKey, group) -> {
+            try {
+                var pendingSummary = streamRedisTemplate.opsForStream().pending(streamKey, group);
+                streamPending.get(streamKey).set(pendingSummary == null ? 0 : pendingSummary.getTotalPendingMessages());
+                var size = streamRedisTemplate.opsForStream().size(streamKey);
+                streamLength.get(streamKey).set(size == null ? 0 : size);
+            } catch (Exception e) {
+                log.warn("Sample stream metrics error, stream:{}", streamKey, e);
+            }
+        });
+        try {
+            similarityJobPending.set(datasetSimilarityJobDAO.count());
+            var oldestJob = datasetSimilarityJobDAO.getOne(Wrappers.lambdaQuery(DatasetSimilarityJob.class)
+                    .select(DatasetSimilarityJob::getCreatedAt)
+                    .orderByAsc(DatasetSimilarityJob::getCreatedAt)
+                    .last("limit 1"));
+            similarityJobLagSeconds.set(oldestJob == null || oldestJob.getCreatedAt() == null ? 0
+                    : Duration.between(oldestJob.getCreatedAt(), OffsetDateTime.now()).getSeconds());
+        } catch (Exception e) {
+            log.warn("Sample similarity job metrics error", e);
+        }
+    }
+}
@@ -19,8 +19,7 @@ import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.extern.slf4j.Slf4j;
@@ -90,54 +89,80 @@ public class ImageDetectionModelHandler extends AbstractModelMessageHandler<Imag
                 dataAnnotationObjectBOList.add(dataAnnotationObjectBO);
             });
 
-            dataAnnotationObjectDAO.saveBatch(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
+            dataAnnotationObjectDAO.bulkInsert(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
         }
     }
 
     @Override
     public void assembleCalculateMetricsData(List<ModelDatasetResult> modelDatasetResults, List<DataAnnotationObject> dataAnnotationObjectList,
-                                             String groundTruthFilePath, String modelRunFilePath) {
+                                             ModelMetricsFileWriter writer) {
         if (CollUtil.isEmpty(modelDatasetResults)) {
             return;
         }
-        var dataAnnotationObjectMap = dataAnnotationObjectList.stream().filter(dataAnnotationObject -> {
-            var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes(), ImageDetectionObjectBO.ObjectBO.class);
-            return "RECTANGLE".equalsIgnoreCase(objectBO.getType());
-        }).collect(Collectors.groupingBy(DataAnnotationObject::getDataId));
+        var dataAnnotationObjectMap = dataAnnotationObjectList.stream().filter(this::isRectangle)
+                .collect(Collectors.groupingBy(DataAnnotationObject::getDataId));
         modelDatasetResults.forEach(modelDatasetResult -> {
             var isSuccess = modelDatasetResult.getIsSuccess();
             if (!isSuccess) {
                 return;
             }
-            var modelResult = modelDatasetResult.getModelResult();
             var dataId = modelDatasetResult.getDataId();
             var dataAnnotationObjects = dataAnnotationObjectMap.get(modelDatasetResult.getDataId());
-            var groundTruthObjects = new ArrayList<ImageDetectionObject>();
             if (CollUtil.isEmpty(dataAnnotationObjects)) {
                 return;
             }
-            dataAnnotationObjects.forEach(dataAnnotationObject -> {
-                var imageDetectionObject = new ImageDetectionObject();
-                var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), ImageDetectionObjectBO.ObjectBO.class);
-                assembleObject(objectBO, imageDetectionObject);
-                groundTruthObjects.add(imageDetectionObject);
-            });
-            var modelRunObjects = new ArrayList<ImageDetectionObject>();
-            var predImageModelObjectBO = DefaultConverter.convert(modelResult, ImageDetectionObjectBO.class);
-            predImageModelObjectBO.getObjects().forEach(objectBO -> {
-                var imageDetectionObject = new ImageDetectionObject();
-                var confidence = objectBO.getConfidence();
-                assembleObject(objectBO, imageDetectionObject);
-                imageDetectionObject.setConfidence(confidence);
-                modelRunObjects.add(imageDetectionObject);
-            });
-            var groundTruthObject = ImageDetectionMetricsReqDTO.builder().id(dataId).objects(groundTruthObjects).build();
-            var modelRunObject = ImageDetectionMetricsReqDTO.builder().id(dataId).objects(modelRunObjects).build();
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(groundTruthObject)), groundTruthFilePath);
-            FileUtil.appendUtf8String("\n", groundTruthFilePath);
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(modelRunObject)), modelRunFilePath);
-            FileUtil.appendUtf8String("\n", modelRunFilePath);
+            var groundTruthObject = ImageDetectionMetricsReqDTO.builder().id(dataId).objects(toGroundTruthObjects(dataAnnotationObjects)).build();
+            var modelRunObject = ImageDetectionMetricsReqDTO.builder().id(dataId).objects(toModelRunObjects(modelDatasetResult.getModelResult())).build();
+            writer.append(groundTruthObject, modelRunObject);
+        });
+    }
+
+    @Override
+    List<ModelEvaluationBox> assembleGroundTruthBoxes(List<DataAnnotationObject> dataAnnotationObjects) {
+        var groundTruthObjects = dataAnnotationObjects.stream().filter(this::isRectangle).collect(Collectors.toList());
+        return toGroundTruthObjects(groundTruthObjects).stream().filter(object -> object.getLeftTopX() != null)
+                .map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    @Override
+    List<ModelEvaluationBox> assembleModelRunBoxes(JSONObject modelResult) {
+        return toModelRunObjects(modelResult).stream().filter(object -> object.getLeftTopX() != null)
+                .map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    private boolean isRectangle(DataAnnotationObject dataAnnotationObject) {
+        var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes(), ImageDetectionObjectBO.ObjectBO.class);
+        return "RECTANGLE".equalsIgnoreCase(objectBO.getType());
+    }
+
+    private List<ImageDetectionObject> toGroundTruthObjects(List<DataAnnotationObject> dataAnnotationObjects) {
+        var groundTruthObjects = new ArrayList<ImageDetectionObject>();
+        dataAnnotationObjects.forEach(dataAnnotationObject -> {
+            var imageDetectionObject = new ImageDetectionObject();
+            var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), ImageDetectionObjectBO.ObjectBO.class);
+            assembleObject(objectBO, imageDetectionObject);
+            groundTruthObjects.add(imageDetectionObject);
         });
+        return groundTruthObjects;
+    }
+
+    private List<ImageDetectionObject> toModelRunObjects(JSONObject modelResult) {
+        var modelRunObjects = new ArrayList<ImageDetectionObject>();
+        var predImageModelObjectBO = DefaultConverter.convert(modelResult, ImageDetectionObjectBO.class);
+        predImageModelObjectBO.getObjects().forEach(objectBO -> {
+            var imageDetectionObject = new ImageDetectionObject();
+            var confidence = objectBO.getConfidence();
+            assembleObject(objectBO, imageDetectionObject);
+            imageDetectionObject.setConfidence(confidence);
+            modelRunObjects.add(imageDetectionObject);
+        });
+        return modelRunObjects;
+    }
+
+    private ModelEvaluationBox toEvaluationBox(ImageDetectionObject object) {
+        return ModelEvaluationBox.of(object.getLabel(), object.getConfidence() == null ? null : object.getConfidence().doubleValue(),
+                new double[]{object.getLeftTopX().doubleValue(), object.getLeftTopY().doubleValue()},
+                new double[]{object.getRightBottomX().doubleValue(), object.getRightBottomY().doubleValue()});
     }
 
     private void assembleObject(ImageDetectionObjectBO.ObjectBO objectBO, ImageDetectionObject imageDetectionObject) {
@@ -0,0 +1,61 @@
+package ai.basic.x1.adapter.api.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Axis aligned box of a ground truth or model run object in the incremental evaluation, 2D for images and 3D for
+ * point clouds
+ *
+ * @author andy
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelEvaluationBox {
+
+    /**
+     * Class, null when unknown, e.g. for ground truth objects
+     */
+    private String label;
+
+    /**
+     * Confidence of a model run object
+     */
+    private Double confidence;
+
+    private double[] min;
+
+    private double[] max;
+
+    public static ModelEvaluationBox of(String label, Double confidence, double[] min, double[] max) {
+        return ModelEvaluationBox.builder().label(label).confidence(confidence).min(min).max(max).build();
+    }
+
+    /**
+     * Intersection over union with a box of the same dimensions
+     */
+    public double iou(ModelEvaluationBox other) {
+        var intersection = 1d;
+        for (int i = 0; i < min.length; i++) {
+            var side = Math.min(max[i], other.max[i]) - Math.max(min[i], other.min[i]);
+            if (side <= 0) {
+                return 0;
+            }
+            intersection *= side;
+        }
+        var union = volume() + other.volume() - intersection;
+        return union <= 0 ? 0 : intersection / union;
+    }
+
+    private double volume() {
+        var volume = 1d;
+        for (int i = 0; i < min.length; i++) {
+            volume *= Math.max(0, max[i] - min[i]);
+        }
+        return volume;
+    }
+}
@@ -0,0 +1,77 @@
+package ai.basic.x1.adapter.api.job;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.Getter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the ground truth and model run files of a result evaluation, one JSON line per data. Both files stay open
+ * for the whole run instead of being reopened for every line.
+ *
+ * @author andy
+ */
+public class ModelMetricsFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Getter
+    private final File groundTruthFile;
+    @Getter
+    private final File modelRunFile;
+    private final BufferedWriter groundTruthWriter;
+    private final BufferedWriter modelRunWriter;
+    @Getter
+    private int dataNum;
+
+    public ModelMetricsFileWriter(String groundTruthFilePath, String modelRunFilePath) throws IOException {
+        this.groundTruthFile = FileUtil.touch(groundTruthFilePath);
+        this.modelRunFile = FileUtil.touch(modelRunFilePath);
+        this.groundTruthWriter = newWriter(groundTruthFile);
+        try {
+            this.modelRunWriter = newWriter(modelRunFile);
+        } catch (IOException e) {
+            groundTruthWriter.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append the ground truth and model run objects of one data
+     */
+    public void append(Object groundTruthObject, Object modelRunObject) {
+        try {
+            writeLine(groundTruthWriter, groundTruthObject);
+            writeLine(modelRunWriter, modelRunObject);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dataNum++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (groundTruthWriter; modelRunWriter) {
+            groundTruthWriter.flush();
+            modelRunWriter.flush();
+        }
+    }
+
+    private static BufferedWriter newWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static void writeLine(BufferedWriter writer, Object object) throws IOException {
+        writer.write(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(object)));
+        writer.write('\n');
+    }
+}
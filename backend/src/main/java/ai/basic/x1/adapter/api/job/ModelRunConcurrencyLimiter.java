@@ -0,0 +1,96 @@
+package ai.basic.x1.adapter.api.job;
+
+/**
+ * Concurrency limit of one model driven by its latency. The limit grows by one while the model answers close to
+ * its best observed latency and all permits are used, and is cut when the latency rises above the tolerance or
+ * calls fail. The limit changes at most once per window of `limit` samples.
+ *
+ * @author andy
+ */
+public class ModelRunConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double DECREASE_RATIO = 0.75;
+    /**
+     * Lets the best latency drift up, so it follows a model that became slower for good
+     */
+    private static final double MIN_LATENCY_DRIFT = 1.001;
+
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    private int limit;
+    private int inFlight;
+    private boolean saturated;
+    private int samples;
+    private double minLatency = Double.MAX_VALUE;
+    private double smoothedLatency;
+
+    /**
+     * @param initialLimit     Limit before any latency is known
+     * @param maxLimit         Upper bound of the limit
+     * @param latencyTolerance Smoothed latency over best latency ratio from which the model is seen as overloaded
+     */
+    public ModelRunConcurrencyLimiter(int initialLimit, int maxLimit, double latencyTolerance) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(Math.max(1, initialLimit), this.maxLimit);
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Take a permit, blocks while the model is at its limit
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            saturated = true;
+            wait();
+        }
+        inFlight++;
+        if (inFlight >= limit) {
+            saturated = true;
+        }
+    }
+
+    /**
+     * Give back a permit and record the call
+     *
+     * @param latencyNanos Call latency
+     * @param success      Whether the call succeeded, failures count as overload
+     */
+    public synchronized void release(long latencyNanos, boolean success) {
+        inFlight--;
+        samples++;
+        var overloaded = !success;
+        if (success) {
+            smoothedLatency = smoothedLatency == 0 ? latencyNanos : smoothedLatency + SMOOTHING * (latencyNanos - smoothedLatency);
+            minLatency = Math.min(minLatency * MIN_LATENCY_DRIFT, latencyNanos);
+            overloaded = smoothedLatency > minLatency * latencyTolerance;
+        }
+        if (samples >= limit) {
+            if (overloaded) {
+                limit = Math.max(1, (int) (limit * DECREASE_RATIO));
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            samples = 0;
+            saturated = false;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Give back a permit of a call that never ran
+     */
+    public synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,109 @@
+package ai.basic.x1.adapter.api.job;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs model messages on a worker pool with a concurrency limit per model code. Stream consumers block in
+ * {@link #dispatch} while the model is at its limit, so they stop reading and messages stay in the stream
+ * instead of piling up in memory. Messages are tracked from the moment they are dispatched until they are handled,
+ * including the wait for a permit and for a worker, so that they are not taken for abandoned ones.
+ *
+ * @author andy
+ */
+@Slf4j
+public class ModelRunDispatcher {
+
+    private final Executor executor;
+    private final int initialConcurrency;
+    private final int maxConcurrency;
+    private final double latencyTolerance;
+    private final Map<String, ModelRunConcurrencyLimiter> limiterMap = new ConcurrentHashMap<>();
+
+    /**
+     * Ids of the messages being dispatched or handled by stream key
+     */
+    private final Map<String, Set<String>> inFlightMessages = new ConcurrentHashMap<>();
+
+    public ModelRunDispatcher(Executor executor, int initialConcurrency, int maxConcurrency, double latencyTolerance) {
+        this.executor = executor;
+        this.initialConcurrency = initialConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Run a message handler once its model has a free permit
+     *
+     * @param streamKey Stream of the message
+     * @param messageId Message id
+     * @param modelCode Model code
+     * @param handler   Message handler, returns whether the message is handled
+     * @param onHandled Called after the message is handled, e.g. to acknowledge it
+     */
+    public void dispatch(String streamKey, String messageId, String modelCode, BooleanSupplier handler, Runnable onHandled) {
+        var messageIds = inFlightMessages.computeIfAbsent(streamKey, k -> ConcurrentHashMap.newKeySet());
+        if (!messageIds.add(messageId)) {
+            // Already dispatched on this node, e.g. recovered while still waiting for a permit
+            return;
+        }
+        var limiter = limiterMap.computeIfAbsent(modelCode,
+                k -> new ModelRunConcurrencyLimiter(initialConcurrency, maxConcurrency, latencyTolerance));
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            // The message stays pending and is recovered later
+            messageIds.remove(messageId);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                var start = System.nanoTime();
+                var handled = false;
+                try {
+                    handled = handler.getAsBoolean();
+                    if (handled) {
+                        onHandled.run();
+                    }
+                } catch (Exception e) {
+                    log.error("Handle model message error, modelCode:{}", modelCode, e);
+                } finally {
+                    messageIds.remove(messageId);
+                    limiter.release(System.nanoTime() - start, handled);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            messageIds.remove(messageId);
+            limiter.cancel();
+            log.error("Model message rejected, modelCode:{}", modelCode, e);
+        }
+    }
+
+    /**
+     * Messages of a stream being dispatched or handled on this node
+     *
+     * @param streamKey Stream key
+     * @return Message ids
+     */
+    public Set<String> getInFlightMessages(String streamKey) {
+        return Set.copyOf(inFlightMessages.getOrDefault(streamKey, Set.of()));
+    }
+
+    /**
+     * Current concurrency limit of each model
+     *
+     * @return Limit by model code
+     */
+    public Map<String, Integer> getLimits() {
+        var limits = new ConcurrentHashMap<String, Integer>();
+        limiterMap.forEach((modelCode, limiter) -> limits.put(modelCode, limiter.getLimit()));
+        return limits;
+    }
+}
@@ -0,0 +1,271 @@
+package ai.basic.x1.adapter.api.job;
+
+import ai.basic.x1.adapter.port.dao.redis.ModelEvaluationDAO;
+import ai.basic.x1.adapter.port.rpc.dto.ModelResultEvaluateRespDTO;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental evaluation of a dataset model run. Each finished data is matched against its ground truth and only
+ * the per class true positive and false positive counts by confidence bucket and the ground truth counts are kept in
+ * Redis, so precision, recall and average precision are available while the run progresses and the final
+ * evaluation merges the counters instead of reading every result again.
+ * <p>
+ * Boxes are axis aligned, rotations of point cloud boxes are ignored.
+ *
+ * @author andy
+ */
+@Component
+public class ModelRunEvaluator {
+
+    public static final String MODE_INCREMENTAL = "incremental";
+
+    private static final String DATA = "data";
+    private static final String GROUND_TRUTH = "gt";
+    private static final String TRUE_POSITIVE = "tp";
+    private static final String FALSE_POSITIVE = "fp";
+    private static final String SEPARATOR = ":";
+    private static final String NO_CLASS = "";
+
+    @Autowired
+    private ModelEvaluationDAO modelEvaluationDAO;
+
+    /**
+     * `remote` evaluates the finished run by the result evaluation service, `incremental` evaluates every data as it
+     * finishes
+     */
+    @Value("${model.evaluation.mode:remote}")
+    private String mode;
+
+    @Value("${model.evaluation.iouThreshold:0.5}")
+    private double iouThreshold;
+
+    @Value("${model.evaluation.confidenceBuckets:20}")
+    private int confidenceBuckets;
+
+    public boolean isIncremental() {
+        return MODE_INCREMENTAL.equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Match the model run boxes of one data with its ground truth and add the outcome to the run counters
+     *
+     * @param modelSerialNo Model serial number
+     * @param groundTruth   Ground truth boxes
+     * @param modelRun      Model run boxes
+     */
+    public void accumulate(Long modelSerialNo, List<ModelEvaluationBox> groundTruth, List<ModelEvaluationBox> modelRun) {
+        modelEvaluationDAO.increment(modelSerialNo, match(groundTruth, modelRun));
+    }
+
+    /**
+     * Metrics of the data evaluated so far
+     *
+     * @param modelSerialNo Model serial number
+     * @return Metrics, null when no data is evaluated
+     */
+    public ModelResultEvaluateRespDTO getMetrics(Long modelSerialNo) {
+        var counters = modelEvaluationDAO.getCounters(modelSerialNo);
+        var dataNum = counters.getOrDefault(DATA, 0L);
+        if (dataNum == 0) {
+            return null;
+        }
+        var classCounters = new TreeMap<String, ClassCounter>();
+        counters.forEach((field, value) -> {
+            if (DATA.equals(field)) {
+                return;
+            }
+            var type = StrUtil.subBefore(field, SEPARATOR, false);
+            var name = StrUtil.subAfter(field, SEPARATOR, false);
+            if (GROUND_TRUTH.equals(type)) {
+                classCounters.computeIfAbsent(name, k -> new ClassCounter(confidenceBuckets)).groundTruth += value;
+                return;
+            }
+            var classCounter = classCounters.computeIfAbsent(StrUtil.subBefore(name, SEPARATOR, true),
+                    k -> new ClassCounter(confidenceBuckets));
+            var bucket = Math.min(Integer.parseInt(StrUtil.subAfter(name, SEPARATOR, true)), confidenceBuckets - 1);
+            if (TRUE_POSITIVE.equals(type)) {
+                classCounter.truePositives[bucket] += value;
+            } else {
+                classCounter.falsePositives[bucket] += value;
+            }
+        });
+        var total = new ClassCounter(confidenceBuckets);
+        classCounters.values().forEach(total::add);
+
+        var metrics = new ArrayList<ModelResultEvaluateRespDTO.ModelMetricBO>();
+        metrics.add(metric("evaluatedDataNum", String.valueOf(dataNum), "Data with ground truth evaluated"));
+        metrics.add(metric("precision", format(total.precision()), "True positives over model run objects"));
+        metrics.add(metric("recall", format(total.recall()), "True positives over ground truth objects"));
+        metrics.add(metric("f1Score", format(total.f1Score()), "Harmonic mean of precision and recall"));
+        metrics.add(metric("averagePrecision", format(total.averagePrecision()),
+                String.format("Average precision at IoU %s over %d confidence buckets", iouThreshold, confidenceBuckets)));
+        classCounters.forEach((className, classCounter) -> {
+            if (NO_CLASS.equals(className)) {
+                return;
+            }
+            if (classCounter.predictions() > 0) {
+                metrics.add(metric("precision" + SEPARATOR + className, format(classCounter.precision()),
+                        "Precision of class " + className));
+            }
+            if (classCounter.groundTruth > 0) {
+                metrics.add(metric("recall" + SEPARATOR + className, format(classCounter.recall()),
+                        "Recall of class " + className));
+            }
+        });
+        return ModelResultEvaluateRespDTO.builder().metrics(metrics).build();
+    }
+
+    public void remove(Long modelSerialNo) {
+        modelEvaluationDAO.removeCounters(modelSerialNo);
+    }
+
+    /**
+     * Greedy matching by descending confidence, each model run box takes the unmatched ground truth box of the same
+     * class with the highest IoU, an unknown class matches any class
+     *
+     * @return Counter increments
+     */
+    private Map<String, Long> match(List<ModelEvaluationBox> groundTruth, List<ModelEvaluationBox> modelRun) {
+        var increments = new HashMap<String, Long>();
+        increments.put(DATA, 1L);
+        groundTruth.forEach(box -> increments.merge(GROUND_TRUTH + SEPARATOR + classOf(box), 1L, Long::sum));
+        var matched = new boolean[groundTruth.size()];
+        modelRun.stream().sorted(Comparator.comparingDouble(ModelRunEvaluator::confidenceOf).reversed()).forEach(box -> {
+            var best = -1;
+            var bestIou = 0d;
+            for (int i = 0; i < groundTruth.size(); i++) {
+                var groundTruthBox = groundTruth.get(i);
+                if (matched[i] || !isSameClass(groundTruthBox, box)) {
+                    continue;
+                }
+                var iou = box.iou(groundTruthBox);
+                if (iou > bestIou) {
+                    best = i;
+                    bestIou = iou;
+                }
+            }
+            var bucket = Math.min((int) (confidenceOf(box) * confidenceBuckets), confidenceBuckets - 1);
+            if (best >= 0 && bestIou >= iouThreshold) {
+                matched[best] = true;
+                var className = NO_CLASS.equals(classOf(box)) ? classOf(groundTruth.get(best)) : classOf(box);
+                increments.merge(TRUE_POSITIVE + SEPARATOR + className + SEPARATOR + bucket, 1L, Long::sum);
+            } else {
+                increments.merge(FALSE_POSITIVE + SEPARATOR + classOf(box) + SEPARATOR + bucket, 1L, Long::sum);
+            }
+        });
+        return increments;
+    }
+
+    private static boolean isSameClass(ModelEvaluationBox groundTruth, ModelEvaluationBox modelRun) {
+        return StrUtil.isEmpty(groundTruth.getLabel()) || StrUtil.isEmpty(modelRun.getLabel())
+                || groundTruth.getLabel().equals(modelRun.getLabel());
+    }
+
+    private static String classOf(ModelEvaluationBox box) {
+        return StrUtil.nullToEmpty(box.getLabel());
+    }
+
+    private static double confidenceOf(ModelEvaluationBox box) {
+        return Math.max(0, Math.min(1, ObjectUtil.defaultIfNull(box.getConfidence(), 1d)));
+    }
+
+    private static ModelResultEvaluateRespDTO.ModelMetricBO metric(String name, String value, String description) {
+        return new ModelResultEvaluateRespDTO.ModelMetricBO(name, value, description);
+    }
+
+    private static String format(double value) {
+        return NumberUtil.roundStr(value, 4);
+    }
+
+    private static class ClassCounter {
+        private long groundTruth;
+        private final long[] truePositives;
+        private final long[] falsePositives;
+
+        private ClassCounter(int buckets) {
+            truePositives = new long[buckets];
+            falsePositives = new long[buckets];
+        }
+
+        private void add(ClassCounter other) {
+            groundTruth += other.groundTruth;
+            for (int i = 0; i < truePositives.length; i++) {
+                truePositives[i] += other.truePositives[i];
+                falsePositives[i] += other.falsePositives[i];
+            }
+        }
+
+        private long truePositives() {
+            return sum(truePositives);
+        }
+
+        private long predictions() {
+            return sum(truePositives) + sum(falsePositives);
+        }
+
+        private double precision() {
+            return ratio(truePositives(), predictions());
+        }
+
+        private double recall() {
+            return ratio(truePositives(), groundTruth);
+        }
+
+        private double f1Score() {
+            var precision = precision();
+            var recall = recall();
+            return precision + recall == 0 ? 0 : 2 * precision * recall / (precision + recall);
+        }
+
+        /**
+         * Area under the interpolated precision recall curve, one point per confidence bucket from high to low
+         */
+        private double averagePrecision() {
+            var buckets = truePositives.length;
+            var precisions = new double[buckets];
+            var recalls = new double[buckets];
+            long truePositive = 0;
+            long falsePositive = 0;
+            for (int i = 0; i < buckets; i++) {
+                truePositive += truePositives[buckets - 1 - i];
+                falsePositive += falsePositives[buckets - 1 - i];
+                precisions[i] = ratio(truePositive, truePositive + falsePositive);
+                recalls[i] = ratio(truePositive, groundTruth);
+            }
+            for (int i = buckets - 2; i >= 0; i--) {
+                precisions[i] = Math.max(precisions[i], precisions[i + 1]);
+            }
+            var averagePrecision = 0d;
+            var previousRecall = 0d;
+            for (int i = 0; i < buckets; i++) {
+                averagePrecision += (recalls[i] - previousRecall) * precisions[i];
+                previousRecall = recalls[i];
+            }
+            return averagePrecision;
+        }
+
+        private static long sum(long[] values) {
+            var sum = 0L;
+            for (long value : values) {
+                sum += value;
+            }
+            return sum;
+        }
+
+        private static double ratio(long numerator, long denominator) {
+            return denominator == 0 ? 0 : (double) numerator / denominator;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ai.basic.x1.adapter.api.job;
+
+import ai.basic.x1.adapter.api.config.JobConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static ai.basic.x1.util.Constants.*;
+
+/**
+ * Takes over the messages that consumers read but never acknowledged, e.g. because their node died or the model
+ * run failed. Messages idle longer than `model.consumer.recovery.minIdle` are claimed by the recovery consumer of
+ * this instance and handled again, messages delivered too many times are dropped.
+ * <p>
+ * Messages still waiting for a permit or a worker, or being handled, on this node are never claimed. Their idle
+ * time is reset on every run, so other nodes do not claim them either while this node is alive. Recovered messages
+ * are dispatched from a thread of their own, as dispatching blocks while the model is at its concurrency limit.
+ *
+ * @author andy
+ */
+@Component
+@Slf4j
+public class ModelRunPendingRecoveryJob {
+
+    private static final String RECOVERY_CONSUMER_SUFFIX = "recovery";
+
+    @Autowired
+    private RedisTemplate<String, Object> streamRedisTemplate;
+    @Autowired
+    private DataModelJobConsumerListener dataModelJobConsumerListener;
+    @Autowired
+    private DatasetModelJobConsumerListener datasetModelJobConsumerListener;
+    @Autowired
+    private ModelRunDispatcher modelRunDispatcher;
+
+    @Value("${model.consumer.recovery.interval:60000}")
+    private long interval;
+
+    @Value("${model.consumer.recovery.minIdle:600000}")
+    private long minIdle;
+
+    @Value("${model.consumer.recovery.batchSize:100}")
+    private long batchSize;
+
+    @Value("${model.consumer.recovery.maxDeliveries:5}")
+    private long maxDeliveries;
+
+    @Value("${model.consumer.recovery.consumerExpire:86400000}")
+    private long consumerExpire;
+
+    /**
+     * Claimed messages waiting for the recovery thread by stream key
+     */
+    private final Map<String, Set<String>> recoveringMessages = new ConcurrentHashMap<>();
+
+    private final ExecutorService recoveryExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r);
+        thread.setName("modelRunRecovery-executor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        // The idle time of messages in flight is reset once per interval, a shorter minIdle would let other nodes
+        // claim them in between
+        if (minIdle <= 2 * interval) {
+            throw new IllegalStateException(String.format("model.consumer.recovery.minIdle (%s) must be more than twice "
+                    + "model.consumer.recovery.interval (%s)", minIdle, interval));
+        }
+    }
+
+    @Scheduled(initialDelayString = "${model.consumer.recovery.interval:60000}", fixedDelayString = "${model.consumer.recovery.interval:60000}")
+    public void recoverPendingMessages() {
+        recover(DATA_MODEL_RUN_STREAM_KEY, MODEL_RUN_CONSUMER_GROUP,
+                JobConfig.consumerName(MODEL_RUN_CONSUMER_NAME, RECOVERY_CONSUMER_SUFFIX), dataModelJobConsumerListener);
+        recover(DATASET_MODEL_RUN_STREAM_KEY, DATASET_MODEL_RUN_CONSUMER_GROUP,
+                JobConfig.consumerName(DATASET_MODEL_RUN_CONSUMER_NAME, RECOVERY_CONSUMER_SUFFIX), datasetModelJobConsumerListener);
+    }
+
+    private void recover(String streamKey, String group, String recoveryConsumer,
+                         StreamListener<String, ObjectRecord<String, String>> listener) {
+        try {
+            var minIdleTime = Duration.ofMillis(minIdle);
+            var inFlightIds = touchInFlightMessages(streamKey, group, recoveryConsumer);
+            var pendingMessages = streamRedisTemplate.opsForStream().pending(streamKey, group, Range.unbounded(), batchSize);
+            var claimIds = new ArrayList<RecordId>();
+            for (PendingMessage pendingMessage : pendingMessages) {
+                if (pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(minIdleTime) < 0
+                        || inFlightIds.contains(pendingMessage.getIdAsString())) {
+                    continue;
+                }
+                if (pendingMessage.getTotalDeliveryCount() > maxDeliveries) {
+                    log.error("Drop model message delivered {} times, stream:{}, id:{}", pendingMessage.getTotalDeliveryCount(),
+                            streamKey, pendingMessage.getIdAsString());
+                    streamRedisTemplate.opsForStream().acknowledge(streamKey, group, pendingMessage.getId());
+                    continue;
+                }
+                claimIds.add(pendingMessage.getId());
+            }
+            if (!claimIds.isEmpty()) {
+                // XCLAIM checks the idle time again, a message claimed by another node meanwhile is skipped
+                var records = streamRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> connection.streamCommands()
+                        .xClaim(streamKey.getBytes(StandardCharsets.UTF_8), group, recoveryConsumer, minIdleTime,
+                                claimIds.toArray(new RecordId[0])));
+                log.info("Recover {} pending model messages of stream:{}", records.size(), streamKey);
+                var recovering = recoveringMessages.computeIfAbsent(streamKey, k -> ConcurrentHashMap.newKeySet());
+                records.forEach(record -> {
+                    var messageId = record.getId().getValue();
+                    recovering.add(messageId);
+                    recoveryExecutor.execute(() -> {
+                        try {
+                            var mapRecord = streamRedisTemplate.opsForStream().deserializeRecord(record);
+                            listener.onMessage(streamRedisTemplate.opsForStream().map(mapRecord, String.class));
+                        } catch (Exception e) {
+                            log.error("Recover model message error, stream:{}, id:{}", streamKey, messageId, e);
+                        } finally {
+                            recovering.remove(messageId);
+                        }
+                    });
+                });
+            }
+            removeExpiredConsumers(streamKey, group);
+        } catch (Exception e) {
+            log.error("Recover pending model messages error, stream:{}", streamKey, e);
+        }
+    }
+
+    /**
+     * Reset the idle time of the messages this node is still working on. They are claimed by id only, which leaves
+     * their delivery count as it is, and acknowledging them later works whoever owns them
+     *
+     * @return Ids of the messages in flight on this node
+     */
+    private Set<String> touchInFlightMessages(String streamKey, String group, String recoveryConsumer) {
+        var messageIds = new HashSet<>(modelRunDispatcher.getInFlightMessages(streamKey));
+        messageIds.addAll(recoveringMessages.getOrDefault(streamKey, Set.of()));
+        if (messageIds.isEmpty()) {
+            return messageIds;
+        }
+        var options = RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO)
+                .ids(messageIds.stream().map(RecordId::of).toArray(RecordId[]::new));
+        streamRedisTemplate.execute((RedisCallback<List<RecordId>>) connection -> connection.streamCommands()
+                .xClaimJustId(streamKey.getBytes(StandardCharsets.UTF_8), group, recoveryConsumer, options));
+        return messageIds;
+    }
+
+    /**
+     * Consumer names change with every restart, remove the idle ones without pending messages
+     */
+    private void removeExpiredConsumers(String streamKey, String group) {
+        streamRedisTemplate.opsForStream().consumers(streamKey, group).forEach(consumer -> {
+            if (consumer.pendingCount() == 0 && consumer.idleTimeMs() > consumerExpire) {
+                streamRedisTemplate.opsForStream().deleteConsumer(streamKey, Consumer.from(group, consumer.consumerName()));
+            }
+        });
+    }
+}
@@ -17,8 +17,7 @@ import ai.basic.x1.entity.enums.ModelCodeEnum;
 import ai.basic.x1.usecase.ModelUseCase;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
@@ -77,14 +76,14 @@ public class PointCloudDetectionModelMessageHandler extends AbstractModelMessage
                         .sourceType(DataAnnotationObjectSourceTypeEnum.MODEL).sourceId(modelRunRecord.getId()).build();
                 dataAnnotationObjectBOList.add(dataAnnotationObjectBO);
             });
-            dataAnnotationObjectDAO.saveBatch(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
+            dataAnnotationObjectDAO.bulkInsert(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
         }
     }
 
 
     @Override
     public void assembleCalculateMetricsData(List<ModelDatasetResult> modelDatasetResults, List<DataAnnotationObject> dataAnnotationObjectList,
-                                             String groundTruthFilePath, String modelRunFilePath) {
+                                             ModelMetricsFileWriter writer) {
         if (CollUtil.isEmpty(modelDatasetResults)) {
             return;
         }
@@ -94,47 +93,74 @@ public class PointCloudDetectionModelMessageHandler extends AbstractModelMessage
             if (!isSuccess) {
                 return;
             }
-            var modelResult = modelDatasetResult.getModelResult();
             var dataId = modelDatasetResult.getDataId();
             var dataAnnotationObjects = dataAnnotationObjectMap.get(modelDatasetResult.getDataId());
-            var groundTruthObjects = new ArrayList<PointCloudDetectionObject>();
             if (CollUtil.isEmpty(dataAnnotationObjects)) {
                 return;
             }
-            dataAnnotationObjects.forEach(dataAnnotationObject -> {
-                var pointCloudDetectionObject = new PointCloudDetectionObject();
-                var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), ObjectBO.class);
-                assembleObject(objectBO, pointCloudDetectionObject);
-                groundTruthObjects.add(pointCloudDetectionObject);
-            });
-            var modelRunObjects = new ArrayList<PointCloudDetectionObject>();
-            var pointCloudDetectionObjectBO = DefaultConverter.convert(modelResult, PointCloudDetectionObjectBO.class);
-            pointCloudDetectionObjectBO.getObjects().forEach(objectBO -> {
-                var pointCloudDetectionObject = new PointCloudDetectionObject();
-                var confidence = objectBO.getConfidence();
-                assembleObject(objectBO, pointCloudDetectionObject);
-                pointCloudDetectionObject.setConfidence(confidence);
-                pointCloudDetectionObject.setLabel(objectBO.getModelClass());
-                modelRunObjects.add(pointCloudDetectionObject);
-            });
-            var groundTruthObject = PointCloudDetectionMetricsReqDTO.builder().id(dataId).objects(groundTruthObjects).build();
-            var modelRunObject = PointCloudDetectionMetricsReqDTO.builder().id(dataId).objects(modelRunObjects).build();
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(groundTruthObject)), groundTruthFilePath);
-            FileUtil.appendUtf8String("\n", groundTruthFilePath);
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(modelRunObject)), modelRunFilePath);
-            FileUtil.appendUtf8String("\n", modelRunFilePath);
+            var groundTruthObject = PointCloudDetectionMetricsReqDTO.builder().id(dataId).objects(toGroundTruthObjects(dataAnnotationObjects)).build();
+            var modelRunObject = PointCloudDetectionMetricsReqDTO.builder().id(dataId).objects(toModelRunObjects(modelDatasetResult.getModelResult())).build();
+            writer.append(groundTruthObject, modelRunObject);
         });
 
 
     }
 
+    @Override
+    List<ModelEvaluationBox> assembleGroundTruthBoxes(List<DataAnnotationObject> dataAnnotationObjects) {
+        return toGroundTruthObjects(dataAnnotationObjects).stream().map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    @Override
+    List<ModelEvaluationBox> assembleModelRunBoxes(JSONObject modelResult) {
+        return toModelRunObjects(modelResult).stream().map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    private List<PointCloudDetectionObject> toGroundTruthObjects(List<DataAnnotationObject> dataAnnotationObjects) {
+        var groundTruthObjects = new ArrayList<PointCloudDetectionObject>();
+        dataAnnotationObjects.forEach(dataAnnotationObject -> {
+            var pointCloudDetectionObject = new PointCloudDetectionObject();
+            var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), ObjectBO.class);
+            assembleObject(objectBO, pointCloudDetectionObject);
+            groundTruthObjects.add(pointCloudDetectionObject);
+        });
+        return groundTruthObjects;
+    }
+
+    private List<PointCloudDetectionObject> toModelRunObjects(JSONObject modelResult) {
+        var modelRunObjects = new ArrayList<PointCloudDetectionObject>();
+        var pointCloudDetectionObjectBO = DefaultConverter.convert(modelResult, PointCloudDetectionObjectBO.class);
+        pointCloudDetectionObjectBO.getObjects().forEach(objectBO -> {
+            var pointCloudDetectionObject = new PointCloudDetectionObject();
+            var confidence = objectBO.getConfidence();
+            assembleObject(objectBO, pointCloudDetectionObject);
+            pointCloudDetectionObject.setConfidence(confidence);
+            pointCloudDetectionObject.setLabel(objectBO.getModelClass());
+            modelRunObjects.add(pointCloudDetectionObject);
+        });
+        return modelRunObjects;
+    }
+
+    private ModelEvaluationBox toEvaluationBox(PointCloudDetectionObject object) {
+        var center = new double[]{object.getX().doubleValue(), object.getY().doubleValue(), object.getZ().doubleValue()};
+        var size = new double[]{object.getDx().doubleValue(), object.getDy().doubleValue(), object.getDz().doubleValue()};
+        var min = new double[3];
+        var max = new double[3];
+        for (int i = 0; i < 3; i++) {
+            min[i] = center[i] - size[i] / 2;
+            max[i] = center[i] + size[i] / 2;
+        }
+        return ModelEvaluationBox.of(object.getLabel(),
+                object.getConfidence() == null ? null : object.getConfidence().doubleValue(), min, max);
+    }
+
     private void assembleObject(ObjectBO objectBO, PointCloudDetectionObject pointCloudDetectionObject) {
         var size3D = objectBO.getSize3D();
         var center3D = objectBO.getCenter3D();
         var rotation3D = objectBO.getRotation3D();
         pointCloudDetectionObject.setX(center3D.getX());
         pointCloudDetectionObject.setY(center3D.getY());
-        pointCloudDetectionObject.setZ(center3D.getY());
+        pointCloudDetectionObject.setZ(center3D.getZ());
         pointCloudDetectionObject.setDx(size3D.getX());
         pointCloudDetectionObject.setDy(size3D.getY());
         pointCloudDetectionObject.setDz(size3D.getZ());
@@ -19,8 +19,7 @@ import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.extern.slf4j.Slf4j;
@@ -91,55 +90,80 @@ public class YoloV8ImageNetModelHandler extends AbstractModelMessageHandler<Yolo
                 dataAnnotationObjectBOList.add(dataAnnotationObjectBO);
             });
 
-            dataAnnotationObjectDAO.saveBatch(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
+            dataAnnotationObjectDAO.bulkInsert(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
         }
     }
 
     @Override
     public void assembleCalculateMetricsData(List<ModelDatasetResult> modelDatasetResults, List<DataAnnotationObject> dataAnnotationObjectList,
-                                             String groundTruthFilePath, String modelRunFilePath) {
+                                             ModelMetricsFileWriter writer) {
         if (CollUtil.isEmpty(modelDatasetResults)) {
             return;
         }
-        var dataAnnotationObjectMap = dataAnnotationObjectList.stream().filter(dataAnnotationObject -> {
-            var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes(), YoloV8ObjectBO.ObjectBO.class);
-            return "BOUNDING_BOX".equalsIgnoreCase(objectBO.getType());
-        }).collect(Collectors.groupingBy(DataAnnotationObject::getDataId));
-        
+        var dataAnnotationObjectMap = dataAnnotationObjectList.stream().filter(this::isBoundingBox)
+                .collect(Collectors.groupingBy(DataAnnotationObject::getDataId));
         modelDatasetResults.forEach(modelDatasetResult -> {
             var isSuccess = modelDatasetResult.getIsSuccess();
             if (!isSuccess) {
                 return;
             }
-            var modelResult = modelDatasetResult.getModelResult();
             var dataId = modelDatasetResult.getDataId();
             var dataAnnotationObjects = dataAnnotationObjectMap.get(modelDatasetResult.getDataId());
-            var groundTruthObjects = new ArrayList<YoloV8Object>();
             if (CollUtil.isEmpty(dataAnnotationObjects)) {
                 return;
             }
-            dataAnnotationObjects.forEach(dataAnnotationObject -> {
-                var yolov8Object = new YoloV8Object();
-                var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), YoloV8ObjectBO.ObjectBO.class);
-                assembleObject(objectBO, yolov8Object);
-                groundTruthObjects.add(yolov8Object);
-            });
-            var modelRunObjects = new ArrayList<YoloV8Object>();
-            var yolov8ModelObjectBO = DefaultConverter.convert(modelResult, YoloV8ObjectBO.class);
-            yolov8ModelObjectBO.getObjects().forEach(objectBO -> {
-                var yolov8Object = new YoloV8Object();
-                var confidence = objectBO.getConfidence();
-                assembleObject(objectBO, yolov8Object);
-                yolov8Object.setConfidence(confidence);
-                modelRunObjects.add(yolov8Object);
-            });
-            var groundTruthObject = YoloV8MetricsReqDTO.builder().id(dataId).objects(groundTruthObjects).build();
-            var modelRunObject = YoloV8MetricsReqDTO.builder().id(dataId).objects(modelRunObjects).build();
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(groundTruthObject)), groundTruthFilePath);
-            FileUtil.appendUtf8String("\n", groundTruthFilePath);
-            FileUtil.appendUtf8String(StrUtil.removeAllLineBreaks(JSONUtil.toJsonStr(modelRunObject)), modelRunFilePath);
-            FileUtil.appendUtf8String("\n", modelRunFilePath);
+            var groundTruthObject = YoloV8MetricsReqDTO.builder().id(dataId).objects(toGroundTruthObjects(dataAnnotationObjects)).build();
+            var modelRunObject = YoloV8MetricsReqDTO.builder().id(dataId).objects(toModelRunObjects(modelDatasetResult.getModelResult())).build();
+            writer.append(groundTruthObject, modelRunObject);
+        });
+    }
+
+    @Override
+    List<ModelEvaluationBox> assembleGroundTruthBoxes(List<DataAnnotationObject> dataAnnotationObjects) {
+        var groundTruthObjects = dataAnnotationObjects.stream().filter(this::isBoundingBox).collect(Collectors.toList());
+        return toGroundTruthObjects(groundTruthObjects).stream().filter(object -> object.getLeftTopX() != null)
+                .map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    @Override
+    List<ModelEvaluationBox> assembleModelRunBoxes(JSONObject modelResult) {
+        return toModelRunObjects(modelResult).stream().filter(object -> object.getLeftTopX() != null)
+                .map(this::toEvaluationBox).collect(Collectors.toList());
+    }
+
+    private boolean isBoundingBox(DataAnnotationObject dataAnnotationObject) {
+        var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes(), YoloV8ObjectBO.ObjectBO.class);
+        return "BOUNDING_BOX".equalsIgnoreCase(objectBO.getType());
+    }
+
+    private List<YoloV8Object> toGroundTruthObjects(List<DataAnnotationObject> dataAnnotationObjects) {
+        var groundTruthObjects = new ArrayList<YoloV8Object>();
+        dataAnnotationObjects.forEach(dataAnnotationObject -> {
+            var yolov8Object = new YoloV8Object();
+            var objectBO = DefaultConverter.convert(dataAnnotationObject.getClassAttributes().get("contour"), YoloV8ObjectBO.ObjectBO.class);
+            assembleObject(objectBO, yolov8Object);
+            groundTruthObjects.add(yolov8Object);
         });
+        return groundTruthObjects;
+    }
+
+    private List<YoloV8Object> toModelRunObjects(JSONObject modelResult) {
+        var modelRunObjects = new ArrayList<YoloV8Object>();
+        var yolov8ModelObjectBO = DefaultConverter.convert(modelResult, YoloV8ObjectBO.class);
+        yolov8ModelObjectBO.getObjects().forEach(objectBO -> {
+            var yolov8Object = new YoloV8Object();
+            var confidence = objectBO.getConfidence();
+            assembleObject(objectBO, yolov8Object);
+            yolov8Object.setConfidence(confidence);
+            modelRunObjects.add(yolov8Object);
+        });
+        return modelRunObjects;
+    }
+
+    private ModelEvaluationBox toEvaluationBox(YoloV8Object object) {
+        return ModelEvaluationBox.of(object.getClassName(), object.getConfidence() == null ? null : object.getConfidence().doubleValue(),
+                new double[]{object.getLeftTopX().doubleValue(), object.getLeftTopY().doubleValue()},
+                new double[]{object.getRightBottomX().doubleValue(), object.getRightBottomY().doubleValue()});
     }
 
     private void assembleObject(YoloV8ObjectBO.ObjectBO objectBO, YoloV8Object yolov8Object) {
@@ -44,6 +44,11 @@ public class ExportRecordDTO {
      */
     private ExportStatusEnum status;
 
+    /**
+     * Loaded number, data queried and waiting to be written
+     */
+    private Integer loadedNum;
+
     /**
      * Generated number
      */
@@ -1,6 +1,7 @@
 package ai.basic.x1.adapter.dto;
 
 import ai.basic.x1.entity.enums.UploadStatusEnum;
+import cn.hutool.json.JSONObject;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
@@ -54,6 +55,11 @@ public class UploadRecordDTO {
      */
     private Long parsedDataNum;
 
+    /**
+     * Per-stage throughput statistics
+     */
+    private JSONObject stageStatistics;
+
     /**
      * Upload status
      */
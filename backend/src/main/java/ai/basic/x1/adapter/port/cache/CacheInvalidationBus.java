@@ -0,0 +1,78 @@
+package ai.basic.x1.adapter.port.cache;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Spreads invalidations of in-process caches to the other instances over Redis pub/sub. Delivery is best effort,
+ * local caches bound staleness with a short TTL.
+ *
+ * @author andy
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "basicai:x1:cache:invalidation";
+
+    private static final String ORIGIN = "origin";
+    private static final String CACHE = "cache";
+    private static final String KEY = "key";
+
+    private final String origin = IdUtil.fastSimpleUUID();
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Map<String, Consumer<String>> subscriberMap = new ConcurrentHashMap<>();
+
+    public CacheInvalidationBus(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * Invalidate a key on the other instances
+     *
+     * @param cacheName Cache name
+     * @param key       Key, null to clear the cache
+     */
+    public void publish(String cacheName, String key) {
+        var message = JSONUtil.createObj().set(ORIGIN, origin).set(CACHE, cacheName).set(KEY, key);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message.toString());
+        } catch (Exception e) {
+            log.warn("Publish cache invalidation error,cache:{},key:{}", cacheName, key, e);
+        }
+    }
+
+    /**
+     * Invalidate the local cache when another instance invalidates a key
+     *
+     * @param cacheName   Cache name
+     * @param invalidator Called with the key, or null to clear the cache
+     */
+    public void subscribe(String cacheName, Consumer<String> invalidator) {
+        subscriberMap.put(cacheName, invalidator);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            var invalidation = JSONUtil.parseObj(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (origin.equals(invalidation.getStr(ORIGIN))) {
+                return;
+            }
+            var invalidator = subscriberMap.get(invalidation.getStr(CACHE));
+            if (invalidator != null) {
+                invalidator.accept(invalidation.getStr(KEY));
+            }
+        } catch (Exception e) {
+            log.warn("Handle cache invalidation error", e);
+        }
+    }
+}
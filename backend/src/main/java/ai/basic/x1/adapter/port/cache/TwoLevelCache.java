@@ -0,0 +1,127 @@
+package ai.basic.x1.adapter.port.cache;
+
+import com.google.common.cache.CacheBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Bounded in-process cache in front of a shared Redis cache. Reads hit the local cache first, writes and evictions
+ * go to Redis and are spread to the local caches of the other instances by {@link CacheInvalidationBus}.
+ *
+ * @author andy
+ */
+public class TwoLevelCache implements Cache {
+
+    private final Cache redisCache;
+    private final com.google.common.cache.Cache<String, ValueWrapper> localCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public TwoLevelCache(Cache redisCache, CacheInvalidationBus cacheInvalidationBus, long maximumSize, Duration ttl) {
+        this.redisCache = redisCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.localCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        cacheInvalidationBus.subscribe(getName(), this::evictLocal);
+    }
+
+    @Override
+    public String getName() {
+        return redisCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        var localKey = localKey(key);
+        var valueWrapper = localCache.getIfPresent(localKey);
+        if (valueWrapper != null) {
+            return valueWrapper;
+        }
+        valueWrapper = redisCache.get(key);
+        if (valueWrapper != null) {
+            localCache.put(localKey, valueWrapper);
+        }
+        return valueWrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        var valueWrapper = get(key);
+        var value = valueWrapper == null ? null : valueWrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        var valueWrapper = get(key);
+        if (valueWrapper != null) {
+            return (T) valueWrapper.get();
+        }
+        var value = redisCache.get(key, valueLoader);
+        localCache.put(localKey(key), new SimpleValueWrapper(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        var localKey = localKey(key);
+        localCache.put(localKey, new SimpleValueWrapper(value));
+        cacheInvalidationBus.publish(getName(), localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        var existing = redisCache.putIfAbsent(key, value);
+        var localKey = localKey(key);
+        localCache.invalidate(localKey);
+        cacheInvalidationBus.publish(getName(), localKey);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        var localKey = localKey(key);
+        localCache.invalidate(localKey);
+        cacheInvalidationBus.publish(getName(), localKey);
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        cacheInvalidationBus.publish(getName(), null);
+    }
+
+    /**
+     * Invalidation from another instance
+     *
+     * @param localKey Key, null to clear
+     */
+    private void evictLocal(String localKey) {
+        if (localKey == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(localKey);
+        }
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,50 @@
+package ai.basic.x1.adapter.port.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis cache manager whose configured caches get an in-process {@link TwoLevelCache} tier
+ *
+ * @author andy
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager redisCacheManager;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final Set<String> localCacheNames;
+    private final long maximumSize;
+    private final Duration ttl;
+    private final Map<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager redisCacheManager, CacheInvalidationBus cacheInvalidationBus,
+                                Set<String> localCacheNames, long maximumSize, Duration ttl) {
+        this.redisCacheManager = redisCacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.localCacheNames = localCacheNames;
+        this.maximumSize = maximumSize;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        if (!localCacheNames.contains(name)) {
+            return redisCacheManager.getCache(name);
+        }
+        return cacheMap.computeIfAbsent(name, k -> {
+            var redisCache = redisCacheManager.getCache(k);
+            return redisCache == null ? null : new TwoLevelCache(redisCache, cacheInvalidationBus, maximumSize, ttl);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+}
@@ -1,5 +1,7 @@
 package ai.basic.x1.adapter.port.dao;
 
+import ai.basic.x1.adapter.port.dao.mybatis.extension.ExtendBaseMapper;
+import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.enums.SqlMethod;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
@@ -21,8 +23,12 @@ import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.session.SqlSession;
 import org.mybatis.spring.SqlSessionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +45,17 @@ public abstract class AbstractDAO<M extends BaseMapper<T>, T> {
     protected Log log = LogFactory.getLog(getClass());
 
     private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final long ROW_OVERHEAD_BYTES = 64;
+    private static final long VALUE_OVERHEAD_BYTES = 32;
+
+    /**
+     * Estimated size of one multi-row insert statement, must stay below the `max_allowed_packet` of MySQL
+     */
+    @Value("${dao.insertBatch.maxStatementBytes:1048576}")
+    protected int maxStatementBytes;
+
+    @Value("${dao.insertBatch.maxRows:1000}")
+    protected int maxStatementRows;
 
     @Autowired
     protected M baseMapper;
@@ -126,6 +143,80 @@ public abstract class AbstractDAO<M extends BaseMapper<T>, T> {
         return executeBatch(entityList, batchSize, (sqlSession, entity) -> sqlSession.insert(sqlStatement, entity));
     }
 
+    /**
+     * Bulk insert by multi-row insert statements. Statements are split by the estimated row size to stay below
+     * `max_allowed_packet`, generated ids are set on the entities.
+     * Mappers without {@link ExtendBaseMapper} fall back to {@link #saveBatch(Collection)}.
+     * <p>
+     * Unlike saveBatch, which leaves null properties out of each insert, a multi-row statement lists every column
+     * and writes explicit NULLs for null properties, so column defaults are not applied. Callers must set the
+     * NOT NULL columns that rely on a default.
+     *
+     * @param entityList entity list
+     * @return inserted rows
+     */
+    public int bulkInsert(Collection<T> entityList) {
+        if (CollectionUtils.isEmpty(entityList)) {
+            return 0;
+        }
+        if (!(baseMapper instanceof ExtendBaseMapper)) {
+            saveBatch(entityList);
+            return entityList.size();
+        }
+        var inserted = 0;
+        for (var chunk : splitByStatementSize(entityList)) {
+            inserted += ((ExtendBaseMapper<T>) baseMapper).insertBatch(chunk);
+        }
+        return inserted;
+    }
+
+    /**
+     * Split entities into chunks of at most {@link #maxStatementRows} rows and about {@link #maxStatementBytes}
+     */
+    protected List<List<T>> splitByStatementSize(Collection<T> entityList) {
+        var chunks = new ArrayList<List<T>>();
+        var chunk = new ArrayList<T>();
+        var chunkBytes = 0L;
+        for (var entity : entityList) {
+            var rowBytes = estimateRowBytes(entity);
+            if (!chunk.isEmpty() && (chunk.size() >= maxStatementRows || chunkBytes + rowBytes > maxStatementBytes)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(entity);
+            chunkBytes += rowBytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Estimated bytes of the row in an insert statement, JSON columns are measured by their serialized form.
+     * Override with a cheaper estimate for entities written in large volumes
+     */
+    protected long estimateRowBytes(T entity) {
+        var tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        var bytes = ROW_OVERHEAD_BYTES;
+        for (var tableFieldInfo : tableInfo.getFieldList()) {
+            bytes += estimateValueBytes(tableInfo.getPropertyValue(entity, tableFieldInfo.getProperty()));
+        }
+        return bytes;
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Enum
+                || value instanceof Temporal) {
+            return VALUE_OVERHEAD_BYTES;
+        }
+        if (value instanceof CharSequence) {
+            return VALUE_OVERHEAD_BYTES + value.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        return VALUE_OVERHEAD_BYTES + JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8).length;
+    }
+
     /**
      * get mapperStatementId
      *
@@ -2,8 +2,20 @@ package ai.basic.x1.adapter.port.dao;
 
 import ai.basic.x1.adapter.port.dao.mybatis.mapper.DataInfoMapper;
 import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * @author fyb
  * @date 2022/2/21 11:59
@@ -11,4 +23,133 @@ import org.springframework.stereotype.Component;
 @Component
 public class DataInfoDAO extends AbstractDAO<DataInfoMapper, DataInfo> {
 
+    /**
+     * Fixed part of an estimated row, the columns other than the names and the content
+     */
+    private static final int ROW_OVERHEAD_BYTES = 256;
+    private static final int FILE_NODE_OVERHEAD_BYTES = 64;
+
+    /**
+     * Insert the data of one dataset and parent by multi-row `insert ignore` statements, data whose name is taken
+     * in the meantime are skipped instead of failing the whole batch. Ids of the inserted data are set on the
+     * entities, skipped data keep a null id.
+     *
+     * @param dataInfos Data of one dataset and parent
+     * @return Names of the skipped data
+     */
+    public Set<String> insertIgnoreBatch(List<DataInfo> dataInfos) {
+        var skippedNames = new HashSet<String>();
+        for (var chunk : splitByStatementSize(dataInfos)) {
+            var inserted = baseMapper.insertIgnoreBatch(chunk);
+            if (inserted == chunk.size()) {
+                continue;
+            }
+            // Generated keys only fill the first rows when some are ignored, so the inserted rows are selected again by
+            // the unique key. The first generated key is the id of the first inserted row. With the consecutive
+            // innodb_autoinc_lock_mode 0 or 1 the statement reserves one id per row, ignored rows included, so its
+            // rows lie within the chunk size from that id
+            var firstId = CollUtil.getFirst(chunk).getId();
+            Map<String, Long> insertedIds = Map.of();
+            if (inserted > 0 && firstId != null) {
+                var rows = selectByUniqueNames(chunk, firstId, firstId + chunk.size() - 1);
+                if (rows.size() != inserted) {
+                    // Interleaved ids of lock mode 2 are neither consecutive nor exclusive to the statement, a row is
+                    // only taken when it holds the files of its own data
+                    var chunkMap = chunk.stream().collect(Collectors.toMap(DataInfoDAO::getUniqueName, dataInfo -> dataInfo));
+                    rows = selectByUniqueNames(chunk, firstId, null).stream()
+                            .filter(row -> isSameFiles(row, chunkMap.get(getUniqueName(row))))
+                            .collect(Collectors.toList());
+                }
+                insertedIds = rows.stream().collect(Collectors.toMap(DataInfoDAO::getUniqueName, DataInfo::getId, Math::min));
+            }
+            for (var dataInfo : chunk) {
+                dataInfo.setId(insertedIds.get(getUniqueName(dataInfo)));
+                if (dataInfo.getId() == null) {
+                    skippedNames.add(dataInfo.getName());
+                }
+            }
+        }
+        return skippedNames;
+    }
+
+    /**
+     * Name of a data unique within its dataset and parent, names are unique per data type
+     *
+     * @param dataInfo Data
+     * @return Type and name
+     */
+    public static String getUniqueName(DataInfo dataInfo) {
+        return dataInfo.getType() + "/" + dataInfo.getName();
+    }
+
+    /**
+     * Data of the chunk's dataset and parent with the chunk's names and ids in the given range
+     *
+     * @param chunk   Data of one dataset and parent
+     * @param minId   Smallest id
+     * @param maxId   Largest id, null for no upper bound
+     */
+    private List<DataInfo> selectByUniqueNames(List<DataInfo> chunk, Long minId, Long maxId) {
+        var first = CollUtil.getFirst(chunk);
+        return list(Wrappers.lambdaQuery(DataInfo.class)
+                .select(DataInfo::getId, DataInfo::getType, DataInfo::getName, DataInfo::getContent)
+                .eq(DataInfo::getDatasetId, first.getDatasetId())
+                .eq(DataInfo::getParentId, first.getParentId())
+                .in(DataInfo::getType, chunk.stream().map(DataInfo::getType).collect(Collectors.toSet()))
+                .in(DataInfo::getName, chunk.stream().map(DataInfo::getName).collect(Collectors.toList()))
+                .ge(DataInfo::getId, minId)
+                .le(maxId != null, DataInfo::getId, maxId));
+    }
+
+    /**
+     * Whether a stored row references the same files as the data inserted for it. File ids are new for every upload,
+     * data without files are never matched
+     */
+    private static boolean isSameFiles(DataInfo row, DataInfo dataInfo) {
+        if (dataInfo == null) {
+            return false;
+        }
+        var fileIds = getFileIds(JSONUtil.parseArray(dataInfo.getContent()));
+        return !fileIds.isEmpty() && fileIds.equals(getFileIds(JSONUtil.parseArray(row.getContent())));
+    }
+
+    /**
+     * File ids of the content, read through JSON as the stored content may come back as maps
+     */
+    private static Set<Long> getFileIds(JSONArray fileNodes) {
+        var fileIds = new HashSet<Long>();
+        for (var fileNode : fileNodes.jsonIter()) {
+            var fileId = fileNode.getLong("fileId");
+            if (fileId != null) {
+                fileIds.add(fileId);
+            }
+            var files = fileNode.getJSONArray("files");
+            if (files != null) {
+                fileIds.addAll(getFileIds(files));
+            }
+        }
+        return fileIds;
+    }
+
+    @Override
+    protected long estimateRowBytes(DataInfo dataInfo) {
+        return ROW_OVERHEAD_BYTES + utf8Length(dataInfo.getName()) + utf8Length(dataInfo.getOrderName())
+                + estimateContentBytes(dataInfo.getContent());
+    }
+
+    private static long estimateContentBytes(List<DataInfo.FileNode> fileNodes) {
+        if (CollUtil.isEmpty(fileNodes)) {
+            return 0;
+        }
+        var bytes = 0L;
+        for (var fileNode : fileNodes) {
+            bytes += FILE_NODE_OVERHEAD_BYTES + utf8Length(fileNode.getName()) + utf8Length(fileNode.getType())
+                    + estimateContentBytes(fileNode.getFiles());
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(String value) {
+        return StrUtil.isEmpty(value) ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
 }
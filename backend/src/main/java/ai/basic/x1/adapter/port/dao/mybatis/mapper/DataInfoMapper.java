@@ -105,4 +105,17 @@ public interface DataInfoMapper extends ExtendBaseMapper<DataInfo> {
      * @return
      */
     List<Long> selectFirstDataIdBySceneIds(@Param("datasetId") Long datasetId, @Param("sceneIds") List<Long> sceneIds);
+
+    /**
+     * Get the data after a cursor, ordered by the seek column. The wrapper selects one type, so the order is the
+     * order of the (dataset_id, parent_id, type, seek column) index
+     *
+     * @param queryWrapper Filter and cursor condition
+     * @param seekColumn   Seek column, id breaks ties
+     * @param ascOrDesc    Order of the seek column
+     * @param limit        Data count
+     * @return Data info
+     */
+    List<DataInfo> selectDataByCursor(@Param(Constants.WRAPPER) Wrapper<DataInfo> queryWrapper, @Param("seekColumn") String seekColumn,
+                                      @Param("ascOrDesc") String ascOrDesc, @Param("limit") Integer limit);
 }
@@ -1,7 +1,9 @@
 package ai.basic.x1.adapter.port.dao.mybatis.model;
 
 import ai.basic.x1.entity.enums.UploadStatusEnum;
+import cn.hutool.json.JSONObject;
 import com.baomidou.mybatisplus.annotation.*;
+import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -55,6 +57,11 @@ public class UploadRecord {
      * Number of parsed data
      */
     private Long parsedDataNum;
+    /**
+     * Per-stage throughput statistics
+     */
+    @TableField(value = "stage_statistics", typeHandler = JacksonTypeHandler.class)
+    private JSONObject stageStatistics;
     /**
      * Upload status
      */
@@ -0,0 +1,60 @@
+package ai.basic.x1.adapter.port.dao.redis;
+
+import ai.basic.x1.adapter.port.dao.AbstractRedisDAO;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental evaluation counters of a dataset model run, one hash per model serial number
+ *
+ * @author andy
+ */
+@Component
+public class ModelEvaluationDAO extends AbstractRedisDAO<StringRedisTemplate> {
+
+    /**
+     * Counters of a run that never finishes are dropped after a week without updates
+     */
+    private static final Duration EXPIRE = Duration.ofDays(7);
+
+    protected ModelEvaluationDAO(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate, "dataset", "model_evaluation");
+    }
+
+    /**
+     * Add to the counters of a run in one round trip
+     *
+     * @param modelSerialNo Model serial number
+     * @param increments    Increment by counter name
+     */
+    public void increment(Long modelSerialNo, Map<String, Long> increments) {
+        var key = prefixedKey(String.valueOf(modelSerialNo));
+        template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                var stringOperations = (RedisOperations<String, String>) operations;
+                increments.forEach((field, delta) -> stringOperations.opsForHash().increment(key, field, delta));
+                stringOperations.expire(key, EXPIRE);
+                return null;
+            }
+        });
+    }
+
+    public Map<String, Long> getCounters(Long modelSerialNo) {
+        var counters = new HashMap<String, Long>();
+        template.<String, String>opsForHash().entries(prefixedKey(String.valueOf(modelSerialNo)))
+                .forEach((field, value) -> counters.put(field, Long.valueOf(value)));
+        return counters;
+    }
+
+    public boolean removeCounters(Long modelSerialNo) {
+        return template.delete(prefixedKey(String.valueOf(modelSerialNo)));
+    }
+}
@@ -0,0 +1,189 @@
+package ai.basic.x1.adapter.port.dao.redis;
+
+import ai.basic.x1.adapter.port.dao.AbstractRedisDAO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a dataset model run, one hash per model serial number with the total, finished and failed data.
+ * Finishing a data is one Lua script call, which also tells whether it was the last data of the run.
+ * <p>
+ * Runs started before the hash was introduced kept their total and finished counts in two plain keys. The first data
+ * finished of such a run moves the counts into the hash, the failures of these runs are counted from the results
+ * when they complete, see {@link Progress#isLegacy()}.
+ *
+ * @author andy
+ */
+@Component
+public class ModelRunProgressDAO extends AbstractRedisDAO<StringRedisTemplate> {
+
+    private static final String TOTAL = "total";
+    private static final String DONE = "done";
+    private static final String FAILURE = "failure";
+    private static final String LEGACY = "legacy";
+
+    /**
+     * Total and finished data of runs started before the hash was introduced
+     */
+    private static final String LEGACY_TOTAL_PREFIX = "x1:dataset:model_serial_no_count:";
+    private static final String LEGACY_DONE_PREFIX = "x1:dataset:model_serial_no_incr:";
+
+    /**
+     * Progress of a run that never finishes is dropped after a week without updates
+     */
+    private static final Duration EXPIRE = Duration.ofDays(7);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> FINISH_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('exists', KEYS[1]) == 0) then" +
+                    "    local legacyTotal = redis.call('get', KEYS[2]);" +
+                    "    if (legacyTotal) then" +
+                    "        redis.call('hmset', KEYS[1], 'total', tonumber(legacyTotal)," +
+                    "            'done', tonumber(redis.call('get', KEYS[3]) or '0'), 'legacy', 1);" +
+                    "        redis.call('del', KEYS[2], KEYS[3]);" +
+                    "    end ;" +
+                    "end ;" +
+                    "local done = redis.call('hincrby', KEYS[1], 'done', 1);" +
+                    "local failure = tonumber(redis.call('hget', KEYS[1], 'failure') or '0');" +
+                    "if (ARGV[1] == '0') then" +
+                    "    failure = redis.call('hincrby', KEYS[1], 'failure', 1);" +
+                    "end ;" +
+                    "local total = tonumber(redis.call('hget', KEYS[1], 'total') or '-1');" +
+                    "redis.call('pexpire', KEYS[1], ARGV[2]);" +
+                    "local legacy = tonumber(redis.call('hget', KEYS[1], 'legacy') or '0');" +
+                    "return {done, failure, total, legacy};",
+            List.class);
+
+    protected ModelRunProgressDAO(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate, "dataset", "model_run_progress");
+    }
+
+    /**
+     * Start the progress of a run, the finished and failed counts are reset
+     *
+     * @param modelSerialNo Model serial number
+     * @param total         Data of the run
+     */
+    public void start(Long modelSerialNo, int total) {
+        var key = prefixedKey(String.valueOf(modelSerialNo));
+        template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                var stringOperations = (RedisOperations<String, String>) operations;
+                stringOperations.delete(key);
+                stringOperations.opsForHash().put(key, TOTAL, String.valueOf(total));
+                stringOperations.expire(key, EXPIRE);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Update the total of a run while its messages are sent
+     */
+    public void setTotal(Long modelSerialNo, int total) {
+        template.opsForHash().put(prefixedKey(String.valueOf(modelSerialNo)), TOTAL, String.valueOf(total));
+    }
+
+    /**
+     * Count a finished data
+     *
+     * @param modelSerialNo Model serial number
+     * @param success       Whether the model run of the data succeeded
+     * @return Progress after the data, {@link Progress#isCompleted()} is true for exactly one data of the run
+     */
+    @SuppressWarnings("unchecked")
+    public Progress finish(Long modelSerialNo, boolean success) {
+        List<Long> result = template.execute(FINISH_SCRIPT, List.of(prefixedKey(String.valueOf(modelSerialNo)),
+                        LEGACY_TOTAL_PREFIX + modelSerialNo, LEGACY_DONE_PREFIX + modelSerialNo),
+                success ? "1" : "0", String.valueOf(EXPIRE.toMillis()));
+        return new Progress(result.get(2), result.get(0), result.get(1), result.get(3) == 1);
+    }
+
+    /**
+     * Progress of several runs in one round trip
+     *
+     * @param modelSerialNos Model serial numbers
+     * @return Progress by model serial number, runs without progress are left out. Runs still on the legacy keys
+     * report no failures
+     */
+    public Map<Long, Progress> getProgress(List<Long> modelSerialNos) {
+        var progressMap = new HashMap<Long, Progress>(modelSerialNos.size());
+        if (modelSerialNos.isEmpty()) {
+            return progressMap;
+        }
+        var fields = List.<Object>of(TOTAL, DONE, FAILURE, LEGACY);
+        var results = template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                var stringOperations = (RedisOperations<String, String>) operations;
+                modelSerialNos.forEach(modelSerialNo -> {
+                    stringOperations.opsForHash().multiGet(prefixedKey(String.valueOf(modelSerialNo)), fields);
+                    stringOperations.opsForValue().multiGet(List.of(LEGACY_TOTAL_PREFIX + modelSerialNo,
+                            LEGACY_DONE_PREFIX + modelSerialNo));
+                });
+                return null;
+            }
+        });
+        for (int i = 0; i < modelSerialNos.size(); i++) {
+            var values = (List<?>) results.get(2 * i);
+            var legacyValues = (List<?>) results.get(2 * i + 1);
+            if (values != null && values.get(0) != null) {
+                progressMap.put(modelSerialNos.get(i), new Progress(toLong(values.get(0)), toLong(values.get(1)),
+                        toLong(values.get(2)), toLong(values.get(3)) == 1));
+            } else if (legacyValues != null && legacyValues.get(0) != null) {
+                progressMap.put(modelSerialNos.get(i), new Progress(toLong(legacyValues.get(0)), toLong(legacyValues.get(1)), 0, true));
+            }
+        }
+        return progressMap;
+    }
+
+    public boolean remove(Long modelSerialNo) {
+        return template.delete(List.of(prefixedKey(String.valueOf(modelSerialNo)),
+                LEGACY_TOTAL_PREFIX + modelSerialNo, LEGACY_DONE_PREFIX + modelSerialNo)) > 0;
+    }
+
+    /**
+     * Numbers of the legacy keys were written by a JSON serializer and may be quoted
+     */
+    private static long toLong(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString().replace("\"", ""));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Progress {
+
+        private long total;
+
+        private long done;
+
+        private long failure;
+
+        /**
+         * Whether the run was started before the hash was introduced, its failures before the upgrade are not counted
+         */
+        private boolean legacy;
+
+        /**
+         * Whether this data completed the run
+         */
+        public boolean isCompleted() {
+            return done == total;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ai.basic.x1.adapter.port.metrics;
+
+import ai.basic.x1.adapter.port.minio.MinioUploadStatistics;
+import com.google.common.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Domain metrics of the upload, export, model run and similarity pipelines, all published through the Micrometer
+ * registry behind `/actuator/prometheus`.
+ *
+ * @author andy
+ */
+@Component
+public class DomainMetrics {
+
+    public static final String TAG_DATASET_TYPE = "datasetType";
+    public static final String TAG_MODEL_CODE = "modelCode";
+    public static final String TAG_OUTCOME = "outcome";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILURE = "FAILURE";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public Timer.Sample startTimer() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Whole upload, from download to the last inserted data
+     */
+    public void recordUpload(Timer.Sample sample, Object datasetType, boolean success) {
+        sample.stop(timer("upload.duration", Tags.of(TAG_DATASET_TYPE, String.valueOf(datasetType), TAG_OUTCOME, outcome(success))));
+    }
+
+    /**
+     * Bytes of downloaded upload packages, the rate gives the upload throughput
+     */
+    public void recordUploadBytes(Object datasetType, long bytes) {
+        Counter.builder("upload.bytes")
+                .baseUnit("bytes")
+                .tag(TAG_DATASET_TYPE, String.valueOf(datasetType))
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Parse of one scene, from reading its data names to the last inserted chunk
+     */
+    public void recordSceneParse(Timer.Sample sample, Object datasetType, int dataNum) {
+        var tags = Tags.of(TAG_DATASET_TYPE, String.valueOf(datasetType));
+        sample.stop(timer("upload.scene.parse", tags));
+        Counter.builder("upload.data").tags(tags).register(meterRegistry).increment(dataNum);
+    }
+
+    /**
+     * Whole export
+     */
+    public void recordExport(Timer.Sample sample, Object dataFormat, boolean streaming, boolean success) {
+        sample.stop(timer("export.duration", Tags.of("dataFormat", String.valueOf(dataFormat),
+                "streaming", String.valueOf(streaming), TAG_OUTCOME, outcome(success))));
+    }
+
+    /**
+     * One export batch, stage is `load` or `write`
+     */
+    public void recordExportBatch(String stage, long nanos, int dataNum) {
+        timer("export.batch", Tags.of("stage", stage)).record(nanos, TimeUnit.NANOSECONDS);
+        if ("write".equals(stage)) {
+            Counter.builder("export.data").register(meterRegistry).increment(dataNum);
+        }
+    }
+
+    public void recordModelMessagesSent(Object modelCode, long dataNum) {
+        Counter.builder("model.run.data.sent")
+                .tag(TAG_MODEL_CODE, String.valueOf(modelCode))
+                .register(meterRegistry)
+                .increment(dataNum);
+    }
+
+    /**
+     * Run of one data by a model message handler
+     */
+    public void recordModelRun(Timer.Sample sample, Object modelCode, String handler, boolean success) {
+        sample.stop(timer("model.run.handle", Tags.of(TAG_MODEL_CODE, String.valueOf(modelCode),
+                "handler", handler, TAG_OUTCOME, outcome(success))));
+    }
+
+    public void recordMinioUpload(MinioUploadStatistics statistics, boolean success) {
+        var tags = Tags.of(TAG_OUTCOME, outcome(success));
+        timer("minio.upload.batch", tags).record(statistics.getElapsedMillis(), TimeUnit.MILLISECONDS);
+        Counter.builder("minio.upload.bytes").baseUnit("bytes").tags(tags).register(meterRegistry).increment(statistics.getBytes());
+        Counter.builder("minio.upload.objects").tags(tags).register(meterRegistry).increment(statistics.getObjects());
+        Counter.builder("minio.upload.retries").register(meterRegistry).increment(statistics.getRetries());
+        DistributionSummary.builder("minio.upload.throughput")
+                .baseUnit("bytes/s")
+                .register(meterRegistry)
+                .record(statistics.getBytesPerSecond());
+    }
+
+    public void recordSimilarityGenerate(Timer.Sample sample, boolean success) {
+        sample.stop(timer("similarity.generate", Tags.of(TAG_OUTCOME, outcome(success))));
+    }
+
+    /**
+     * Publish pool size, active threads and queue size of an executor created outside the Spring context
+     */
+    public void monitorExecutor(String name, ExecutorService executorService) {
+        new ExecutorServiceMetrics(executorService, name, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Publish size, hits, misses and evictions of a cache built with `recordStats()`
+     */
+    public void monitorCache(String name, Cache<?, ?> cache) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags).publishPercentileHistogram().register(meterRegistry);
+    }
+
+    private static String outcome(boolean success) {
+        return success ? SUCCESS : FAILURE;
+    }
+}
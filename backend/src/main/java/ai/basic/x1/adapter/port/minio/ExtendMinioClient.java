@@ -168,6 +168,19 @@ public class ExtendMinioClient extends MinioClient {
         }
     }
 
+    /**
+     * Get the region of the bucket, MinioClient caches it after the first lookup
+     *
+     * @param bucketName Bucket name
+     * @return Region
+     */
+    public String getBucketRegion(String bucketName)
+            throws ErrorResponseException, InsufficientDataException, InternalException,
+            InvalidKeyException, InvalidResponseException, IOException, NoSuchAlgorithmException,
+            XmlParserException, ServerException {
+        return getRegion(bucketName, null);
+    }
+
     public String getRegion(GetPresignedObjectUrlArgs args)
             throws ErrorResponseException, InsufficientDataException, InternalException,
             InvalidKeyException, InvalidResponseException, IOException, NoSuchAlgorithmException,
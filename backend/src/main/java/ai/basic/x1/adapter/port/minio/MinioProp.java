@@ -33,4 +33,63 @@ public class MinioProp {
      */
     private String bucketName;
 
-}
\ No newline at end of file
+    /**
+     * Batch upload settings
+     */
+    private Upload upload = new Upload();
+
+    /**
+     * Presigned url cache settings
+     */
+    private PresignedUrlCache presignedUrlCache = new PresignedUrlCache();
+
+    @Data
+    public static class Upload {
+
+        /**
+         * Objects uploaded at the same time, shared by all batches
+         */
+        private int parallelism = 8;
+
+        /**
+         * Multipart part size in bytes, larger objects are uploaded in parts of this size, at least 5MB
+         */
+        private long partSize = 16 * 1024 * 1024;
+
+        /**
+         * Files smaller than this size in bytes are packed into snowball archives, 0 disables snowball
+         */
+        private long snowballThreshold = 256 * 1024;
+
+        /**
+         * Maximum number of files in a snowball archive
+         */
+        private int snowballBatchSize = 200;
+
+        /**
+         * Attempts per object before the batch fails
+         */
+        private int retryCount = 3;
+
+        /**
+         * Wait before retrying in milliseconds, multiplied by the attempt number
+         */
+        private long retryInterval = 500;
+    }
+
+
+    @Data
+    public static class PresignedUrlCache {
+
+        /**
+         * Seconds a signed url is reused, must stay well below the 7 days validity of the url
+         */
+        private long ttl = 24 * 60 * 60;
+
+        /**
+         * Maximum number of cached urls
+         */
+        private long maximumSize = 200000;
+    }
+
+}
@@ -1,11 +1,16 @@
 package ai.basic.x1.adapter.port.minio;
 
 import ai.basic.x1.adapter.api.context.RequestContextHolder;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
 import ai.basic.x1.entity.PresignedUrlBO;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.HttpStatus;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.http.Method;
@@ -14,14 +19,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static ai.basic.x1.util.Constants.MINIO;
 import static ai.basic.x1.util.Constants.SLANTING_BAR;
@@ -40,6 +53,30 @@ public class MinioService {
     @Autowired
     private MinioProp minioProp;
 
+    @Autowired
+    private ExecutorService minioUploadExecutor;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    /**
+     * Signed urls keyed by bucket, object, method and external host
+     */
+    private Cache<String, String> presignedUrlCache;
+
+    private final Map<String, String> bucketRegionMap = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        var cacheProp = minioProp.getPresignedUrlCache();
+        presignedUrlCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheProp.getMaximumSize())
+                .expireAfterWrite(cacheProp.getTtl(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        domainMetrics.monitorCache("minio.presignedUrl", presignedUrlCache);
+    }
+
     /**
      * Create bucket
      *
@@ -78,6 +115,17 @@ public class MinioService {
     }
 
 
+    /**
+     * Read an object, the stream must be closed by the caller
+     *
+     * @param bucketName Bucket name
+     * @param objectName File path
+     * @return Object content
+     */
+    public InputStream getObject(String bucketName, String objectName) throws IOException, InvalidKeyException, InvalidResponseException, InsufficientDataException, NoSuchAlgorithmException, ServerException, InternalException, XmlParserException, ErrorResponseException {
+        return extendMinioClient.getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).build());
+    }
+
     /**
      * Upload file
      *
@@ -110,30 +158,117 @@ public class MinioService {
     }
 
     /**
-     * batch upload files
+     * Upload a stream of unknown size, it is sent in parts while it is read
+     *
+     * @param bucketName  Bucket name
+     * @param fileName    File name
+     * @param inputStream Input stream, read until its end
+     * @param contentType File content type
+     */
+    public void uploadStream(String bucketName, String fileName, InputStream inputStream, String contentType) throws IOException, InvalidKeyException, InvalidResponseException, InsufficientDataException, NoSuchAlgorithmException, ServerException, InternalException, XmlParserException, ErrorResponseException {
+        createBucket(bucketName);
+        var putArgs = PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object(fileName)
+                .stream(inputStream, -1, minioProp.getUpload().getPartSize())
+                .contentType(contentType)
+                .build();
+        extendMinioClient.putObject(putArgs);
+    }
+
+    /**
+     * batch upload files, files are uploaded concurrently and opened only when their upload starts,
+     * small files are packed into snowball archives
      *
      * @param bucketName Bucket name
      * @param rootPath   Root path
      * @param tempPath   Temp path
      * @param fileList   File list
+     * @return Upload statistics
      */
-    public void uploadFileList(String bucketName, String rootPath, String tempPath, List<File> fileList)
+    public MinioUploadStatistics uploadFileList(String bucketName, String rootPath, String tempPath, List<File> fileList)
             throws ErrorResponseException, InsufficientDataException, InternalException,
             InvalidKeyException, InvalidResponseException, IOException, NoSuchAlgorithmException,
             ServerException, XmlParserException {
         createBucket(bucketName);
-        List<SnowballObject> objects = new ArrayList<>(fileList.size());
+        var uploadProp = minioProp.getUpload();
+        var statistics = new MinioUploadStatistics();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        var snowballObjects = new ArrayList<SnowballObject>();
         int startingPosition = FileUtil.getAbsolutePath(FileUtil.file(tempPath).getAbsolutePath()).length();
-        fileList.forEach(file -> objects.add(
-                new SnowballObject(
-                        rootPath + FileUtil.getAbsolutePath(file.getAbsolutePath()).substring(startingPosition),
-                        FileUtil.getInputStream(file),
-                        file.length(),
-                        null)));
-        extendMinioClient.uploadSnowballObjects(UploadSnowballObjectsArgs.builder()
-                .bucket(bucketName)
-                .objects(objects)
-                .build());
+        for (var file : fileList) {
+            var objectName = rootPath + FileUtil.getAbsolutePath(file.getAbsolutePath()).substring(startingPosition);
+            var size = file.length();
+            if (size < uploadProp.getSnowballThreshold()) {
+                snowballObjects.add(new SnowballObject(objectName, file.getAbsolutePath()));
+                statistics.recordObject(size, true);
+            } else {
+                futures.add(CompletableFuture.runAsync(() -> uploadWithRetry(objectName, statistics,
+                        () -> putFile(bucketName, objectName, file)), minioUploadExecutor));
+                statistics.recordObject(size, false);
+            }
+        }
+        ListUtil.split(snowballObjects, uploadProp.getSnowballBatchSize()).forEach(objects ->
+                futures.add(CompletableFuture.runAsync(() -> uploadWithRetry(objects.get(0).name(), statistics,
+                        () -> extendMinioClient.uploadSnowballObjects(UploadSnowballObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .objects(objects)
+                                .build())), minioUploadExecutor)));
+        var success = false;
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            success = true;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Batch upload files error", e.getCause());
+        } finally {
+            statistics.finish();
+            domainMetrics.recordMinioUpload(statistics, success);
+            log.info("Batch upload files,bucketName:{},rootPath:{},{}", bucketName, rootPath, statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Upload a local file, the file is uploaded in parts when it is larger than the part size
+     *
+     * @param bucketName Bucket name
+     * @param objectName Object name
+     * @param file       Local file
+     */
+    private void putFile(String bucketName, String objectName, File file) throws Exception {
+        try (var inputStream = FileUtil.getInputStream(file)) {
+            var putArgs = PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .stream(inputStream, file.length(), minioProp.getUpload().getPartSize())
+                    .build();
+            extendMinioClient.putObject(putArgs);
+        }
+    }
+
+    private void uploadWithRetry(String objectName, MinioUploadStatistics statistics, MinioOperation operation) {
+        var uploadProp = minioProp.getUpload();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                operation.run();
+                return;
+            } catch (Exception e) {
+                if (attempt >= uploadProp.getRetryCount()) {
+                    throw new CompletionException(e);
+                }
+                log.warn("Upload object error,objectName:{},attempt:{}", objectName, attempt, e);
+                statistics.recordRetry();
+                ThreadUtil.sleep(uploadProp.getRetryInterval() * attempt);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MinioOperation {
+        void run() throws Exception;
     }
 
     /**
@@ -146,12 +281,26 @@ public class MinioService {
     public String getUrl(String bucketName, String objectName) throws ServerException, InsufficientDataException,
             ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException,
             InvalidResponseException, XmlParserException, InternalException {
-        var builder = GetPresignedObjectUrlArgs.builder()
-                .bucket(bucketName)
-                .object(objectName)
-                .method(Method.GET);
-        var region = extendMinioClient.getRegion(builder.build());
-        return replaceUrl(extendMinioClient.getPresignedObjectUrl(builder.region(region).build()));
+        return getUrl(bucketName, objectName, getBucketRegion(bucketName), getExternalHost());
+    }
+
+    /**
+     * Get the temporary access urls of the objects, the region and the external host are resolved once
+     *
+     * @param bucketName  Bucket name
+     * @param objectNames File paths
+     * @return File url of each path
+     */
+    public Map<String, String> getUrls(String bucketName, Collection<String> objectNames) throws ServerException,
+            InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException,
+            InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var region = getBucketRegion(bucketName);
+        var externalHost = getExternalHost();
+        var urlMap = new HashMap<String, String>(objectNames.size());
+        for (var objectName : objectNames) {
+            urlMap.put(objectName, getUrl(bucketName, objectName, region, externalHost));
+        }
+        return urlMap;
     }
 
     /**
@@ -164,11 +313,66 @@ public class MinioService {
     public String getInternalUrl(String bucketName, String objectName) throws ServerException, InsufficientDataException,
             ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException,
             InvalidResponseException, XmlParserException, InternalException {
-        var builder = GetPresignedObjectUrlArgs.builder()
-                .bucket(bucketName)
-                .object(objectName)
-                .method(Method.GET);
-        return extendMinioClient.getPresignedObjectUrl(builder.build());
+        return getUrl(bucketName, objectName, getBucketRegion(bucketName), null);
+    }
+
+    /**
+     * Get the temporary access urls of the objects
+     *
+     * @param bucketName  Bucket name
+     * @param objectNames File paths
+     * @return Internal file url of each path
+     */
+    public Map<String, String> getInternalUrls(String bucketName, Collection<String> objectNames) throws ServerException,
+            InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException,
+            InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var region = getBucketRegion(bucketName);
+        var urlMap = new HashMap<String, String>(objectNames.size());
+        for (var objectName : objectNames) {
+            urlMap.put(objectName, getUrl(bucketName, objectName, region, null));
+        }
+        return urlMap;
+    }
+
+    /**
+     * Get a GET url from the cache or sign it, signing with a known region needs no request to the server
+     *
+     * @param bucketName   Bucket name
+     * @param objectName   File path
+     * @param region       Bucket region
+     * @param externalHost External host replacing the endpoint, null for the internal url
+     * @return File url
+     */
+    private String getUrl(String bucketName, String objectName, String region, String externalHost) throws ServerException,
+            InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException,
+            InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var key = String.join("|", bucketName, objectName, Method.GET.name(), StrUtil.nullToEmpty(externalHost));
+        var url = presignedUrlCache.getIfPresent(key);
+        if (url == null) {
+            var args = GetPresignedObjectUrlArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .method(Method.GET)
+                    .region(region)
+                    .build();
+            url = extendMinioClient.getPresignedObjectUrl(args);
+            if (externalHost != null) {
+                url = replaceUrl(url, externalHost);
+            }
+            presignedUrlCache.put(key, url);
+        }
+        return url;
+    }
+
+    private String getBucketRegion(String bucketName) throws ServerException, InsufficientDataException,
+            ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException,
+            InvalidResponseException, XmlParserException, InternalException {
+        var region = bucketRegionMap.get(bucketName);
+        if (region == null) {
+            region = extendMinioClient.getBucketRegion(bucketName);
+            bucketRegionMap.put(bucketName, region);
+        }
+        return region;
     }
 
     /**
@@ -189,7 +393,7 @@ public class MinioService {
                 .object(objectName)
                 .extraQueryParams(queryParams)
                 .expiry(60 * 60 * 24 * 7);
-        var region = extendMinioClient.getRegion(builder.build());
+        var region = getBucketRegion(bucketName);
         return replaceUrl(extendMinioClient.getPresignedObjectUrl(builder.region(region).build()));
     }
 
@@ -211,7 +415,7 @@ public class MinioService {
                 .bucket(bucketName)
                 .object(objectName)
                 .expiry(60 * 60 * 24 * 7);
-        var region = extendMinioClient.getRegion(builder.build());
+        var region = getBucketRegion(bucketName);
         // This must be PUT, if it is GET, it is the file access address. If it is a POST upload, an error will be reported.
         var preUrl = extendMinioClient.getPresignedObjectUrl(builder.region(region).build());
         if (isReplaceUrl) {
@@ -225,6 +429,14 @@ public class MinioService {
 
 
     private String replaceUrl(String url) {
+        return replaceUrl(url, getExternalHost());
+    }
+
+    private String replaceUrl(String url, String externalHost) {
+        return url.replace(minioProp.getEndpoint(), externalHost + SLANTING_BAR + MINIO + SLANTING_BAR);
+    }
+
+    private String getExternalHost() {
         var proto = "http";
         var host = "localhost";
         if (ObjectUtil.isNotNull(RequestContextHolder.getContext()) && ObjectUtil.isNotNull(RequestContextHolder.getContext().getRequestInfo())) {
@@ -234,8 +446,6 @@ public class MinioService {
             var forwardedHost = RequestContextHolder.getContext().getRequestInfo().getHost();
             host = StrUtil.isNotEmpty(forwardedHost) ? forwardedHost : host;
         }
-        return url.replace(minioProp.getEndpoint(), proto + "://" +
-                host +
-                SLANTING_BAR + MINIO + SLANTING_BAR);
+        return proto + "://" + host;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package ai.basic.x1.adapter.port.minio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of a batch upload
+ *
+ * @author fyb
+ */
+public class MinioUploadStatistics {
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong snowballObjects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    void recordObject(long size, boolean snowball) {
+        objects.incrementAndGet();
+        bytes.addAndGet(size);
+        if (snowball) {
+            snowballObjects.incrementAndGet();
+        }
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public long getObjects() {
+        return objects.get();
+    }
+
+    public long getSnowballObjects() {
+        return snowballObjects.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos > 0 ? bytes.get() * 1e9 / elapsedNanos : 0;
+    }
+
+    public double getObjectsPerSecond() {
+        return elapsedNanos > 0 ? objects.get() * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("objects:%d,snowballObjects:%d,bytes:%d,retries:%d,elapsedMillis:%d,bytesPerSecond:%.0f,objectsPerSecond:%.1f",
+                getObjects(), getSnowballObjects(), getBytes(), getRetries(), getElapsedMillis(), getBytesPerSecond(), getObjectsPerSecond());
+    }
+}
@@ -5,16 +5,16 @@ import ai.basic.x1.adapter.port.rpc.dto.ImageDetectionReqDTO;
 import ai.basic.x1.adapter.port.rpc.dto.ImageDetectionRespDTO;
 import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.HttpStatus;
-import cn.hutool.http.HttpUtil;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author zhujh
@@ -22,23 +22,42 @@ import java.util.List;
 @Component
 public class ImageDetectionModelHttpCaller {
 
+    private static final String ENDPOINT = "imageDetection";
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RpcHttpClient rpcHttpClient;
+
+    @Value("${rpc.timeout.imageDetection:120000}")
+    private long timeout;
+
     public ApiResult<List<ImageDetectionRespDTO>> callPredImageModel(ImageDetectionReqDTO requestBody, String url) throws IOException {
-        var requestBodyStr = objectMapper.writeValueAsString(requestBody);
-        var httpRequest = HttpUtil.createPost(url)
-                .body(requestBodyStr, ContentType.JSON.getValue());
-        var httpResponse = httpRequest.execute();
-        ApiResult<List<ImageDetectionRespDTO>> result;
-        if (httpResponse.getStatus() == HttpStatus.HTTP_OK) {
-            result = objectMapper.readValue(httpResponse.bodyBytes(),
-                    new TypeReference<ApiResult<List<ImageDetectionRespDTO>>>() {
-            });
-        } else {
-            throw new UsecaseException(UsecaseCode.UNKNOWN, httpResponse.body());
+        try {
+            return RpcHttpClient.join(callPredImageModelAsync(requestBody, url));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return result;
+    }
+
+    public CompletableFuture<ApiResult<List<ImageDetectionRespDTO>>> callPredImageModelAsync(ImageDetectionReqDTO requestBody, String url) throws IOException {
+        var requestBodyStr = objectMapper.writeValueAsString(requestBody);
+        return rpcHttpClient.postJsonAsync(ENDPOINT, url, requestBodyStr, timeout).handle((responseBody, throwable) -> {
+            if (throwable != null) {
+                var exception = RpcHttpClient.unwrap(throwable);
+                if (exception instanceof RpcHttpClient.HttpStatusException) {
+                    throw new UsecaseException(UsecaseCode.UNKNOWN, ((RpcHttpClient.HttpStatusException) exception).getBody());
+                }
+                throw new UncheckedIOException(exception);
+            }
+            try {
+                return objectMapper.readValue(responseBody, new TypeReference<ApiResult<List<ImageDetectionRespDTO>>>() {
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
 }
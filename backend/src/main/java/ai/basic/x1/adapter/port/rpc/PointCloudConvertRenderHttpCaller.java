@@ -4,15 +4,15 @@ import ai.basic.x1.adapter.dto.ApiResult;
 import ai.basic.x1.adapter.port.rpc.dto.PointCloudCRReqDTO;
 import ai.basic.x1.adapter.port.rpc.dto.PointCloudCRRespDTO;
 import ai.basic.x1.usecase.exception.UsecaseException;
-import cn.hutool.core.date.StopWatch;
 import cn.hutool.core.lang.TypeReference;
-import cn.hutool.http.*;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author andy
@@ -21,30 +21,30 @@ import java.util.List;
 @Slf4j
 public class PointCloudConvertRenderHttpCaller {
 
+    private static final String ENDPOINT = "pointCloudConvertRender";
+
     @Value("${pointCloud.convertRender.url}")
     private String url;
 
+    @Value("${rpc.timeout.pointCloudConvertRender:120000}")
+    private long timeout;
+
+    @Autowired
+    private RpcHttpClient rpcHttpClient;
 
     public ApiResult<List<PointCloudCRRespDTO>> callConvertRender(PointCloudCRReqDTO pointCloudCRReqDTO) {
-        try {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
-            String requestBody = JSONUtil.toJsonStr(pointCloudCRReqDTO);
-            HttpRequest httpRequest = HttpUtil.createPost(url)
-                    .body(requestBody, ContentType.JSON.getValue());
-            HttpResponse httpResponse = httpRequest.execute();
-            stopWatch.stop();
-            log.info(String.format("call pointCloudConvertRender took: %dms,req:%s ,resp:%s", stopWatch.getLastTaskTimeMillis(), requestBody, httpResponse.body()));
-            if (httpResponse.getStatus() == HttpStatus.HTTP_OK) {
-                ApiResult<List<PointCloudCRRespDTO>> apiResult = JSONUtil.toBean(httpResponse.body(), new TypeReference<>() {
-                }, false);
-                return apiResult;
-            } else {
+        return RpcHttpClient.join(callConvertRenderAsync(pointCloudCRReqDTO));
+    }
+
+    public CompletableFuture<ApiResult<List<PointCloudCRRespDTO>>> callConvertRenderAsync(PointCloudCRReqDTO pointCloudCRReqDTO) {
+        String requestBody = JSONUtil.toJsonStr(pointCloudCRReqDTO);
+        return rpcHttpClient.postJsonAsync(ENDPOINT, url, requestBody, timeout).handle((responseBody, throwable) -> {
+            if (throwable != null) {
+                log.error("call pointCloudConvertRender service error.", throwable);
                 throw new UsecaseException("pointCloudConvertRender service error!");
             }
-        } catch (Throwable throwable) {
-            log.error("call pointCloudConvertRender service error.", throwable);
-            throw new UsecaseException("pointCloudConvertRender service error!");
-        }
+            return JSONUtil.toBean(responseBody, new TypeReference<ApiResult<List<PointCloudCRRespDTO>>>() {
+            }, false);
+        });
     }
 }
@@ -0,0 +1,63 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import com.alibaba.ttl.TransmittableThreadLocal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Deadline of the current unit of work, e.g. one model run. Remote calls made inside never wait past it, whatever
+ * their own timeout, and retries stop once it is reached. The deadline follows TTL wrapped tasks to other threads.
+ *
+ * @author andy
+ */
+public final class RpcDeadline {
+
+    private static final TransmittableThreadLocal<Long> DEADLINE = new TransmittableThreadLocal<>();
+
+    private RpcDeadline() {
+    }
+
+    /**
+     * Run with a deadline, an enclosing earlier deadline is kept
+     *
+     * @param timeoutMillis Time allowed from now
+     * @param supplier      Work
+     * @return Result of the work
+     */
+    public static <T> T callWithin(long timeoutMillis, Supplier<T> supplier) {
+        var previous = DEADLINE.get();
+        DEADLINE.set(resolve(timeoutMillis));
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Deadline of a call with the given timeout
+     *
+     * @param timeoutMillis Call timeout
+     * @return Earliest of now plus the timeout and the current deadline, in {@link System#nanoTime()} units
+     */
+    public static long resolve(long timeoutMillis) {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        var current = DEADLINE.get();
+        return current == null ? deadline : Math.min(current, deadline);
+    }
+
+    /**
+     * Milliseconds left until a deadline
+     *
+     * @param deadline Deadline in {@link System#nanoTime()} units
+     * @return Remaining milliseconds, zero or less once passed
+     */
+    public static long remainingMillis(long deadline) {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+}
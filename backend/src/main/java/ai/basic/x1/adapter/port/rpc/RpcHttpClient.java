@@ -0,0 +1,232 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared non-blocking HTTP client of the remote services. Keep-alive connections are pooled per host, calls
+ * never outlive their {@link RpcDeadline}, and transport errors and busy responses are retried a bounded number
+ * of times with jittered exponential backoff. Every attempt is recorded by {@link RpcTracer}.
+ *
+ * @author andy
+ */
+@Component
+@Slf4j
+public class RpcHttpClient {
+
+    /**
+     * Tells the remote service how long the caller still waits
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+    private static final int MAX_MESSAGE_BODY_LENGTH = 1000;
+
+    @Value("${rpc.http.connectTimeout:5000}")
+    private long connectTimeout;
+
+    @Value("${rpc.http.maxIdleConnections:32}")
+    private int maxIdleConnections;
+
+    @Value("${rpc.http.keepAlive:300000}")
+    private long keepAlive;
+
+    @Value("${rpc.http.maxRequests:256}")
+    private int maxRequests;
+
+    @Value("${rpc.http.maxRequestsPerHost:32}")
+    private int maxRequestsPerHost;
+
+    @Value("${rpc.http.retry.maxRetries:3}")
+    private int maxRetries;
+
+    @Value("${rpc.http.retry.baseDelay:200}")
+    private long baseDelay;
+
+    @Value("${rpc.http.retry.maxDelay:5000}")
+    private long maxDelay;
+
+    @Autowired
+    private RpcTracer rpcTracer;
+
+    private OkHttpClient okHttpClient;
+
+    @PostConstruct
+    public void init() {
+        var dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        // Read and write are bounded by the call timeout derived from the deadline
+        okHttpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS))
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .writeTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * Post a JSON body
+     *
+     * @param endpoint      Endpoint name used by the tracing
+     * @param url           Url
+     * @param body          JSON body
+     * @param timeoutMillis Timeout of the call including retries, shortened by the current deadline
+     * @return Response body of a 2xx response, completes with {@link HttpStatusException} for other status codes
+     */
+    public CompletableFuture<String> postJsonAsync(String endpoint, String url, String body, long timeoutMillis) {
+        var rpcCall = new RpcCall(endpoint, url, body.getBytes(StandardCharsets.UTF_8), RpcDeadline.resolve(timeoutMillis));
+        execute(rpcCall, 0);
+        return rpcCall.future;
+    }
+
+    /**
+     * Blocking form of {@link #postJsonAsync}
+     */
+    public String postJson(String endpoint, String url, String body, long timeoutMillis) throws IOException {
+        try {
+            return postJsonAsync(endpoint, url, body, timeoutMillis).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Call " + url + " interrupted");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Wait for a call future, rethrowing runtime failures as they are instead of wrapped
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cause of a failed call future as IOException
+     */
+    public static IOException unwrap(Throwable throwable) {
+        var cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    private void execute(RpcCall rpcCall, int attempt) {
+        var remaining = RpcDeadline.remainingMillis(rpcCall.deadline);
+        if (remaining <= 0) {
+            rpcCall.future.completeExceptionally(new InterruptedIOException("Deadline exceeded"));
+            return;
+        }
+        var request = new Request.Builder()
+                .url(rpcCall.url)
+                .header(TIMEOUT_HEADER, String.valueOf(remaining))
+                .post(RequestBody.create(rpcCall.body, JSON))
+                .build();
+        var call = okHttpClient.newCall(request);
+        call.timeout().timeout(remaining, TimeUnit.MILLISECONDS);
+        var start = System.nanoTime();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                rpcTracer.record(rpcCall.endpoint, rpcCall.url, attempt, null, System.nanoTime() - start, rpcCall.body, null, 0, e);
+                if (!retry(rpcCall, attempt, e)) {
+                    rpcCall.future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                byte[] responseBytes;
+                try (response) {
+                    responseBytes = response.body() == null ? new byte[0] : response.body().bytes();
+                } catch (IOException e) {
+                    onFailure(call, e);
+                    return;
+                }
+                var responseBody = new String(responseBytes, StandardCharsets.UTF_8);
+                var exception = response.isSuccessful() ? null : new HttpStatusException(response.code(), responseBody);
+                rpcTracer.record(rpcCall.endpoint, rpcCall.url, attempt, response.code(), System.nanoTime() - start,
+                        rpcCall.body, responseBody, responseBytes.length, exception);
+                if (exception == null) {
+                    rpcCall.future.complete(responseBody);
+                } else if (!RETRYABLE_STATUS.contains(response.code()) || !retry(rpcCall, attempt, exception)) {
+                    rpcCall.future.completeExceptionally(exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedule the next attempt after a full jitter backoff, unless the retries are used up or the backoff would
+     * pass the deadline
+     *
+     * @return Whether the call is retried
+     */
+    private boolean retry(RpcCall rpcCall, int attempt, IOException e) {
+        if (attempt >= maxRetries) {
+            return false;
+        }
+        var delay = RandomUtil.randomLong(0, Math.min(maxDelay, baseDelay << attempt) + 1);
+        if (delay >= RpcDeadline.remainingMillis(rpcCall.deadline)) {
+            return false;
+        }
+        log.warn("Call {} failed, retry {} in {}ms: {}", rpcCall.endpoint, attempt + 1, delay, e.getMessage());
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> execute(rpcCall, attempt + 1));
+        return true;
+    }
+
+    @AllArgsConstructor
+    private static class RpcCall {
+        private final String endpoint;
+        private final String url;
+        private final byte[] body;
+        private final long deadline;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+    }
+
+    /**
+     * Non 2xx response
+     */
+    @Getter
+    public static class HttpStatusException extends IOException {
+        private final int status;
+        private final String body;
+
+        public HttpStatusException(int status, String body) {
+            super("Http status " + status + ": " + StrUtil.maxLength(body, MAX_MESSAGE_BODY_LENGTH));
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
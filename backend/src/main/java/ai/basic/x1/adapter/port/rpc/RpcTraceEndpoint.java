@@ -0,0 +1,28 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint `rpctraces` listing the remote calls kept by {@link RpcTracer}. Bodies may contain presigned
+ * urls, only expose it where the management endpoints are protected.
+ *
+ * @author andy
+ */
+@Component
+@Endpoint(id = "rpctraces")
+public class RpcTraceEndpoint {
+
+    @Autowired
+    private RpcTracer rpcTracer;
+
+    @ReadOperation
+    public List<RpcTraceRecord> traces(@Nullable String endpoint, @Nullable Boolean onlyFailed) {
+        return rpcTracer.getRecords(endpoint, Boolean.TRUE.equals(onlyFailed));
+    }
+}
@@ -0,0 +1,51 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One remote call kept by {@link RpcTracer}
+ *
+ * @author andy
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcTraceRecord {
+
+    private OffsetDateTime time;
+
+    /**
+     * Endpoint name, e.g. pointCloudDetection
+     */
+    private String endpoint;
+
+    private String url;
+
+    private Integer attempt;
+
+    /**
+     * Http status, null when the call failed before a response
+     */
+    private Integer status;
+
+    private Long latencyMillis;
+
+    private Long requestBytes;
+
+    private Long responseBytes;
+
+    /**
+     * Bodies are truncated to `rpc.trace.maxBodyLength`
+     */
+    private String requestBody;
+
+    private String responseBody;
+
+    private String error;
+}
@@ -0,0 +1,125 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every remote call as metrics and keeps the bodies of failed and sampled calls in a bounded ring buffer,
+ * so that large model payloads are never serialized into the log.
+ * <p>
+ * Meters: `rpc.client.requests` timer, `rpc.client.request.size` and `rpc.client.response.size` summaries, tagged
+ * with the endpoint name, and the status and outcome for the timer.
+ *
+ * @author andy
+ */
+@Component
+public class RpcTracer {
+
+    private static final String NONE_STATUS = "NONE";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Share of successful calls whose bodies are kept, failed calls are always kept
+     */
+    @Value("${rpc.trace.sampleRate:0.01}")
+    private double sampleRate;
+
+    @Value("${rpc.trace.capacity:200}")
+    private int capacity;
+
+    @Value("${rpc.trace.maxBodyLength:65536}")
+    private int maxBodyLength;
+
+    private final Deque<RpcTraceRecord> records = new ArrayDeque<>();
+
+    /**
+     * Record one attempt of a call
+     *
+     * @param endpoint      Endpoint name
+     * @param url           Url
+     * @param attempt       Attempt index, 0 for the first
+     * @param status        Http status, null if no response was received
+     * @param latencyNanos  Attempt latency
+     * @param requestBody   Request body
+     * @param responseBody  Response body, null if no response was received
+     * @param responseBytes Response size in bytes
+     * @param error         Failure, null for a 2xx response
+     */
+    public void record(String endpoint, String url, int attempt, Integer status, long latencyNanos,
+                       byte[] requestBody, String responseBody, long responseBytes, Throwable error) {
+        var failed = error != null;
+        Timer.builder("rpc.client.requests")
+                .tag("endpoint", endpoint)
+                .tag("status", status == null ? NONE_STATUS : String.valueOf(status))
+                .tag("outcome", failed ? "FAILURE" : "SUCCESS")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("rpc.client.request.size")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(requestBody.length);
+        if (status != null) {
+            DistributionSummary.builder("rpc.client.response.size")
+                    .baseUnit("bytes")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry)
+                    .record(responseBytes);
+        }
+        if (failed || RandomUtil.getRandom().nextDouble() < sampleRate) {
+            add(RpcTraceRecord.builder()
+                    .time(OffsetDateTime.now())
+                    .endpoint(endpoint)
+                    .url(url)
+                    .attempt(attempt)
+                    .status(status)
+                    .latencyMillis(TimeUnit.NANOSECONDS.toMillis(latencyNanos))
+                    .requestBytes((long) requestBody.length)
+                    .responseBytes(status == null ? null : responseBytes)
+                    .requestBody(StrUtil.maxLength(StrUtil.utf8Str(requestBody), maxBodyLength))
+                    .responseBody(StrUtil.maxLength(responseBody, maxBodyLength))
+                    .error(failed ? error.toString() : null)
+                    .build());
+        }
+    }
+
+    /**
+     * Kept calls, newest first
+     *
+     * @param endpoint Endpoint name to filter by, all endpoints if empty
+     * @param onlyFailed Whether to return failed calls only
+     * @return Kept calls
+     */
+    public synchronized List<RpcTraceRecord> getRecords(String endpoint, boolean onlyFailed) {
+        var result = new ArrayList<RpcTraceRecord>(records.size());
+        records.descendingIterator().forEachRemaining(record -> {
+            if ((StrUtil.isEmpty(endpoint) || endpoint.equals(record.getEndpoint())) && (!onlyFailed || record.getError() != null)) {
+                result.add(record);
+            }
+        });
+        return result;
+    }
+
+    private synchronized void add(RpcTraceRecord record) {
+        while (records.size() >= capacity) {
+            records.pollFirst();
+        }
+        records.addLast(record);
+    }
+}
@@ -3,12 +3,14 @@ package ai.basic.x1.adapter.port.rpc;
 import ai.basic.x1.adapter.dto.ApiResult;
 import ai.basic.x1.adapter.port.rpc.dto.SimilarityParamDTO;
 import ai.basic.x1.usecase.exception.UsecaseException;
-import cn.hutool.core.date.StopWatch;
-import cn.hutool.http.*;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author andy
  */
@@ -16,29 +18,30 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class SimilarityHttpCaller {
 
+    private static final String ENDPOINT = "similarity";
+
     @Value("${dataset.similarity.url}")
     private String similarityUrl;
 
+    @Value("${rpc.timeout.similarity:60000}")
+    private long timeout;
+
+    @Autowired
+    private RpcHttpClient rpcHttpClient;
+
     public ApiResult callSimilarity(SimilarityParamDTO similarityParamDTO) {
-        try {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
-            String requestBody = JSONUtil.toJsonStr(similarityParamDTO);
-            HttpRequest httpRequest = HttpUtil.createPost(similarityUrl)
-                    .body(requestBody, ContentType.JSON.getValue());
-            HttpResponse httpResponse = httpRequest.execute();
-            stopWatch.stop();
-            log.info(String.format("call calcSimilarity took: %dms,req:%s ,resp:%s", stopWatch.getLastTaskTimeMillis(), requestBody, httpResponse.body()));
-            if (httpResponse.getStatus() == HttpStatus.HTTP_OK) {
-                ApiResult apiResult = JSONUtil.toBean(httpResponse.body(), ApiResult.class);
-                return apiResult;
-            } else {
-                throw new UsecaseException("call calcSimilarity run error!");
+        return RpcHttpClient.join(callSimilarityAsync(similarityParamDTO));
+    }
+
+    public CompletableFuture<ApiResult> callSimilarityAsync(SimilarityParamDTO similarityParamDTO) {
+        String requestBody = JSONUtil.toJsonStr(similarityParamDTO);
+        return rpcHttpClient.postJsonAsync(ENDPOINT, similarityUrl, requestBody, timeout).handle((responseBody, throwable) -> {
+            if (throwable != null) {
+                log.error("call calcSimilarity service error.", throwable);
+                throw new UsecaseException("calcSimilarity error!");
             }
-        } catch (Throwable throwable) {
-            log.error("call calcSimilarity service error.", throwable);
-            throw new UsecaseException("calcSimilarity error!");
-        }
+            return JSONUtil.toBean(responseBody, ApiResult.class);
+        });
     }
 
 }
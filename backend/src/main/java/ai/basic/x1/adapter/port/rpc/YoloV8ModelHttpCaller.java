@@ -5,16 +5,16 @@ import ai.basic.x1.adapter.port.rpc.dto.ImageDetectionReqDTO;
 import ai.basic.x1.adapter.port.rpc.dto.YoloV8RespDTO;
 import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.HttpStatus;
-import cn.hutool.http.HttpUtil;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * YOLOv8 Model HTTP Caller
@@ -23,22 +23,42 @@ import java.util.List;
 @Component
 public class YoloV8ModelHttpCaller {
 
+    private static final String ENDPOINT = "yoloV8";
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RpcHttpClient rpcHttpClient;
+
+    @Value("${rpc.timeout.yoloV8:120000}")
+    private long timeout;
+
     public ApiResult<List<YoloV8RespDTO>> callYoloV8Model(ImageDetectionReqDTO requestBody, String url) throws IOException {
-        var requestBodyStr = objectMapper.writeValueAsString(requestBody);
-        var httpRequest = HttpUtil.createPost(url)
-                .body(requestBodyStr, ContentType.JSON.getValue());
-        var httpResponse = httpRequest.execute();
-        ApiResult<List<YoloV8RespDTO>> result;
-        if (httpResponse.getStatus() == HttpStatus.HTTP_OK) {
-            result = objectMapper.readValue(httpResponse.bodyBytes(),
-                    new TypeReference<ApiResult<List<YoloV8RespDTO>>>() {
-            });
-        } else {
-            throw new UsecaseException(UsecaseCode.UNKNOWN, httpResponse.body());
+        try {
+            return RpcHttpClient.join(callYoloV8ModelAsync(requestBody, url));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return result;
     }
-} 
\ No newline at end of file
+
+    public CompletableFuture<ApiResult<List<YoloV8RespDTO>>> callYoloV8ModelAsync(ImageDetectionReqDTO requestBody, String url) throws IOException {
+        var requestBodyStr = objectMapper.writeValueAsString(requestBody);
+        return rpcHttpClient.postJsonAsync(ENDPOINT, url, requestBodyStr, timeout).handle((responseBody, throwable) -> {
+            if (throwable != null) {
+                var exception = RpcHttpClient.unwrap(throwable);
+                if (exception instanceof RpcHttpClient.HttpStatusException) {
+                    throw new UsecaseException(UsecaseCode.UNKNOWN, ((RpcHttpClient.HttpStatusException) exception).getBody());
+                }
+                throw new UncheckedIOException(exception);
+            }
+            try {
+                return objectMapper.readValue(responseBody, new TypeReference<ApiResult<List<YoloV8RespDTO>>>() {
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+}
@@ -19,7 +19,9 @@ public class ModelResultEvaluateRespDTO {
      * Model run metrics
      */
     @Data
-    public class ModelMetricBO {
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ModelMetricBO {
 
         private String name;
 
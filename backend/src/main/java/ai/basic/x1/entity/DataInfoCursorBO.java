@@ -0,0 +1,46 @@
+package ai.basic.x1.entity;
+
+import ai.basic.x1.entity.enums.DataInfoSortFieldEnum;
+import ai.basic.x1.entity.enums.ItemTypeEnum;
+import ai.basic.x1.entity.enums.SortEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Position of the last row of a cursor page, encoded into the continuation token
+ *
+ * @author fyb
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataInfoCursorBO {
+
+    /**
+     * Data type, scenes are listed before single data
+     */
+    private ItemTypeEnum type;
+
+    /**
+     * Value of the seek column
+     */
+    private String value;
+
+    /**
+     * Data id
+     */
+    private Long id;
+
+    /**
+     * Sort field the cursor was created with
+     */
+    private DataInfoSortFieldEnum sortField;
+
+    /**
+     * Sort order the cursor was created with
+     */
+    private SortEnum ascOrDesc;
+}
@@ -43,6 +43,11 @@ public class ExportRecordBO {
      */
     private ExportStatusEnum status;
 
+    /**
+     * Loaded number, data queried and waiting to be written
+     */
+    private Integer loadedNum;
+
     /**
      * Generated number
      */
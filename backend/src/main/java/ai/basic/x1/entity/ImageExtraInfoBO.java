@@ -24,4 +24,14 @@ public class ImageExtraInfoBO {
      * Camera image height
      */
     private Integer height;
+
+    /**
+     * EXIF orientation, 1 to 8, width and height are as stored before it is applied
+     */
+    private Integer orientation;
+
+    /**
+     * Image format read from the file header
+     */
+    private String format;
 }
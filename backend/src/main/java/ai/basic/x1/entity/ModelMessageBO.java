@@ -7,6 +7,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
+import java.util.List;
+
 /**
  * @author fyb
  */
@@ -22,6 +24,11 @@ public class ModelMessageBO {
 
     private Long dataId;
 
+    /**
+     * Data of a batched dataset model run message, the consumer loads them and handles each one
+     */
+    private List<Long> dataIds;
+
     private Long modelId;
 
     private String modelVersion;
@@ -38,4 +45,9 @@ public class ModelMessageBO {
 
     private String url;
 
+    /**
+     * Times the failed data of a dataset model run message have been sent again
+     */
+    private Integer retryCount;
+
 }
@@ -1,6 +1,7 @@
 package ai.basic.x1.entity;
 
 import ai.basic.x1.entity.enums.UploadStatusEnum;
+import cn.hutool.json.JSONObject;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -63,6 +64,11 @@ public class UploadRecordBO {
      */
     private Long parsedDataNum;
 
+    /**
+     * Per-stage throughput statistics
+     */
+    private JSONObject stageStatistics;
+
     /**
      * Upload status
      */
@@ -0,0 +1,33 @@
+package ai.basic.x1.entity.enums;
+
+/**
+ * Upload pipeline stage enum
+ *
+ * @author fyb
+ */
+public enum UploadStageEnum {
+    /**
+     * Download the compressed package
+     */
+    DOWNLOAD,
+    /**
+     * Decompress the compressed package
+     */
+    DECOMPRESS,
+    /**
+     * Scan scenes and assemble data files
+     */
+    SCAN,
+    /**
+     * Upload files to minio
+     */
+    UPLOAD,
+    /**
+     * Generate and upload thumbnails
+     */
+    THUMBNAIL,
+    /**
+     * Insert data and results into database
+     */
+    INSERT
+}
@@ -104,7 +104,7 @@ public class DataAnnotationObjectUseCase {
         List<DataAnnotationObjectBO> insertObjectBOs = new ArrayList<>();
         if (ObjectUtil.isNotEmpty(needInsertObjectBOs)) {
             var needInserts = DefaultConverter.convert(needInsertObjectBOs, DataAnnotationObject.class);
-            dataAnnotationObjectDAO.getBaseMapper().insertBatch(needInserts);
+            dataAnnotationObjectDAO.bulkInsert(needInserts);
             insertObjectBOs = DefaultConverter.convert(needInserts, DataAnnotationObjectBO.class);
         }
         if (ObjectUtil.isNotEmpty(needUpdateObjectBOs)) {
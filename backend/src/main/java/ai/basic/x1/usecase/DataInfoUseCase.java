@@ -13,15 +13,18 @@ import ai.basic.x1.entity.enums.*;
 import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.Constants;
+import ai.basic.x1.util.CursorPage;
 import ai.basic.x1.util.DefaultConverter;
 import ai.basic.x1.util.Page;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.date.TemporalAccessorUtil;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.EnumUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
@@ -30,6 +33,7 @@ import com.alibaba.ttl.TtlRunnable;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -38,8 +42,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ai.basic.x1.entity.enums.DatasetTypeEnum.IMAGE;
@@ -117,10 +123,21 @@ public class DataInfoUseCase {
     @Value("${export.data.version}")
     private String version;
 
+    /**
+     * Largest page of a cursor query, larger pages are cut to it
+     */
+    @Value("${dataset.data.cursor.maxPageSize:1000}")
+    private int maxCursorPageSize;
+
     private static final ExecutorService executorService = ThreadUtil.newExecutor(2);
 
     private static final Long GROUND_TRUTH = -1L;
 
+    /**
+     * Order of the data types in a cursor query
+     */
+    private static final List<ItemTypeEnum> CURSOR_TYPE_ORDER = List.of(ItemTypeEnum.SCENE, ItemTypeEnum.SINGLE_DATA);
+
     private static final String GROUND_TRUTH_NAME = "Ground Truth";
 
     /**
@@ -259,9 +276,126 @@ public class DataInfoUseCase {
         var dataInfoPage = dataInfoDAO.getBaseMapper().selectDataPage(new com.baomidou.mybatisplus.extension.plugins.pagination.Page<>(queryBO.getPageNo(), queryBO.getPageSize()),
                 lambdaQueryWrapper, DefaultConverter.convert(queryBO, DataInfoQuery.class));
         var dataInfoBOPage = DefaultConverter.convert(dataInfoPage, DataInfoBO.class);
-        var dataInfoBOList = dataInfoBOPage.getList();
+        setPageDataInfo(queryBO.getDatasetId(), dataInfoBOPage.getList());
+        return dataInfoBOPage;
+    }
+
+    /**
+     * Cursor query dataInfo, each page seeks after the last row of the previous page instead of scanning an offset
+     *
+     * @param queryBO   Query parameter object, sorted by NAME (order_name) or CREATED_AT
+     * @param cursor    Continuation token returned with the previous page, null for the first page
+     * @param withTotal Whether to count the total number
+     * @return DataInfo cursor page
+     */
+    public CursorPage<DataInfoBO> findByCursor(DataInfoQueryBO queryBO, String cursor, Boolean withTotal) {
+        var sortField = StrUtil.isEmpty(queryBO.getSortField()) ? DataInfoSortFieldEnum.NAME
+                : EnumUtil.fromStringQuietly(DataInfoSortFieldEnum.class, queryBO.getSortField());
+        var ascOrDesc = StrUtil.isEmpty(queryBO.getAscOrDesc()) ? SortEnum.ASC
+                : EnumUtil.fromStringQuietly(SortEnum.class, queryBO.getAscOrDesc());
+        if (ObjectUtil.isNull(sortField) || ObjectUtil.isNull(ascOrDesc)) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Invalid sortField or ascOrDesc");
+        }
+        if (DataInfoSortFieldEnum.DATA_CONFIDENCE.equals(sortField)) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Cursor query does not support sorting by DATA_CONFIDENCE");
+        }
+        if (ObjectUtil.isNull(queryBO.getPageSize()) || queryBO.getPageSize() < 1) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "pageSize must be positive");
+        }
+        var pageSize = Math.min(queryBO.getPageSize(), maxCursorPageSize);
+        var cursorPage = new CursorPage<DataInfoBO>();
+        cursorPage.setPageSize(pageSize);
+        if (Boolean.TRUE.equals(withTotal)) {
+            cursorPage.setTotal(dataInfoDAO.count(commonDataQueryWrapper(queryBO)));
+        }
+        var cursorBO = StrUtil.isEmpty(cursor) ? null : decodeCursor(cursor, sortField, ascOrDesc);
+        var seekColumn = DataInfoSortFieldEnum.NAME.equals(sortField) ? "order_name" : "created_at";
+        // Scenes are listed before single data. Each type is read by its own query ordered by the seek column and id
+        // in one direction, a range scan of the (dataset_id, parent_id, type, seek column) index without filesort
+        List<DataInfo> dataInfoList = new ArrayList<>();
+        for (var type : CURSOR_TYPE_ORDER) {
+            if (ObjectUtil.isNotNull(cursorBO) && CURSOR_TYPE_ORDER.indexOf(type) < CURSOR_TYPE_ORDER.indexOf(cursorBO.getType())) {
+                continue;
+            }
+            var lambdaQueryWrapper = buildDataQueryWrapper(queryBO);
+            lambdaQueryWrapper.eq(DataInfo::getType, type);
+            if (ObjectUtil.isNotNull(cursorBO) && type.equals(cursorBO.getType())) {
+                applyCursor(lambdaQueryWrapper, cursorBO, sortField, ascOrDesc);
+            }
+            // One more row tells whether there is a next page
+            dataInfoList.addAll(dataInfoDAO.getBaseMapper().selectDataByCursor(lambdaQueryWrapper, seekColumn,
+                    ascOrDesc.name(), pageSize + 1 - dataInfoList.size()));
+            if (dataInfoList.size() > pageSize) {
+                break;
+            }
+        }
+        if (dataInfoList.size() > pageSize) {
+            dataInfoList = dataInfoList.subList(0, pageSize);
+            cursorPage.setNextCursor(encodeCursor(CollUtil.getLast(dataInfoList), sortField, ascOrDesc));
+        }
+        var dataInfoBOList = DefaultConverter.convert(dataInfoList, DataInfoBO.class);
+        setPageDataInfo(queryBO.getDatasetId(), dataInfoBOList);
+        cursorPage.setList(dataInfoBOList);
+        return cursorPage;
+    }
+
+    /**
+     * Rows of the cursor type after the cursor in the order seek column, id
+     */
+    private void applyCursor(ExtendLambdaQueryWrapper<DataInfo> lambdaQueryWrapper, DataInfoCursorBO cursorBO,
+                             DataInfoSortFieldEnum sortField, SortEnum ascOrDesc) {
+        var isAsc = SortEnum.ASC.equals(ascOrDesc);
+        SFunction<DataInfo, ?> column = DataInfoSortFieldEnum.NAME.equals(sortField) ? DataInfo::getOrderName : DataInfo::getCreatedAt;
+        Object value = DataInfoSortFieldEnum.NAME.equals(sortField) ? cursorBO.getValue() : OffsetDateTime.parse(cursorBO.getValue());
+        Consumer<LambdaQueryWrapper<DataInfo>> seek = wrapper -> wrapper
+                .func(w -> {
+                    if (isAsc) {
+                        w.gt(column, value);
+                    } else {
+                        w.lt(column, value);
+                    }
+                })
+                .or(w -> w.eq(column, value).func(idWrapper -> {
+                    if (isAsc) {
+                        idWrapper.gt(DataInfo::getId, cursorBO.getId());
+                    } else {
+                        idWrapper.lt(DataInfo::getId, cursorBO.getId());
+                    }
+                }));
+        lambdaQueryWrapper.and(seek);
+    }
+
+    static String encodeCursor(DataInfo dataInfo, DataInfoSortFieldEnum sortField, SortEnum ascOrDesc) {
+        var value = DataInfoSortFieldEnum.NAME.equals(sortField) ? dataInfo.getOrderName() : dataInfo.getCreatedAt().toString();
+        var cursorBO = DataInfoCursorBO.builder().type(dataInfo.getType()).value(value).id(dataInfo.getId())
+                .sortField(sortField).ascOrDesc(ascOrDesc).build();
+        return Base64.encodeUrlSafe(JSONUtil.toJsonStr(cursorBO));
+    }
+
+    static DataInfoCursorBO decodeCursor(String cursor, DataInfoSortFieldEnum sortField, SortEnum ascOrDesc) {
+        DataInfoCursorBO cursorBO;
+        try {
+            cursorBO = JSONUtil.toBean(Base64.decodeStr(cursor), DataInfoCursorBO.class);
+        } catch (Exception e) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Invalid cursor");
+        }
+        if (ObjectUtil.isNull(cursorBO) || ObjectUtil.hasNull(cursorBO.getType(), cursorBO.getValue(), cursorBO.getId())
+                || sortField != cursorBO.getSortField() || ascOrDesc != cursorBO.getAscOrDesc()) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Invalid cursor");
+        }
+        if (!DataInfoSortFieldEnum.NAME.equals(sortField)) {
+            try {
+                OffsetDateTime.parse(cursorBO.getValue());
+            } catch (DateTimeParseException e) {
+                throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Invalid cursor");
+            }
+        }
+        return cursorBO;
+    }
+
+    private void setPageDataInfo(Long datasetId, List<DataInfoBO> dataInfoBOList) {
         if (CollectionUtil.isNotEmpty(dataInfoBOList)) {
-            setSceneFirstData(queryBO.getDatasetId(), dataInfoBOList);
+            setSceneFirstData(datasetId, dataInfoBOList);
             setDataInfoBOListFile(dataInfoBOList);
             var dataIds = dataInfoBOList.stream().map(DataInfoBO::getId).collect(Collectors.toList());
             var userIdMap = dataEditUseCase.getDataEditByDataIds(dataIds);
@@ -273,7 +407,6 @@ public class DataInfoUseCase {
                 dataInfoBOList.forEach(dataInfoBO -> dataInfoBO.setLockedBy(userMap.get(userIdMap.get(dataInfoBO.getId()))));
             }
         }
-        return dataInfoBOPage;
     }
 
 
@@ -317,6 +450,10 @@ public class DataInfoUseCase {
     }
 
     public Wrapper<DataInfo> commonDataQueryWrapper(DataInfoQueryBO queryBO) {
+        return buildDataQueryWrapper(queryBO);
+    }
+
+    private ExtendLambdaQueryWrapper<DataInfo> buildDataQueryWrapper(DataInfoQueryBO queryBO) {
         var lambdaQueryWrapper = new ExtendLambdaQueryWrapper<DataInfo>();
         lambdaQueryWrapper.eq(DataInfo::getDatasetId, queryBO.getDatasetId());
         lambdaQueryWrapper.eq(DataInfo::getIsDeleted, false);
@@ -495,7 +632,7 @@ public class DataInfoUseCase {
         }
         try {
             List<DataInfo> infos = DefaultConverter.convert(dataInfoBOList, DataInfo.class);
-            dataInfoDAO.saveBatch(infos);
+            dataInfoDAO.bulkInsert(infos);
             return DefaultConverter.convert(infos, DataInfoBO.class);
         } catch (DuplicateKeyException e) {
             log.error("Duplicate data name", e);
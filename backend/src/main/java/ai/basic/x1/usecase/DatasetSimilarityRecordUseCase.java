@@ -5,6 +5,7 @@ import ai.basic.x1.adapter.port.dao.DataInfoDAO;
 import ai.basic.x1.adapter.port.dao.DatasetSimilarityJobDAO;
 import ai.basic.x1.adapter.port.dao.DatasetSimilarityRecordDAO;
 import ai.basic.x1.adapter.port.dao.mybatis.model.*;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
 import ai.basic.x1.adapter.port.minio.MinioProp;
 import ai.basic.x1.adapter.port.minio.MinioService;
 import ai.basic.x1.adapter.port.rpc.SimilarityHttpCaller;
@@ -69,11 +70,18 @@ public class DatasetSimilarityRecordUseCase {
     @Autowired
     private DataClassificationOptionDAO dataClassificationOptionDAO;
 
+    @Autowired
+    private DomainMetrics domainMetrics;
+
     @Transactional(rollbackFor = Throwable.class)
     public void generateDatasetSimilarityRecord(Long datasetId) {
         boolean lockResult = false;
+        var lockKey = String.valueOf(datasetId);
+        var sample = domainMetrics.startTimer();
+        var success = false;
         try {
-            if (lockResult = similarityDistributedLock.tryLock(String.valueOf(datasetId))) {
+            if (lockResult = similarityDistributedLock.tryLock(lockKey)) {
+                var fencingToken = similarityDistributedLock.getFencingToken(lockKey);
                 DatasetSimilarityRecord datasetSimilarityRecord = null;
                 List<DatasetSimilarityRecord> datasetSimilarityRecords = datasetSimilarityRecordDAO.list(Wrappers.lambdaQuery(DatasetSimilarityRecord.class)
                         .eq(DatasetSimilarityRecord::getDatasetId, datasetId).orderByDesc(DatasetSimilarityRecord::getCreatedAt));
@@ -129,19 +137,26 @@ public class DatasetSimilarityRecordUseCase {
                     }
                 }
                 if (ObjectUtil.isNotNull(datasetSimilarityRecord)) {
+                    // Another node took the lock while this one was stalled, its record wins
+                    if (!similarityDistributedLock.isFencingTokenValid(lockKey, fencingToken)) {
+                        log.warn("Similarity lock of dataset {} lost, skip record submit", datasetId);
+                        return;
+                    }
                     datasetSimilarityRecordDAO.save(datasetSimilarityRecord);
                     datasetSimilarityJobDAO.remove(Wrappers.lambdaQuery(DatasetSimilarityJob.class).eq(DatasetSimilarityJob::getDatasetId, datasetId));
                     SimilarityParamDTO similarityParamDTO = buildSimilarityParamDTO(datasetSimilarityRecord);
                     similarityHttpCaller.callSimilarity(similarityParamDTO);
                 }
             }
+            success = true;
         } catch (Throwable throwable) {
             log.error("generateDatasetSimilarityRecord error", throwable);
             throw new UsecaseException("generateDatasetSimilarityRecord error");
         } finally {
             if (lockResult) {
-                similarityDistributedLock.unlock(String.valueOf(datasetId));
+                similarityDistributedLock.unlock(lockKey);
             }
+            domainMetrics.recordSimilarityGenerate(sample, success);
         }
     }
 
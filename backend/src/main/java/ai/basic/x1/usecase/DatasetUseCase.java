@@ -141,7 +141,7 @@ public class DatasetUseCase {
                     });
                     var datasetClassBOList = DefaultConverter.convert(datasetClassPropertiesList, DatasetClassBO.class);
                     datasetClassBOList.forEach(datasetClassBO -> datasetClassBO.setDatasetId(datasetId));
-                    datasetClassDAO.saveBatch(DefaultConverter.convert(datasetClassBOList, DatasetClass.class));
+                    datasetClassDAO.bulkInsert(DefaultConverter.convert(datasetClassBOList, DatasetClass.class));
                 }
             })));
         }
@@ -312,7 +312,7 @@ public class DatasetUseCase {
                     dataInfo.setUpdatedBy(null);
                 });
                 scenarioQueryBO.setDataIds(dataIds);
-                dataInfoDAO.getBaseMapper().insertBatch(dataInfoList);
+                dataInfoDAO.bulkInsert(dataInfoList);
                 var dataInfoMap = dataInfoList.stream().collect(Collectors.toMap(DataInfo::getTempDataId, DataInfo::getId));
                 var dataAnnotationObjectBOList = dataAnnotationObjectUseCase.listByScenario(scenarioQueryBO);
                 dataAnnotationObjectBOList.forEach(dataAnnotationObjectBO -> {
@@ -331,7 +331,7 @@ public class DatasetUseCase {
                     dataAnnotationObjectBO.setCreatedBy(RequestContextHolder.getContext().getUserInfo().getId());
                     dataAnnotationObjectBO.setCreatedAt(OffsetDateTime.now());
                 });
-                dataAnnotationObjectDAO.getBaseMapper().insertBatch(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
+                dataAnnotationObjectDAO.bulkInsert(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
                 i++;
             }
         })));
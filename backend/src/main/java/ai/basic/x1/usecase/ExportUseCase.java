@@ -3,6 +3,7 @@ package ai.basic.x1.usecase;
 import ai.basic.x1.adapter.dto.ApiResult;
 import ai.basic.x1.adapter.port.dao.ExportRecordDAO;
 import ai.basic.x1.adapter.port.dao.mybatis.model.ExportRecord;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
 import ai.basic.x1.adapter.port.minio.MinioProp;
 import ai.basic.x1.adapter.port.minio.MinioService;
 import ai.basic.x1.entity.*;
@@ -17,6 +18,8 @@ import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.date.TemporalAccessorUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.lang.Pair;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjectUtil;
@@ -26,6 +29,7 @@ import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONConfig;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.ttl.TtlRunnable;
+import com.alibaba.ttl.threadpool.TtlExecutors;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Assert;
 import io.minio.errors.*;
@@ -36,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -45,13 +50,17 @@ import java.security.InvalidKeyException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -81,13 +90,43 @@ public class ExportUseCase {
     @Autowired
     private DataInfoUseCase dataInfoUseCase;
 
+    @Autowired
+    private DomainMetrics domainMetrics;
+
     @Value("${file.tempPath:/tmp/xtreme1/}")
     private String tempPath;
 
-    private static Integer BATCH_SIZE = 100;
-
     private static final ExecutorService executorService = ThreadUtil.newExecutor(10);
 
+    private static final ExecutorService streamUploadExecutor = ThreadUtil.newExecutor(10);
+
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+
+    private static final JSONConfig JSON_CONFIG = JSONConfig.create().setIgnoreNullValue(false);
+
+    @Value("${export.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${export.batchSize:1000}")
+    private Integer batchSize;
+
+    @Value("${export.prefetch.depth:2}")
+    private Integer prefetchDepth;
+
+    @Value("${export.prefetch.maxData:3000}")
+    private Integer prefetchMaxData;
+
+    private static final ExecutorService prefetchExecutor = ThreadUtil.newExecutor(10);
+
+    private static final ExecutorService prefetchExecutorService = TtlExecutors.getTtlExecutorService(prefetchExecutor);
+
+    @PostConstruct
+    public void init() {
+        domainMetrics.monitorExecutor("export.download", executorService);
+        domainMetrics.monitorExecutor("export.streamUpload", streamUploadExecutor);
+        domainMetrics.monitorExecutor("export.prefetch", prefetchExecutor);
+    }
+
     /**
      * Create export record
      *
@@ -111,11 +150,20 @@ public class ExportUseCase {
         var exportRecord = exportRecordDAO.getOne(lambdaQueryWrapper);
         var srcPath = String.format("%s%s", tempPath, FileUtil.getPrefix(fileName));
         FileUtil.mkdir(srcPath);
-        getDataAndUpload(exportRecord, srcPath, classMap, resultMap, query, fun, processData);
+        var sample = domainMetrics.startTimer();
+        var success = false;
+        try {
+            success = getDataAndUpload(exportRecord, srcPath, classMap, resultMap, query, fun, processData);
+        } finally {
+            domainMetrics.recordExport(sample, query.getDataFormat(), isStreaming(query), success);
+        }
         return serialNumber;
     }
 
-    private <Q extends BaseQueryBO> void getDataAndUpload(ExportRecord record, String srcPath, Map<Long, String> classMap, Map<Long, String> resultMap, Q query,
+    /**
+     * @return Whether the export is completed
+     */
+    private <Q extends BaseQueryBO> boolean getDataAndUpload(ExportRecord record, String srcPath, Map<Long, String> classMap, Map<Long, String> resultMap, Q query,
                                                           Function<Q, List<Long>> fun, Function4<List<Long>, Q, Map<Long, String>, Map<Long, String>, List<DataExportBO>> processData) {
         var rootPath = String.format("%s/%s", record.getCreatedBy(),
                 TemporalAccessorUtil.format(OffsetDateTime.now(), DatePattern.PURE_DATETIME_PATTERN));
@@ -127,20 +175,13 @@ public class ExportUseCase {
         var dataIds = fun.apply(query);
         if (CollUtil.isEmpty(dataIds)) {
             exportRecordBOBuilder.status(ExportStatusEnum.FAILED);
-            return;
+            return false;
         }
-        AtomicInteger i = new AtomicInteger(0);
-        var dataIdList = ListUtil.partition(dataIds, 1000);
-        dataIdList.forEach(subDataIds -> {
-            writeFile(subDataIds, srcPath, classMap, resultMap, query, processData);
-            var exportRecordBO = exportRecordBOBuilder
-                    .generatedNum(i.get() * BATCH_SIZE + subDataIds.size())
-                    .totalNum(dataIds.size())
-                    .updatedAt(OffsetDateTime.now())
-                    .build();
-            exportRecordUsecase.saveOrUpdate(exportRecordBO);
-            i.getAndIncrement();
-        });
+        if (isStreaming(query)) {
+            return streamDataAndUpload(record, srcPath, rootPath, dataIds, exportRecordBOBuilder, classMap, resultMap, query, processData);
+        }
+        forEachBatch(dataIds, exportRecordBOBuilder, subDataIds -> processData.invoke(subDataIds, query, classMap, resultMap),
+                dataExportBOList -> writeFile(dataExportBOList, srcPath, query));
         var zipPath = srcPath + ".zip";
         File zipFile;
         var path = String.format("%s/%s", rootPath, FileUtil.getName(zipPath));
@@ -163,7 +204,7 @@ public class ExportUseCase {
                         .updatedAt(OffsetDateTime.now())
                         .build();
                 exportRecordUsecase.saveOrUpdate(exportRecordBO);
-                return;
+                return false;
             }
             FileUtil.del(basePath);
         } else {
@@ -180,6 +221,7 @@ public class ExportUseCase {
                     .updatedAt(OffsetDateTime.now())
                     .build();
             exportRecordUsecase.saveOrUpdate(exportRecordBO);
+            return true;
         } catch (Exception e) {
             var exportRecordBO = exportRecordBOBuilder
                     .status(ExportStatusEnum.FAILED)
@@ -187,15 +229,119 @@ public class ExportUseCase {
                     .build();
             exportRecordUsecase.saveOrUpdate(exportRecordBO);
             logger.error("Upload file error", e);
+            return false;
         } finally {
             FileUtil.del(zipFile);
             FileUtil.del(srcPath);
         }
     }
 
-    private <Q extends BaseQueryBO> void writeFile(List<Long> dataIds, String zipPathOr, Map<Long, String> classMap, Map<Long, String> resultMap, Q query, Function4<List<Long>, Q, Map<Long, String>, Map<Long, String>, List<DataExportBO>> processData) {
-        var dataExportBOList = processData.invoke(dataIds, query, classMap, resultMap);
-        var jsonConfig = JSONConfig.create().setIgnoreNullValue(false);
+    /**
+     * Write the data into a ZIP archive that is uploaded while it is written, nothing is stored on disk.
+     * COCO exports still go through the temp folder because the format converter reads a zip file.
+     */
+    private <Q extends BaseQueryBO> boolean streamDataAndUpload(ExportRecord record, String srcPath, String rootPath, List<Long> dataIds,
+                                                             ExportRecordBO.ExportRecordBOBuilder exportRecordBOBuilder,
+                                                             Map<Long, String> classMap, Map<Long, String> resultMap, Q query,
+                                                             Function4<List<Long>, Q, Map<Long, String>, Map<Long, String>, List<DataExportBO>> processData) {
+        FileUtil.del(srcPath);
+        var entryRoot = FileUtil.getName(srcPath);
+        var zipName = entryRoot + ".zip";
+        var path = String.format("%s/%s", rootPath, zipName);
+        var mimeType = FileUtil.getMimeType(path);
+        PipedZipUploader zipUploader = null;
+        try {
+            var uploader = new PipedZipUploader(streamUploadExecutor, STREAM_BUFFER_SIZE,
+                    inputStream -> minioService.uploadStream(minioProp.getBucketName(), path, inputStream, mimeType));
+            zipUploader = uploader;
+            forEachBatch(dataIds, exportRecordBOBuilder, subDataIds -> processData.invoke(subDataIds, query, classMap, resultMap),
+                    dataExportBOList -> dataExportBOList.forEach(dataExportBO ->
+                            writeDataExport(dataExportBO, (entryPath, content) -> uploader.putEntry(entryRoot + "/" + entryPath, content))));
+            var size = uploader.finish();
+            var fileBO = FileBO.builder().name(zipName).originalName(zipName).bucketName(minioProp.getBucketName())
+                    .size(size).path(path).type(mimeType).build();
+            var resFileBOS = fileUseCase.saveBatchFile(record.getCreatedBy(), Collections.singletonList(fileBO));
+            var exportRecordBO = exportRecordBOBuilder
+                    .fileId(CollectionUtil.getFirst(resFileBOS).getId())
+                    .status(ExportStatusEnum.COMPLETED)
+                    .updatedAt(OffsetDateTime.now())
+                    .build();
+            exportRecordUsecase.saveOrUpdate(exportRecordBO);
+            return true;
+        } catch (Exception e) {
+            if (ObjectUtil.isNotNull(zipUploader)) {
+                zipUploader.abort();
+            }
+            var exportRecordBO = exportRecordBOBuilder
+                    .status(ExportStatusEnum.FAILED)
+                    .updatedAt(OffsetDateTime.now())
+                    .build();
+            exportRecordUsecase.saveOrUpdate(exportRecordBO);
+            logger.error("Stream export error", e);
+            return false;
+        }
+    }
+
+    private boolean isStreaming(BaseQueryBO query) {
+        return streamingEnabled && !DataFormatEnum.COCO.equals(query.getDataFormat());
+    }
+
+    /**
+     * Load and write the data batch by batch, the following batches are loaded while the current one is written.
+     * Loading runs ahead by at most prefetchDepth batches and prefetchMaxData data, progress is reported for
+     * loaded and for written data.
+     *
+     * @param dataIds               Data ids
+     * @param exportRecordBOBuilder Export record builder
+     * @param loader                Query the export data of a batch
+     * @param writer                Write the export data of a batch
+     */
+    private void forEachBatch(List<Long> dataIds, ExportRecordBO.ExportRecordBOBuilder exportRecordBOBuilder,
+                              Function<List<Long>, List<DataExportBO>> loader, Consumer<List<DataExportBO>> writer) {
+        var dataIdList = ListUtil.partition(dataIds, batchSize);
+        var pending = new ArrayDeque<Pair<Integer, CompletableFuture<List<DataExportBO>>>>();
+        var loadedNum = new AtomicInteger(0);
+        var generatedNum = 0;
+        var bufferedNum = 0;
+        var next = 0;
+        try {
+            while (next < dataIdList.size() || !pending.isEmpty()) {
+                // Always keep one batch loading, then fill the window while the caps allow it
+                while (next < dataIdList.size() && (pending.isEmpty() || (pending.size() <= prefetchDepth
+                        && bufferedNum + dataIdList.get(next).size() <= prefetchMaxData))) {
+                    var subDataIds = dataIdList.get(next++);
+                    bufferedNum += subDataIds.size();
+                    pending.add(Pair.of(subDataIds.size(), CompletableFuture.supplyAsync(() -> {
+                        var loadStart = System.nanoTime();
+                        var dataExportBOList = loader.apply(subDataIds);
+                        domainMetrics.recordExportBatch("load", System.nanoTime() - loadStart, subDataIds.size());
+                        loadedNum.addAndGet(subDataIds.size());
+                        return dataExportBOList;
+                    }, prefetchExecutorService)));
+                }
+                var batch = pending.poll();
+                var dataExportBOList = batch.getValue().join();
+                var writeStart = System.nanoTime();
+                writer.accept(dataExportBOList);
+                domainMetrics.recordExportBatch("write", System.nanoTime() - writeStart, batch.getKey());
+                bufferedNum -= batch.getKey();
+                generatedNum += batch.getKey();
+                var exportRecordBO = exportRecordBOBuilder
+                        .loadedNum(loadedNum.get())
+                        .generatedNum(generatedNum)
+                        .totalNum(dataIds.size())
+                        .updatedAt(OffsetDateTime.now())
+                        .build();
+                exportRecordUsecase.saveOrUpdate(exportRecordBO);
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            pending.forEach(batch -> batch.getValue().cancel(false));
+        }
+    }
+
+    private <Q extends BaseQueryBO> void writeFile(List<DataExportBO> dataExportBOList, String zipPathOr, Q query) {
         dataExportBOList.forEach(dataExportBO -> {
             var sceneName = dataExportBO.getSceneName();
             var zipPath = StrUtil.isNotEmpty(sceneName) ? String.format("%s/%s", zipPathOr, sceneName) : zipPathOr;
@@ -208,16 +354,36 @@ public class ExportUseCase {
                     logger.error("Download object error", e);
                 }
             }
-            var dataPath = String.format("%s/%s/%s.json", zipPath, Constants.DATA,
-                    dataExportBaseBO.getName());
-            FileUtil.writeString(JSONUtil.toJsonStr(dataExportBaseBO, jsonConfig), dataPath, StandardCharsets.UTF_8);
+            writeDataExport(dataExportBO, (entryPath, content) ->
+                    FileUtil.writeBytes(content, String.format("%s/%s", zipPathOr, entryPath)));
+        });
+    }
+
+    /**
+     * Write the data and result json of a data
+     *
+     * @param dataExportBO Export data
+     * @param entryWriter  Writer of a path relative to the export root
+     */
+    private void writeDataExport(DataExportBO dataExportBO, ExportEntryWriter entryWriter) {
+        var sceneName = dataExportBO.getSceneName();
+        var basePath = StrUtil.isNotEmpty(sceneName) ? sceneName + "/" : "";
+        var dataExportBaseBO = dataExportBO.getData();
+        try {
+            var dataPath = String.format("%s%s/%s.json", basePath, Constants.DATA, dataExportBaseBO.getName());
+            entryWriter.write(dataPath, JSONUtil.toJsonStr(dataExportBaseBO, JSON_CONFIG).getBytes(StandardCharsets.UTF_8));
             if (ObjectUtil.isNotNull(dataExportBO.getResult())) {
-                var resultPath = String.format("%s/%s/%s.json", zipPath,
-                        Constants.RESULT,
-                        dataExportBaseBO.getName());
-                FileUtil.writeString(JSONUtil.toJsonStr(dataExportBO.getResult(), jsonConfig), resultPath, StandardCharsets.UTF_8);
+                var resultPath = String.format("%s%s/%s.json", basePath, Constants.RESULT, dataExportBaseBO.getName());
+                entryWriter.write(resultPath, JSONUtil.toJsonStr(dataExportBO.getResult(), JSON_CONFIG).getBytes(StandardCharsets.UTF_8));
             }
-        });
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportEntryWriter {
+        void write(String path, byte[] content) throws IOException;
     }
 
     /**
@@ -5,21 +5,31 @@ import ai.basic.x1.adapter.port.dao.mybatis.model.File;
 import ai.basic.x1.adapter.port.minio.MinioService;
 import ai.basic.x1.entity.FileBO;
 import ai.basic.x1.entity.RelationFileBO;
+import ai.basic.x1.entity.enums.RelationEnum;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ByteUtil;
 import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.digest.HMac;
+import cn.hutool.crypto.digest.HmacAlgorithm;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+import static ai.basic.x1.entity.enums.RelationEnum.*;
+import static ai.basic.x1.util.Constants.IMAGE_DATA_TYPE;
+
 /**
  * @author : fyb
  */
@@ -32,6 +42,26 @@ public class FileUseCase {
     @Autowired
     private MinioService minioService;
 
+    private static final List<RelationEnum> THUMBNAIL_RELATIONS = List.of(LARGE_THUMBTHUMBNAIL, MEDIUM_THUMBTHUMBNAIL, SMALL_THUMBTHUMBNAIL);
+
+    @Value("${file.thumbnail.mode:eager}")
+    private String thumbnailMode;
+
+    /**
+     * Thumbnail endpoint as seen by the browser
+     */
+    @Value("${file.thumbnail.baseUrl:/api/file/thumbnail}")
+    private String thumbnailBaseUrl;
+
+    /**
+     * Validity of thumbnail urls in seconds, the same as the signed object urls
+     */
+    @Value("${file.thumbnail.urlExpiry:604800}")
+    private long thumbnailUrlExpiry;
+
+    @Value("${file.thumbnail.signKey:${minio.secretKey:}}")
+    private String thumbnailSignKey;
+
     /**
      * fileId
      *
@@ -44,12 +74,15 @@ public class FileUseCase {
         lambdaQueryWrapper.eq(File::getRelationId, id);
         var relationFiles = fileDAO.list(lambdaQueryWrapper);
         var fileBO = DefaultConverter.convert(file, RelationFileBO.class);
+        var urlFileBOs = new ArrayList<FileBO>();
+        urlFileBOs.add(fileBO);
         if (CollectionUtil.isNotEmpty(relationFiles)) {
             var relationFileBOs = DefaultConverter.convert(relationFiles, FileBO.class);
-            relationFileBOs.forEach(this::setUrl);
+            urlFileBOs.addAll(relationFileBOs);
             fileBO.setRelationFiles(relationFileBOs);
         }
-        setUrl(fileBO);
+        setUrls(urlFileBOs);
+        setLazyThumbnails(fileBO);
         return fileBO;
     }
 
@@ -65,23 +98,110 @@ public class FileUseCase {
         var lambdaQueryWrapper = Wrappers.lambdaQuery(File.class);
         lambdaQueryWrapper.in(File::getRelationId, ids);
         var relationFiles = fileDAO.list(lambdaQueryWrapper);
-        Objects.requireNonNull(fileBOs).forEach(fileBO -> {
-            setUrl(fileBO);
-            if (CollectionUtil.isNotEmpty(relationFiles)) {
-                var relationFileBOs = DefaultConverter.convert(relationFiles.stream().
-                        filter(relationFile -> relationFile.getRelationId().equals(fileBO.getId())).collect(Collectors.toList()), FileBO.class);
-                Objects.requireNonNull(relationFileBOs).forEach(this::setUrl);
+        var relationFileMap = relationFiles.stream().collect(Collectors.groupingBy(File::getRelationId));
+        var urlFileBOs = new ArrayList<FileBO>(Objects.requireNonNull(fileBOs));
+        fileBOs.forEach(fileBO -> {
+            var fileRelationFiles = relationFileMap.get(fileBO.getId());
+            if (CollectionUtil.isNotEmpty(fileRelationFiles)) {
+                var relationFileBOs = DefaultConverter.convert(fileRelationFiles, FileBO.class);
+                urlFileBOs.addAll(relationFileBOs);
                 fileBO.setRelationFiles(relationFileBOs);
             }
         });
+        setUrls(urlFileBOs);
+        fileBOs.forEach(this::setLazyThumbnails);
         return fileBOs;
     }
 
+    /**
+     * In lazy thumbnail mode, point the thumbnails an image does not have yet to the thumbnail endpoint, which
+     * generates them on first access. The endpoint url is relative to the browser, so server side readers of the
+     * internal url get the original image
+     *
+     * @param fileBO File with its relation files
+     */
+    private void setLazyThumbnails(RelationFileBO fileBO) {
+        if (!ThumbnailUseCase.MODE_LAZY.equalsIgnoreCase(thumbnailMode) || !IMAGE_DATA_TYPE.contains(fileBO.getType())) {
+            return;
+        }
+        var relationFileBOs = fileBO.getRelationFiles() == null ? new ArrayList<FileBO>() : new ArrayList<>(fileBO.getRelationFiles());
+        var relations = relationFileBOs.stream().map(FileBO::getRelation).collect(Collectors.toSet());
+        THUMBNAIL_RELATIONS.stream().filter(relation -> !relations.contains(relation)).forEach(relation -> {
+            var url = getThumbnailUrl(fileBO.getId(), relation);
+            relationFileBOs.add(FileBO.builder().name(fileBO.getName()).originalName(fileBO.getOriginalName())
+                    .bucketName(fileBO.getBucketName()).type(fileBO.getType()).relation(relation).relationId(fileBO.getId())
+                    .url(url).internalUrl(fileBO.getInternalUrl()).build());
+        });
+        fileBO.setRelationFiles(relationFileBOs);
+    }
+
+    /**
+     * Signed url of the thumbnail endpoint. The expiry is rounded up to the hour, so the url of a thumbnail stays the
+     * same for an hour and browsers can cache it
+     *
+     * @param fileId   Image file id
+     * @param relation Thumbnail size
+     * @return Thumbnail url
+     */
+    public String getThumbnailUrl(Long fileId, RelationEnum relation) {
+        var now = System.currentTimeMillis() / 1000;
+        var expires = (now + thumbnailUrlExpiry) / 3600 * 3600 + 3600;
+        return String.format("%s/%s/%s?expires=%s&signature=%s", thumbnailBaseUrl, fileId, relation, expires,
+                signThumbnail(fileId, relation, expires));
+    }
+
+    /**
+     * Whether a thumbnail url is signed by {@link #getThumbnailUrl(Long, RelationEnum)} and not expired
+     */
+    public boolean isThumbnailUrlValid(Long fileId, RelationEnum relation, long expires, String signature) {
+        if (expires < System.currentTimeMillis() / 1000 || signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(signThumbnail(fileId, relation, expires).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String signThumbnail(Long fileId, RelationEnum relation, long expires) {
+        return new HMac(HmacAlgorithm.HmacSHA256, thumbnailSignKey.getBytes(StandardCharsets.UTF_8))
+                .digestHex(fileId + ":" + relation + ":" + expires);
+    }
+
+    /**
+     * Set the urls of the files, the urls of a bucket are signed in one batch
+     *
+     * @param fileBOs file list
+     */
+    private void setUrls(List<? extends FileBO> fileBOs) {
+        try {
+            var bucketFileMap = fileBOs.stream().collect(Collectors.groupingBy(FileBO::getBucketName));
+            for (var entry : bucketFileMap.entrySet()) {
+                var paths = entry.getValue().stream().map(FileBO::getPath).collect(Collectors.toSet());
+                var internalUrlMap = minioService.getInternalUrls(entry.getKey(), paths);
+                var urlMap = minioService.getUrls(entry.getKey(), paths);
+                entry.getValue().forEach(fileBO -> {
+                    fileBO.setInternalUrl(internalUrlMap.get(fileBO.getPath()));
+                    fileBO.setUrl(urlMap.get(fileBO.getPath()));
+                });
+            }
+        } catch (Exception e) {
+            log.error("Get url error", e);
+            throw new UsecaseException("Get url error");
+        }
+    }
 
-    private void setUrl(FileBO fileBO) {
+    /**
+     * Set the internal urls of files saved without urls, e.g. before passing them to another service
+     *
+     * @param fileBOs file list
+     */
+    public void setInternalUrls(List<? extends FileBO> fileBOs) {
         try {
-            fileBO.setInternalUrl(minioService.getInternalUrl(fileBO.getBucketName(), fileBO.getPath()));
-            fileBO.setUrl(minioService.getUrl(fileBO.getBucketName(), fileBO.getPath()));
+            var bucketFileMap = fileBOs.stream().collect(Collectors.groupingBy(FileBO::getBucketName));
+            for (var entry : bucketFileMap.entrySet()) {
+                var paths = entry.getValue().stream().map(FileBO::getPath).collect(Collectors.toSet());
+                var internalUrlMap = minioService.getInternalUrls(entry.getKey(), paths);
+                entry.getValue().forEach(fileBO -> fileBO.setInternalUrl(internalUrlMap.get(fileBO.getPath())));
+            }
         } catch (Exception e) {
             log.error("Get url error", e);
             throw new UsecaseException("Get url error");
@@ -96,6 +216,19 @@ public class FileUseCase {
      */
     @Transactional(rollbackFor = Throwable.class)
     public List<FileBO> saveBatchFile(Long userId, List<FileBO> fileBOS) {
+        return saveBatchFile(userId, fileBOS, true);
+    }
+
+    /**
+     * batch save file
+     *
+     * @param fileBOS  fileBOs
+     * @param withUrls Whether to sign the urls of the saved files, imports skip it as the urls are signed when the
+     *                 data are read
+     * @return fileList
+     */
+    @Transactional(rollbackFor = Throwable.class)
+    public List<FileBO> saveBatchFile(Long userId, List<FileBO> fileBOS, boolean withUrls) {
         var files = DefaultConverter.convert(fileBOS, File.class);
         Objects.requireNonNull(files).forEach(file -> {
             file.setPathHash(ByteUtil.bytesToLong(SecureUtil.md5().digest(file.getPath())));
@@ -106,7 +239,9 @@ public class FileUseCase {
         });
         fileDAO.saveBatch(files);
         var reFileBOs = DefaultConverter.convert(files, FileBO.class);
-        reFileBOs.forEach(fileBO -> setUrl(fileBO));
+        if (withUrls) {
+            setUrls(reFileBOs);
+        }
         return reFileBOs;
     }
 }
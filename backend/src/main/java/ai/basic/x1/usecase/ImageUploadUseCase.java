@@ -3,38 +3,23 @@ package ai.basic.x1.usecase;
 import ai.basic.x1.util.Constants;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.ReUtil;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class ImageUploadUseCase {
 
-    @Autowired
-    private UploadDataUseCase uploadDataUseCase;
-
     /**
-     * Get the name of image data
+     * Whether a file names an image data, the images of the image folders name the data of a scene
      *
-     * @param sceneFile Continuous frames folder
+     * @param file File in a device folder of a scene
      */
-    public List<String> getDataNames(File sceneFile) {
-        var sceneNames = new LinkedHashSet<String>();
-        for (var f : sceneFile.listFiles()) {
-            var filename = f.getName().toLowerCase();
-            var boo = f.isDirectory() && ReUtil.isMatch(Constants.IMAGE_PATTERN, filename);
-            if (boo) {
-                var list = Arrays.stream(f.listFiles()).filter(fl -> Constants.IMAGE_DATA_TYPE.contains(FileUtil.getMimeType(fl.getAbsolutePath()))).map(uploadDataUseCase::getFilename).collect(Collectors.toSet());
-                sceneNames.addAll(list);
-            }
-        }
-        return sceneNames.stream().sorted().collect(Collectors.toList());
+    public boolean isDataNameFile(File file) {
+        return ReUtil.isMatch(Constants.IMAGE_PATTERN, file.getParentFile().getName().toLowerCase())
+                && Constants.IMAGE_DATA_TYPE.contains(FileUtil.getMimeType(file.getAbsolutePath()));
     }
 
     /**
@@ -5,8 +5,7 @@ import ai.basic.x1.adapter.port.dao.ModelDatasetResultDAO;
 import ai.basic.x1.adapter.port.dao.ModelRunRecordDAO;
 import ai.basic.x1.adapter.port.dao.mybatis.extension.ExtendLambdaQueryWrapper;
 import ai.basic.x1.adapter.port.dao.mybatis.model.*;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoCountDAO;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoIncrDAO;
+import ai.basic.x1.adapter.port.dao.redis.ModelRunProgressDAO;
 import ai.basic.x1.entity.*;
 import ai.basic.x1.entity.RunRecordQueryBO;
 import ai.basic.x1.entity.enums.RunStatusEnum;
@@ -54,10 +53,7 @@ public class ModelRunRecordUseCase {
     private ModelDatasetResultDAO modelDatasetResultDAO;
 
     @Autowired
-    private ModelSerialNoCountDAO modelSerialNoCountDAO;
-
-    @Autowired
-    private ModelSerialNoIncrDAO modelSerialNoIncrDAO;
+    private ModelRunProgressDAO modelRunProgressDAO;
 
     @Autowired
     private ModelDAO modelDAO;
@@ -99,6 +95,7 @@ public class ModelRunRecordUseCase {
 
     private void setProgressBar(List<ModelRunRecordBO> modelRunRecords) {
         if (CollUtil.isNotEmpty(modelRunRecords)) {
+            var progressMap = getRunningProgress(modelRunRecords);
             modelRunRecords.forEach(modelRunRecord -> {
                 switch (modelRunRecord.getStatus()) {
                     case STARTED:
@@ -109,15 +106,10 @@ public class ModelRunRecordUseCase {
                         modelRunRecord.setCompletionRate(new BigDecimal(1));
                         break;
                     case RUNNING:
-                        try {
-                            var total = modelSerialNoCountDAO.getCount(modelRunRecord.getModelSerialNo());
-                            var progress = modelSerialNoIncrDAO.getCount(modelRunRecord.getModelSerialNo());
-                            if (total != null && progress != null && progress > 0) {
-                                var rate = new BigDecimal(progress).divide(new BigDecimal(total), 2, RoundingMode.HALF_UP);
-                                modelRunRecord.setCompletionRate(rate);
-                            }
-                        } catch (Exception e) {
-                            log.error("ModelRunRecord setProgressBar fail: " + e);
+                        var progress = progressMap.get(modelRunRecord.getModelSerialNo());
+                        if (progress != null && progress.getTotal() > 0 && progress.getDone() > 0) {
+                            var rate = new BigDecimal(progress.getDone()).divide(new BigDecimal(progress.getTotal()), 2, RoundingMode.HALF_UP);
+                            modelRunRecord.setCompletionRate(rate);
                         }
                         break;
                     default:
@@ -126,6 +118,22 @@ public class ModelRunRecordUseCase {
         }
     }
 
+    /**
+     * Progress of the running records in one Redis round trip
+     */
+    private Map<Long, ModelRunProgressDAO.Progress> getRunningProgress(List<ModelRunRecordBO> modelRunRecords) {
+        var modelSerialNos = modelRunRecords.stream()
+                .filter(modelRunRecord -> modelRunRecord.getStatus() == RunStatusEnum.RUNNING)
+                .map(ModelRunRecordBO::getModelSerialNo)
+                .collect(Collectors.toList());
+        try {
+            return modelRunProgressDAO.getProgress(modelSerialNos);
+        } catch (Exception e) {
+            log.error("ModelRunRecord setProgressBar fail: " + e);
+            return Map.of();
+        }
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public void deleteById(Long id) {
         ModelRunRecord modelRunRecord = modelRunRecordDAO.getById(id);
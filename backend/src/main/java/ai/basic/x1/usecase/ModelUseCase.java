@@ -9,8 +9,9 @@ import ai.basic.x1.adapter.dto.ApiResult;
 import ai.basic.x1.adapter.dto.response.ModelResponseDTO;
 import ai.basic.x1.adapter.port.dao.*;
 import ai.basic.x1.adapter.port.dao.mybatis.model.*;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoCountDAO;
-import ai.basic.x1.adapter.port.dao.redis.ModelSerialNoIncrDAO;
+import ai.basic.x1.adapter.port.dao.redis.ModelRunProgressDAO;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
+import ai.basic.x1.adapter.port.rpc.RpcHttpClient;
 import ai.basic.x1.adapter.port.rpc.dto.PointCloudDetectionRespDTO;
 import ai.basic.x1.entity.*;
 import ai.basic.x1.entity.enums.DatasetTypeEnum;
@@ -25,7 +26,6 @@ import ai.basic.x1.util.Page;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.date.StopWatch;
 import cn.hutool.core.lang.TypeReference;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.EnumUtil;
@@ -42,14 +42,19 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.*;
@@ -84,9 +89,7 @@ public class ModelUseCase {
     private ModelDatasetResultDAO modelDatasetResultDAO;
 
     @Autowired
-    private ModelSerialNoCountDAO modelSerialNoCountDAO;
-    @Autowired
-    private ModelSerialNoIncrDAO modelSerialNoIncrDAO;
+    private ModelRunProgressDAO modelRunProgressDAO;
 
     @Autowired
     private DataInfoUseCase dataInfoUseCase;
@@ -100,8 +103,25 @@ public class ModelUseCase {
     @Autowired
     private RedisTemplate<String, Object> streamRedisTemplate;
 
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private RpcHttpClient rpcHttpClient;
+
     private static final ExecutorService executorService = ThreadUtil.newExecutor(5);
 
+    @Value("${model.run.messageBatchSize:50}")
+    private Integer messageBatchSize;
+
+    @Value("${rpc.timeout.modelConnectionTest:60000}")
+    private long modelConnectionTestTimeout;
+
+    @PostConstruct
+    public void init() {
+        domainMetrics.monitorExecutor("model.run.send", executorService);
+    }
+
 
     public ModelBO add(ModelBO modelBO) {
 
@@ -347,14 +367,6 @@ public class ModelUseCase {
         return streamRedisTemplate.opsForStream().add(record);
     }
 
-    public RecordId sendDatasetModelMessageToMQ(ModelMessageBO modelMessageBO) {
-        ObjectRecord<String, String> record = StreamRecords.newRecord()
-                .in(Constants.DATASET_MODEL_RUN_STREAM_KEY)
-                .ofObject(JSONUtil.toJsonStr(modelMessageBO))
-                .withId(RecordId.autoGenerate());
-        return streamRedisTemplate.opsForStream().add(record);
-    }
-
     private void sendModelMessageAsync(ModelRunRecord modelRunRecord, ModelBO modelBO, long totalDataNum, List<Long> dataIds) {
         Assert.notNull(modelRunRecord, "modelRunRecord is null");
         log.info("start send model message. datasetId: {}, runRecodeId: {}",
@@ -369,9 +381,7 @@ public class ModelUseCase {
                     var modelSerialNo = modelRunRecord.getModelSerialNo();
                     log.info("executor start. datasetId: {}, runRecodeId: {}",
                             modelRunRecord.getDatasetId(), modelRunRecord.getId());
-                    modelSerialNoIncrDAO.removeModelSerialNo(modelRunRecord.getModelSerialNo());
-                    modelSerialNoCountDAO.setCount(modelRunRecord.getModelSerialNo(),
-                            (int) totalDataNum);
+                    modelRunProgressDAO.start(modelRunRecord.getModelSerialNo(), (int) totalDataNum);
 
                     var dataIdList = CollUtil.split(dataIds, 1000);
                     dataIdList.forEach(dataIdSubList -> {
@@ -385,10 +395,10 @@ public class ModelUseCase {
                         log.info("model {} runId {} cumulative insert num {}",
                                 modelBO.getModelCode(),
                                 modelRunRecord.getRunNo(), insertRecordNum);
-                        sendSuccessNum.addAndGet(sendModelDatasetMessage(
-                                convertMessageList(dataInfoBOList, modelRunRecord, modelBO)
-                        ));
-                        modelSerialNoCountDAO.setCount(modelSerialNo, sendSuccessNum.get());
+                        var sentNum = sendModelDatasetMessage(convertMessageList(dataInfoBOList, modelRunRecord, modelBO));
+                        sendSuccessNum.addAndGet(sentNum);
+                        domainMetrics.recordModelMessagesSent(modelBO.getModelCode(), sentNum);
+                        modelRunProgressDAO.setTotal(modelSerialNo, sendSuccessNum.get());
                         log.info("model {} runId {} cumulative send num {}", modelBO.getModelCode(),
                                 modelRunRecord.getRunNo(), sendSuccessNum);
                         log.info("model {} runId {} finish.", modelBO.getModelCode(),
@@ -415,7 +425,7 @@ public class ModelUseCase {
     private int batchSaveModelDatasetMessage(List<DataInfoBO> dataInfoList, ModelRunRecord modelRunRecord) {
         var records = convertModelDatasetResultList(dataInfoList, modelRunRecord);
         if (CollUtil.isNotEmpty(records)) {
-            modelDatasetResultDAO.insertBatch(records);
+            modelDatasetResultDAO.bulkInsert(records);
         }
         return CollUtil.isEmpty(records) ? 0 : records.size();
     }
@@ -439,14 +449,20 @@ public class ModelUseCase {
         return modelDatasetResults;
     }
 
+    /**
+     * Build the dataset model run messages, a message carries the ids of up to messageBatchSize data and
+     * the consumer loads the data and their files itself
+     */
     private List<ModelMessageBO> convertMessageList(List<DataInfoBO> dataInfoList,
                                                     ModelRunRecord modelRunRecord,
                                                     ModelBO modelBO) {
         if (CollUtil.isEmpty(dataInfoList)) {
             return new ArrayList<>(1);
         }
-        var messages = new ArrayList<ModelMessageBO>(dataInfoList.size());
-        dataInfoList.forEach(data -> {
+        var dataIds = dataInfoList.stream().map(DataInfoBO::getId).collect(Collectors.toList());
+        var resultFilterParam = JSONUtil.parseObj(modelRunRecord.getResultFilterParam());
+        var messages = new ArrayList<ModelMessageBO>();
+        CollUtil.split(dataIds, Math.max(messageBatchSize, 1)).forEach(subDataIds -> {
             var message = ModelMessageBO.builder()
                     .datasetId(modelRunRecord.getDatasetId())
                     .modelId(modelRunRecord.getModelId())
@@ -454,9 +470,8 @@ public class ModelUseCase {
                     .modelSerialNo(modelRunRecord.getModelSerialNo())
                     .modelCode(modelBO.getModelCode())
                     .createdBy(modelRunRecord.getCreatedBy())
-                    .resultFilterParam(JSONUtil.parseObj(modelRunRecord.getResultFilterParam()))
-                    .dataId(data.getId())
-                    .dataInfo(DefaultConverter.convert(data, DataInfoBO.class))
+                    .resultFilterParam(resultFilterParam)
+                    .dataIds(subDataIds)
                     .url(modelBO.getUrl())
                     .build();
             messages.add(message);
@@ -464,29 +479,43 @@ public class ModelUseCase {
         return messages;
     }
 
-    private int sendModelDatasetMessage(List<ModelMessageBO> modelMessageList) {
+    /**
+     * Send the messages in one pipeline instead of a round trip per message
+     *
+     * @return Number of data in the sent messages
+     */
+    public int sendModelDatasetMessage(List<ModelMessageBO> modelMessageList) {
         if (CollUtil.isEmpty(modelMessageList)) {
             return 0;
         }
         AtomicInteger sendNum = new AtomicInteger(0);
-        modelMessageList.forEach(modelMessageBO -> {
-            this.sendDatasetModelMessageToMQ(modelMessageBO);
-            sendNum.getAndIncrement();
+        streamRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                var streamOperations = (StreamOperations<String, Object, Object>) operations.opsForStream();
+                modelMessageList.forEach(modelMessageBO -> {
+                    ObjectRecord<String, String> record = StreamRecords.newRecord()
+                            .in(Constants.DATASET_MODEL_RUN_STREAM_KEY)
+                            .ofObject(JSONUtil.toJsonStr(modelMessageBO))
+                            .withId(RecordId.autoGenerate());
+                    streamOperations.add(record);
+                    sendNum.addAndGet(modelMessageBO.getDataIds().size());
+                });
+                return null;
+            }
         });
         return sendNum.get();
     }
 
     private ModelResponseBO reqModel(String requestBody, String url) {
         try {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
-            HttpRequest httpRequest = HttpUtil.createPost(url)
-                    .body(requestBody, ContentType.JSON.getValue());
-            HttpResponse httpResponse = httpRequest.execute();
-            stopWatch.stop();
-            log.info(String.format("call preLabelModelService took: %dms,req:%s ,resp:%s", stopWatch.getLastTaskTimeMillis(), requestBody, httpResponse.body()));
-
-            return ModelResponseBO.builder().status(httpResponse.getStatus()).code(UsecaseCode.ERROR).content(JSONUtil.parseObj(httpResponse.body())).build();
+            var responseBody = rpcHttpClient.postJson("modelConnectionTest", url, requestBody, modelConnectionTestTimeout);
+            return ModelResponseBO.builder().status(HttpStatus.HTTP_OK).code(UsecaseCode.ERROR).content(JSONUtil.parseObj(responseBody)).build();
+        } catch (RpcHttpClient.HttpStatusException httpStatusException) {
+            log.error("call pre-model service error, status:{}", httpStatusException.getStatus());
+            return ModelResponseBO.builder().status(httpStatusException.getStatus()).code(UsecaseCode.ERROR)
+                    .content(JSONUtil.parseObj(httpStatusException.getBody())).build();
         } catch (Exception e) {
             log.error("call pre-model service error.", e);
             throw new UsecaseException("Model service connection timed out");
@@ -3,36 +3,37 @@ package ai.basic.x1.usecase;
 import ai.basic.x1.util.Constants;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.ReUtil;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class PointCloudUploadUseCase {
 
-    @Autowired
-    private UploadDataUseCase uploadDataUseCase;
+    /**
+     * Whether a file names a point cloud data, the point clouds of the lidar folders name the data of a scene
+     *
+     * @param file File in a device folder of a scene
+     */
+    public boolean isDataNameFile(File file) {
+        return ReUtil.isMatch(Constants.LIDAR_POINT_CLOUD_PATTERN, file.getParentFile().getName().toLowerCase())
+                && Constants.PCD_SUFFIX.equalsIgnoreCase(FileUtil.getSuffix(file));
+    }
 
     /**
-     * Get the name of point cloud data
+     * Get the scene folder of a decompressed file, the file must be directly in a device or result folder
      *
-     * @param sceneFile Continuous frames folder
+     * @param file Decompressed file
+     * @return Scene folder, null if the file is not part of a scene
      */
-    public List<String> getDataNames(File sceneFile) {
-        var sceneNames = new LinkedHashSet<String>();
-        for (var f : sceneFile.listFiles()) {
-            var filename = f.getName().toLowerCase();
-            var boo = f.isDirectory() && ReUtil.isMatch(Constants.LIDAR_POINT_CLOUD_PATTERN, filename);
-            if (boo) {
-                var list = Arrays.stream(f.listFiles()).filter(fl -> Constants.PCD_SUFFIX.equalsIgnoreCase(FileUtil.getSuffix(fl))).map(uploadDataUseCase::getFilename).collect(Collectors.toSet());
-                sceneNames.addAll(list);
-            }
+    public File getSceneFile(File file) {
+        var parentFile = file.getParentFile();
+        if (parentFile == null || parentFile.getParentFile() == null) {
+            return null;
         }
-        return sceneNames.stream().sorted().collect(Collectors.toList());
+        var parentName = parentFile.getName().toLowerCase().trim();
+        var boo = ReUtil.isMatch(Constants.LIDAR_POINT_CLOUD_PATTERN, parentName) || parentName.startsWith(Constants.CAMERA_IMAGE)
+                || parentName.equals(Constants.CAMERA_CONFIG) || parentName.equals(Constants.RESULT);
+        return boo ? parentFile.getParentFile() : null;
     }
 
     /**
@@ -0,0 +1,441 @@
+package ai.basic.x1.usecase;
+
+import ai.basic.x1.adapter.port.dao.FileDAO;
+import ai.basic.x1.adapter.port.dao.mybatis.model.File;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
+import ai.basic.x1.adapter.port.minio.MinioService;
+import ai.basic.x1.entity.FileBO;
+import ai.basic.x1.entity.enums.RelationEnum;
+import ai.basic.x1.usecase.exception.UsecaseCode;
+import ai.basic.x1.usecase.exception.UsecaseException;
+import ai.basic.x1.util.DefaultConverter;
+import ai.basic.x1.util.ImageMetadataUtils;
+import ai.basic.x1.util.lock.IDistributedLock;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static ai.basic.x1.entity.enums.RelationEnum.*;
+import static ai.basic.x1.util.Constants.*;
+
+/**
+ * Image thumbnails of uploaded files. Thumbnails are generated on a pool of their own with a bounded backlog, so
+ * the parse stages only hand over the images. Each image is decoded once, large images with source subsampling,
+ * and the three sizes are resized in memory and uploaded from memory.
+ * <p>
+ * In lazy mode nothing is generated on upload, each thumbnail is generated when it is first requested through the
+ * thumbnail endpoint. Requests are served by a small pool of their own and never wait long: while a thumbnail cannot
+ * be generated in time the original image is served instead.
+ *
+ * @author fyb
+ */
+@Slf4j
+public class ThumbnailUseCase {
+
+    public static final String MODE_LAZY = "lazy";
+
+    private static final String JPG = "jpg";
+
+    @Autowired
+    private MinioService minioService;
+
+    @Autowired
+    private FileUseCase fileUseCase;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private FileDAO fileDAO;
+
+    @Autowired
+    private IDistributedLock distributedLock;
+
+    /**
+     * `eager` generates all thumbnails on upload, `lazy` generates each thumbnail on its first request
+     */
+    @Value("${file.thumbnail.mode:eager}")
+    private String mode;
+
+    /**
+     * Wait of a request for its lazy thumbnail (ms), the original image is served after it
+     */
+    @Value("${file.thumbnail.lazy.timeout:10000}")
+    private long lazyTimeout;
+
+    @Value("${file.thumbnail.lazy.workerThreads:4}")
+    private int lazyWorkerThreads;
+
+    /**
+     * Lazy thumbnails waiting for a worker, requests beyond it are served the original image
+     */
+    @Value("${file.thumbnail.lazy.queueCapacity:100}")
+    private int lazyQueueCapacity;
+
+    @Value("${file.tempPath:/tmp/xtreme1/}")
+    private String tempPath;
+
+    @Value("${file.size.large:400}")
+    private int largeFileSize;
+
+    @Value("${file.size.medium:200}")
+    private int mediumFileSize;
+
+    @Value("${file.size.small:100}")
+    private int smallFileSize;
+
+    @Value("${file.prefix.large:large}")
+    private String large;
+
+    @Value("${file.prefix.medium:medium}")
+    private String medium;
+
+    @Value("${file.prefix.small:small}")
+    private String small;
+
+    @Value("${file.thumbnail.workerThreads:2}")
+    private int workerThreads;
+
+    /**
+     * Images waiting for a worker, a full backlog makes the submitting thread generate the thumbnails itself
+     */
+    @Value("${file.thumbnail.queueCapacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * Empty keeps the format of the image, tif and tiff become jpg. `webp` writes WebP thumbnails
+     */
+    @Value("${file.thumbnail.format:}")
+    private String format;
+
+    private ThreadPoolExecutor executor;
+
+    private ThreadPoolExecutor lazyExecutor;
+
+    private final Map<String, CompletableFuture<FileBO>> generatingThumbnails = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        var index = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("thumbnail-executor" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        domainMetrics.monitorExecutor("thumbnail", executor);
+        // Threads are only started by lazy thumbnail requests
+        var lazyIndex = new AtomicInteger(1);
+        lazyExecutor = new ThreadPoolExecutor(lazyWorkerThreads, lazyWorkerThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(lazyQueueCapacity), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("lazyThumbnail-executor" + lazyIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        domainMetrics.monitorExecutor("lazyThumbnail", lazyExecutor);
+        if (StrUtil.isNotEmpty(format) && !ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            log.warn("No image writer for thumbnail format {}, the format of the images is kept", format);
+            format = null;
+        }
+    }
+
+    /**
+     * Generate the thumbnails of the images among the files and save their files, nothing is generated in lazy mode.
+     * The images are read from the temp folder, which must be kept until the returned future is done
+     *
+     * @param userId   User id
+     * @param fileBOS  Saved files, files other than images are ignored
+     * @param rootPath Root path of the files
+     * @return Completed when the thumbnails are saved, never exceptionally, failed images are logged and skipped
+     */
+    public CompletableFuture<Void> submit(Long userId, List<FileBO> fileBOS, String rootPath) {
+        if (MODE_LAZY.equalsIgnoreCase(mode)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var imageFileBOS = fileBOS.stream().filter(fileBO -> IMAGE_DATA_TYPE.contains(fileBO.getType()))
+                .collect(Collectors.toList());
+        if (CollUtil.isEmpty(imageFileBOS)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var futures = imageFileBOS.stream()
+                .map(fileBO -> CompletableFuture.supplyAsync(() -> createThumbnails(fileBO, rootPath), executor))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenRun(() -> {
+            var thumbnailFileBOS = futures.stream().flatMap(future -> future.join().stream()).collect(Collectors.toList());
+            if (CollUtil.isNotEmpty(thumbnailFileBOS)) {
+                fileUseCase.saveBatchFile(userId, thumbnailFileBOS, false);
+            }
+        }).exceptionally(e -> {
+            log.error("Save thumbnail error", e);
+            return null;
+        });
+    }
+
+    /**
+     * Generate and upload the thumbnails of one image
+     *
+     * @return Thumbnail files to save, empty if the image cannot be read
+     */
+    private List<FileBO> createThumbnails(FileBO fileBO, String rootPath) {
+        var thumbnailFileBOS = new ArrayList<FileBO>(3);
+        try {
+            var image = read(FileUtil.file(tempPath + fileBO.getPath().replace(rootPath, "")), fileBO.getName(), largeFileSize);
+            // The smaller sizes are resized from the large one instead of the original
+            var largeImage = Thumbnails.of(image).size(largeFileSize, largeFileSize).asBufferedImage();
+            thumbnailFileBOS.add(uploadThumbnail(fileBO, LARGE_THUMBTHUMBNAIL, largeImage));
+            thumbnailFileBOS.add(uploadThumbnail(fileBO, MEDIUM_THUMBTHUMBNAIL,
+                    Thumbnails.of(largeImage).size(mediumFileSize, mediumFileSize).asBufferedImage()));
+            thumbnailFileBOS.add(uploadThumbnail(fileBO, SMALL_THUMBTHUMBNAIL,
+                    Thumbnails.of(largeImage).size(smallFileSize, smallFileSize).asBufferedImage()));
+            return thumbnailFileBOS;
+        } catch (Exception e) {
+            log.error("Create thumbnail error,filePath:{}", fileBO.getPath(), e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Thumbnail of an image in lazy mode. A missing thumbnail is generated from the image in MinIO and saved, the
+     * requests for the same thumbnail on this node wait for one generation, and a lock keeps other nodes from
+     * generating it at the same time. The original image is returned while another node generates the thumbnail,
+     * when the lazy pool is full or when the generation takes longer than the lazy timeout
+     *
+     * @param fileId   Image file id
+     * @param relation Thumbnail size
+     * @return Thumbnail file or original image with its url
+     */
+    public FileBO getThumbnail(Long fileId, RelationEnum relation) {
+        if (getThumbnailSize(relation) == null) {
+            throw new UsecaseException(UsecaseCode.PARAM_ERROR, "Not a thumbnail relation");
+        }
+        var thumbnailFileBO = findThumbnail(fileId, relation);
+        if (thumbnailFileBO != null) {
+            return thumbnailFileBO;
+        }
+        var key = fileId + ":" + relation;
+        var future = new CompletableFuture<FileBO>();
+        var generating = generatingThumbnails.putIfAbsent(key, future);
+        if (generating == null) {
+            generating = future;
+            try {
+                lazyExecutor.execute(() -> {
+                    try {
+                        future.complete(generateThumbnail(fileId, relation));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        generatingThumbnails.remove(key, future);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                generatingThumbnails.remove(key, future);
+                future.complete(null);
+            }
+        }
+        try {
+            var generatedFileBO = generating.get(lazyTimeout, TimeUnit.MILLISECONDS);
+            return generatedFileBO != null ? generatedFileBO : getOriginalImage(fileId);
+        } catch (TimeoutException e) {
+            log.warn("Create thumbnail timeout,fileId:{},relation:{}", fileId, relation);
+            return getOriginalImage(fileId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UsecaseException("Create thumbnail error");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UsecaseException) {
+                throw (UsecaseException) e.getCause();
+            }
+            log.error("Create thumbnail error,fileId:{},relation:{}", fileId, relation, e);
+            throw new UsecaseException("Create thumbnail error");
+        }
+    }
+
+    /**
+     * Generate a thumbnail unless another node is generating it
+     *
+     * @return Thumbnail file, null if another node holds the lock
+     */
+    private FileBO generateThumbnail(Long fileId, RelationEnum relation) throws Exception {
+        var lockKey = String.format("thumbnail:%s:%s", fileId, relation);
+        if (!distributedLock.tryLock(lockKey)) {
+            return null;
+        }
+        try {
+            // Another node may have generated it while this one waited for the lock
+            var thumbnailFileBO = findThumbnail(fileId, relation);
+            if (thumbnailFileBO != null) {
+                return thumbnailFileBO;
+            }
+            var file = fileDAO.getById(fileId);
+            if (file == null || !IMAGE_DATA_TYPE.contains(file.getType())) {
+                throw new UsecaseException(UsecaseCode.NOT_FOUND, "Image not found");
+            }
+            var fileBO = DefaultConverter.convert(file, FileBO.class);
+            var size = getThumbnailSize(relation);
+            BufferedImage image;
+            try (var inputStream = minioService.getObject(fileBO.getBucketName(), fileBO.getPath())) {
+                image = read(inputStream, fileBO.getName(), size);
+            }
+            var thumbnailImage = Thumbnails.of(image).size(size, size).asBufferedImage();
+            var thumbnailFileBOS = fileUseCase.saveBatchFile(file.getCreatedBy(),
+                    List.of(uploadThumbnail(fileBO, relation, thumbnailImage)), true);
+            return thumbnailFileBOS.get(0);
+        } finally {
+            distributedLock.unlock(lockKey);
+        }
+    }
+
+    private FileBO findThumbnail(Long fileId, RelationEnum relation) {
+        var file = fileDAO.getOne(Wrappers.lambdaQuery(File.class)
+                .eq(File::getRelationId, fileId)
+                .eq(File::getRelation, relation)
+                .last("limit 1"));
+        if (file == null) {
+            return null;
+        }
+        return withUrl(DefaultConverter.convert(file, FileBO.class));
+    }
+
+    private FileBO getOriginalImage(Long fileId) {
+        var file = fileDAO.getById(fileId);
+        if (file == null || !IMAGE_DATA_TYPE.contains(file.getType())) {
+            throw new UsecaseException(UsecaseCode.NOT_FOUND, "Image not found");
+        }
+        return withUrl(DefaultConverter.convert(file, FileBO.class));
+    }
+
+    private FileBO withUrl(FileBO fileBO) {
+        try {
+            fileBO.setUrl(minioService.getUrl(fileBO.getBucketName(), fileBO.getPath()));
+        } catch (Exception e) {
+            log.error("Get url error", e);
+            throw new UsecaseException("Get url error");
+        }
+        return fileBO;
+    }
+
+    private Integer getThumbnailSize(RelationEnum relation) {
+        switch (relation) {
+            case LARGE_THUMBTHUMBNAIL:
+                return largeFileSize;
+            case MEDIUM_THUMBTHUMBNAIL:
+                return mediumFileSize;
+            case SMALL_THUMBTHUMBNAIL:
+                return smallFileSize;
+            default:
+                return null;
+        }
+    }
+
+    private String getThumbnailPrefix(RelationEnum relation) {
+        switch (relation) {
+            case LARGE_THUMBTHUMBNAIL:
+                return large;
+            case MEDIUM_THUMBTHUMBNAIL:
+                return medium;
+            default:
+                return small;
+        }
+    }
+
+    /**
+     * Encode a thumbnail and upload it from memory next to its image
+     *
+     * @return Thumbnail file to save
+     */
+    private FileBO uploadThumbnail(FileBO fileBO, RelationEnum relation, BufferedImage image) throws Exception {
+        var filePath = fileBO.getPath();
+        var basePath = filePath.substring(0, filePath.lastIndexOf(SLANTING_BAR) + 1);
+        var fileName = filePath.substring(filePath.lastIndexOf(SLANTING_BAR) + 1);
+        var outputFormat = getOutputFormat(fileName);
+        var contentType = StrUtil.blankToDefault(FileUtil.getMimeType("thumbnail." + outputFormat), "image/" + outputFormat);
+        var bytes = encode(image, outputFormat);
+        var path = String.format("%s%s_%s.%s", basePath, FileUtil.getPrefix(fileName), getThumbnailPrefix(relation), outputFormat);
+        minioService.uploadFileWithoutUrl(fileBO.getBucketName(), path, new ByteArrayInputStream(bytes), contentType, bytes.length);
+        return FileBO.builder().name(fileBO.getName()).originalName(fileBO.getName())
+                .bucketName(fileBO.getBucketName()).type(contentType).size((long) bytes.length)
+                .path(path).relation(relation).relationId(fileBO.getId()).build();
+    }
+
+    private String getOutputFormat(String fileName) {
+        if (StrUtil.isNotEmpty(format)) {
+            return format.toLowerCase();
+        }
+        var suffix = FileUtil.getSuffix(fileName);
+        return suffix.equalsIgnoreCase(TIFF_SUFFIX) || suffix.equalsIgnoreCase(TIF_SUFFIX) ? JPG : suffix.toLowerCase();
+    }
+
+    /**
+     * Decode an image once. Images much larger than the thumbnail are decoded with source subsampling, keeping at
+     * least twice the thumbnail size, so the full raster of a huge image is never held in memory. The EXIF
+     * orientation is applied the way Thumbnailator does when reading files
+     *
+     * @param source  Image file or stream
+     * @param name    Image name for errors
+     * @param minSize Smallest size of the longer edge to keep
+     * @return Decoded image
+     */
+    private static BufferedImage read(Object source, String name, int minSize) throws IOException {
+        try (var input = ImageIO.createImageInputStream(source)) {
+            var readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No image reader for " + name);
+            }
+            var reader = readers.next();
+            try {
+                reader.setInput(input);
+                var param = reader.getDefaultReadParam();
+                var subsampling = Math.max(reader.getWidth(0), reader.getHeight(0)) / (minSize * 2);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                var orientation = ImageMetadataUtils.getOrientation(reader);
+                var image = reader.read(0, param);
+                return orientation == null || orientation == Orientation.TOP_LEFT ? image
+                        : ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encode(BufferedImage image, String outputFormat) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        var builder = Thumbnails.of(image).scale(1).outputFormat(outputFormat);
+        // JPEG has no alpha channel
+        if (JPG.equals(outputFormat) || "jpeg".equals(outputFormat)) {
+            builder.imageType(BufferedImage.TYPE_INT_RGB);
+        }
+        builder.toOutputStream(outputStream);
+        return outputStream.toByteArray();
+    }
+}
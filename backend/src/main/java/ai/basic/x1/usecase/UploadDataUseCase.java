@@ -8,6 +8,7 @@ import ai.basic.x1.adapter.port.dao.UploadRecordDAO;
 import ai.basic.x1.adapter.port.dao.mybatis.model.DataAnnotationObject;
 import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
 import ai.basic.x1.adapter.port.dao.mybatis.model.UploadRecord;
+import ai.basic.x1.adapter.port.metrics.DomainMetrics;
 import ai.basic.x1.adapter.port.minio.MinioProp;
 import ai.basic.x1.adapter.port.minio.MinioService;
 import ai.basic.x1.adapter.port.rpc.PointCloudConvertRenderHttpCaller;
@@ -17,26 +18,27 @@ import ai.basic.x1.entity.enums.*;
 import ai.basic.x1.usecase.exception.UsecaseCode;
 import ai.basic.x1.usecase.exception.UsecaseException;
 import ai.basic.x1.util.*;
+import ai.basic.x1.util.pipeline.SceneIndex;
+import ai.basic.x1.util.pipeline.SceneStreamCollector;
+import ai.basic.x1.util.pipeline.StageStatistics;
+import ai.basic.x1.util.pipeline.UploadPipeline;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.collection.ListUtil;
-import cn.hutool.core.date.StopWatch;
-import cn.hutool.core.img.Img;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.StreamProgress;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.lang.tree.Tree;
 import cn.hutool.core.lang.tree.TreeUtil;
-import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.*;
 import cn.hutool.crypto.SecureUtil;
+import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONUtil;
-import com.alibaba.ttl.TtlRunnable;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.io.CountingInputStream;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
@@ -50,13 +52,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static ai.basic.x1.entity.enums.DataUploadSourceEnum.LOCAL;
@@ -64,6 +69,7 @@ import static ai.basic.x1.entity.enums.DatasetTypeEnum.IMAGE;
 import static ai.basic.x1.entity.enums.DatasetTypeEnum.TEXT;
 import static ai.basic.x1.entity.enums.RelationEnum.*;
 import static ai.basic.x1.entity.enums.SplitTypeEnum.NOT_SPLIT;
+import static ai.basic.x1.entity.enums.UploadStageEnum.*;
 import static ai.basic.x1.entity.enums.UploadStatusEnum.*;
 import static ai.basic.x1.usecase.exception.UsecaseCode.*;
 import static ai.basic.x1.util.Constants.*;
@@ -71,6 +77,8 @@ import static ai.basic.x1.util.Constants.*;
 @Slf4j
 public class UploadDataUseCase {
 
+    private static final String DUPLICATE_DATA_NAMES = "Duplicate data names;";
+
     @Autowired
     private UploadUseCase uploadUseCase;
 
@@ -101,6 +109,9 @@ public class UploadDataUseCase {
     @Autowired
     private FileUseCase fileUseCase;
 
+    @Autowired
+    private ThumbnailUseCase thumbnailUseCase;
+
     @Autowired
     private DatasetClassUseCase datasetClassUseCase;
 
@@ -113,32 +124,34 @@ public class UploadDataUseCase {
     @Autowired
     private DatasetSimilarityJobUseCase datasetSimilarityJobUseCase;
 
-    @Value("${file.tempPath:/tmp/xtreme1/}")
-    private String tempPath;
+    @Autowired
+    private UploadPipeline uploadPipeline;
 
-    @Value("${file.size.large:400}")
-    private int largeFileSize;
+    @Autowired
+    private DomainMetrics domainMetrics;
 
-    @Value("${file.size.medium:200}")
-    private int mediumFileSize;
+    @Value("${file.tempPath:/tmp/xtreme1/}")
+    private String tempPath;
 
-    @Value("${file.size.small:100}")
-    private int smallFileSize;
+    @Value("${upload.url.whitelist}")
+    private String whitelist;
 
-    @Value("${file.prefix.large:large}")
-    private String large;
+    @Value("${upload.streaming.enabled:false}")
+    private boolean streamParseEnabled;
 
-    @Value("${file.prefix.medium:medium}")
-    private String medium;
+    @Value("${upload.batch.maxBytes:67108864}")
+    private long batchMaxBytes;
 
-    @Value("${file.prefix.small:small}")
-    private String small;
+    @Value("${upload.batch.maxFiles:500}")
+    private int batchMaxFiles;
 
-    @Value("${upload.url.whitelist}")
-    private String whitelist;
+    @Value("${upload.progressInterval:2000}")
+    private long progressInterval;
 
-    private static final ExecutorService executorService = ThreadUtil.newExecutor(2);
-    private static final ExecutorService parseExecutorService = ThreadUtil.newExecutor(5);
+    /**
+     * Stage statistics of the uploads in progress, key is upload record id
+     */
+    private final Map<Long, StageStatistics> stageStatisticsMap = new ConcurrentHashMap<>();
 
     private final FileFilter textFileFilter = file -> {
         //if the file extension is json return true, else false
@@ -148,7 +161,8 @@ public class UploadDataUseCase {
     private static final Integer PC_RENDER_IMAGE_WIDTH = 2000;
     private static final Integer PC_RENDER_IMAGE_HEIGHT = 2000;
 
-    private static final Integer RETRY_COUNT = 3;
+
+    private static final long STREAM_PROGRESS_BYTES = 10L * 1024 * 1024;
 
 
     /**
@@ -185,7 +199,10 @@ public class UploadDataUseCase {
             return uploadRecordBO.getSerialNumber();
         }
         dataInfoUploadBO.setUploadRecordId(uploadRecordBO.getId());
-        executorService.execute(Objects.requireNonNull(TtlRunnable.get(() -> {
+        stageStatisticsMap.put(uploadRecordBO.getId(), new StageStatistics());
+        uploadPipeline.submit(dataInfoUploadBO.getUserId(), dataInfoUploadBO.getDatasetId(), () -> {
+            var sample = domainMetrics.startTimer();
+            var success = false;
             try {
                 if (IMAGE.equals(dataset.getType()) && IMAGE_DATA_TYPE.contains(mimeType)) {
                     this.downloadAndDecompressionFile(dataInfoUploadBO, this::parseImageUploadFile);
@@ -193,13 +210,27 @@ public class UploadDataUseCase {
                     this.downloadAndDecompressionFile(dataInfoUploadBO, this::parseImageCompressedUploadFile);
                 } else if (TEXT.equals(dataset.getType())) {
                     this.downloadAndDecompressionFile(dataInfoUploadBO, this::parseTextUploadFile);
+                } else if (streamParseEnabled && !ResultTypeEnum.MODEL_RUN.equals(dataInfoUploadBO.getResultType())) {
+                    // Model run results need the total data number before parsing starts
+                    this.downloadAndStreamParseFile(dataInfoUploadBO);
                 } else {
                     this.downloadAndDecompressionFile(dataInfoUploadBO, this::parsePointCloudUploadFile);
                 }
-            } catch (IOException e) {
-                log.error("Download decompression file error", e);
+                success = true;
+            } catch (Exception e) {
+                // Parse errors such as an empty package reach here as UsecaseException, the upload must not stay in
+                // a running status
+                log.error("Upload data error,uploadRecordId:{},fileUrl:{}", uploadRecordBO.getId(), dataInfoUploadBO.getFileUrl(), e);
+                var errorMessage = e instanceof IOException ? "Download or decompress package error:" + e.getMessage() : e.getMessage();
+                uploadUseCase.updateUploadRecordStatus(uploadRecordBO.getId(), FAILED, errorMessage);
+                if (StrUtil.isNotEmpty(dataInfoUploadBO.getBaseSavePath())) {
+                    FileUtil.clean(dataInfoUploadBO.getBaseSavePath());
+                }
+            } finally {
+                stageStatisticsMap.remove(uploadRecordBO.getId());
+                domainMetrics.recordUpload(sample, dataset.getType(), success);
             }
-        })));
+        });
         return uploadRecordBO.getSerialNumber();
     }
 
@@ -230,9 +261,39 @@ public class UploadDataUseCase {
         dataInfoUploadBO.setFileName(FileUtil.getPrefix(path));
         var baseSavePath = String.format("%s%s/", tempPath, UUID.randomUUID().toString().replace("-", ""));
         var savePath = baseSavePath + FileUtil.getName(path);
+        var stageStatistics = getStageStatistics(dataInfoUploadBO.getUploadRecordId());
         FileUtil.mkParentDirs(savePath);
         // Download the compressed package locally
+        var packageSize = this.downloadFile(dataInfoUploadBO, fileUrl, savePath, stageStatistics);
+        dataInfoUploadBO.setSavePath(savePath);
+        dataInfoUploadBO.setBaseSavePath(baseSavePath);
+        // A single image does not need to be decompressed
+        if (IMAGE_DATA_TYPE.contains(FileUtil.getMimeType(path))) {
+            function.accept(dataInfoUploadBO);
+            FileUtil.clean(baseSavePath);
+            return;
+        }
+        // Unzip files
+        log.info("Start decompression,datasetId:{},filePath:{}", datasetId, savePath);
+        var decompressStart = System.nanoTime();
+        DecompressionFileUtils.decompress(savePath, baseSavePath);
+        stageStatistics.record(DECOMPRESS, 1, packageSize, decompressStart);
+        function.accept(dataInfoUploadBO);
+        FileUtil.clean(baseSavePath);
+    }
+
+    /**
+     * Download the compressed package locally
+     *
+     * @param dataInfoUploadBO Upload data parameter
+     * @param fileUrl          File url
+     * @param savePath         Save path
+     * @param stageStatistics  Stage statistics
+     * @return Package size
+     */
+    private long downloadFile(DataInfoUploadBO dataInfoUploadBO, String fileUrl, String savePath, StageStatistics stageStatistics) {
         log.info("Get compressed package start fileUrl:{},savePath:{}", fileUrl, savePath);
+        var downloadStart = System.nanoTime();
         HttpUtil.downloadFileFromUrl(fileUrl, FileUtil.newFile(savePath), new StreamProgress() {
             @Override
             public void start() {
@@ -256,24 +317,15 @@ public class UploadDataUseCase {
                 uploadUseCase.updateUploadRecordStatus(dataInfoUploadBO.getUploadRecordId(), DOWNLOAD_COMPLETED, null);
             }
         });
+        var packageSize = FileUtil.size(FileUtil.file(savePath));
+        stageStatistics.record(DOWNLOAD, 1, packageSize, downloadStart);
+        domainMetrics.recordUploadBytes(dataInfoUploadBO.getType(), packageSize);
         log.info("Get compressed package end fileUrl:{},savePath:{}", fileUrl, savePath);
-        dataInfoUploadBO.setSavePath(savePath);
-        dataInfoUploadBO.setBaseSavePath(baseSavePath);
-        // A single image does not need to be decompressed
-        if (IMAGE_DATA_TYPE.contains(FileUtil.getMimeType(path))) {
-            function.accept(dataInfoUploadBO);
-            FileUtil.clean(baseSavePath);
-            return;
-        }
-        // Unzip files
-        log.info("Start decompression,datasetId:{},filePath:{}", datasetId, savePath);
-        DecompressionFileUtils.decompress(savePath, baseSavePath);
-        function.accept(dataInfoUploadBO);
-        FileUtil.clean(baseSavePath);
+        return packageSize;
     }
 
     public void parsePointCloudUploadFile(DataInfoUploadBO dataInfoUploadBO) {
-        this.commonParseUploadFile(dataInfoUploadBO, pointCloudUploadUseCase::findPointCloudParentList, pointCloudUploadUseCase::getDataNames);
+        this.commonParseUploadFile(dataInfoUploadBO, pointCloudUploadUseCase::findPointCloudParentList, pointCloudUploadUseCase::isDataNameFile);
     }
 
     private void parseImageUploadFile(DataInfoUploadBO dataInfoUploadBO) {
@@ -288,12 +340,11 @@ public class UploadDataUseCase {
                 .createdBy(userId)
                 .isDeleted(false);
         var file = FileUtil.file(dataInfoUploadBO.getSavePath());
-        var imageExtraInfoBO = ImageExtraInfoBO.builder().height(Img.from(file).getImg().getHeight(null))
-                .width(Img.from(file).getImg().getWidth(null)).build();
+        var imageExtraInfoBO = getImageExtraInfo(file);
         var fileUrl = DecompressionFileUtils.removeUrlParameter(URLUtil.decode(dataInfoUploadBO.getFileUrl()));
         var path = fileUrl.replace(minioProp.getEndpoint(), "").replace(minioProp.getBucketName() + "/", "");
         var fileBO = FileBO.builder().name(file.getName()).originalName(file.getName()).bucketName(minioProp.getBucketName())
-                .size(file.length()).path(path).type(FileUtil.getMimeType(path)).extraInfo(JSONUtil.parseObj(imageExtraInfoBO)).build();
+                .size(file.length()).path(path).type(FileUtil.getMimeType(path)).extraInfo(imageExtraInfoBO == null ? null : JSONUtil.parseObj(imageExtraInfoBO)).build();
         var fileBOS = fileUseCase.saveBatchFile(userId, Collections.singletonList(fileBO));
         var fileNodeBO = DataInfoBO.FileNodeBO.builder().name(fileBO.getName())
                 .fileId(CollectionUtil.getFirst(fileBOS).getId()).type(Constants.FILE).build();
@@ -311,7 +362,7 @@ public class UploadDataUseCase {
         var rootPath = String.format("%s/%s", userId, datasetId);
         var newSavePath = tempPath + fileBO.getPath().replace(rootPath, "");
         FileUtil.copy(dataInfoUploadBO.getSavePath(), newSavePath, true);
-        createUploadThumbnail(userId, fileBOS, rootPath);
+        thumbnailUseCase.submit(userId, fileBOS, rootPath).join();
         FileUtil.clean(newSavePath);
         var uploadRecordBO = UploadRecordBO.builder()
                 .id(dataInfoUploadBO.getUploadRecordId()).totalDataNum(1L).parsedDataNum(1L).errorMessage(errorBuilder.toString()).status(PARSE_COMPLETED).build();
@@ -324,7 +375,6 @@ public class UploadDataUseCase {
         var datasetId = dataInfoUploadBO.getDatasetId();
         var files = FileUtil.loopFiles(Paths.get(dataInfoUploadBO.getBaseSavePath()), 10, textFileFilter);
         var rootPath = String.format("%s/%s", userId, datasetId);
-        var errorBuilder = new StringBuilder();
         var dataInfoBOBuilder = DataInfoBO.builder().datasetId(datasetId)
                 .parentId(Constants.DEFAULT_PARENT_ID)
                 .type(ItemTypeEnum.SINGLE_DATA)
@@ -335,61 +385,42 @@ public class UploadDataUseCase {
                 .createdBy(userId)
                 .isDeleted(false);
         var totalDataNum = Long.valueOf(files.size());
-        AtomicReference<Long> parsedDataNum = new AtomicReference<>(0L);
+        var parsedDataNum = new AtomicLong(0L);
         var uploadRecordBOBuilder = UploadRecordBO.builder()
                 .id(dataInfoUploadBO.getUploadRecordId()).totalDataNum(totalDataNum).parsedDataNum(parsedDataNum.get()).status(UploadStatusEnum.PARSING);
         if (CollectionUtil.isNotEmpty(files)) {
-            CountDownLatch countDownLatch = new CountDownLatch(files.size());
-            files.forEach(f -> parseExecutorService.submit(Objects.requireNonNull(TtlRunnable.get(() -> {
-                try {
-                    var dataInfoBOList = new ArrayList<DataInfoBO>();
-                    var textJson = JSONUtil.readJSONArray(f, StandardCharsets.UTF_8);
-                    var list = JSONUtil.toList(textJson.toString(), TextDataContentBO.class);
-                    var pathList = this.getTreeAllPath(list);
-                    if (CollUtil.isEmpty(pathList)) {
-                        return;
-                    }
-                    var newTextFileList = new ArrayList<File>();
-                    AtomicInteger i = new AtomicInteger(1);
-                    pathList.forEach(path -> {
-                        ListUtil.reverse(path);
-                        var suffix = FileUtil.getSuffix(f);
-                        var originalPath = f.getAbsolutePath();
-                        var newPath = String.format("%s_%s.%s", StrUtil.removeSuffix(originalPath, String.format(".%s", suffix)), i.get(), suffix);
-                        var file = FileUtil.writeString(JSONUtil.toJsonStr(path), newPath, StandardCharsets.UTF_8);
-                        newTextFileList.add(file);
-                        i.getAndIncrement();
-                    });
-                    var fileBOS = uploadFileList(rootPath, newTextFileList, dataInfoUploadBO);
-                    createUploadThumbnail(userId, fileBOS, rootPath);
-                    fileBOS.forEach(fileBO -> {
-                        var tempDataId = ByteUtil.bytesToLong(SecureUtil.md5().digest(UUID.randomUUID().toString()));
-                        var file = FileUtil.file(tempPath + fileBO.getPath().replace(rootPath, ""));
-                        var fileNodeBO = DataInfoBO.FileNodeBO.builder().name(fileBO.getName())
-                                .fileId(fileBO.getId()).type(FILE).build();
-                        var dataName = getFilename(file);
-                        var dataInfoBO = dataInfoBOBuilder.name(dataName).orderName(NaturalSortUtil.convert(dataName)).content(Collections.singletonList(fileNodeBO)).splitType(NOT_SPLIT).tempDataId(tempDataId).build();
-                        dataInfoBOList.add(dataInfoBO);
-                    });
-                    if (CollectionUtil.isNotEmpty(dataInfoBOList)) {
-                        insertBatch(dataInfoBOList, datasetId, errorBuilder, Constants.DEFAULT_PARENT_ID);
-                    }
-                } catch (Exception e) {
-                    log.error("Handle data error", e);
-                } finally {
-                    parsedDataNum.set(parsedDataNum.get() + 1);
-                    var uploadRecordBO = uploadRecordBOBuilder.parsedDataNum(parsedDataNum.get()).build();
-                    uploadRecordDAO.updateById(DefaultConverter.convert(uploadRecordBO, UploadRecord.class));
-                    countDownLatch.countDown();
-                }
-
-            }))));
-            try {
-                countDownLatch.await();
-            } catch (InterruptedException e) {
-                log.error("Parse image count down latch error", e);
-            }
-            var uploadRecordBO = uploadRecordBOBuilder.parsedDataNum(totalDataNum).errorMessage(errorBuilder.toString()).status(PARSE_COMPLETED).build();
+            var stageStatistics = getStageStatistics(dataInfoUploadBO.getUploadRecordId());
+            var context = new ParseContext(dataInfoUploadBO, rootPath, null, false, stageStatistics,
+                    uploadPipeline.newInFlightLimiter());
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            files.forEach(f -> {
+                context.inFlightLimiter.acquireUninterruptibly();
+                // Errors of the file, its stages run one after another
+                var errorBuilder = new StringBuilder();
+                CompletableFuture<Void> future = uploadPipeline.supplyAsync(SCAN, () -> this.splitTextFile(f, stageStatistics))
+                        .thenApplyAsync(newTextFileList -> this.uploadTextFileList(newTextFileList, rootPath, dataInfoUploadBO, dataInfoBOBuilder, stageStatistics),
+                                uploadPipeline.getExecutor(UPLOAD))
+                        .thenAcceptAsync(dataInfoBOList -> {
+                            if (CollectionUtil.isNotEmpty(dataInfoBOList)) {
+                                var start = System.nanoTime();
+                                insertBatch(dataInfoBOList, datasetId, errorBuilder, Constants.DEFAULT_PARENT_ID);
+                                stageStatistics.record(INSERT, dataInfoBOList.size(), 0, start);
+                            }
+                        }, uploadPipeline.getExecutor(INSERT))
+                        .handle((r, e) -> {
+                            if (ObjectUtil.isNotNull(e)) {
+                                log.error("Handle data error", e);
+                            }
+                            context.addError(errorBuilder);
+                            context.inFlightLimiter.release();
+                            updateParseProgress(dataInfoUploadBO.getUploadRecordId(), totalDataNum, parsedDataNum.incrementAndGet(), stageStatistics);
+                            return null;
+                        });
+                futures.add(future);
+            });
+            awaitAll(futures);
+            var uploadRecordBO = uploadRecordBOBuilder.parsedDataNum(totalDataNum).errorMessage(context.getErrorMessage())
+                    .stageStatistics(stageStatistics.toJson()).status(PARSE_COMPLETED).build();
             uploadRecordDAO.updateById(DefaultConverter.convert(uploadRecordBO, UploadRecord.class));
             datasetSimilarityJobUseCase.submitJob(datasetId);
         } else {
@@ -399,6 +430,69 @@ public class UploadDataUseCase {
         }
     }
 
+    /**
+     * Split a text file into one file per conversation path
+     *
+     * @param textFile        Text file
+     * @param stageStatistics Stage statistics
+     * @return Split file list
+     */
+    private List<File> splitTextFile(File textFile, StageStatistics stageStatistics) {
+        var start = System.nanoTime();
+        var textJson = JSONUtil.readJSONArray(textFile, StandardCharsets.UTF_8);
+        var list = JSONUtil.toList(textJson.toString(), TextDataContentBO.class);
+        var pathList = this.getTreeAllPath(list);
+        var newTextFileList = new ArrayList<File>();
+        AtomicInteger i = new AtomicInteger(1);
+        pathList.forEach(path -> {
+            ListUtil.reverse(path);
+            var suffix = FileUtil.getSuffix(textFile);
+            var originalPath = textFile.getAbsolutePath();
+            var newPath = String.format("%s_%s.%s", StrUtil.removeSuffix(originalPath, String.format(".%s", suffix)), i.get(), suffix);
+            var file = FileUtil.writeString(JSONUtil.toJsonStr(path), newPath, StandardCharsets.UTF_8);
+            newTextFileList.add(file);
+            i.getAndIncrement();
+        });
+        stageStatistics.record(SCAN, newTextFileList.size(), textFile.length(), start);
+        return newTextFileList;
+    }
+
+    /**
+     * Upload split text files and assemble the data of each file
+     *
+     * @param newTextFileList   Split file list
+     * @param rootPath          Root path
+     * @param dataInfoUploadBO  Data upload information
+     * @param dataInfoBOBuilder Data builder
+     * @param stageStatistics   Stage statistics
+     * @return Data list
+     */
+    private List<DataInfoBO> uploadTextFileList(List<File> newTextFileList, String rootPath, DataInfoUploadBO dataInfoUploadBO,
+                                                DataInfoBO.DataInfoBOBuilder dataInfoBOBuilder, StageStatistics stageStatistics) {
+        if (CollUtil.isEmpty(newTextFileList)) {
+            return List.of();
+        }
+        var start = System.nanoTime();
+        var dataInfoBOList = new ArrayList<DataInfoBO>();
+        var fileBOS = uploadFileList(rootPath, newTextFileList, dataInfoUploadBO);
+        fileBOS.forEach(fileBO -> {
+            var tempDataId = ByteUtil.bytesToLong(SecureUtil.md5().digest(UUID.randomUUID().toString()));
+            var file = FileUtil.file(tempPath + fileBO.getPath().replace(rootPath, ""));
+            var fileNodeBO = DataInfoBO.FileNodeBO.builder().name(fileBO.getName())
+                    .fileId(fileBO.getId()).type(FILE).build();
+            var dataName = getFilename(file);
+            var dataInfoBO = dataInfoBOBuilder.build();
+            dataInfoBO.setName(dataName);
+            dataInfoBO.setOrderName(NaturalSortUtil.convert(dataName));
+            dataInfoBO.setContent(Collections.singletonList(fileNodeBO));
+            dataInfoBO.setSplitType(NOT_SPLIT);
+            dataInfoBO.setTempDataId(tempDataId);
+            dataInfoBOList.add(dataInfoBO);
+        });
+        stageStatistics.record(UPLOAD, newTextFileList.size(), newTextFileList.stream().mapToLong(File::length).sum(), start);
+        return dataInfoBOList;
+    }
+
     public void parseImageCompressedUploadFile(DataInfoUploadBO dataInfoUploadBO) {
         if (DataFormatEnum.COCO.equals(dataInfoUploadBO.getDataFormat())) {
             var respPath = cocoConvertToX1(dataInfoUploadBO);
@@ -414,7 +508,7 @@ public class UploadDataUseCase {
             FileUtil.del(respPath);
         }
         this.addDeviceName(DatasetTypeEnum.IMAGE, dataInfoUploadBO.getSavePath());
-        this.commonParseUploadFile(dataInfoUploadBO, imageUploadUseCase::findImageParentList, imageUploadUseCase::getDataNames);
+        this.commonParseUploadFile(dataInfoUploadBO, imageUploadUseCase::findImageParentList, imageUploadUseCase::isDataNameFile);
     }
 
     public List<String> addDeviceName(DatasetTypeEnum datasetType, String dataPath) {
@@ -452,11 +546,9 @@ public class UploadDataUseCase {
     }
 
     public void commonParseUploadFile(DataInfoUploadBO dataInfoUploadBO, BiConsumer<String, Set<File>> sceneFileListConsumer,
-                                      Function<File, List<String>> getDataNamesFunction) {
-        var errorBuilder = new StringBuilder();
+                                      Predicate<File> dataNameFilter) {
         var datasetId = dataInfoUploadBO.getDatasetId();
         var userId = dataInfoUploadBO.getUserId();
-        var datasetType = dataInfoUploadBO.getType();
         // Get the parent folder whose folder name is image_. If it is a point cloud, it contains lidar_point_cloud_parent folder.
         var sceneFileList = new HashSet<File>();
         sceneFileListConsumer.accept(dataInfoUploadBO.getBaseSavePath(), sceneFileList);
@@ -468,10 +560,11 @@ public class UploadDataUseCase {
             uploadUseCase.updateUploadRecordStatus(dataInfoUploadBO.getUploadRecordId(), FAILED, COMPRESSED_FILE_ERROR.getMessage());
             return;
         }
-        var totalDataNum = sceneFileList.stream().filter(Objects::nonNull).mapToLong(file -> getDataNamesFunction.apply(file).size()).sum();
-        AtomicReference<Long> parsedDataNum = new AtomicReference<>(0L);
-        var uploadRecordBOBuilder = UploadRecordBO.builder()
-                .id(dataInfoUploadBO.getUploadRecordId()).totalDataNum(totalDataNum).parsedDataNum(parsedDataNum.get()).status(PARSING);
+        // Each scene is walked once, the index gives both the total data number and the files of each data
+        var sceneIndexMap = new LinkedHashMap<File, SceneIndex>();
+        sceneFileList.stream().filter(Objects::nonNull)
+                .forEach(sceneFile -> sceneIndexMap.put(sceneFile, this.indexScene(sceneFile, dataInfoUploadBO.getType(), dataNameFilter)));
+        var totalDataNum = sceneIndexMap.values().stream().filter(Objects::nonNull).mapToLong(SceneIndex::getDataNum).sum();
         if (totalDataNum <= 0) {
             uploadUseCase.updateUploadRecordStatus(dataInfoUploadBO.getUploadRecordId(), FAILED, COMPRESSED_PACKAGE_EMPTY.getMessage());
             throw new UsecaseException(COMPRESSED_PACKAGE_EMPTY);
@@ -483,84 +576,307 @@ public class UploadDataUseCase {
                 sourceId = modelRunRecordUseCase.save(dataInfoUploadBO.getModelId(), datasetId, totalDataNum);
             }
         }
-        var dataAnnotationObjectBOBuilder = DataAnnotationObjectBO.builder()
-                .datasetId(datasetId).createdBy(userId).createdAt(OffsetDateTime.now()).sourceId(sourceId);
-        sceneFileList.forEach(sceneFile -> {
-            Long sceneId;
-            try {
-                sceneId = this.saveScene(sceneFile, dataInfoUploadBO);
-            } catch (DuplicateKeyException e) {
-                log.error("The scene already exists,scene name is {}", sceneFile.getName());
-                errorBuilder.append("Duplicate scene names:").append(sceneFile.getName()).append(";");
-                return;
-            }
+        var context = new ParseContext(dataInfoUploadBO, rootPath, sourceId, false,
+                getStageStatistics(dataInfoUploadBO.getUploadRecordId()), uploadPipeline.newInFlightLimiter());
+        context.totalDataNum.set(totalDataNum);
+        sceneIndexMap.forEach((sceneFile, sceneIndex) -> this.parseScene(sceneFile, sceneIndex, context));
+        awaitAll(context.futures);
+        this.finishParse(context);
+    }
 
-            var dataNameList = getDataNamesFunction.apply(sceneFile);
-            if (CollectionUtil.isEmpty(dataNameList)) {
-                log.error("The file in {} folder is empty", sceneFile);
-                errorBuilder.append("The file in ").append(sceneFile.getName()).append(" folder is empty;");
-                return;
-            }
-            log.info("Get data name,pointCloudParentName:{},dataName:{} ", sceneFile, JSONUtil.toJsonStr(dataNameList));
-            var dataInfoBOBuilder = DataInfoBO.builder().datasetId(datasetId)
-                    .parentId(sceneId)
-                    .status(DataStatusEnum.VALID)
-                    .annotationStatus(DataAnnotationStatusEnum.NOT_ANNOTATED)
-                    .splitType(NOT_SPLIT)
-                    .createdAt(OffsetDateTime.now())
-                    .updatedAt(OffsetDateTime.now())
-                    .createdBy(userId)
-                    .isDeleted(false);
-            var list = ListUtil.split(dataNameList, 5);
-            CountDownLatch countDownLatch = new CountDownLatch(list.size());
-            list.forEach(subDataNameList -> parseExecutorService.submit(Objects.requireNonNull(TtlRunnable.get(() -> {
-                var dataInfoBOList = new ArrayList<DataInfoBO>();
-                var dataAnnotationObjectBOList = new ArrayList<DataAnnotationObjectBO>();
-                try {
-                    subDataNameList.forEach(dataName -> {
-                        var dataFiles = this.getSingleDataFiles(sceneFile, dataName, errorBuilder, datasetType);
-                        if (CollectionUtil.isNotEmpty(dataFiles)) {
-                            log.info("dataStart,dataName:{},dataFiles:{}",dataName,dataFiles.stream().map(File::getName).collect(Collectors.toList()));
-                            var tempDataId = ByteUtil.bytesToLong(SecureUtil.md5().digest(UUID.randomUUID().toString()));
-                            var dataAnnotationObjectBO = dataAnnotationObjectBOBuilder.build();
-                            dataAnnotationObjectBO.setDataId(tempDataId);
-                            handleDataResult(sceneFile, dataName, dataAnnotationObjectBO, dataAnnotationObjectBOList, errorBuilder);
-                            var fileNodeList = this.assembleContent(dataFiles, rootPath, dataInfoUploadBO);
-                            log.info("Get data content,frameName:{},content:{} ", dataName, JSONUtil.toJsonStr(fileNodeList));
-                            var dataInfoBO = dataInfoBOBuilder.build();
-                            dataInfoBO.setName(dataName);
-                            dataInfoBO.setOrderName(NaturalSortUtil.convert(dataName));
-                            dataInfoBO.setContent(fileNodeList);
-                            dataInfoBO.setTempDataId(tempDataId);
-                            dataInfoBOList.add(dataInfoBO);
-                        }
-                    });
-                    if (CollectionUtil.isNotEmpty(dataInfoBOList)) {
-                        log.info("dataInfoBOList:{}",dataInfoBOList.stream().map(DataInfoBO::getTempDataId).collect(Collectors.toList()));
-                        log.info("dataAnnotationObjectBOList:{}",dataAnnotationObjectBOList.stream().map(DataAnnotationObjectBO::getDataId).collect(Collectors.toList()));
-                        var resDataInfoList = this.insertBatch(dataInfoBOList, datasetId, errorBuilder, sceneId);
-                        this.saveBatchDataResult(resDataInfoList, dataAnnotationObjectBOList);
+    /**
+     * Download the package and decompress it while downloading, each scene is parsed as soon as it is
+     * decompressed and its folder is deleted once parsed, so that the package and the whole decompressed tree
+     * never need to be on disk at the same time. TAR packages are decompressed from the download stream,
+     * ZIP packages need the central directory at the end of the file and are downloaded first.
+     *
+     * @param dataInfoUploadBO Upload data parameter
+     */
+    private void downloadAndStreamParseFile(DataInfoUploadBO dataInfoUploadBO) throws IOException {
+        var fileUrl = URLUtil.decode(dataInfoUploadBO.getFileUrl());
+        var uploadRecordId = dataInfoUploadBO.getUploadRecordId();
+        var path = DecompressionFileUtils.removeUrlParameter(fileUrl);
+        dataInfoUploadBO.setFileName(FileUtil.getPrefix(path));
+        var baseSavePath = String.format("%s%s/", tempPath, UUID.randomUUID().toString().replace("-", ""));
+        var savePath = baseSavePath + FileUtil.getName(path);
+        FileUtil.mkParentDirs(savePath);
+        dataInfoUploadBO.setSavePath(savePath);
+        dataInfoUploadBO.setBaseSavePath(baseSavePath);
+        var rootPath = String.format("%s/%s", dataInfoUploadBO.getUserId(), dataInfoUploadBO.getDatasetId());
+        var sourceId = ObjectUtil.isNotNull(dataInfoUploadBO.getResultType()) ? -1L : null;
+        var stageStatistics = getStageStatistics(uploadRecordId);
+        var context = new ParseContext(dataInfoUploadBO, rootPath, sourceId, true, stageStatistics, uploadPipeline.newInFlightLimiter());
+        var collector = new SceneStreamCollector(pointCloudUploadUseCase::getSceneFile, sceneFile ->
+                this.parseScene(sceneFile, this.indexScene(sceneFile, dataInfoUploadBO.getType(), pointCloudUploadUseCase::isDataNameFile), context)
+                        .whenComplete((r, e) -> FileUtil.del(sceneFile)));
+        log.info("Stream parse start,datasetId:{},fileUrl:{},savePath:{}", dataInfoUploadBO.getDatasetId(), fileUrl, savePath);
+        try {
+            if (DecompressionFileUtils.isStreamable(path)) {
+                uploadUseCase.updateUploadRecordStatus(uploadRecordId, DOWNLOADING, null);
+                var start = System.nanoTime();
+                try (var response = HttpRequest.get(fileUrl).executeAsync()) {
+                    if (!response.isOk()) {
+                        throw new IOException(String.format("Download file error,status:%s", response.getStatus()));
+                    }
+                    try (var inputStream = new CountingInputStream(response.bodyStream())) {
+                        var totalFileSize = response.contentLength();
+                        var reportedSize = new AtomicLong(0L);
+                        DecompressionFileUtils.decompress(inputStream, path, baseSavePath, file -> {
+                            var downloadedFileSize = inputStream.getCount();
+                            if (downloadedFileSize - reportedSize.get() >= STREAM_PROGRESS_BYTES) {
+                                reportedSize.set(downloadedFileSize);
+                                uploadRecordDAO.updateById(UploadRecord.builder().id(uploadRecordId)
+                                        .totalFileSize(totalFileSize).downloadedFileSize(downloadedFileSize).build());
+                            }
+                            collector.accept(file);
+                        });
+                        stageStatistics.record(DOWNLOAD, 1, inputStream.getCount(), start);
+                        domainMetrics.recordUploadBytes(dataInfoUploadBO.getType(), inputStream.getCount());
+                        uploadRecordDAO.updateById(UploadRecord.builder().id(uploadRecordId)
+                                .totalFileSize(inputStream.getCount()).downloadedFileSize(inputStream.getCount()).build());
                     }
-                } catch (Exception e) {
-                    log.error("Handle data error", e);
-                } finally {
-                    parsedDataNum.set(parsedDataNum.get() + subDataNameList.size());
-                    var uploadRecordBO = uploadRecordBOBuilder.parsedDataNum(parsedDataNum.get()).build();
-                    uploadRecordDAO.updateById(DefaultConverter.convert(uploadRecordBO, UploadRecord.class));
-                    countDownLatch.countDown();
                 }
-            }))));
-            try {
-                countDownLatch.await();
-            } catch (InterruptedException e) {
-                log.error("Parse point cloud count down latch error", e);
+            } else {
+                var packageSize = this.downloadFile(dataInfoUploadBO, fileUrl, savePath, stageStatistics);
+                var start = System.nanoTime();
+                DecompressionFileUtils.decompress(savePath, baseSavePath, collector);
+                stageStatistics.record(DECOMPRESS, 1, packageSize, start);
             }
+        } catch (IOException e) {
+            // The package is incomplete, the last scene is not flushed and the upload is not completed with part of
+            // the data. Scenes already handed over are awaited before their folders are removed
+            log.error("Stream parse error,uploadRecordId:{},fileUrl:{}", uploadRecordId, fileUrl, e);
+            awaitAll(context.futures);
+            uploadUseCase.updateUploadRecordStatus(uploadRecordId, FAILED, "Download or decompress package error:" + e.getMessage());
+            FileUtil.clean(baseSavePath);
+            return;
+        }
+        collector.finish();
+        collector.getLateScenes().forEach(sceneFile -> context.addError("Files of scene " + sceneFile.getName()
+                + " are not together in the package, some of them are not parsed;"));
+        awaitAll(context.futures);
+        if (context.totalDataNum.get() <= 0) {
+            uploadUseCase.updateUploadRecordStatus(uploadRecordId, FAILED, COMPRESSED_PACKAGE_EMPTY.getMessage());
+        } else {
+            this.finishParse(context);
+        }
+        FileUtil.clean(baseSavePath);
+    }
+
+    /**
+     * Parse a scene, its data are split into chunks and passed through the parse stages
+     *
+     * @param sceneFile  Scene folder
+     * @param sceneIndex Index of the scene folder, null if it could not be read
+     * @param context    Parse context
+     * @return Future completed when all data of the scene are parsed
+     */
+    private CompletableFuture<Void> parseScene(File sceneFile, SceneIndex sceneIndex, ParseContext context) {
+        var dataInfoUploadBO = context.dataInfoUploadBO;
+        var datasetId = dataInfoUploadBO.getDatasetId();
+        var stageStatistics = context.stageStatistics;
+        var sample = domainMetrics.startTimer();
+        Long sceneId;
+        try {
+            sceneId = this.saveScene(sceneFile, dataInfoUploadBO);
+        } catch (DuplicateKeyException e) {
+            log.error("The scene already exists,scene name is {}", sceneFile.getName());
+            context.addError("Duplicate scene names:" + sceneFile.getName() + ";");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (ObjectUtil.isNull(sceneIndex)) {
+            context.addError("Read " + sceneFile.getName() + " folder error;");
+            return CompletableFuture.completedFuture(null);
+        }
+        var dataNameList = sceneIndex.getDataNames();
+        if (CollectionUtil.isEmpty(dataNameList)) {
+            log.error("The file in {} folder is empty", sceneFile);
+            context.addError("The file in " + sceneFile.getName() + " folder is empty;");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (context.streaming) {
+            context.totalDataNum.addAndGet(dataNameList.size());
+        }
+        log.info("Get data name,pointCloudParentName:{},dataName:{} ", sceneFile, JSONUtil.toJsonStr(dataNameList));
+        var dataInfoBOBuilder = DataInfoBO.builder().datasetId(datasetId)
+                .parentId(sceneId)
+                .status(DataStatusEnum.VALID)
+                .annotationStatus(DataAnnotationStatusEnum.NOT_ANNOTATED)
+                .splitType(NOT_SPLIT)
+                .createdAt(OffsetDateTime.now())
+                .updatedAt(OffsetDateTime.now())
+                .createdBy(dataInfoUploadBO.getUserId())
+                .isDeleted(false);
+        var sceneFutures = new ArrayList<CompletableFuture<Void>>();
+        sceneIndex.splitDataNames(batchMaxBytes, batchMaxFiles).forEach(subDataNameList -> {
+            // Bound the chunks of this upload in the parse stages, the stage queues are shared by all uploads
+            context.inFlightLimiter.acquireUninterruptibly();
+            var chunk = new UploadChunk(sceneIndex, sceneId, subDataNameList);
+            CompletableFuture<Void> future = uploadPipeline.supplyAsync(SCAN, () -> this.scanChunk(chunk, dataInfoBOBuilder,
+                            context.dataAnnotationObjectBOBuilder, context.rootPath, stageStatistics))
+                    .thenApplyAsync(c -> this.uploadChunk(c, context.rootPath, dataInfoUploadBO, stageStatistics), uploadPipeline.getExecutor(UPLOAD))
+                    .thenApplyAsync(c -> this.thumbnailChunk(c, context.rootPath, dataInfoUploadBO.getUserId(), stageStatistics), uploadPipeline.getExecutor(THUMBNAIL))
+                    .thenAcceptAsync(c -> this.insertChunk(c, datasetId, stageStatistics), uploadPipeline.getExecutor(INSERT))
+                    .handle((r, e) -> {
+                        if (ObjectUtil.isNotNull(e)) {
+                            log.error("Handle data error", e);
+                        }
+                        context.addError(chunk.errorBuilder);
+                        context.inFlightLimiter.release();
+                        updateParseProgress(context, context.parsedDataNum.addAndGet(subDataNameList.size()));
+                        return null;
+                    });
+            // The scene is done, and its temp files may be removed, once the thumbnails of its images are saved as well
+            sceneFutures.add(future.thenCompose(r -> chunk.thumbnailFuture));
         });
-        var uploadRecordBO = uploadRecordBOBuilder.parsedDataNum(totalDataNum).errorMessage(errorBuilder.toString()).status(PARSE_COMPLETED).build();
+        context.futures.addAll(sceneFutures);
+        return CompletableFuture.allOf(sceneFutures.toArray(new CompletableFuture[0]))
+                .whenComplete((r, e) -> domainMetrics.recordSceneParse(sample, dataInfoUploadBO.getType(), dataNameList.size()));
+    }
+
+    /**
+     * Complete the upload record after all scenes are parsed
+     *
+     * @param context Parse context
+     */
+    private void finishParse(ParseContext context) {
+        var dataInfoUploadBO = context.dataInfoUploadBO;
+        var uploadRecordBO = UploadRecordBO.builder()
+                .id(dataInfoUploadBO.getUploadRecordId())
+                .totalDataNum(context.totalDataNum.get())
+                .parsedDataNum(context.totalDataNum.get())
+                .errorMessage(context.getErrorMessage())
+                .stageStatistics(context.stageStatistics.toJson())
+                .status(PARSE_COMPLETED).build();
         uploadRecordDAO.updateById(DefaultConverter.convert(uploadRecordBO, UploadRecord.class));
-        if (ObjectUtil.isNotNull(sourceId) && ResultTypeEnum.MODEL_RUN.equals(dataInfoUploadBO.getResultType())) {
-            modelRunRecordUseCase.updateById(sourceId, RunStatusEnum.SUCCESS);
+        if (ObjectUtil.isNotNull(context.sourceId) && ResultTypeEnum.MODEL_RUN.equals(dataInfoUploadBO.getResultType())) {
+            modelRunRecordUseCase.updateById(context.sourceId, RunStatusEnum.SUCCESS);
+        }
+    }
+
+    /**
+     * Scan stage, find the files of each data in the chunk and assemble the content with temporary file ids
+     */
+    private UploadChunk scanChunk(UploadChunk chunk, DataInfoBO.DataInfoBOBuilder dataInfoBOBuilder,
+                                  DataAnnotationObjectBO.DataAnnotationObjectBOBuilder dataAnnotationObjectBOBuilder,
+                                  String rootPath, StageStatistics stageStatistics) {
+        var start = System.nanoTime();
+        var errorBuilder = chunk.errorBuilder;
+        chunk.dataNames.forEach(dataName -> {
+            var dataFiles = this.getSingleDataFiles(chunk.sceneIndex, dataName, errorBuilder);
+            if (CollectionUtil.isNotEmpty(dataFiles)) {
+                log.info("dataStart,dataName:{},dataFiles:{}", dataName, dataFiles.stream().map(File::getName).collect(Collectors.toList()));
+                var tempDataId = ByteUtil.bytesToLong(SecureUtil.md5().digest(UUID.randomUUID().toString()));
+                var dataAnnotationObjectBO = dataAnnotationObjectBOBuilder.build();
+                dataAnnotationObjectBO.setDataId(tempDataId);
+                handleDataResult(chunk.sceneIndex.getResultFile(dataName), dataName, dataAnnotationObjectBO, chunk.dataAnnotationObjectBOList, errorBuilder);
+                var dataInfoBO = dataInfoBOBuilder.build();
+                dataInfoBO.setName(dataName);
+                dataInfoBO.setOrderName(NaturalSortUtil.convert(dataName));
+                dataInfoBO.setContent(this.assembleContent(dataFiles, rootPath, chunk.files));
+                dataInfoBO.setTempDataId(tempDataId);
+                chunk.dataInfoBOList.add(dataInfoBO);
+            }
+        });
+        stageStatistics.record(SCAN, chunk.dataNames.size(), chunk.files.stream().mapToLong(File::length).sum(), start);
+        return chunk;
+    }
+
+    /**
+     * Upload stage, upload all files of the chunk and replace the temporary file ids in content
+     */
+    private UploadChunk uploadChunk(UploadChunk chunk, String rootPath, DataInfoUploadBO dataInfoUploadBO, StageStatistics stageStatistics) {
+        if (CollectionUtil.isEmpty(chunk.files)) {
+            return chunk;
+        }
+        var start = System.nanoTime();
+        chunk.fileBOS = uploadFileList(rootPath, chunk.files, dataInfoUploadBO);
+        var fileIdMap = chunk.fileBOS.stream().collect(Collectors.toMap(FileBO::getPathHash, FileBO::getId, (k1, k2) -> k1));
+        chunk.dataInfoBOList.forEach(dataInfoBO -> {
+            replaceFileId(dataInfoBO.getContent(), fileIdMap);
+            dataInfoBO.getContent().sort(Comparator.comparing(DataInfoBO.FileNodeBO::getName));
+            log.info("Get data content,frameName:{},content:{} ", dataInfoBO.getName(), JSONUtil.toJsonStr(dataInfoBO.getContent()));
+        });
+        stageStatistics.record(UPLOAD, chunk.files.size(), chunk.files.stream().mapToLong(File::length).sum(), start);
+        return chunk;
+    }
+
+    /**
+     * Thumbnail stage, hand the images over to the thumbnail pool and render the point cloud images, the render files
+     * are saved in one batch. The chunk goes on to the insert stage without waiting for the image thumbnails
+     */
+    private UploadChunk thumbnailChunk(UploadChunk chunk, String rootPath, Long userId, StageStatistics stageStatistics) {
+        if (CollectionUtil.isEmpty(chunk.fileBOS)) {
+            return chunk;
+        }
+        var start = System.nanoTime();
+        var imageCount = chunk.fileBOS.stream().filter(fileBO -> IMAGE_DATA_TYPE.contains(fileBO.getType())).count();
+        chunk.thumbnailFuture = thumbnailUseCase.submit(userId, chunk.fileBOS, rootPath)
+                .whenComplete((r, e) -> stageStatistics.record(THUMBNAIL, imageCount, 0, start));
+        var relationFileBOS = new ArrayList<FileBO>();
+        var pcdFileBOS = chunk.fileBOS.stream().filter(fileBO -> fileBO.getName().toUpperCase().endsWith(PCD_SUFFIX))
+                .collect(Collectors.toList());
+        if (CollectionUtil.isNotEmpty(pcdFileBOS)) {
+            // Files are saved without urls on import, the render service needs the internal url of the point clouds
+            fileUseCase.setInternalUrls(pcdFileBOS);
+            pcdFileBOS.forEach(fileBO -> relationFileBOS.addAll(handelPointCloudConvertRender(fileBO)));
+        }
+        if (CollectionUtil.isNotEmpty(relationFileBOS)) {
+            fileUseCase.saveBatchFile(userId, relationFileBOS, false);
+        }
+        return chunk;
+    }
+
+    /**
+     * Insert stage, save the data and annotation results of the chunk
+     */
+    private void insertChunk(UploadChunk chunk, Long datasetId, StageStatistics stageStatistics) {
+        if (CollectionUtil.isEmpty(chunk.dataInfoBOList)) {
+            return;
         }
+        var start = System.nanoTime();
+        log.info("dataInfoBOList:{}", chunk.dataInfoBOList.stream().map(DataInfoBO::getTempDataId).collect(Collectors.toList()));
+        log.info("dataAnnotationObjectBOList:{}", chunk.dataAnnotationObjectBOList.stream().map(DataAnnotationObjectBO::getDataId).collect(Collectors.toList()));
+        var resDataInfoList = this.insertBatch(chunk.dataInfoBOList, datasetId, chunk.errorBuilder, chunk.sceneId);
+        this.saveBatchDataResult(resDataInfoList, chunk.dataAnnotationObjectBOList);
+        stageStatistics.record(INSERT, chunk.dataInfoBOList.size(), 0, start);
+    }
+
+    /**
+     * Update the parse progress at most once per progress interval, the upload record is completed by
+     * {@link #finishParse} anyway
+     */
+    private void updateParseProgress(ParseContext context, long parsedDataNum) {
+        var now = System.currentTimeMillis();
+        var updatedAt = context.progressUpdatedAt.get();
+        if (now - updatedAt < progressInterval || !context.progressUpdatedAt.compareAndSet(updatedAt, now)) {
+            return;
+        }
+        updateParseProgress(context.dataInfoUploadBO.getUploadRecordId(), context.totalDataNum.get(), parsedDataNum, context.stageStatistics);
+    }
+
+    private void updateParseProgress(Long uploadRecordId, Long totalDataNum, long parsedDataNum, StageStatistics stageStatistics) {
+        var uploadRecord = UploadRecord.builder()
+                .id(uploadRecordId)
+                .totalDataNum(totalDataNum)
+                .parsedDataNum(parsedDataNum)
+                .stageStatistics(stageStatistics.toJson())
+                .status(PARSING).build();
+        uploadRecordDAO.updateById(uploadRecord);
+    }
+
+    private void awaitAll(List<CompletableFuture<Void>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("Parse upload file error", e);
+        }
+    }
+
+    private StageStatistics getStageStatistics(Long uploadRecordId) {
+        var stageStatistics = ObjectUtil.isNull(uploadRecordId) ? null : stageStatisticsMap.get(uploadRecordId);
+        return ObjectUtil.isNull(stageStatistics) ? new StageStatistics() : stageStatistics;
     }
 
     /**
@@ -580,35 +896,34 @@ public class UploadDataUseCase {
     }
 
     /**
-     * Find a file of data
+     * Walk a scene folder once, the data names and the files of each data are then looked up in the index
      *
-     * @param file        File
-     * @param dataName    Data name
-     * @param datasetType Dataset type
+     * @param sceneFile      Scene folder
+     * @param datasetType    Dataset type
+     * @param dataNameFilter Data files whose names make the data names of the scene
+     * @return Scene index, null if the scene folder could not be read
      */
-    private List<File> getSingleDataFiles(File file, String dataName, StringBuilder stringBuilder, DatasetTypeEnum datasetType) {
-        var singleDataFile = new ArrayList<File>();
-        var isErr = false;
-        for (var f : file.listFiles()) {
-            var boo = this.validateFilenameByType(f, datasetType);
-            if (boo) {
-                var fcList = Arrays.stream(f.listFiles()).filter(fc -> (this.validateFileFormat(fc, datasetType) &&
-                        this.getFilename(fc).equals(dataName))).collect(Collectors.toList());
-                var count = fcList.size();
-                switch (count) {
-                    case 0:
-                        break;
-                    case 1:
-                        singleDataFile.addAll(fcList);
-                        break;
-                    default:
-                        log.error("There are duplicate files in {} folder,file name is {}", f.getName(), dataName);
-                        stringBuilder.append("There are duplicate files in ").append(f.getName()).append(" folder,file name is ").append(dataName);
-                        isErr = true;
-                }
-            }
+    private SceneIndex indexScene(File sceneFile, DatasetTypeEnum datasetType, Predicate<File> dataNameFilter) {
+        try {
+            return SceneIndex.build(sceneFile, f -> this.validateFilenameByType(f, datasetType),
+                    f -> this.validateFileFormat(f, datasetType), dataNameFilter, RESULT);
+        } catch (IOException e) {
+            log.error("Index scene error,sceneFile:{}", sceneFile, e);
+            return null;
         }
-        return isErr ? ListUtil.empty() : singleDataFile;
+    }
+
+    /**
+     * Find the files of a data, one per device folder
+     *
+     * @param sceneIndex Index of the scene
+     * @param dataName   Data name
+     */
+    private List<File> getSingleDataFiles(SceneIndex sceneIndex, String dataName, StringBuilder stringBuilder) {
+        return sceneIndex.getDataFiles(dataName, folder -> {
+            log.error("There are duplicate files in {} folder,file name is {}", folder.getName(), dataName);
+            stringBuilder.append("There are duplicate files in ").append(folder.getName()).append(" folder,file name is ").append(dataName);
+        });
     }
 
     /**
@@ -668,23 +983,20 @@ public class UploadDataUseCase {
     /**
      * Process the annotation results corresponding to data
      *
-     * @param file                       The image is the parent of data, and the point cloud file is point_cloud
+     * @param resultFile                 Result file of the data in the result folder, null if there is none
      * @param dataName                   Data name
      * @param dataAnnotationObjectBO     Data annotation object
      * @param dataAnnotationObjectBOList Data annotation object list
      */
-    public void handleDataResult(File file, String dataName, DataAnnotationObjectBO dataAnnotationObjectBO,
+    public void handleDataResult(File resultFile, String dataName, DataAnnotationObjectBO dataAnnotationObjectBO,
                                  List<DataAnnotationObjectBO> dataAnnotationObjectBOList, StringBuilder errorBuilder) {
 
         // Indicates that no result data was imported
         if (ObjectUtil.isNotNull(dataAnnotationObjectBO.getSourceId())) {
-            var resultFile = FileUtil.loopFiles(file, 2, null).stream()
-                    .filter(fc -> fc.getName().toUpperCase().endsWith(JSON_SUFFIX) && dataName.equals(FileUtil.getPrefix(fc))
-                            && fc.getParentFile().getName().equalsIgnoreCase(RESULT)).findFirst();
-            if (resultFile.isPresent()) {
-                log.info("dataResult,dataName:{},resultFileName:{}",dataName,resultFile.get().getName());
+            if (ObjectUtil.isNotNull(resultFile)) {
+                log.info("dataResult,dataName:{},resultFileName:{}",dataName,resultFile.getName());
                 try {
-                    var resultJson = JSONUtil.readJSON(resultFile.get(), Charset.defaultCharset());
+                    var resultJson = JSONUtil.readJSON(resultFile, Charset.defaultCharset());
                     var result = new DataImportResultBO();
                     if (resultJson instanceof JSONArray) {
                         var dataImportResultBOList = JSONUtil.toList(JSONUtil.toJsonStr(resultJson), DataImportResultBO.class);
@@ -752,16 +1064,15 @@ public class UploadDataUseCase {
     }
 
     /**
-     * Assemble the content of a single frame
+     * Assemble the content of a single frame, the file ids are temporary until the files are uploaded
      *
-     * @param dataFiles        Data composition file
-     * @param rootPath         Root path
-     * @param dataInfoUploadBO Compression package name
+     * @param dataFiles Data composition file
+     * @param rootPath  Root path
+     * @param files     Collects the files to upload
      * @return content
      */
-    private List<DataInfoBO.FileNodeBO> assembleContent(List<File> dataFiles, String rootPath, DataInfoUploadBO dataInfoUploadBO) {
+    private List<DataInfoBO.FileNodeBO> assembleContent(List<File> dataFiles, String rootPath, List<File> files) {
         var nodeList = new ArrayList<DataInfoBO.FileNodeBO>();
-        var files = new ArrayList<File>();
         dataFiles.forEach(dataFile -> {
             var parentName = dataFile.getParentFile().getName();
             var node = DataInfoBO.FileNodeBO.builder()
@@ -770,16 +1081,6 @@ public class UploadDataUseCase {
                     .files(getDirList(dataFile, rootPath, files)).build();
             nodeList.add(node);
         });
-        var fileBOS = uploadFileList(rootPath, files, dataInfoUploadBO);
-        createUploadThumbnail(dataInfoUploadBO.getUserId(), fileBOS, rootPath);
-        fileBOS.forEach(fileBO -> {
-            if (fileBO.getName().toUpperCase().endsWith(PCD_SUFFIX)) {
-                handelPointCloudConvertRender(fileBO);
-            }
-        });
-        var fileIdMap = fileBOS.stream().collect(Collectors.toMap(FileBO::getPathHash, FileBO::getId));
-        replaceFileId(nodeList, fileIdMap);
-        nodeList.sort(Comparator.comparing(DataInfoBO.FileNodeBO::getName));
         return nodeList;
     }
 
@@ -841,7 +1142,7 @@ public class UploadDataUseCase {
             var newDataAnnotationObjectBOList = dataAnnotationObjectBOList.stream().filter(d -> dataIdMap.containsKey(d.getDataId())).collect(Collectors.toList());
             if (CollUtil.isNotEmpty(newDataAnnotationObjectBOList)) {
                 newDataAnnotationObjectBOList.forEach(d -> d.setDataId(dataIdMap.get(d.getDataId())));
-                dataAnnotationObjectDAO.getBaseMapper().insertBatch(DefaultConverter.convert(dataAnnotationObjectBOList, DataAnnotationObject.class));
+                dataAnnotationObjectDAO.bulkInsert(DefaultConverter.convert(newDataAnnotationObjectBOList, DataAnnotationObject.class));
                 newDataAnnotationObjectBOList.clear();
             }
             dataAnnotationObjectBOList.clear();
@@ -874,71 +1175,40 @@ public class UploadDataUseCase {
             var fileBO = FileBO.builder().name(file.getName()).originalName(file.getName()).bucketName(bucketName)
                     .size(file.length()).path(path).zipPath(zipPath).type(mimeType).build();
             if (Constants.IMAGE_DATA_TYPE.contains(mimeType)) {
-                var imageExtraInfoBO = ImageExtraInfoBO.builder().height(Img.from(file).getImg().getHeight(null))
-                        .width(Img.from(file).getImg().getWidth(null)).build();
-                fileBO.setExtraInfo(JSONUtil.parseObj(imageExtraInfoBO));
+                var imageExtraInfoBO = getImageExtraInfo(file);
+                if (imageExtraInfoBO != null) {
+                    fileBO.setExtraInfo(JSONUtil.parseObj(imageExtraInfoBO));
+                }
             }
             fileBOS.add(fileBO);
         });
-        return fileUseCase.saveBatchFile(dataInfoUploadBO.getUserId(), fileBOS);
+        return fileUseCase.saveBatchFile(dataInfoUploadBO.getUserId(), fileBOS, false);
     }
 
     /**
-     * Generate thumbnail and upload
+     * Size, orientation and format of an image from its file header, without decoding the pixels
      *
-     * @param userId   User id
-     * @param fileBOS  File collection
-     * @param rootPath Root path
+     * @param file Image file
+     * @return Image extra info, null if the header cannot be read
      */
-    private void createUploadThumbnail(Long userId, List<FileBO> fileBOS, String rootPath) {
+    private ImageExtraInfoBO getImageExtraInfo(File file) {
         try {
-            var thumbnailFileBOS = new ArrayList<FileBO>();
-            var files = new ArrayList<File>();
-            for (FileBO fileBO : fileBOS) {
-                var mimeType = fileBO.getType();
-                var savePath = tempPath + fileBO.getPath().replace(rootPath, "");
-                if (IMAGE_DATA_TYPE.contains(mimeType)) {
-                    var filePath = fileBO.getPath();
-                    var basePath = filePath.substring(0, filePath.lastIndexOf(SLANTING_BAR) + 1);
-                    var fileName = filePath.substring(filePath.lastIndexOf(SLANTING_BAR) + 1);
-                    var fileBOBuilder = FileBO.builder().name(fileBO.getName()).originalName(fileBO.getName())
-                            .bucketName(fileBO.getBucketName()).type(mimeType);
-                    var file = FileUtil.file(savePath);
-                    var suffix = FileUtil.getSuffix(fileName);
-                    suffix = suffix.equalsIgnoreCase(TIFF_SUFFIX) || suffix.equalsIgnoreCase(TIF_SUFFIX) ? "jpg" : suffix;
-                    var prefix = FileUtil.getPrefix(fileName);
-                    var baseSavePath = file.getParentFile().getAbsolutePath();
-                    var largeFile = FileUtil.file(baseSavePath, String.format("%s_%s.%s", prefix, large, suffix));
-                    var mediumFile = FileUtil.file(baseSavePath, String.format("%s_%s.%s", prefix, medium, suffix));
-                    var smallFile = FileUtil.file(baseSavePath, String.format("%s_%s.%s", prefix, small, suffix));
-                    Thumbnails.of(file).size(largeFileSize, largeFileSize).toFile(largeFile);
-                    Thumbnails.of(largeFile).size(mediumFileSize, mediumFileSize).toFile(mediumFile);
-                    Thumbnails.of(largeFile).size(smallFileSize, smallFileSize).toFile(smallFile);
-                    // large thumbnail
-                    var largePath = String.format("%s%s", basePath, FileUtil.getName(largeFile));
-                    var largeFileBO = fileBOBuilder.path(largePath).relation(LARGE_THUMBTHUMBNAIL).relationId(fileBO.getId()).build();
-                    // medium thumbnail
-                    var mediumPath = String.format("%s%s", basePath, FileUtil.getName(mediumFile));
-                    var mediumFileBO = fileBOBuilder.path(mediumPath).relation(MEDIUM_THUMBTHUMBNAIL).relationId(fileBO.getId()).build();
-                    // small thumbnail
-                    var smallPath = String.format("%s%s", basePath, FileUtil.getName(smallFile));
-                    var smallFileBO = fileBOBuilder.path(smallPath).relation(SMALL_THUMBTHUMBNAIL).relationId(fileBO.getId()).build();
-                    thumbnailFileBOS.addAll(ListUtil.toList(largeFileBO, mediumFileBO, smallFileBO));
-                    files.addAll(ListUtil.toList(largeFile, mediumFile, smallFile));
-                }
-            }
-            try {
-                minioService.uploadFileList(minioProp.getBucketName(), rootPath, tempPath, files);
-            } catch (Exception e) {
-                log.error("Batch upload file error,filesPath:{}", JSONUtil.parseArray(files.stream().map(File::getAbsolutePath).collect(Collectors.toList())), e);
-            }
-            fileUseCase.saveBatchFile(userId, thumbnailFileBOS);
+            var imageMetadata = ImageMetadataUtils.read(file);
+            return ImageExtraInfoBO.builder().width(imageMetadata.getWidth()).height(imageMetadata.getHeight())
+                    .orientation(imageMetadata.getOrientation()).format(imageMetadata.getFormat()).build();
         } catch (IOException e) {
-            log.error("Upload thumbnail error", e);
+            log.warn("Read image metadata error,file:{}", file.getName(), e);
+            return null;
         }
     }
 
-    public void handelPointCloudConvertRender(FileBO pcdFileBO) {
+    /**
+     * Convert a point cloud to binary and render its image
+     *
+     * @param pcdFileBO Point cloud file with its internal url
+     * @return Binary point cloud and render image files to save
+     */
+    public List<FileBO> handelPointCloudConvertRender(FileBO pcdFileBO) {
         String filePath = pcdFileBO.getPath();
         String basePath = "";
         String fileName;
@@ -961,9 +1231,10 @@ public class UploadDataUseCase {
 
         } catch (Throwable throwable) {
             log.error("generate preSignUrl error!", throwable);
-            return;
+            return List.of();
         }
         List<PointCloudCRRespDTO> pointCloudCRRespDTOS = callPointCloudConvertRender(pcdFileBO, binaryPreSignUrlBO, imagePreSignUrlBO);
+        var relationFileBOS = new ArrayList<FileBO>();
         if (CollUtil.isNotEmpty(pointCloudCRRespDTOS)) {
             for (PointCloudCRRespDTO pointCloudCRRespDTO : pointCloudCRRespDTOS) {
                 if (pointCloudCRRespDTO.getCode() == 0) {
@@ -993,10 +1264,12 @@ public class UploadDataUseCase {
                                     .set("width", PC_RENDER_IMAGE_WIDTH)
                                     .set("height", PC_RENDER_IMAGE_HEIGHT))
                             .build();
-                    fileUseCase.saveBatchFile(pcdFileBO.getCreatedBy(), List.of(binaryPcdFile, imageFile));
+                    relationFileBOS.add(binaryPcdFile);
+                    relationFileBOS.add(imageFile);
                 }
             }
         }
+        return relationFileBOS;
     }
 
     private List<PointCloudCRRespDTO> callPointCloudConvertRender(FileBO relationFileBO, PresignedUrlBO binaryPreSignUrlBO, PresignedUrlBO imagePreSignUrlBO) {
@@ -1006,23 +1279,11 @@ public class UploadDataUseCase {
                 .renderParam(buildRenderParam())
                 .convertParam(ConvertParam.builder().extraFields(List.of("rgb")).build()).build();
         ApiResult<List<PointCloudCRRespDTO>> apiResult = null;
-
-        StopWatch stopWatch = new StopWatch();
-        int count = 0;
-        while (count <= RETRY_COUNT && ObjectUtil.isNull(apiResult)) {
-            try {
-                stopWatch.start();
-                apiResult = pointCloudConvertRenderHttpCaller.callConvertRender(pointCloudCRReqDTO);
-                stopWatch.stop();
-                log.info("call pointCloudConvertRender took:{},req:{},resp:{}", stopWatch.getLastTaskTimeMillis(), JSONUtil.toJsonStr(pointCloudCRReqDTO), JSONUtil.toJsonStr(apiResult));
-                break;
-            } catch (Throwable throwable) {
-                if (stopWatch.isRunning()) {
-                    stopWatch.stop();
-                }
-                log.error("call pointCloudConvertRender service error! req:{}, resp:{}", JSONUtil.toJsonStr(pointCloudCRReqDTO), JSONUtil.toJsonStr(apiResult), throwable);
-            }
-            count++;
+        // Transport errors and busy responses are retried by the rpc client
+        try {
+            apiResult = pointCloudConvertRenderHttpCaller.callConvertRender(pointCloudCRReqDTO);
+        } catch (Throwable throwable) {
+            log.error("call pointCloudConvertRender service error! req:{}", JSONUtil.toJsonStr(pointCloudCRReqDTO), throwable);
         }
         if (ObjectUtil.isNull(apiResult) || apiResult.getCode() != UsecaseCode.OK) {
             return null;
@@ -1082,42 +1343,58 @@ public class UploadDataUseCase {
     }
 
     /**
-     * Batch insert
+     * Batch insert, data whose name already exists under the parent, repeats in the batch and data inserted
+     * concurrently by another upload are skipped and reported as duplicates
      *
      * @param dataInfoBOList Collection of data details
+     * @return Inserted data with their ids
      */
     public List<DataInfoBO> insertBatch(List<DataInfoBO> dataInfoBOList, Long datasetId, StringBuilder errorBuilder, Long parentId) {
-        var names = dataInfoBOList.stream().map(DataInfoBO::getName).collect(Collectors.toList());
-        var existDataInfoList = this.findByNames(datasetId, parentId, names);
-        if (CollUtil.isNotEmpty(existDataInfoList)) {
-            var existNames = existDataInfoList.stream().map(DataInfoBO::getName).collect(Collectors.toList());
-            dataInfoBOList = dataInfoBOList.stream().filter(dataInfoBO -> !existNames.contains(dataInfoBO.getName())).collect(Collectors.toList());
-            if (!errorBuilder.toString().contains("Duplicate")) {
-                errorBuilder.append("Duplicate data names;");
+        var existNames = this.findExistNames(datasetId, parentId, dataInfoBOList);
+        var batchNames = new HashSet<String>(dataInfoBOList.size() * 2);
+        var skippedNames = new LinkedHashSet<String>();
+        var infos = new ArrayList<DataInfo>(dataInfoBOList.size());
+        for (var dataInfoBO : dataInfoBOList) {
+            var info = DefaultConverter.convert(dataInfoBO, DataInfo.class);
+            var uniqueName = DataInfoDAO.getUniqueName(info);
+            if (existNames.contains(uniqueName) || !batchNames.add(uniqueName)) {
+                skippedNames.add(dataInfoBO.getName());
+            } else {
+                infos.add(info);
             }
         }
-        if (CollUtil.isEmpty(dataInfoBOList)) {
-            return List.of();
+        if (CollUtil.isNotEmpty(infos)) {
+            skippedNames.addAll(dataInfoDAO.insertIgnoreBatch(infos));
         }
-        try {
-            List<DataInfo> infos = DefaultConverter.convert(dataInfoBOList, DataInfo.class);
-            dataInfoDAO.saveBatch(infos);
-            return DefaultConverter.convert(infos, DataInfoBO.class);
-        } catch (DuplicateKeyException e) {
-            log.error("Duplicate data name", e);
+        if (CollUtil.isNotEmpty(skippedNames)) {
+            log.warn("Duplicate data names of dataset {} under parent {}: {}", datasetId, parentId, skippedNames);
             if (!errorBuilder.toString().contains("Duplicate")) {
-                errorBuilder.append("Duplicate data names;");
+                errorBuilder.append(DUPLICATE_DATA_NAMES);
             }
-            return List.of();
         }
+        return infos.stream().filter(info -> ObjectUtil.isNotNull(info.getId()))
+                .map(info -> DefaultConverter.convert(info, DataInfoBO.class)).collect(Collectors.toList());
     }
 
-    private List<DataInfoBO> findByNames(Long datasetId, Long parentId, List<String> names) {
-        var dataInfoLambdaQueryWrapper = Wrappers.lambdaQuery(DataInfo.class);
-        dataInfoLambdaQueryWrapper.eq(DataInfo::getDatasetId, datasetId);
-        dataInfoLambdaQueryWrapper.in(DataInfo::getName, names);
-        dataInfoLambdaQueryWrapper.eq(DataInfo::getParentId, parentId);
-        return DefaultConverter.convert(dataInfoDAO.list(dataInfoLambdaQueryWrapper), DataInfoBO.class);
+    /**
+     * Names taken among the data, names are unique per data type
+     *
+     * @return Unique names by {@link DataInfoDAO#getUniqueName}
+     */
+    private Set<String> findExistNames(Long datasetId, Long parentId, List<DataInfoBO> dataInfoBOList) {
+        var names = dataInfoBOList.stream().map(DataInfoBO::getName).distinct().collect(Collectors.toList());
+        var types = dataInfoBOList.stream().map(DataInfoBO::getType).collect(Collectors.toSet());
+        var existNames = new HashSet<String>();
+        for (var subNames : ListUtil.split(names, 1000)) {
+            dataInfoDAO.list(Wrappers.lambdaQuery(DataInfo.class)
+                            .select(DataInfo::getType, DataInfo::getName)
+                            .eq(DataInfo::getDatasetId, datasetId)
+                            .eq(DataInfo::getParentId, parentId)
+                            .in(DataInfo::getType, types)
+                            .in(DataInfo::getName, subNames))
+                    .forEach(dataInfo -> existNames.add(DataInfoDAO.getUniqueName(dataInfo)));
+        }
+        return existNames;
     }
 
     private String cocoConvertToX1(DataInfoUploadBO dataInfoUploadBO) {
@@ -1187,4 +1464,83 @@ public class UploadDataUseCase {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * A group of data in one scene, passed through the parse stages
+     */
+    private static class UploadChunk {
+
+        private final SceneIndex sceneIndex;
+        private final Long sceneId;
+        private final List<String> dataNames;
+        private final List<File> files = new ArrayList<>();
+        private final List<DataInfoBO> dataInfoBOList = new ArrayList<>();
+        private final List<DataAnnotationObjectBO> dataAnnotationObjectBOList = new ArrayList<>();
+        private List<FileBO> fileBOS = List.of();
+        private CompletableFuture<Void> thumbnailFuture = CompletableFuture.completedFuture(null);
+        /**
+         * Errors of the chunk, the stages of a chunk run one after another
+         */
+        private final StringBuilder errorBuilder = new StringBuilder();
+
+        private UploadChunk(SceneIndex sceneIndex, Long sceneId, List<String> dataNames) {
+            this.sceneIndex = sceneIndex;
+            this.sceneId = sceneId;
+            this.dataNames = dataNames;
+        }
+    }
+
+    /**
+     * State shared by all scenes of one upload, or by all files of a text upload
+     */
+    private static class ParseContext {
+
+        private final DataInfoUploadBO dataInfoUploadBO;
+        private final String rootPath;
+        private final Long sourceId;
+        private final boolean streaming;
+        private final StageStatistics stageStatistics;
+        private final Semaphore inFlightLimiter;
+        private final DataAnnotationObjectBO.DataAnnotationObjectBOBuilder dataAnnotationObjectBOBuilder;
+        /**
+         * Errors of the scenes, chunks and text files, added by the decompress and stage threads
+         */
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private final AtomicLong totalDataNum = new AtomicLong(0L);
+        private final AtomicLong parsedDataNum = new AtomicLong(0L);
+        private final AtomicLong progressUpdatedAt = new AtomicLong(0L);
+
+        private ParseContext(DataInfoUploadBO dataInfoUploadBO, String rootPath, Long sourceId, boolean streaming,
+                             StageStatistics stageStatistics, Semaphore inFlightLimiter) {
+            this.dataInfoUploadBO = dataInfoUploadBO;
+            this.rootPath = rootPath;
+            this.sourceId = sourceId;
+            this.streaming = streaming;
+            this.stageStatistics = stageStatistics;
+            this.inFlightLimiter = inFlightLimiter;
+            this.dataAnnotationObjectBOBuilder = DataAnnotationObjectBO.builder()
+                    .datasetId(dataInfoUploadBO.getDatasetId()).createdBy(dataInfoUploadBO.getUserId())
+                    .createdAt(OffsetDateTime.now()).sourceId(sourceId);
+        }
+
+        private void addError(CharSequence error) {
+            if (error.length() > 0) {
+                errors.add(error.toString());
+            }
+        }
+
+        /**
+         * Errors in the order they were added, the duplicate data names error is reported once like before
+         */
+        private String getErrorMessage() {
+            var errorMessage = String.join("", errors);
+            var index = errorMessage.indexOf(DUPLICATE_DATA_NAMES);
+            if (index < 0) {
+                return errorMessage;
+            }
+            var end = index + DUPLICATE_DATA_NAMES.length();
+            return errorMessage.substring(0, end) + errorMessage.substring(end).replace(DUPLICATE_DATA_NAMES, "");
+        }
+    }
+}
@@ -2,22 +2,29 @@ package ai.basic.x1.usecase;
 
 import ai.basic.x1.adapter.api.filter.JwtHelper;
 import ai.basic.x1.adapter.api.filter.JwtPayload;
+import ai.basic.x1.adapter.port.cache.CacheInvalidationBus;
 import ai.basic.x1.adapter.port.dao.UserTokenDAO;
 import ai.basic.x1.adapter.port.dao.mybatis.model.UserToken;
 import ai.basic.x1.entity.UserTokenBO;
 import ai.basic.x1.entity.enums.TokenType;
 import ai.basic.x1.util.DefaultConverter;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import java.time.OffsetDateTime;
 import java.util.Date;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author zhujh
@@ -25,13 +32,56 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class UserTokenUseCase {
 
+    private static final String TOKEN_CACHE = "token";
+
     @Autowired
     private UserTokenDAO userTokenDAO;
 
     @Autowired
     private JwtHelper jwtHelper;
 
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${cache.token.maximumSize:10000}")
+    private long tokenCacheMaximumSize;
+
+    /**
+     * Validated payloads are kept until the token expires but at most this long (ms), deleted tokens are evicted on
+     * all instances
+     */
+    @Value("${cache.token.ttl:600000}")
+    private long tokenCacheTtl;
+
+    /**
+     * Validated payloads by token hash
+     */
+    private Cache<String, JwtPayload> payloadCache;
+
+    @PostConstruct
+    public void init() {
+        payloadCache = CacheBuilder.newBuilder()
+                .maximumSize(tokenCacheMaximumSize)
+                .expireAfterWrite(tokenCacheTtl, TimeUnit.MILLISECONDS)
+                .build();
+        cacheInvalidationBus.subscribe(TOKEN_CACHE, tokenHash -> {
+            if (tokenHash == null) {
+                payloadCache.invalidateAll();
+            } else {
+                payloadCache.invalidate(tokenHash);
+            }
+        });
+    }
+
     public JwtPayload getPayload(String token) {
+        var tokenHash = SecureUtil.sha256(token);
+        var cachedPayload = payloadCache.getIfPresent(tokenHash);
+        if (cachedPayload != null) {
+            if (cachedPayload.getExpireTime() == null || cachedPayload.getExpireTime().after(new Date())) {
+                return cachedPayload;
+            }
+            payloadCache.invalidate(tokenHash);
+        }
         if (!isExist(token)) {
             log.info("token not found. " + StrUtil.sub(token, 0, 50));
             return null;
@@ -47,6 +97,7 @@ public class UserTokenUseCase {
         } catch (JwtException ex) {
             return null;
         }
+        payloadCache.put(tokenHash, payload);
         return payload;
     }
 
@@ -94,10 +145,17 @@ public class UserTokenUseCase {
     }
 
     public void deleteApiToken(Long id, Long userId) {
-        userTokenDAO.remove(new LambdaQueryWrapper<UserToken>()
+        var query = new LambdaQueryWrapper<UserToken>()
                 .eq(UserToken::getId, id)
                 .eq(UserToken::getTokenType, TokenType.API)
-                .eq(UserToken::getCreatedBy, userId));
+                .eq(UserToken::getCreatedBy, userId);
+        var userToken = userTokenDAO.getOne(query, false);
+        userTokenDAO.remove(query);
+        if (userToken != null) {
+            var tokenHash = SecureUtil.sha256(userToken.getToken());
+            payloadCache.invalidate(tokenHash);
+            cacheInvalidationBus.publish(TOKEN_CACHE, tokenHash);
+        }
     }
 
     private void deleteExpireTokenAsync(Long userId) {
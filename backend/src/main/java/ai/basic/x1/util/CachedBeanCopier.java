@@ -0,0 +1,182 @@
+package ai.basic.x1.util;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.PropDesc;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.TypeUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies beans with a plan built once per (source, target) pair from the Hutool bean descriptions, so the copy
+ * has the semantics of BeanUtil.copyProperties without looking up properties and invoking them reflectively for
+ * every object. Properties declared with the same type are copied through method handles, other properties are
+ * converted by Hutool as before.
+ *
+ * @author andy
+ */
+public class CachedBeanCopier<S, D> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final Map<Class<?>, Map<Class<?>, Optional<CachedBeanCopier<?, ?>>>> COPIERS = new ConcurrentHashMap<>();
+
+    private final Class<D> target;
+
+    private final MethodHandle constructor;
+
+    private final PropertyCopier[] propertyCopiers;
+
+    private CachedBeanCopier(Class<S> source, Class<D> target) throws ReflectiveOperationException {
+        this.target = target;
+        this.constructor = LOOKUP.unreflectConstructor(target.getDeclaredConstructor()).asType(CONSTRUCTOR_TYPE);
+        var targetProps = BeanUtil.getBeanDesc(target).getPropMap(false);
+        var propertyCopierList = new ArrayList<PropertyCopier>();
+        for (var sourceProp : BeanUtil.getBeanDesc(source).getProps()) {
+            if (!sourceProp.isReadable(true)) {
+                continue;
+            }
+            var targetProp = targetProps.get(sourceProp.getFieldName());
+            if (targetProp == null || !targetProp.isWritable(true)) {
+                continue;
+            }
+            propertyCopierList.add(createPropertyCopier(sourceProp, targetProp, TypeUtil.getActualType(target, targetProp.getFieldType())));
+        }
+        this.propertyCopiers = propertyCopierList.toArray(new PropertyCopier[0]);
+    }
+
+    /**
+     * Get the copier of the pair
+     *
+     * @param source Source class
+     * @param target Target class
+     * @return Copier, null if the pair can only be copied by BeanUtil.copyProperties
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, D> CachedBeanCopier<S, D> get(Class<S> source, Class<D> target) {
+        return (CachedBeanCopier<S, D>) COPIERS.computeIfAbsent(source, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(target, k -> create(source, target))
+                .orElse(null);
+    }
+
+    private static Optional<CachedBeanCopier<?, ?>> create(Class<?> source, Class<?> target) {
+        if (Map.class.isAssignableFrom(source) || Map.class.isAssignableFrom(target)
+                || Modifier.isAbstract(target.getModifiers())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new CachedBeanCopier<>(source, target));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Create a target object and copy the properties of the source into it
+     *
+     * @param source Source object
+     * @return Target object
+     */
+    public D copy(S source) {
+        D dest;
+        try {
+            dest = target.cast(constructor.invokeExact());
+        } catch (Throwable e) {
+            throw new RuntimeException("Cast " + source.getClass() + " to " + target + " error.", e);
+        }
+        for (var propertyCopier : propertyCopiers) {
+            propertyCopier.copy(source, dest);
+        }
+        return dest;
+    }
+
+    private static PropertyCopier createPropertyCopier(PropDesc sourceProp, PropDesc targetProp, Type targetType) {
+        var getter = sourceProp.getGetter();
+        var setter = targetProp.getSetter();
+        if (getter != null && setter != null && isSameType(getter.getGenericReturnType(), targetType)) {
+            try {
+                var getterHandle = LOOKUP.unreflect(getter).asType(GETTER_TYPE);
+                var setterHandle = LOOKUP.unreflect(setter).asType(SETTER_TYPE);
+                return new DirectPropertyCopier(getterHandle, setterHandle);
+            } catch (IllegalAccessException e) {
+                // Not accessible through method handles, copy it the way Hutool does
+            }
+        }
+        return new ConvertPropertyCopier(sourceProp, targetProp, targetType);
+    }
+
+    /**
+     * Hutool returns values of the target type as they are, except containers which are always copied
+     */
+    private static boolean isSameType(Type sourceType, Type targetType) {
+        if (!sourceType.equals(targetType)) {
+            return false;
+        }
+        var rawType = TypeUtil.getClass(targetType);
+        return rawType != null && !rawType.isArray()
+                && !Collection.class.isAssignableFrom(rawType) && !Map.class.isAssignableFrom(rawType);
+    }
+
+    private interface PropertyCopier {
+        void copy(Object source, Object dest);
+    }
+
+    private static class DirectPropertyCopier implements PropertyCopier {
+
+        private final MethodHandle getter;
+
+        private final MethodHandle setter;
+
+        private DirectPropertyCopier(MethodHandle getter, MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public void copy(Object source, Object dest) {
+            try {
+                setter.invokeExact(dest, (Object) getter.invokeExact(source));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class ConvertPropertyCopier implements PropertyCopier {
+
+        private final PropDesc sourceProp;
+
+        private final PropDesc targetProp;
+
+        private final Type targetType;
+
+        private ConvertPropertyCopier(PropDesc sourceProp, PropDesc targetProp, Type targetType) {
+            this.sourceProp = sourceProp;
+            this.targetProp = targetProp;
+            this.targetType = targetType;
+        }
+
+        @Override
+        public void copy(Object source, Object dest) {
+            var value = Convert.convertWithCheck(targetType, sourceProp.getValue(source), null, false);
+            targetProp.setValue(dest, value, false, false);
+        }
+    }
+}
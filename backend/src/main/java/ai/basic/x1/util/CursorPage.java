@@ -0,0 +1,47 @@
+package ai.basic.x1.util;
+
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cursor page, the next page is read after the last row of this one instead of at an offset
+ *
+ * @author fyb
+ */
+@Data
+public class CursorPage<T> implements Serializable {
+
+    private static final long serialVersionUID = -2651183290434873124L;
+
+    /**
+     * page size
+     */
+    private int pageSize;
+    /**
+     * Continuation token of the next page, null on the last page
+     */
+    private String nextCursor;
+    /**
+     * Total number, null when it is not requested
+     */
+    private Long total;
+    /**
+     * Data list
+     */
+    private List<T> list;
+
+    public <D> CursorPage<D> convert(Function<? super T, ? extends D> mapper) {
+        var resultPage = new CursorPage<D>();
+        resultPage.setList(this.getList() != null ? this.getList().stream().map(mapper).collect(Collectors.toList()) : null);
+        resultPage.setPageSize(this.pageSize);
+        resultPage.setNextCursor(this.nextCursor);
+        resultPage.setTotal(this.total);
+        return resultPage;
+    }
+
+}
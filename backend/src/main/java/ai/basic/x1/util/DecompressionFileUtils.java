@@ -15,6 +15,7 @@ import org.springframework.http.HttpStatus;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.function.Consumer;
 
 import static ai.basic.x1.entity.enums.UploadStatusEnum.FAILED;
 import static ai.basic.x1.usecase.exception.UsecaseCode.DATASET_DATA_FILE_URL_ERROR;
@@ -36,6 +37,18 @@ public class DecompressionFileUtils {
      * @param unZipPath The storage path of the generated files after decompression
      */
     public static void zipDecompress(String filePath, String unZipPath) throws IOException {
+        zipDecompress(filePath, unZipPath, file -> {
+        });
+    }
+
+    /**
+     * Unzip the zip file, each file is passed to the consumer as soon as it is written
+     *
+     * @param filePath     File path
+     * @param unZipPath    The storage path of the generated files after decompression
+     * @param fileConsumer Consumer of decompressed files
+     */
+    public static void zipDecompress(String filePath, String unZipPath, Consumer<File> fileConsumer) throws IOException {
         var zfile = FileUtil.file(filePath);
         ZipFile zipFile;
         try {
@@ -63,8 +76,11 @@ public class DecompressionFileUtils {
                 IOUtils.copy(zis, bos);
             } catch (IOException e) {
                 log.error(e.getMessage());
+                continue;
             }
+            fileConsumer.accept(file);
         }
+        zipFile.close();
         zfile.delete();
     }
 
@@ -75,6 +91,19 @@ public class DecompressionFileUtils {
      * @param unTarPath   The storage path of the decompressed TAR file
      */
     public static void tarDecompress(InputStream inputStream, String unTarPath) {
+        tarDecompress(inputStream, unTarPath, file -> {
+        });
+    }
+
+    /**
+     * Extract TAR class files, each file is passed to the consumer as soon as it is written.
+     * The input stream is read sequentially, so it can be a download stream.
+     *
+     * @param inputStream  TAR input stream
+     * @param unTarPath    The storage path of the decompressed TAR file
+     * @param fileConsumer Consumer of decompressed files
+     */
+    public static void tarDecompress(InputStream inputStream, String unTarPath, Consumer<File> fileConsumer) {
         try (var tis = new TarArchiveInputStream(inputStream)) {
             TarArchiveEntry nte;
             while ((nte = tis.getNextTarEntry()) != null) {
@@ -93,7 +122,9 @@ public class DecompressionFileUtils {
                         IOUtils.copy(tis, bos);
                     } catch (IOException e) {
                         log.error(e.getMessage());
+                        continue;
                     }
+                    fileConsumer.accept(file);
                 }
             }
         } catch (IOException e) {
@@ -101,25 +132,112 @@ public class DecompressionFileUtils {
         }
     }
 
+    /**
+     * Extract TAR class files from a download stream, each file is passed to the consumer as soon as it is written.
+     * Unlike {@link #tarDecompress(InputStream, String, Consumer)} a read error is thrown instead of ending the
+     * package early, as a dropped connection or a truncated package must not look like a complete one. The file
+     * being written when the error occurs is deleted.
+     *
+     * @param inputStream  TAR input stream
+     * @param unTarPath    The storage path of the decompressed TAR file
+     * @param fileConsumer Consumer of decompressed files
+     */
+    public static void tarDecompressStream(InputStream inputStream, String unTarPath, Consumer<File> fileConsumer) throws IOException {
+        try (var tis = new TarArchiveInputStream(inputStream)) {
+            TarArchiveEntry nte;
+            while ((nte = tis.getNextTarEntry()) != null) {
+                var dir = unTarPath + File.separator + nte.getName();
+                if (dir.contains(MACOSX)) {
+                    continue;
+                }
+                var file = new File(dir);
+                log.info("Decompressing......{}", dir);
+                if (nte.isDirectory()) {
+                    file.mkdirs();
+                } else {
+                    FileUtil.mkParentDirs(file);
+                    try (var fos = new FileOutputStream(file);
+                         var bos = new BufferedOutputStream(fos)) {
+                        IOUtils.copy(tis, bos);
+                    } catch (IOException e) {
+                        FileUtil.del(file);
+                        throw e;
+                    }
+                    fileConsumer.accept(file);
+                }
+            }
+        }
+    }
+
     public static void decompress(String filePath, String decompressPath) throws IOException {
-        String fileType = filePath.toUpperCase();
+        decompress(filePath, decompressPath, file -> {
+        });
+    }
+
+    /**
+     * Decompress the file, each file is passed to the consumer as soon as it is written
+     *
+     * @param filePath       File path
+     * @param decompressPath Decompress path
+     * @param fileConsumer   Consumer of decompressed files
+     */
+    public static void decompress(String filePath, String decompressPath, Consumer<File> fileConsumer) throws IOException {
+        if (filePath.toUpperCase().endsWith(ZIP)) {
+            // Decompressed .ZIP package
+            zipDecompress(filePath, decompressPath, fileConsumer);
+        } else {
+            tarDecompress(tarInputStream(new FileInputStream(filePath), filePath), decompressPath, fileConsumer);
+        }
+    }
+
+    /**
+     * Decompress a TAR class stream without saving the package, the stream is closed when done. A read error of the
+     * stream is thrown
+     *
+     * @param inputStream    Package stream
+     * @param fileName       Package file name, used to get the format
+     * @param decompressPath Decompress path
+     * @param fileConsumer   Consumer of decompressed files
+     */
+    public static void decompress(InputStream inputStream, String fileName, String decompressPath, Consumer<File> fileConsumer) throws IOException {
+        tarDecompressStream(tarInputStream(inputStream, fileName), decompressPath, fileConsumer);
+    }
+
+    /**
+     * Wrap a TAR class package stream by the decompressor of its format
+     *
+     * @param inputStream Package stream
+     * @param fileName    Package file name, used to get the format
+     * @return TAR stream
+     */
+    private static InputStream tarInputStream(InputStream inputStream, String fileName) throws IOException {
+        String fileType = fileName.toUpperCase();
         if (fileType.endsWith(TAR)) {
-            // Decompressed .TAR package The .TAR package is read with a normal FileInputStream stream
-            tarDecompress(new FileInputStream(filePath), decompressPath);
+            // Decompressed .TAR package The .TAR package is read with a normal stream
+            return inputStream;
         } else if (fileType.endsWith(TAR_GZ)) {
             // Decompressed .TAR.GZ package .TAR.GZ package should be read with GzipCompressorInputStream
-            tarDecompress(new GzipCompressorInputStream(new FileInputStream(filePath)), decompressPath);
+            return new GzipCompressorInputStream(inputStream);
         } else if (fileType.endsWith(TAR_BZ2)) {
             // Decompressed .TAR.BZ2 package
-            tarDecompress(new BZip2CompressorInputStream(new FileInputStream(filePath)), decompressPath);
-        } else if (fileType.endsWith(ZIP)) {
-            // Decompressed .ZIP package
-            zipDecompress(filePath, decompressPath);
+            return new BZip2CompressorInputStream(inputStream);
         } else {
+            inputStream.close();
             throw new UsecaseException("The decompression of files in this format is not currently supported");
         }
     }
 
+    /**
+     * Whether the package can be decompressed while it is being downloaded
+     *
+     * @param fileName Package file name
+     * @return boolean
+     */
+    public static boolean isStreamable(String fileName) {
+        String fileType = fileName.toUpperCase();
+        return fileType.endsWith(TAR) || fileType.endsWith(TAR_GZ) || fileType.endsWith(TAR_BZ2);
+    }
+
     /**
      * Verify that the url address can be connected
      *
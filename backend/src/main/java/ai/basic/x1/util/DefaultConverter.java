@@ -99,13 +99,25 @@ public class DefaultConverter {
             if (CollUtil.isEmpty(sourceList)) {
                 return ObjectUtil.isNull(sourceList) ? null : new ArrayList<>();
             } else {
-                List<D> list = new ArrayList();
+                List<D> list = new ArrayList(sourceList.size());
                 Iterator iterator = sourceList.iterator();
+                Class<?> copierSource = null;
+                CachedBeanCopier copier = null;
 
                 while (iterator.hasNext()) {
                     S source = (S) iterator.next();
-                    D dest = target.getDeclaredConstructor().newInstance();
-                    BeanUtil.copyProperties(source, dest);
+                    // Elements are nearly always of one class, look the copier up again only when the class changes
+                    if (ObjectUtil.isNotNull(source) && source.getClass() != copierSource) {
+                        copierSource = source.getClass();
+                        copier = CachedBeanCopier.get(copierSource, target);
+                    }
+                    D dest;
+                    if (ObjectUtil.isNotNull(source) && ObjectUtil.isNotNull(copier)) {
+                        dest = (D) copier.copy(source);
+                    } else {
+                        dest = target.getDeclaredConstructor().newInstance();
+                        BeanUtil.copyProperties(source, dest);
+                    }
                     list.add(dest);
                 }
 
@@ -123,7 +135,7 @@ public class DefaultConverter {
     }
 
     /**
-     * Object conversion by bean copy
+     * Object conversion by bean copy, pairs known to CachedBeanCopier are copied with a cached plan
      *
      * @param source
      * @param target
@@ -136,6 +148,10 @@ public class DefaultConverter {
             if (ObjectUtil.isEmpty(source)) {
                 return null;
             }
+            var copier = CachedBeanCopier.get((Class<S>) source.getClass(), target);
+            if (ObjectUtil.isNotNull(copier)) {
+                return copier.copy(source);
+            }
             D dest = target.getDeclaredConstructor().newInstance();
             BeanUtil.copyProperties(source, dest);
             return dest;
@@ -0,0 +1,91 @@
+package ai.basic.x1.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Image metadata read from the file headers by ImageIO readers, the pixels are never decoded
+ *
+ * @author fyb
+ */
+public class ImageMetadataUtils {
+
+    /**
+     * Read the width, height, EXIF orientation and format of an image
+     *
+     * @param file Image file
+     * @return Image metadata, width and height as stored, before the orientation is applied
+     */
+    public static ImageMetadata read(File file) throws IOException {
+        try (var input = ImageIO.createImageInputStream(file)) {
+            var readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No image reader for " + file.getName());
+            }
+            var reader = readers.next();
+            try {
+                reader.setInput(input);
+                var orientation = getOrientation(reader);
+                return new ImageMetadata(reader.getWidth(0), reader.getHeight(0),
+                        toValue(orientation), reader.getFormatName().toLowerCase());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * EXIF orientation of the first image, only the metadata of the reader is read
+     *
+     * @param reader Reader with its input set
+     * @return Orientation, null if the image has none
+     */
+    public static Orientation getOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * EXIF value of an orientation, Orientation only maps values to constants
+     *
+     * @param orientation Orientation
+     * @return Value from 1 to 8, null if the orientation is null
+     */
+    private static Integer toValue(Orientation orientation) {
+        if (orientation == null) {
+            return null;
+        }
+        for (int value = 1; value <= Orientation.values().length; value++) {
+            if (Orientation.typeOf(value) == orientation) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ImageMetadata {
+
+        private int width;
+
+        private int height;
+
+        /**
+         * EXIF orientation, 1 to 8
+         */
+        private Integer orientation;
+
+        private String format;
+    }
+}
@@ -11,6 +11,12 @@ import java.util.Comparator;
  */
 public class NaturalSortUtil {
 
+    /**
+     * Length of the order_name column, short enough for the column to be part of the cursor index. Names differing
+     * only after this length sort by id
+     */
+    public static final int MAX_LENGTH = 760;
+
     /**
      * Determine whether the incoming string contains numbers. If there are numbers, add the length of the number in front and add 999 in the end, minus the number of 0 deletions.
      *
@@ -44,10 +50,19 @@ public class NaturalSortUtil {
             var o = str.substring(tmp, cs.length);
             addNumberLength(sbu, o);
         }
-        return sbu.toString();
+        return truncate(sbu.toString());
 
     }
 
+    private static String truncate(String str) {
+        if (str.length() <= MAX_LENGTH) {
+            return str;
+        }
+        // Do not split a surrogate pair
+        var end = Character.isHighSurrogate(str.charAt(MAX_LENGTH - 1)) ? MAX_LENGTH - 1 : MAX_LENGTH;
+        return str.substring(0, end);
+    }
+
     /**
      * Add the length of the number before the string contains the number and add 999 after it minus delete the 0 number
      *
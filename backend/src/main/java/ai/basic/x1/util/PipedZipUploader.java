@@ -0,0 +1,142 @@
+package ai.basic.x1.util;
+
+import cn.hutool.core.io.IoUtil;
+import com.google.common.io.CountingOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a ZIP archive into a pipe that an upload reads on another thread, so the archive is uploaded while
+ * it is written and never exists on disk.
+ *
+ * @author fyb
+ */
+@Slf4j
+public class PipedZipUploader {
+
+    private final AbortableInputStream inputStream;
+    private final CountingOutputStream countingOutputStream;
+    private final ZipOutputStream zipOutputStream;
+    private final CompletableFuture<Void> uploadFuture;
+    private final Set<String> entryNames = new HashSet<>();
+
+    /**
+     * @param executor   Executor running the upload
+     * @param bufferSize Pipe buffer size in bytes
+     * @param upload     Upload reading the archive until the end of the stream
+     */
+    public PipedZipUploader(Executor executor, int bufferSize, StreamUpload upload) throws IOException {
+        var pipedInputStream = new PipedInputStream(bufferSize);
+        this.inputStream = new AbortableInputStream(pipedInputStream);
+        this.countingOutputStream = new CountingOutputStream(new PipedOutputStream(pipedInputStream));
+        this.zipOutputStream = new ZipOutputStream(countingOutputStream, StandardCharsets.UTF_8);
+        this.uploadFuture = CompletableFuture.runAsync(() -> {
+            try (inputStream) {
+                upload.upload(inputStream);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Add an entry, blocks while the upload is behind by more than the pipe buffer
+     *
+     * @param name    Entry name
+     * @param content Entry content
+     */
+    public void putEntry(String name, byte[] content) throws IOException {
+        if (!entryNames.add(name)) {
+            log.warn("Duplicate zip entry {} is skipped", name);
+            return;
+        }
+        zipOutputStream.putNextEntry(new ZipEntry(name));
+        zipOutputStream.write(content);
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * Complete the archive and wait for the upload
+     *
+     * @return Archive size in bytes
+     */
+    public long finish() throws IOException {
+        zipOutputStream.close();
+        try {
+            uploadFuture.join();
+        } catch (CompletionException e) {
+            throw new IOException("Upload zip error", e.getCause());
+        }
+        return countingOutputStream.getCount();
+    }
+
+    /**
+     * Fail the upload so that no truncated archive is stored, the upload ends with an error instead of
+     * reading the end of the stream
+     */
+    public void abort() {
+        inputStream.aborted = true;
+        try {
+            // Wake up the upload waiting for data
+            countingOutputStream.write(0);
+            countingOutputStream.flush();
+        } catch (IOException e) {
+            // The upload has already stopped reading
+        }
+        try {
+            uploadFuture.join();
+        } catch (CompletionException e) {
+            log.debug("Zip upload aborted", e.getCause());
+        }
+        IoUtil.close(countingOutputStream);
+    }
+
+    @FunctionalInterface
+    public interface StreamUpload {
+        void upload(InputStream inputStream) throws Exception;
+    }
+
+    private static class AbortableInputStream extends FilterInputStream {
+
+        private volatile boolean aborted;
+
+        private AbortableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkAborted();
+            var b = super.read();
+            checkAborted();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkAborted();
+            var n = super.read(b, off, len);
+            checkAborted();
+            return n;
+        }
+
+        private void checkAborted() throws IOException {
+            if (aborted) {
+                throw new IOException("Zip stream aborted");
+            }
+        }
+    }
+}
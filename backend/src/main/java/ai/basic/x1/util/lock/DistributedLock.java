@@ -1,37 +1,143 @@
 package ai.basic.x1.util.lock;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @author fyb
  *
- * Base redis reentrant lock
+ * Base redis reentrant lock. The lease of a held lock is renewed by a watchdog until it is unlocked, so a long
+ * holder never loses it while its node is alive. Waiters sleep until an unlock is published or the lease of the
+ * holder expires instead of polling. Every new holder of a key gets a larger fencing token, the counter of a key
+ * expires a week after its last lease.
  */
 @Slf4j
 public class DistributedLock implements IDistributedLock {
 
+    private static final String FENCE_SUFFIX = ":fence";
+    private static final String CHANNEL_SUFFIX = ":unlock";
+
+    /**
+     * Time to live of the fencing counter of a key after its last lease, so the counters of one-off keys do not pile
+     * up. A stale holder is long gone when a counter restarts from 1
+     */
+    private static final long FENCE_TIMEOUT = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Returns {1, fencing token} when locked, {0, remaining lease of the holder} otherwise. ARGV[3] is the time to
+     * live of the fencing counter
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('exists', KEYS[1]) == 0) then" +
+                    "    local fence = redis.call('incr', KEYS[2]);" +
+                    "    redis.call('pexpire', KEYS[2], ARGV[3]);" +
+                    "    redis.call('hset', KEYS[1], ARGV[2], 1);" +
+                    "    redis.call('hset', KEYS[1], 'fence', fence);" +
+                    "    redis.call('pexpire', KEYS[1], ARGV[1]);" +
+                    "    return {1, fence};" +
+                    "end ;" +
+                    "if (redis.call('hexists', KEYS[1], ARGV[2]) == 1) then" +
+                    "    redis.call('hincrby', KEYS[1], ARGV[2], 1);" +
+                    "    redis.call('pexpire', KEYS[1], ARGV[1]);" +
+                    "    return {1, tonumber(redis.call('hget', KEYS[1], 'fence') or '0')};" +
+                    "end ;" +
+                    "return {0, redis.call('pttl', KEYS[1])};",
+            List.class);
+
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then" +
+                    "    return nil;" +
+                    "end ;" +
+                    "local counter = redis.call('hincrby', KEYS[1], ARGV[1], -1);" +
+                    "if (counter > 0) then" +
+                    "    return 0;" +
+                    "else" +
+                    "    redis.call('del', KEYS[1]);" +
+                    "    redis.call('publish', ARGV[2], KEYS[1]);" +
+                    "    return 1;" +
+                    "end ;" +
+                    "return nil;",
+            Long.class);
+
+    private static final RedisScript<Boolean> RENEW_SCRIPT = RedisScript.of(
+            "if (redis.call('hexists', KEYS[1], ARGV[2]) == 1) then" +
+                    "    redis.call('pexpire', KEYS[1], ARGV[1]);" +
+                    "    redis.call('pexpire', KEYS[2], ARGV[3]);" +
+                    "    return 1;" +
+                    "end ;" +
+                    "return 0;",
+            Boolean.class);
+
+    private static final RedisScript<Boolean> FENCE_SCRIPT = RedisScript.of(
+            "if (redis.call('hget', KEYS[1], 'fence') == ARGV[1]) then" +
+                    "    return 1;" +
+                    "end ;" +
+                    "return 0;",
+            Boolean.class);
+
+    /**
+     * Renews the leases of the held locks of all instances
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r);
+        thread.setName("distributedLock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String lockKeyPrefix;
+    private final String channel;
     private final StringRedisTemplate stringRedisTemplate;
     private String instanceId;
     private long lockTimeout;
+    private final long fenceTimeout;
+    private final Map<String, LockHold> holdMap = new ConcurrentHashMap<>();
+    private final Map<String, LockWaiter> waiterMap = new ConcurrentHashMap<>();
+    private final Timer acquiredTimer;
+    private final Timer failedTimer;
+    private final Counter contentionCounter;
+    private final Counter lostCounter;
 
-    public DistributedLock(StringRedisTemplate stringRedisTemplate, String lockKeyPrefix, long lockTimeout) {
+    public DistributedLock(StringRedisTemplate stringRedisTemplate, RedisMessageListenerContainer listenerContainer,
+                           MeterRegistry meterRegistry, String lockKeyPrefix, long lockTimeout) {
         this.lockKeyPrefix = lockKeyPrefix;
+        this.channel = lockKeyPrefix + CHANNEL_SUFFIX;
         this.stringRedisTemplate = stringRedisTemplate;
         this.lockTimeout = lockTimeout;
+        this.fenceTimeout = Math.max(FENCE_TIMEOUT, lockTimeout * 2);
         instanceId = UUID.randomUUID().toString();
+        listenerContainer.addMessageListener(this::onUnlock, new ChannelTopic(channel));
+
+        var lockName = lockKeyPrefix.substring(lockKeyPrefix.lastIndexOf(':') + 1);
+        acquiredTimer = Timer.builder("lock.wait").tag("lock", lockName).tag("outcome", "ACQUIRED").register(meterRegistry);
+        failedTimer = Timer.builder("lock.wait").tag("lock", lockName).tag("outcome", "FAILED").register(meterRegistry);
+        contentionCounter = Counter.builder("lock.contention").tag("lock", lockName).register(meterRegistry);
+        lostCounter = Counter.builder("lock.lost").tag("lock", lockName).register(meterRegistry);
     }
 
     @Override
     public boolean tryLock(String lockKey) {
-        return lock(lockKey, lockTimeout, TimeUnit.MILLISECONDS);
+        return lock(lockKey, 0);
     }
 
     @Override
@@ -39,65 +145,168 @@ public class DistributedLock implements IDistributedLock {
         if (waitTime <= 0) {
             throw new UnsupportedOperationException("waitTime must > 0!");
         }
-        try {
-            long start = System.currentTimeMillis();
-            boolean ret;
-            do {
-                ret = lock(lockKey, lockTimeout, TimeUnit.MILLISECONDS);
-                if (ret) {
-                    break;
-                }
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException iex) {
-                    log.error("try lock error", iex);
-                    break;
-                }
-            } while (System.currentTimeMillis() - start < waitTime);
-            return ret;
-        } catch (Exception ex) {
-            return false;
-        }
+        return lock(lockKey, waitTime);
     }
 
     @Override
     public void unlock(String lockKey) {
-        String luaScript =
-                "if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then" +
-                        "    return nil;" +
-                        "end ;" +
-                        "local counter = redis.call('hincrby', KEYS[1], ARGV[1], -1);" +
-                        "if (counter > 0) then" +
-                        "    return 0;" +
-                        "else" +
-                        "    redis.call('del', KEYS[1]);" +
-                        "    return 1;" +
-                        "end ;" +
-                        "return nil;";
-        Object result = stringRedisTemplate.execute(new DefaultRedisScript<>(luaScript, Long.class), Collections.singletonList(lockKeyPrefix + lockKey), getLockName(Thread.currentThread().getId()));
+        var key = lockKeyPrefix + lockKey;
+        var lockName = getLockName(Thread.currentThread().getId());
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(key), lockName, channel);
+        } finally {
+            holdMap.computeIfPresent(holdKey(key, lockName), (k, hold) -> {
+                if (--hold.count > 0) {
+                    return hold;
+                }
+                hold.renewal.cancel(false);
+                return null;
+            });
+        }
         if (result == null) {
             throw new IllegalMonitorStateException("attempt to unlock lock, not locked by lockName:" + Thread.currentThread().getId());
         }
     }
 
+    @Override
+    public Long getFencingToken(String lockKey) {
+        var hold = holdMap.get(holdKey(lockKeyPrefix + lockKey, getLockName(Thread.currentThread().getId())));
+        return hold == null ? null : hold.fencingToken;
+    }
+
+    @Override
+    public boolean isFencingTokenValid(String lockKey, long fencingToken) {
+        return Boolean.TRUE.equals(stringRedisTemplate.execute(FENCE_SCRIPT, List.of(lockKeyPrefix + lockKey),
+                String.valueOf(fencingToken)));
+    }
+
     private String getLockName(long threadId) {
         return instanceId + ":" + threadId;
     }
 
-    private boolean lock(String lockKey, long leaseTime, TimeUnit unit) {
-        String luaScript =
-                "if (redis.call('exists', KEYS[1]) == 0) then" +
-                        "    redis.call('hincrby', KEYS[1], ARGV[2], 1);" +
-                        "    redis.call('pexpire', KEYS[1], ARGV[1]);" +
-                        "    return 1;" +
-                        "end ;" +
-                        "if (redis.call('hexists', KEYS[1], ARGV[2]) == 1) then" +
-                        "    redis.call('hincrby', KEYS[1], ARGV[2], 1);" +
-                        "    redis.call('pexpire', KEYS[1], ARGV[1]);" +
-                        "    return 1;" +
-                        "end ;" +
-                        "return 0;";
-        return stringRedisTemplate.execute(RedisScript.of(luaScript, Boolean.class), Collections.singletonList(lockKeyPrefix + lockKey), String.valueOf(unit.toMillis(leaseTime)), getLockName(Thread.currentThread().getId())).booleanValue();
+    private static String holdKey(String key, String lockName) {
+        return key + "@" + lockName;
+    }
+
+    /**
+     * Lock, waiting for unlock notifications or the end of the holder's lease until the wait time is used up
+     */
+    private boolean lock(String lockKey, long waitTime) {
+        var key = lockKeyPrefix + lockKey;
+        var lockName = getLockName(Thread.currentThread().getId());
+        var start = System.nanoTime();
+        var deadline = start + TimeUnit.MILLISECONDS.toNanos(waitTime);
+        LockWaiter waiter = null;
+        try {
+            while (true) {
+                var leaseLeft = acquire(key, lockName);
+                if (leaseLeft == null) {
+                    acquiredTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return true;
+                }
+                contentionCounter.increment();
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                if (waiter == null) {
+                    // Try once more after subscribing, an unlock published in between is not missed
+                    waiter = subscribe(key);
+                    continue;
+                }
+                var waitNanos = leaseLeft > 0 ? Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(leaseLeft)) : remaining;
+                waiter.semaphore.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException iex) {
+            log.error("try lock error", iex);
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.error("try lock error", ex);
+        } finally {
+            if (waiter != null) {
+                unsubscribe(key);
+            }
+        }
+        failedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return false;
+    }
+
+    /**
+     * @return null when locked, otherwise the remaining lease of the holder in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    private Long acquire(String key, String lockName) {
+        List<Long> result = stringRedisTemplate.execute(LOCK_SCRIPT, List.of(key, key + FENCE_SUFFIX),
+                String.valueOf(lockTimeout), lockName, String.valueOf(fenceTimeout));
+        if (result.get(0) == 0) {
+            return result.get(1);
+        }
+        var fencingToken = result.get(1);
+        holdMap.compute(holdKey(key, lockName), (holdKey, hold) -> {
+            if (hold == null) {
+                var period = Math.max(1, lockTimeout / 3);
+                hold = new LockHold(fencingToken, WATCHDOG.scheduleAtFixedRate(() -> renew(key, lockName, holdKey),
+                        period, period, TimeUnit.MILLISECONDS));
+            }
+            hold.count++;
+            return hold;
+        });
+        return null;
+    }
+
+    private void renew(String key, String lockName, String holdKey) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.execute(RENEW_SCRIPT, List.of(key, key + FENCE_SUFFIX),
+                    String.valueOf(lockTimeout), lockName, String.valueOf(fenceTimeout)))) {
+                return;
+            }
+            lostCounter.increment();
+            log.warn("Lock {} lost by {}", key, lockName);
+            var hold = holdMap.remove(holdKey);
+            if (hold != null) {
+                hold.renewal.cancel(false);
+            }
+        } catch (Exception ex) {
+            // Retried on the next tick, the lease outlives a few failed renewals
+            log.warn("Renew lock {} error", key, ex);
+        }
+    }
+
+    private LockWaiter subscribe(String key) {
+        return waiterMap.compute(key, (k, waiter) -> {
+            if (waiter == null) {
+                waiter = new LockWaiter();
+            }
+            waiter.count++;
+            return waiter;
+        });
+    }
+
+    private void unsubscribe(String key) {
+        waiterMap.computeIfPresent(key, (k, waiter) -> --waiter.count == 0 ? null : waiter);
+    }
+
+    private void onUnlock(Message message, byte[] pattern) {
+        var waiter = waiterMap.get(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (waiter != null) {
+            waiter.semaphore.release();
+        }
+    }
+
+    private static class LockHold {
+        private final long fencingToken;
+        private final ScheduledFuture<?> renewal;
+        private int count;
+
+        private LockHold(long fencingToken, ScheduledFuture<?> renewal) {
+            this.fencingToken = fencingToken;
+            this.renewal = renewal;
+        }
+    }
 
+    private static class LockWaiter {
+        private final Semaphore semaphore = new Semaphore(0);
+        private int count;
     }
 }
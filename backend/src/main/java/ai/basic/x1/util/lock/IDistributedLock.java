@@ -24,4 +24,19 @@ public interface IDistributedLock {
      * @param lockKey
      */
     void unlock(String lockKey);
+
+    /**
+     * Fencing token of the lock held by the current thread, every new holder of a lockKey gets a larger one
+     * @param lockKey
+     * @return fencing token, null when the current thread does not hold the lock
+     */
+    Long getFencingToken(String lockKey);
+
+    /**
+     * Check right before a guarded write that nobody else took the lock since the token was issued
+     * @param lockKey
+     * @param fencingToken
+     * @return whether the token is still the current one
+     */
+    boolean isFencingTokenValid(String lockKey, long fencingToken);
 }
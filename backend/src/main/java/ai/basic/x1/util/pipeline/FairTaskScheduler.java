@@ -0,0 +1,138 @@
+package ai.basic.x1.util.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission scheduler that runs queued tasks round-robin across tenants, so one tenant submitting
+ * several large tasks can not starve the others. Concurrency is capped globally, per tenant and per dataset.
+ *
+ * @author fyb
+ */
+@Slf4j
+public class FairTaskScheduler {
+
+    private final int maxRunning;
+    private final int maxRunningPerTenant;
+    private final int maxRunningPerDataset;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Waiting tasks grouped by tenant, iteration order is the round-robin order
+     */
+    private final LinkedHashMap<String, Deque<Task>> tenantQueues = new LinkedHashMap<>();
+    private final Map<String, Integer> runningByTenant = new HashMap<>();
+    private final Map<String, Integer> runningByDataset = new HashMap<>();
+    private int running;
+
+    public FairTaskScheduler(String name, int maxRunning, int maxRunningPerTenant, int maxRunningPerDataset) {
+        this.maxRunning = maxRunning;
+        this.maxRunningPerTenant = maxRunningPerTenant;
+        this.maxRunningPerDataset = maxRunningPerDataset;
+        var index = new AtomicInteger(1);
+        this.workers = new ThreadPoolExecutor(maxRunning, maxRunning, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r);
+            thread.setName(name + "-executor" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a task, it will be started as soon as the limits of its tenant and dataset allow
+     *
+     * @param tenantKey  Tenant key
+     * @param datasetKey Dataset key
+     * @param runnable   Task
+     */
+    public synchronized void submit(String tenantKey, String datasetKey, Runnable runnable) {
+        tenantQueues.computeIfAbsent(tenantKey, k -> new ArrayDeque<>()).add(new Task(tenantKey, datasetKey, runnable));
+        dispatch();
+    }
+
+    /**
+     * Number of tasks waiting to be started
+     *
+     * @return Waiting task count
+     */
+    public synchronized int getWaitingCount() {
+        return tenantQueues.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    /**
+     * Number of tasks running
+     *
+     * @return Running task count
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    private void dispatch() {
+        while (running < maxRunning) {
+            var task = pollNext();
+            if (task == null) {
+                return;
+            }
+            running++;
+            runningByTenant.merge(task.tenantKey, 1, Integer::sum);
+            runningByDataset.merge(task.datasetKey, 1, Integer::sum);
+            workers.execute(() -> {
+                try {
+                    task.runnable.run();
+                } catch (Exception e) {
+                    log.error("Scheduled task error,tenant:{},dataset:{}", task.tenantKey, task.datasetKey, e);
+                } finally {
+                    complete(task);
+                }
+            });
+        }
+    }
+
+    private Task pollNext() {
+        for (var tenantKey : new ArrayList<>(tenantQueues.keySet())) {
+            if (runningByTenant.getOrDefault(tenantKey, 0) >= maxRunningPerTenant) {
+                continue;
+            }
+            var queue = tenantQueues.get(tenantKey);
+            for (var iterator = queue.iterator(); iterator.hasNext(); ) {
+                var task = iterator.next();
+                if (runningByDataset.getOrDefault(task.datasetKey, 0) < maxRunningPerDataset) {
+                    iterator.remove();
+                    // Move the tenant to the tail so the next poll starts from another tenant
+                    tenantQueues.remove(tenantKey);
+                    if (!queue.isEmpty()) {
+                        tenantQueues.put(tenantKey, queue);
+                    }
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized void complete(Task task) {
+        running--;
+        runningByTenant.computeIfPresent(task.tenantKey, (k, v) -> v > 1 ? v - 1 : null);
+        runningByDataset.computeIfPresent(task.datasetKey, (k, v) -> v > 1 ? v - 1 : null);
+        dispatch();
+    }
+
+    private static class Task {
+        private final String tenantKey;
+        private final String datasetKey;
+        private final Runnable runnable;
+
+        private Task(String tenantKey, String datasetKey, Runnable runnable) {
+            this.tenantKey = tenantKey;
+            this.datasetKey = datasetKey;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ai.basic.x1.util.pipeline;
+
+import ai.basic.x1.util.Constants;
+import cn.hutool.core.io.FileUtil;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Files of one scene folder by data name. The scene and its device folders are walked once, so the data names and
+ * the files of each data are looked up instead of listing every device folder again for each data.
+ *
+ * @author fyb
+ */
+public class SceneIndex {
+
+    @Getter
+    private final File sceneFile;
+
+    /**
+     * Device folder to the data files in it by data name, in the order the folders are listed
+     */
+    private final Map<File, Map<String, List<File>>> deviceFiles = new LinkedHashMap<>();
+
+    private final Map<String, File> resultFiles = new HashMap<>();
+
+    /**
+     * Bytes and number of the data files by data name
+     */
+    private final Map<String, long[]> dataSizes = new HashMap<>();
+
+    private final TreeSet<String> dataNames = new TreeSet<>();
+
+    private SceneIndex(File sceneFile) {
+        this.sceneFile = sceneFile;
+    }
+
+    /**
+     * Walk a scene folder
+     *
+     * @param sceneFile        Scene folder
+     * @param deviceFilter     Device folders holding data files
+     * @param dataFileFilter   Supported data files in a device folder
+     * @param dataNameFilter   Data files whose names make the data names of the scene
+     * @param resultFolderName Folder of the JSON result files
+     * @return Scene index
+     */
+    public static SceneIndex build(File sceneFile, Predicate<File> deviceFilter, Predicate<File> dataFileFilter,
+                                   Predicate<File> dataNameFilter, String resultFolderName) throws IOException {
+        var sceneIndex = new SceneIndex(sceneFile);
+        var scenePath = sceneFile.toPath();
+        Files.walkFileTree(scenePath, EnumSet.noneOf(FileVisitOption.class), 2, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(scenePath)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                var folder = dir.toFile();
+                if (deviceFilter.test(folder)) {
+                    sceneIndex.deviceFiles.put(folder, new HashMap<>());
+                    return FileVisitResult.CONTINUE;
+                }
+                return folder.getName().equalsIgnoreCase(resultFolderName) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile() || path.getParent().equals(scenePath)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                var file = path.toFile();
+                var folder = file.getParentFile();
+                var files = sceneIndex.deviceFiles.get(folder);
+                if (files == null) {
+                    if (file.getName().toUpperCase().endsWith(Constants.JSON_SUFFIX)) {
+                        sceneIndex.resultFiles.putIfAbsent(FileUtil.getPrefix(file), file);
+                    }
+                } else if (dataFileFilter.test(file)) {
+                    var dataName = FileUtil.mainName(file);
+                    files.computeIfAbsent(dataName, k -> new ArrayList<>(1)).add(file);
+                    var dataSize = sceneIndex.dataSizes.computeIfAbsent(dataName, k -> new long[2]);
+                    dataSize[0] += attrs.size();
+                    dataSize[1]++;
+                    if (dataNameFilter.test(file)) {
+                        sceneIndex.dataNames.add(dataName);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sceneIndex;
+    }
+
+    /**
+     * Sorted data names of the scene
+     */
+    public List<String> getDataNames() {
+        return new ArrayList<>(dataNames);
+    }
+
+    public int getDataNum() {
+        return dataNames.size();
+    }
+
+    /**
+     * Split the sorted data names into work units of at most maxBytes of files and maxFiles files, so that the
+     * cost of a unit is dominated by its files rather than by the per unit overhead. A data exceeding a limit on
+     * its own makes a unit by itself
+     *
+     * @param maxBytes Bytes of the data files of a unit
+     * @param maxFiles Data files of a unit
+     * @return Data names by unit
+     */
+    public List<List<String>> splitDataNames(long maxBytes, int maxFiles) {
+        var units = new ArrayList<List<String>>();
+        var unit = new ArrayList<String>();
+        var unitBytes = 0L;
+        var unitFiles = 0L;
+        for (var dataName : dataNames) {
+            var dataSize = dataSizes.getOrDefault(dataName, new long[2]);
+            if (!unit.isEmpty() && (unitBytes + dataSize[0] > maxBytes || unitFiles + dataSize[1] > maxFiles)) {
+                units.add(unit);
+                unit = new ArrayList<>();
+                unitBytes = 0;
+                unitFiles = 0;
+            }
+            unit.add(dataName);
+            unitBytes += dataSize[0];
+            unitFiles += dataSize[1];
+        }
+        if (!unit.isEmpty()) {
+            units.add(unit);
+        }
+        return units;
+    }
+
+    /**
+     * Files of a data, one per device folder
+     *
+     * @param dataName          Data name
+     * @param duplicateConsumer Called with the device folder holding more than one file of the data
+     * @return Files of the data, empty if a device folder holds more than one file of it
+     */
+    public List<File> getDataFiles(String dataName, Consumer<File> duplicateConsumer) {
+        var dataFiles = new ArrayList<File>();
+        var duplicate = false;
+        for (var entry : deviceFiles.entrySet()) {
+            var files = entry.getValue().get(dataName);
+            if (files == null) {
+                continue;
+            }
+            if (files.size() > 1) {
+                duplicateConsumer.accept(entry.getKey());
+                duplicate = true;
+            } else {
+                dataFiles.addAll(files);
+            }
+        }
+        return duplicate ? List.of() : dataFiles;
+    }
+
+    /**
+     * Result file of a data, null if there is none
+     */
+    public File getResultFile(String dataName) {
+        return resultFiles.get(dataName);
+    }
+}
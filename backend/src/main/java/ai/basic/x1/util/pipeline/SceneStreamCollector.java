@@ -0,0 +1,76 @@
+package ai.basic.x1.util.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Groups decompressed files into scenes while a package is being decompressed. Packages list the files of
+ * a scene together, so a scene is complete as soon as a file of another scene arrives, and it can be
+ * parsed while the rest of the package is still being decompressed.
+ *
+ * @author fyb
+ */
+@Slf4j
+public class SceneStreamCollector implements Consumer<File> {
+
+    private final Function<File, File> sceneResolver;
+    private final Consumer<File> completedSceneConsumer;
+    private final Set<File> completedScenes = new HashSet<>();
+    private final Set<File> lateScenes = new LinkedHashSet<>();
+    private File currentScene;
+
+    /**
+     * @param sceneResolver          Get the scene folder of a file, null if the file does not belong to a scene
+     * @param completedSceneConsumer Called with the scene folder once all its files are decompressed
+     */
+    public SceneStreamCollector(Function<File, File> sceneResolver, Consumer<File> completedSceneConsumer) {
+        this.sceneResolver = sceneResolver;
+        this.completedSceneConsumer = completedSceneConsumer;
+    }
+
+    @Override
+    public void accept(File file) {
+        var scene = sceneResolver.apply(file);
+        if (scene == null || scene.equals(currentScene)) {
+            return;
+        }
+        if (completedScenes.contains(scene)) {
+            log.warn("File arrived after its scene was parsed,scene:{},file:{}", scene, file);
+            lateScenes.add(scene);
+            return;
+        }
+        complete();
+        currentScene = scene;
+    }
+
+    /**
+     * Complete the last scene, call after the package is fully decompressed
+     */
+    public void finish() {
+        complete();
+    }
+
+    /**
+     * Scenes that received files after they were completed, those files are not parsed
+     *
+     * @return Late scene folders
+     */
+    public Set<File> getLateScenes() {
+        return lateScenes;
+    }
+
+    private void complete() {
+        if (currentScene != null) {
+            completedScenes.add(currentScene);
+            var scene = currentScene;
+            currentScene = null;
+            completedSceneConsumer.accept(scene);
+        }
+    }
+}
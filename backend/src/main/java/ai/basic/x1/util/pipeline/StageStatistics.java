@@ -0,0 +1,89 @@
+package ai.basic.x1.util.pipeline;
+
+import ai.basic.x1.entity.enums.UploadStageEnum;
+import cn.hutool.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-stage throughput statistics of a single upload, safe to be updated by several stage workers
+ *
+ * @author fyb
+ */
+public class StageStatistics {
+
+    private final Map<UploadStageEnum, Counter> counters = new EnumMap<>(UploadStageEnum.class);
+
+    public StageStatistics() {
+        for (var stage : UploadStageEnum.values()) {
+            counters.put(stage, new Counter());
+        }
+    }
+
+    /**
+     * Record the work done by one stage task
+     *
+     * @param stage      Stage
+     * @param items      Number of items processed
+     * @param bytes      Number of bytes processed
+     * @param startNanos Start time of the task, from System.nanoTime()
+     */
+    public void record(UploadStageEnum stage, long items, long bytes, long startNanos) {
+        counters.get(stage).record(items, bytes, startNanos, System.nanoTime());
+    }
+
+    /**
+     * Convert to json, stage name as key, includes items/s and bytes/s computed on the stage wall time
+     *
+     * @return Statistics json
+     */
+    public JSONObject toJson() {
+        var json = new JSONObject(true);
+        counters.forEach((stage, counter) -> {
+            var stageJson = counter.toJson();
+            if (stageJson != null) {
+                json.set(stage.name(), stageJson);
+            }
+        });
+        return json;
+    }
+
+    private static class Counter {
+
+        private long items;
+        private long bytes;
+        private long busyNanos;
+        private long firstStartNanos;
+        private long lastEndNanos;
+        private long tasks;
+
+        private synchronized void record(long items, long bytes, long startNanos, long endNanos) {
+            if (tasks == 0 || startNanos < firstStartNanos) {
+                firstStartNanos = startNanos;
+            }
+            if (tasks == 0 || endNanos > lastEndNanos) {
+                lastEndNanos = endNanos;
+            }
+            this.tasks++;
+            this.items += items;
+            this.bytes += bytes;
+            this.busyNanos += endNanos - startNanos;
+        }
+
+        private synchronized JSONObject toJson() {
+            if (tasks == 0) {
+                return null;
+            }
+            var wallSeconds = Math.max(lastEndNanos - firstStartNanos, 1L) / 1e9;
+            return new JSONObject(true)
+                    .set("tasks", tasks)
+                    .set("items", items)
+                    .set("bytes", bytes)
+                    .set("busyMillis", busyNanos / 1_000_000)
+                    .set("wallMillis", (lastEndNanos - firstStartNanos) / 1_000_000)
+                    .set("itemsPerSecond", Math.round(items / wallSeconds))
+                    .set("bytesPerSecond", Math.round(bytes / wallSeconds));
+        }
+    }
+}
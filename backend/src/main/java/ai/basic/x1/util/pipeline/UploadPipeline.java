@@ -0,0 +1,112 @@
+package ai.basic.x1.util.pipeline;
+
+import ai.basic.x1.entity.enums.UploadStageEnum;
+import com.alibaba.ttl.TtlRunnable;
+import com.alibaba.ttl.threadpool.TtlExecutors;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Staged upload pipeline. Uploads are admitted by a {@link FairTaskScheduler}, the download and
+ * decompress stages run on the admitted thread, the parse stages (scan, upload, thumbnail, insert) run on
+ * their own bounded executors. When a stage queue is full the submitting thread runs the task itself,
+ * which throttles the upstream stage instead of buffering without limit.
+ *
+ * @author fyb
+ */
+public class UploadPipeline {
+
+    private final FairTaskScheduler scheduler;
+    private final Map<UploadStageEnum, ThreadPoolExecutor> stageExecutors = new EnumMap<>(UploadStageEnum.class);
+    private final Map<UploadStageEnum, Executor> ttlStageExecutors = new EnumMap<>(UploadStageEnum.class);
+    private final int maxInFlightChunks;
+
+    public UploadPipeline(FairTaskScheduler scheduler, Map<UploadStageEnum, Integer> stageConcurrency,
+                          int stageQueueCapacity, int maxInFlightChunks) {
+        this.scheduler = scheduler;
+        this.maxInFlightChunks = maxInFlightChunks;
+        stageConcurrency.forEach((stage, concurrency) -> {
+            var executor = newStageExecutor(stage, concurrency, stageQueueCapacity);
+            stageExecutors.put(stage, executor);
+            ttlStageExecutors.put(stage, TtlExecutors.getTtlExecutor(executor));
+        });
+    }
+
+    /**
+     * Submit an upload job, jobs are started fairly across users and datasets
+     *
+     * @param userId    User id
+     * @param datasetId Dataset id
+     * @param job       Upload job
+     */
+    public void submit(Long userId, Long datasetId, Runnable job) {
+        scheduler.submit(String.valueOf(userId), String.valueOf(datasetId), Objects.requireNonNull(TtlRunnable.get(job)));
+    }
+
+    /**
+     * Run the supplier on the executor of the stage
+     *
+     * @param stage    Stage
+     * @param supplier Stage body
+     * @return Future of the stage result
+     */
+    public <T> CompletableFuture<T> supplyAsync(UploadStageEnum stage, Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, getExecutor(stage));
+    }
+
+    /**
+     * Get the executor of the stage, used to chain the following stages
+     *
+     * @param stage Stage
+     * @return Stage executor
+     */
+    public Executor getExecutor(UploadStageEnum stage) {
+        var executor = ttlStageExecutors.get(stage);
+        if (executor == null) {
+            throw new IllegalArgumentException("No executor configured for stage " + stage);
+        }
+        return executor;
+    }
+
+    /**
+     * Create a limiter for the chunks a single upload may have in the parse stages at the same time,
+     * so that one large package can not fill all stage queues
+     *
+     * @return In-flight chunk limiter
+     */
+    public Semaphore newInFlightLimiter() {
+        return new Semaphore(maxInFlightChunks);
+    }
+
+    /**
+     * Number of tasks waiting in the queue of the stage
+     *
+     * @param stage Stage
+     * @return Queue size
+     */
+    public int getQueueSize(UploadStageEnum stage) {
+        var executor = stageExecutors.get(stage);
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public FairTaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private static ThreadPoolExecutor newStageExecutor(UploadStageEnum stage, int concurrency, int queueCapacity) {
+        var index = new AtomicInteger(1);
+        var name = "upload-" + stage.name().toLowerCase() + "-executor";
+        return new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r);
+            thread.setName(name + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
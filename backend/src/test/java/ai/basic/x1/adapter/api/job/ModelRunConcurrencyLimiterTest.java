@@ -0,0 +1,127 @@
+package ai.basic.x1.adapter.api.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelRunConcurrencyLimiterTest {
+
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testInitialLimit() {
+        assertEquals(1, new ModelRunConcurrencyLimiter(0, 4, 2).getLimit());
+        assertEquals(4, new ModelRunConcurrencyLimiter(10, 4, 2).getLimit());
+        assertEquals(1, new ModelRunConcurrencyLimiter(2, 0, 2).getLimit());
+    }
+
+    @Test
+    public void testIncreaseWhenSaturated() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(2, 4, 2);
+
+        runWindow(limiter, 2, LATENCY_NANOS, true);
+        assertEquals(3, limiter.getLimit());
+        runWindow(limiter, 3, LATENCY_NANOS, true);
+        assertEquals(4, limiter.getLimit());
+        // Never above the maximum
+        runWindow(limiter, 4, LATENCY_NANOS, true);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testKeepWhenNotSaturated() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(2, 4, 2);
+
+        // One call at a time never uses all permits
+        for (var i = 0; i < 4; i++) {
+            runWindow(limiter, 1, LATENCY_NANOS, true);
+        }
+
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testDecreaseOnFailure() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(4, 8, 2);
+
+        runWindow(limiter, 4, LATENCY_NANOS, false);
+        assertEquals(3, limiter.getLimit());
+        runWindow(limiter, 3, LATENCY_NANOS, false);
+        assertEquals(2, limiter.getLimit());
+        runWindow(limiter, 2, LATENCY_NANOS, false);
+        assertEquals(1, limiter.getLimit());
+        // Never below one
+        runWindow(limiter, 1, LATENCY_NANOS, false);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testDecreaseOnLatency() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(4, 8, 1.5);
+        limiter.acquire();
+        limiter.acquire();
+        limiter.acquire();
+        limiter.acquire();
+
+        limiter.release(LATENCY_NANOS, true);
+        limiter.release(LATENCY_NANOS, true);
+        limiter.release(LATENCY_NANOS * 10, true);
+        // The smoothed latency is well over 1.5 times the best one although every call succeeded
+        limiter.release(LATENCY_NANOS * 10, true);
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(1, 4, 2);
+        limiter.acquire();
+
+        limiter.cancel();
+
+        // A cancelled permit is no sample
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, limiter.getLimit());
+        limiter.acquire();
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAcquireBlocksAtLimit() throws InterruptedException {
+        var limiter = new ModelRunConcurrencyLimiter(1, 1, 2);
+        limiter.acquire();
+        var acquired = new CountDownLatch(1);
+        var thread = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        limiter.release(LATENCY_NANOS, true);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    /**
+     * Take the given number of permits at once, then give them all back
+     */
+    private static void runWindow(ModelRunConcurrencyLimiter limiter, int calls, long latencyNanos, boolean success)
+            throws InterruptedException {
+        for (var i = 0; i < calls; i++) {
+            limiter.acquire();
+        }
+        for (var i = 0; i < calls; i++) {
+            limiter.release(latencyNanos, success);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ai.basic.x1.adapter.api.job;
+
+import ai.basic.x1.adapter.port.dao.redis.ModelEvaluationDAO;
+import ai.basic.x1.adapter.port.rpc.dto.ModelResultEvaluateRespDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ModelRunEvaluatorTest {
+
+    private static final Long SERIAL_NO = 1L;
+
+    private ModelRunEvaluator modelRunEvaluator;
+
+    /**
+     * Redis counters of the run
+     */
+    private Map<String, Long> counters;
+
+    @BeforeEach
+    public void setUp() {
+        counters = new HashMap<>();
+        var modelEvaluationDAO = mock(ModelEvaluationDAO.class);
+        doAnswer(invocation -> {
+            Map<String, Long> increments = invocation.getArgument(1);
+            increments.forEach((field, value) -> counters.merge(field, value, Long::sum));
+            return null;
+        }).when(modelEvaluationDAO).increment(anyLong(), anyMap());
+        when(modelEvaluationDAO.getCounters(anyLong())).thenAnswer(invocation -> new HashMap<>(counters));
+
+        modelRunEvaluator = new ModelRunEvaluator();
+        ReflectionTestUtils.setField(modelRunEvaluator, "modelEvaluationDAO", modelEvaluationDAO);
+        ReflectionTestUtils.setField(modelRunEvaluator, "iouThreshold", 0.5);
+        ReflectionTestUtils.setField(modelRunEvaluator, "confidenceBuckets", 10);
+    }
+
+    @Test
+    public void testMatch() {
+        accumulateCarsAndPerson();
+
+        assertEquals(Map.of(
+                "data", 1L,
+                "gt:car", 2L,
+                "gt:person", 1L,
+                "tp:car:9", 1L,
+                "fp:car:8", 1L,
+                "tp:car:5", 1L,
+                "fp:person:3", 1L), counters);
+    }
+
+    @Test
+    public void testMatchHighestConfidenceFirst() {
+        var groundTruth = List.of(box("car", null, 0, 0, 10, 10));
+        // The exact box comes first but has the lower confidence, the greedy matching gives the ground truth to the other
+        var modelRun = List.of(box("car", 0.2, 0, 0, 10, 10), box("car", 0.9, 0, 0, 10, 12));
+
+        modelRunEvaluator.accumulate(SERIAL_NO, groundTruth, modelRun);
+
+        assertEquals(1L, counters.get("tp:car:9"));
+        assertEquals(1L, counters.get("fp:car:2"));
+    }
+
+    @Test
+    public void testMatchUnknownClass() {
+        var groundTruth = List.of(box(null, null, 0, 0, 10, 10), box("person", null, 20, 0, 30, 10));
+        // No confidence counts as 1, an unknown model run class takes the class of the ground truth
+        var modelRun = List.of(box(null, null, 20, 0, 30, 10), box("car", 0.5, 0, 0, 10, 10));
+
+        modelRunEvaluator.accumulate(SERIAL_NO, groundTruth, modelRun);
+
+        assertEquals(Map.of(
+                "data", 1L,
+                "gt:", 1L,
+                "gt:person", 1L,
+                "tp:person:9", 1L,
+                "tp:car:5", 1L), counters);
+    }
+
+    @Test
+    public void testMatchWithoutModelRun() {
+        modelRunEvaluator.accumulate(SERIAL_NO, List.of(box("car", null, 0, 0, 10, 10)), List.of());
+        modelRunEvaluator.accumulate(SERIAL_NO, List.of(), List.of(box("car", 0.7, 0, 0, 10, 10)));
+
+        assertEquals(Map.of("data", 2L, "gt:car", 1L, "fp:car:7", 1L), counters);
+    }
+
+    @Test
+    public void testAveragePrecision() {
+        accumulateCarsAndPerson();
+
+        var metrics = metrics();
+
+        // Interpolated precision 1 up to recall 1/3, then 2/3 up to recall 2/3
+        assertEquals("0.5556", metrics.get("averagePrecision"));
+        assertEquals("0.5000", metrics.get("precision"));
+        assertEquals("0.6667", metrics.get("recall"));
+        assertEquals("0.5714", metrics.get("f1Score"));
+        assertEquals("1", metrics.get("evaluatedDataNum"));
+        assertEquals("0.6667", metrics.get("precision:car"));
+        assertEquals("1.0000", metrics.get("recall:car"));
+        assertEquals("0.0000", metrics.get("precision:person"));
+        assertEquals("0.0000", metrics.get("recall:person"));
+    }
+
+    @Test
+    public void testAveragePrecisionPerfectRun() {
+        var groundTruth = List.of(box("car", null, 0, 0, 10, 10), box("car", null, 20, 0, 30, 10));
+        var modelRun = List.of(box("car", 0.9, 0, 0, 10, 10), box("car", 0.4, 20, 0, 30, 10));
+        modelRunEvaluator.accumulate(SERIAL_NO, groundTruth, modelRun);
+        modelRunEvaluator.accumulate(SERIAL_NO, groundTruth, modelRun);
+
+        var metrics = metrics();
+
+        assertEquals("1.0000", metrics.get("averagePrecision"));
+        assertEquals("1.0000", metrics.get("precision"));
+        assertEquals("1.0000", metrics.get("recall"));
+        assertEquals("2", metrics.get("evaluatedDataNum"));
+    }
+
+    @Test
+    public void testMetricsWithoutData() {
+        assertNull(modelRunEvaluator.getMetrics(SERIAL_NO));
+    }
+
+    /**
+     * Two cars and a person. The cars are found at confidence 0.95 and 0.55 with a false positive at 0.85 in
+     * between, the person box at 0.3 overlaps too little
+     */
+    private void accumulateCarsAndPerson() {
+        var groundTruth = List.of(
+                box("car", null, 0, 0, 10, 10),
+                box("car", null, 20, 0, 30, 10),
+                box("person", null, 40, 0, 50, 10));
+        var modelRun = List.of(
+                box("person", 0.3, 45, 0, 55, 10),
+                box("car", 0.55, 21, 0, 31, 10),
+                box("car", 0.85, 1, 0, 11, 10),
+                box("car", 0.95, 0, 0, 10, 10));
+        modelRunEvaluator.accumulate(SERIAL_NO, groundTruth, modelRun);
+    }
+
+    private Map<String, String> metrics() {
+        var evaluateResp = modelRunEvaluator.getMetrics(SERIAL_NO);
+        assertNotNull(evaluateResp);
+        return evaluateResp.getMetrics().stream().collect(Collectors.toMap(
+                ModelResultEvaluateRespDTO.ModelMetricBO::getName, ModelResultEvaluateRespDTO.ModelMetricBO::getValue));
+    }
+
+    private static ModelEvaluationBox box(String label, Double confidence, double minX, double minY, double maxX, double maxY) {
+        return ModelEvaluationBox.of(label, confidence, new double[]{minX, minY}, new double[]{maxX, maxY});
+    }
+}
@@ -0,0 +1,148 @@
+package ai.basic.x1.adapter.port.dao;
+
+import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AbstractDAOTest {
+
+    @BeforeAll
+    public static void initTableInfo() {
+        var builderAssistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        builderAssistant.setCurrentNamespace(RowMapper.class.getName());
+        TableInfoHelper.initTableInfo(builderAssistant, Row.class);
+    }
+
+    @Test
+    public void testSplitByRows() {
+        var dao = new RowDAO(3, Integer.MAX_VALUE);
+        var rows = rows(10, 10, 10, 10, 10, 10, 10);
+
+        var chunks = dao.splitByStatementSize(rows);
+
+        assertEquals(List.of(3, 3, 1), sizes(chunks));
+        assertEquals(rows, chunks.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSplitByBytes() {
+        var dao = new RowDAO(1000, 100);
+
+        var chunks = dao.splitByStatementSize(rows(60, 40, 30, 70, 50, 50, 1));
+
+        // Each chunk reaches exactly 100 bytes, one more byte starts the next one
+        assertEquals(List.of(2, 2, 2, 1), sizes(chunks));
+    }
+
+    @Test
+    public void testSplitOversizedRow() {
+        var dao = new RowDAO(1000, 100);
+
+        var chunks = dao.splitByStatementSize(rows(10, 500, 10));
+
+        // A row larger than a statement is never dropped, it gets a statement of its own
+        assertEquals(List.of(1, 1, 1), sizes(chunks));
+        assertEquals(500, chunks.get(1).get(0).getCount());
+    }
+
+    @Test
+    public void testSplitEmpty() {
+        assertTrue(new RowDAO(1000, 100).splitByStatementSize(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testEstimateRowBytes() {
+        var dao = new EstimatingRowDAO();
+        var empty = dao.estimateRowBytes(new Row());
+
+        // Strings are measured in UTF-8 bytes
+        assertEquals(empty + 5, dao.estimateRowBytes(Row.builder().name("frame").build()));
+        assertEquals(empty + "帧".getBytes(StandardCharsets.UTF_8).length,
+                dao.estimateRowBytes(Row.builder().name("帧").build()));
+        // Numbers take the fixed value overhead like nulls
+        assertEquals(empty, dao.estimateRowBytes(Row.builder().count(123456).build()));
+        // JSON columns are measured by their serialized form
+        assertEquals(empty + "[\"car\",\"truck\"]".length(),
+                dao.estimateRowBytes(Row.builder().tags(List.of("car", "truck")).build()));
+    }
+
+    @Test
+    public void testEstimateDataInfoRowBytes() {
+        var dao = new DataInfoDAO();
+        var image = DataInfo.FileNode.builder().name("image_0.jpg").type("file").build();
+        var camera = DataInfo.FileNode.builder().name("camera_image_0").type("directory").files(List.of(image)).build();
+        var dataInfo = DataInfo.builder().name("frame").orderName("frame").content(List.of(camera)).build();
+
+        // Row overhead 256, names 5 + 5, nodes 64 + 14 + 9 and 64 + 11 + 4
+        assertEquals(256 + 10 + 87 + 79, dao.estimateRowBytes(dataInfo));
+        assertEquals(256, dao.estimateRowBytes(new DataInfo()));
+    }
+
+    private static List<Row> rows(int... bytes) {
+        return IntStream.of(bytes).mapToObj(count -> Row.builder().count(count).build()).collect(Collectors.toList());
+    }
+
+    private static List<Integer> sizes(List<List<Row>> chunks) {
+        return chunks.stream().map(List::size).collect(Collectors.toList());
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @TableName("test_row")
+    public static class Row {
+
+        @TableId(type = IdType.AUTO)
+        private Long id;
+
+        private String name;
+
+        private Integer count;
+
+        @TableField(value = "tags", typeHandler = JacksonTypeHandler.class)
+        private List<String> tags;
+    }
+
+    public interface RowMapper extends BaseMapper<Row> {
+    }
+
+    /**
+     * Rows are as large as their count
+     */
+    public static class RowDAO extends AbstractDAO<RowMapper, Row> {
+
+        RowDAO(int maxStatementRows, int maxStatementBytes) {
+            this.maxStatementRows = maxStatementRows;
+            this.maxStatementBytes = maxStatementBytes;
+        }
+
+        @Override
+        protected long estimateRowBytes(Row row) {
+            return row.getCount();
+        }
+    }
+
+    public static class EstimatingRowDAO extends AbstractDAO<RowMapper, Row> {
+    }
+}
@@ -0,0 +1,78 @@
+package ai.basic.x1.adapter.port.rpc;
+
+import com.alibaba.ttl.threadpool.TtlExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RpcDeadlineTest {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void testResolveWithoutDeadline() {
+        var remaining = RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS));
+
+        assertTrue(remaining > MINUTE_MILLIS - 1000 && remaining <= MINUTE_MILLIS, String.valueOf(remaining));
+    }
+
+    @Test
+    public void testCallWithinShortensCalls() {
+        var remaining = RpcDeadline.callWithin(1000, () -> RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS)));
+
+        assertTrue(remaining <= 1000, String.valueOf(remaining));
+        // A call timeout shorter than the deadline is kept
+        assertTrue(RpcDeadline.callWithin(MINUTE_MILLIS, () -> RpcDeadline.remainingMillis(RpcDeadline.resolve(100))) <= 100);
+    }
+
+    @Test
+    public void testNestedKeepsEarlierDeadline() {
+        var remaining = RpcDeadline.callWithin(1000, () -> RpcDeadline.callWithin(MINUTE_MILLIS,
+                () -> RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS))));
+        assertTrue(remaining <= 1000, String.valueOf(remaining));
+
+        remaining = RpcDeadline.callWithin(MINUTE_MILLIS, () -> RpcDeadline.callWithin(1000,
+                () -> RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS))));
+        assertTrue(remaining <= 1000, String.valueOf(remaining));
+    }
+
+    @Test
+    public void testDeadlineRestored() {
+        var remaining = RpcDeadline.callWithin(MINUTE_MILLIS, () -> {
+            RpcDeadline.callWithin(100, () -> null);
+            return RpcDeadline.remainingMillis(RpcDeadline.resolve(2 * MINUTE_MILLIS));
+        });
+        assertTrue(remaining > MINUTE_MILLIS - 1000 && remaining <= MINUTE_MILLIS, String.valueOf(remaining));
+
+        assertThrows(IllegalStateException.class, () -> RpcDeadline.callWithin(100, () -> {
+            throw new IllegalStateException("Call error");
+        }));
+        // No deadline is left behind on the thread
+        assertTrue(RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS)) > MINUTE_MILLIS - 1000);
+    }
+
+    @Test
+    public void testRemainingMillis() {
+        assertTrue(RpcDeadline.remainingMillis(System.nanoTime() - TimeUnit.SECONDS.toNanos(1)) < 0);
+        assertTrue(RpcDeadline.remainingMillis(RpcDeadline.resolve(0)) <= 0);
+    }
+
+    @Test
+    public void testDeadlineFollowsTtlTasks() throws InterruptedException, ExecutionException {
+        var executor = TtlExecutors.getTtlExecutorService(Executors.newSingleThreadExecutor());
+        try {
+            // The worker thread is created before the deadline is set
+            executor.submit(() -> null).get();
+            var future = RpcDeadline.callWithin(1000,
+                    () -> executor.submit(() -> RpcDeadline.remainingMillis(RpcDeadline.resolve(MINUTE_MILLIS))));
+
+            assertTrue(future.get() <= 1000, String.valueOf(future.get()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ai.basic.x1.usecase;
+
+import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
+import ai.basic.x1.entity.DataInfoCursorBO;
+import ai.basic.x1.entity.enums.DataInfoSortFieldEnum;
+import ai.basic.x1.entity.enums.ItemTypeEnum;
+import ai.basic.x1.entity.enums.SortEnum;
+import ai.basic.x1.usecase.exception.UsecaseCode;
+import ai.basic.x1.usecase.exception.UsecaseException;
+import cn.hutool.core.codec.Base64;
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Continuation tokens of the cursor query
+ */
+public class DataInfoUseCaseCursorTest {
+
+    @Test
+    public void testEncodeDecodeByName() {
+        var dataInfo = DataInfo.builder().id(12L).type(ItemTypeEnum.SCENE).orderName("scene-00012").build();
+
+        var cursor = DataInfoUseCase.encodeCursor(dataInfo, DataInfoSortFieldEnum.NAME, SortEnum.ASC);
+        var cursorBO = DataInfoUseCase.decodeCursor(cursor, DataInfoSortFieldEnum.NAME, SortEnum.ASC);
+
+        // Tokens go into query strings unescaped
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        assertEquals(DataInfoCursorBO.builder().type(ItemTypeEnum.SCENE).value("scene-00012").id(12L)
+                .sortField(DataInfoSortFieldEnum.NAME).ascOrDesc(SortEnum.ASC).build(), cursorBO);
+    }
+
+    @Test
+    public void testEncodeDecodeByCreatedAt() {
+        var createdAt = OffsetDateTime.parse("2022-10-01T08:30:15.123+08:00");
+        var dataInfo = DataInfo.builder().id(7L).type(ItemTypeEnum.SINGLE_DATA).orderName("data-7").createdAt(createdAt).build();
+
+        var cursor = DataInfoUseCase.encodeCursor(dataInfo, DataInfoSortFieldEnum.CREATED_AT, SortEnum.DESC);
+        var cursorBO = DataInfoUseCase.decodeCursor(cursor, DataInfoSortFieldEnum.CREATED_AT, SortEnum.DESC);
+
+        assertEquals(createdAt, OffsetDateTime.parse(cursorBO.getValue()));
+        assertEquals(7L, cursorBO.getId());
+        assertEquals(ItemTypeEnum.SINGLE_DATA, cursorBO.getType());
+    }
+
+    @Test
+    public void testDecodeOtherSort() {
+        var dataInfo = DataInfo.builder().id(12L).type(ItemTypeEnum.SCENE).orderName("scene-00012").build();
+        var cursor = DataInfoUseCase.encodeCursor(dataInfo, DataInfoSortFieldEnum.NAME, SortEnum.ASC);
+
+        // A token is only valid for the sort it was created with
+        assertParamError(() -> DataInfoUseCase.decodeCursor(cursor, DataInfoSortFieldEnum.NAME, SortEnum.DESC));
+        assertParamError(() -> DataInfoUseCase.decodeCursor(cursor, DataInfoSortFieldEnum.CREATED_AT, SortEnum.ASC));
+    }
+
+    @Test
+    public void testDecodeInvalidCursor() {
+        assertParamError(() -> DataInfoUseCase.decodeCursor("not a cursor", DataInfoSortFieldEnum.NAME, SortEnum.ASC));
+        assertParamError(() -> DataInfoUseCase.decodeCursor(Base64.encodeUrlSafe("[1,2]"), DataInfoSortFieldEnum.NAME, SortEnum.ASC));
+        // Missing id
+        var noId = DataInfoCursorBO.builder().type(ItemTypeEnum.SCENE).value("scene-00012")
+                .sortField(DataInfoSortFieldEnum.NAME).ascOrDesc(SortEnum.ASC).build();
+        assertParamError(() -> DataInfoUseCase.decodeCursor(encode(noId), DataInfoSortFieldEnum.NAME, SortEnum.ASC));
+        // Seek value that is no time
+        var badTime = DataInfoCursorBO.builder().type(ItemTypeEnum.SCENE).value("yesterday").id(12L)
+                .sortField(DataInfoSortFieldEnum.CREATED_AT).ascOrDesc(SortEnum.ASC).build();
+        assertParamError(() -> DataInfoUseCase.decodeCursor(encode(badTime), DataInfoSortFieldEnum.CREATED_AT, SortEnum.ASC));
+    }
+
+    private static String encode(DataInfoCursorBO cursorBO) {
+        return Base64.encodeUrlSafe(JSONUtil.toJsonStr(cursorBO));
+    }
+
+    private static void assertParamError(Runnable decode) {
+        var exception = assertThrows(UsecaseException.class, decode::run);
+        assertEquals(UsecaseCode.PARAM_ERROR, exception.getCode());
+    }
+}
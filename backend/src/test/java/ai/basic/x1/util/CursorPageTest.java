@@ -0,0 +1,38 @@
+package ai.basic.x1.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorPageTest {
+
+    @Test
+    public void testConvert() {
+        var cursorPage = new CursorPage<Integer>();
+        cursorPage.setPageSize(2);
+        cursorPage.setNextCursor("next");
+        cursorPage.setTotal(5L);
+        cursorPage.setList(List.of(1, 2));
+
+        var resultPage = cursorPage.convert(value -> "data-" + value);
+
+        assertEquals(List.of("data-1", "data-2"), resultPage.getList());
+        assertEquals(2, resultPage.getPageSize());
+        assertEquals("next", resultPage.getNextCursor());
+        assertEquals(5L, resultPage.getTotal());
+    }
+
+    @Test
+    public void testConvertLastPage() {
+        var cursorPage = new CursorPage<Integer>();
+        cursorPage.setPageSize(2);
+
+        var resultPage = cursorPage.convert(String::valueOf);
+
+        assertNull(resultPage.getList());
+        assertNull(resultPage.getNextCursor());
+        assertNull(resultPage.getTotal());
+    }
+}
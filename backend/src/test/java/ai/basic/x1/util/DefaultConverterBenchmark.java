@@ -0,0 +1,100 @@
+package ai.basic.x1.util;
+
+import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
+import ai.basic.x1.entity.DataInfoBO;
+import ai.basic.x1.entity.enums.DataStatusEnum;
+import ai.basic.x1.entity.enums.ItemTypeEnum;
+import cn.hutool.core.bean.BeanUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * CachedBeanCopier against BeanUtil.copyProperties on a page of data, DataInfo to DataInfoBO with nested file nodes
+ * like the data listing. Run after the test classes are compiled:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) ai.basic.x1.util.DefaultConverterBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefaultConverterBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private List<DataInfo> dataInfos;
+
+    @Setup
+    public void setUp() {
+        dataInfos = LongStream.rangeClosed(1, PAGE_SIZE).mapToObj(DefaultConverterBenchmark::createDataInfo)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void cachedBeanCopier(Blackhole blackhole) {
+        for (var dataInfo : dataInfos) {
+            blackhole.consume(CachedBeanCopier.get(DataInfo.class, DataInfoBO.class).copy(dataInfo));
+        }
+    }
+
+    @Benchmark
+    public void beanUtilCopyProperties(Blackhole blackhole) {
+        for (var dataInfo : dataInfos) {
+            var dataInfoBO = new DataInfoBO();
+            BeanUtil.copyProperties(dataInfo, dataInfoBO);
+            blackhole.consume(dataInfoBO);
+        }
+    }
+
+    @Benchmark
+    public void defaultConverter(Blackhole blackhole) {
+        blackhole.consume(DefaultConverter.convert(dataInfos, DataInfoBO.class));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DefaultConverterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static DataInfo createDataInfo(long id) {
+        var image = DataInfo.FileNode.builder().name("image_0").fileId(id * 10 + 1).type("file").build();
+        var camera = DataInfo.FileNode.builder().name("camera_image_0").type("directory")
+                .files(new ArrayList<>(List.of(image))).build();
+        var pointCloud = DataInfo.FileNode.builder().name("lidar_point_cloud_0").fileId(id * 10 + 2).type("file").build();
+        return DataInfo.builder()
+                .id(id)
+                .datasetId(100L)
+                .name("data-" + id)
+                .orderName("data-00" + id)
+                .content(new ArrayList<>(List.of(camera, pointCloud)))
+                .type(ItemTypeEnum.SCENE)
+                .parentId(0L)
+                .status(DataStatusEnum.VALID)
+                .isDeleted(false)
+                .createdAt(OffsetDateTime.now())
+                .createdBy(1L)
+                .build();
+    }
+}
@@ -0,0 +1,168 @@
+package ai.basic.x1.util;
+
+import ai.basic.x1.adapter.port.dao.mybatis.model.DataInfo;
+import ai.basic.x1.entity.DataInfoBO;
+import ai.basic.x1.entity.enums.DataStatusEnum;
+import ai.basic.x1.entity.enums.ItemTypeEnum;
+import cn.hutool.core.bean.BeanUtil;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cached copier must copy the same way as BeanUtil.copyProperties
+ */
+public class DefaultConverterTest {
+
+    @Test
+    public void testConvertSameAsCopyProperties() {
+        var dataInfo = createDataInfo(1L);
+
+        var dataInfoBO = DefaultConverter.convert(dataInfo, DataInfoBO.class);
+
+        assertEquals(copyProperties(dataInfo, DataInfoBO.class), dataInfoBO);
+        assertEquals(ItemTypeEnum.SCENE, dataInfoBO.getType());
+        assertEquals(2, dataInfoBO.getContent().size());
+        assertEquals(DataInfoBO.FileNodeBO.class, dataInfoBO.getContent().get(0).getClass());
+        assertEquals(DataInfoBO.FileNodeBO.class, dataInfoBO.getContent().get(0).getFiles().get(0).getClass());
+    }
+
+    @Test
+    public void testConvertNullProperties() {
+        var dataInfo = createDataInfo(1L);
+        dataInfo.setName(null);
+        dataInfo.setContent(null);
+        dataInfo.setStatus(null);
+        var source = new Source();
+        source.setStatus(null);
+
+        assertEquals(copyProperties(dataInfo, DataInfoBO.class), DefaultConverter.convert(dataInfo, DataInfoBO.class));
+        assertEquals(copyProperties(source, Target.class), DefaultConverter.convert(source, Target.class));
+    }
+
+    @Test
+    public void testConvertTypeConversion() {
+        var source = new Source();
+        source.setCount("12");
+        source.setAmount(3L);
+        source.setStatus("VALID");
+        source.setLabels(new ArrayList<>(List.of("a", "b")));
+
+        var target = DefaultConverter.convert(source, Target.class);
+
+        assertEquals(copyProperties(source, Target.class), target);
+        assertEquals(12, target.getCount());
+        assertEquals(DataStatusEnum.VALID, target.getStatus());
+        // Containers are copied, never shared with the source
+        assertNotSame(source.getLabels(), target.getLabels());
+    }
+
+    @Test
+    public void testConvertList() {
+        var dataInfos = List.of(createDataInfo(1L), createDataInfo(2L));
+
+        var dataInfoBOs = DefaultConverter.convert(dataInfos, DataInfoBO.class);
+
+        assertEquals(List.of(copyProperties(dataInfos.get(0), DataInfoBO.class),
+                copyProperties(dataInfos.get(1), DataInfoBO.class)), dataInfoBOs);
+        assertNull(DefaultConverter.convert((List<DataInfo>) null, DataInfoBO.class));
+        assertTrue(DefaultConverter.convert(new ArrayList<DataInfo>(), DataInfoBO.class).isEmpty());
+    }
+
+    @Test
+    public void testConvertMapFallback() {
+        assertNull(CachedBeanCopier.get(HashMap.class, Target.class));
+        assertNull(CachedBeanCopier.get(Source.class, HashMap.class));
+        var map = new HashMap<String, Object>();
+        map.put("count", "7");
+        map.put("status", "INVALID");
+        map.put("labels", Arrays.asList("c", "d"));
+
+        assertEquals(copyProperties(map, Target.class), DefaultConverter.convert(map, Target.class));
+        var source = new Source();
+        assertEquals(copyProperties(source, HashMap.class), DefaultConverter.convert(source, HashMap.class));
+    }
+
+    @Test
+    public void testAbstractTargetFallback() {
+        assertNull(CachedBeanCopier.get(Source.class, AbstractTarget.class));
+        assertNotNull(CachedBeanCopier.get(Source.class, Target.class));
+    }
+
+    private static DataInfo createDataInfo(Long id) {
+        var image = DataInfo.FileNode.builder().name("image_0").fileId(id * 10 + 1).type("file").build();
+        var camera = DataInfo.FileNode.builder().name("camera_image_0").type("directory")
+                .files(new ArrayList<>(List.of(image))).build();
+        var pointCloud = DataInfo.FileNode.builder().name("lidar_point_cloud_0").fileId(id * 10 + 2).type("file").build();
+        return DataInfo.builder()
+                .id(id)
+                .datasetId(100L)
+                .name("data-" + id)
+                .orderName("data-00" + id)
+                .content(new ArrayList<>(List.of(camera, pointCloud)))
+                .type(ItemTypeEnum.SCENE)
+                .parentId(0L)
+                .status(DataStatusEnum.VALID)
+                .isDeleted(false)
+                .createdAt(OffsetDateTime.now())
+                .createdBy(1L)
+                .build();
+    }
+
+    private static <D> D copyProperties(Object source, Class<D> target) {
+        try {
+            var dest = target.getDeclaredConstructor().newInstance();
+            BeanUtil.copyProperties(source, dest);
+            return dest;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Source {
+
+        private String count;
+
+        private Long amount;
+
+        private String status = "VALID";
+
+        private List<String> labels;
+
+        private String sourceOnly = "source";
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Target {
+
+        private Integer count;
+
+        private BigDecimal amount;
+
+        private DataStatusEnum status = DataStatusEnum.INVALID;
+
+        private List<String> labels;
+
+        private String targetOnly = "target";
+    }
+
+    @Data
+    @NoArgsConstructor
+    public abstract static class AbstractTarget {
+
+        private Integer count;
+    }
+}
@@ -0,0 +1,80 @@
+package ai.basic.x1.util;
+
+import cn.hutool.core.img.Img;
+import cn.hutool.core.io.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageMetadataUtils.read against decoding the whole image the way the upload used to, on a camera sized JPEG. Run
+ * after the test classes are compiled:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) ai.basic.x1.util.ImageMetadataUtilsBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageMetadataUtilsBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("image-metadata-benchmark", ".jpg");
+        var image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        var graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, WIDTH / 2, HEIGHT);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(WIDTH / 2, 0, WIDTH / 2, HEIGHT);
+        graphics.dispose();
+        ImageIO.write(image, "jpg", file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.del(file);
+    }
+
+    @Benchmark
+    public ImageMetadataUtils.ImageMetadata read() throws IOException {
+        return ImageMetadataUtils.read(file);
+    }
+
+    @Benchmark
+    public Image decode() {
+        return Img.from(file).getImg();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImageMetadataUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package ai.basic.x1.util;
+
+import cn.hutool.core.img.Img;
+import cn.hutool.core.io.FileUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageMetadataUtilsTest {
+
+    /**
+     * EXIF orientation of an image rotated 90 degrees clockwise
+     */
+    private static final int ROTATE_90_CW = 6;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadRotatedJpeg() throws IOException {
+        var file = writeJpeg(640, 480, ROTATE_90_CW);
+
+        var metadata = ImageMetadataUtils.read(file);
+
+        assertEquals(640, metadata.getWidth());
+        assertEquals(480, metadata.getHeight());
+        assertEquals(ROTATE_90_CW, metadata.getOrientation());
+        assertEquals("jpeg", metadata.getFormat());
+        assertSameSizeAsDecoded(file, metadata);
+    }
+
+    @Test
+    public void testReadJpegWithoutExif() throws IOException {
+        var file = writeJpeg(320, 200, null);
+
+        var metadata = ImageMetadataUtils.read(file);
+
+        assertNull(metadata.getOrientation());
+        assertSameSizeAsDecoded(file, metadata);
+    }
+
+    @Test
+    public void testReadPng() throws IOException {
+        var file = tempDir.resolve("image.png").toFile();
+        ImageIO.write(createImage(300, 500), "png", file);
+
+        var metadata = ImageMetadataUtils.read(file);
+
+        assertEquals(300, metadata.getWidth());
+        assertEquals(500, metadata.getHeight());
+        assertNull(metadata.getOrientation());
+        assertEquals("png", metadata.getFormat());
+        assertSameSizeAsDecoded(file, metadata);
+    }
+
+    @Test
+    public void testReadNotImage() {
+        var file = FileUtil.writeUtf8String("not an image", tempDir.resolve("image.jpg").toFile());
+
+        assertThrows(IOException.class, () -> ImageMetadataUtils.read(file));
+    }
+
+    /**
+     * A camera sized JPEG is read from its headers, the speed against decoding is measured by
+     * {@link ImageMetadataUtilsBenchmark}
+     */
+    @Test
+    public void testReadLargeJpeg() throws IOException {
+        var file = writeJpeg(4000, 3000, ROTATE_90_CW);
+
+        var metadata = ImageMetadataUtils.read(file);
+
+        assertEquals(4000, metadata.getWidth());
+        assertEquals(3000, metadata.getHeight());
+        assertEquals(ROTATE_90_CW, metadata.getOrientation());
+    }
+
+    private static void assertSameSizeAsDecoded(File file, ImageMetadataUtils.ImageMetadata metadata) {
+        var image = Img.from(file).getImg();
+        assertEquals(image.getWidth(null), metadata.getWidth());
+        assertEquals(image.getHeight(null), metadata.getHeight());
+    }
+
+    private File writeJpeg(int width, int height, Integer orientation) throws IOException {
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(createImage(width, height), "jpg", output);
+        var bytes = output.toByteArray();
+        if (orientation != null) {
+            bytes = insertExifOrientation(bytes, orientation);
+        }
+        var file = tempDir.resolve(width + "x" + height + ".jpg").toFile();
+        return FileUtil.writeBytes(bytes, file);
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Insert an APP1 EXIF segment with only the orientation tag after the JFIF segment written by ImageIO
+     */
+    private static byte[] insertExifOrientation(byte[] jpeg, int orientation) {
+        var tiff = ByteBuffer.allocate(26).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        // One IFD entry: orientation, SHORT, count 1, value
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putInt(0);
+        var exifHeader = new byte[]{'E', 'x', 'i', 'f', 0, 0};
+        var segmentLength = 2 + exifHeader.length + tiff.capacity();
+        var segment = ByteBuffer.allocate(2 + segmentLength).order(ByteOrder.BIG_ENDIAN);
+        segment.put((byte) 0xFF).put((byte) 0xE1).putShort((short) segmentLength).put(exifHeader).put(tiff.array());
+
+        // SOI, then the APP0 JFIF segment
+        var app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        var result = ByteBuffer.allocate(jpeg.length + segment.capacity());
+        result.put(jpeg, 0, app0End).put(segment.array()).put(jpeg, app0End, jpeg.length - app0End);
+        return result.array();
+    }
+}
@@ -0,0 +1,37 @@
+package ai.basic.x1.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NaturalSortUtilTest {
+
+    @Test
+    public void testConvert() {
+        assertEquals("frame00210999", NaturalSortUtil.convert("frame10"));
+        // Leading zeros are dropped from the number and counted in the suffix
+        assertEquals("frame00210998", NaturalSortUtil.convert("frame010"));
+        assertTrue(NaturalSortUtil.convert("frame9").compareTo(NaturalSortUtil.convert("frame10")) < 0);
+    }
+
+    @Test
+    public void testConvertLongName() {
+        // A 255 character name of numbers and letters converts to more than the column length
+        var name = "1a".repeat(127) + "1";
+        var converted = NaturalSortUtil.convert(name);
+
+        assertEquals(NaturalSortUtil.MAX_LENGTH, converted.length());
+        // Only the tail is cut, the order of names differing early is kept
+        assertTrue(converted.startsWith(NaturalSortUtil.convert(name.substring(0, 200))));
+    }
+
+    @Test
+    public void testConvertKeepsSurrogatePairs() {
+        var name = "a".repeat(NaturalSortUtil.MAX_LENGTH - 1) + "🚗";
+
+        var converted = NaturalSortUtil.convert(name);
+
+        assertEquals(NaturalSortUtil.MAX_LENGTH - 1, converted.length());
+        assertFalse(Character.isHighSurrogate(converted.charAt(converted.length() - 1)));
+    }
+}
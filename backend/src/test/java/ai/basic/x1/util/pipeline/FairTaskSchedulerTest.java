@@ -0,0 +1,126 @@
+package ai.basic.x1.util.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairTaskSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void testTenantLimit() throws InterruptedException {
+        var scheduler = new FairTaskScheduler("tenantLimit", 4, 1, 4);
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(4);
+
+        for (var i = 0; i < 3; i++) {
+            scheduler.submit("tenantA", "dataset" + i, blocking(gate, done));
+        }
+        scheduler.submit("tenantB", "dataset3", blocking(gate, done));
+
+        // One task of each tenant runs although there are free workers
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(2, scheduler.getWaitingCount());
+        gate.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(scheduler);
+    }
+
+    @Test
+    public void testDatasetLimit() throws InterruptedException {
+        var scheduler = new FairTaskScheduler("datasetLimit", 4, 4, 1);
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(3);
+
+        scheduler.submit("tenantA", "dataset1", blocking(gate, done));
+        scheduler.submit("tenantA", "dataset1", blocking(gate, done));
+        scheduler.submit("tenantA", "dataset2", blocking(gate, done));
+
+        // The second task of dataset1 waits, the task of dataset2 behind it is not held up
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(1, scheduler.getWaitingCount());
+        gate.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(scheduler);
+    }
+
+    @Test
+    public void testRoundRobin() throws InterruptedException {
+        var scheduler = new FairTaskScheduler("roundRobin", 1, 1, 1);
+        var order = Collections.synchronizedList(new ArrayList<String>());
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(5);
+
+        scheduler.submit("tenantA", "datasetA", () -> {
+            order.add("A0");
+            await(gate);
+            done.countDown();
+        });
+        for (var i = 1; i <= 3; i++) {
+            scheduler.submit("tenantA", "datasetA", recording(order, "A" + i, done));
+        }
+        scheduler.submit("tenantB", "datasetB", recording(order, "B1", done));
+        assertEquals(4, scheduler.getWaitingCount());
+        gate.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // Tenant B submitted last but does not wait for the backlog of tenant A
+        assertEquals(List.of("A0", "A1", "B1", "A2", "A3"), order);
+        awaitIdle(scheduler);
+    }
+
+    @Test
+    public void testFailedTaskReleasesSlot() throws InterruptedException {
+        var scheduler = new FairTaskScheduler("failedTask", 1, 1, 1);
+        var done = new CountDownLatch(1);
+
+        scheduler.submit("tenantA", "datasetA", () -> {
+            throw new IllegalStateException("Task error");
+        });
+        scheduler.submit("tenantA", "datasetA", done::countDown);
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(scheduler);
+    }
+
+    private static Runnable blocking(CountDownLatch gate, CountDownLatch done) {
+        return () -> {
+            await(gate);
+            done.countDown();
+        };
+    }
+
+    private static Runnable recording(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Slots are given back after the task returns, wait for the last one
+     */
+    private static void awaitIdle(FairTaskScheduler scheduler) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (scheduler.getRunningCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, scheduler.getRunningCount());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+}
@@ -0,0 +1,126 @@
+package ai.basic.x1.util.pipeline;
+
+import ai.basic.x1.util.Constants;
+import cn.hutool.core.io.FileUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SceneIndexTest {
+
+    private static final String RESULT = "result";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testBuild() throws IOException {
+        var scene = createScene();
+        writeFile(scene, "readme.txt", 5);
+        writeFile(scene, "other/000.pcd", 5);
+
+        var sceneIndex = build(scene);
+
+        assertEquals(List.of("000", "001", "002"), sceneIndex.getDataNames());
+        assertEquals(3, sceneIndex.getDataNum());
+        assertEquals("000.json", sceneIndex.getResultFile("000").getName());
+        assertNull(sceneIndex.getResultFile("001"));
+    }
+
+    @Test
+    public void testSplitDataNamesByBytes() throws IOException {
+        var sceneIndex = build(createScene());
+
+        // 000 and 001 take 110 bytes each, 002 exceeds the limit on its own
+        assertEquals(List.of(List.of("000", "001"), List.of("002")), sceneIndex.splitDataNames(250, 100));
+        assertEquals(List.of(List.of("000"), List.of("001"), List.of("002")), sceneIndex.splitDataNames(100, 100));
+    }
+
+    @Test
+    public void testSplitDataNamesByFiles() throws IOException {
+        var sceneIndex = build(createScene());
+
+        // Every data has a point cloud and an image
+        assertEquals(List.of(List.of("000", "001"), List.of("002")), sceneIndex.splitDataNames(Long.MAX_VALUE, 4));
+        assertEquals(List.of(List.of("000"), List.of("001"), List.of("002")), sceneIndex.splitDataNames(Long.MAX_VALUE, 3));
+        assertEquals(List.of(List.of("000", "001", "002")), sceneIndex.splitDataNames(Long.MAX_VALUE, 6));
+    }
+
+    @Test
+    public void testSplitEmptyScene() throws IOException {
+        var scene = tempDir.resolve("empty").toFile();
+        FileUtil.mkdir(scene);
+
+        assertTrue(build(scene).splitDataNames(100, 100).isEmpty());
+    }
+
+    @Test
+    public void testGetDataFiles() throws IOException {
+        var scene = createScene();
+        var sceneIndex = build(scene);
+        var duplicates = new ArrayList<File>();
+
+        var dataFiles = sceneIndex.getDataFiles("000", duplicates::add);
+
+        assertEquals(Set.of("lidar_point_cloud_0/000.pcd", "camera_image_0/000.jpg"), relativePaths(scene, dataFiles));
+        assertTrue(duplicates.isEmpty());
+        assertTrue(sceneIndex.getDataFiles("003", duplicates::add).isEmpty());
+    }
+
+    @Test
+    public void testGetDataFilesDuplicate() throws IOException {
+        var scene = createScene();
+        writeFile(scene, "lidar_point_cloud_0/003.pcd", 10);
+        writeFile(scene, "lidar_point_cloud_0/003.bin", 10);
+        writeFile(scene, "camera_image_0/003.jpg", 10);
+        var sceneIndex = build(scene);
+        var duplicates = new ArrayList<File>();
+
+        // The data is dropped as a whole, not only the duplicated device
+        assertTrue(sceneIndex.getDataFiles("003", duplicates::add).isEmpty());
+        assertEquals(List.of(new File(scene, "lidar_point_cloud_0")), duplicates);
+        assertEquals(2, sceneIndex.getDataFiles("001", duplicates::add).size());
+        assertEquals(1, duplicates.size());
+    }
+
+    /**
+     * A scene of three data, each a point cloud and a camera image
+     */
+    private File createScene() throws IOException {
+        var scene = tempDir.resolve("scene").toFile();
+        writeFile(scene, "lidar_point_cloud_0/000.pcd", 100);
+        writeFile(scene, "lidar_point_cloud_0/001.pcd", 100);
+        writeFile(scene, "lidar_point_cloud_0/002.pcd", 1000);
+        writeFile(scene, "camera_image_0/000.jpg", 10);
+        writeFile(scene, "camera_image_0/001.jpg", 10);
+        writeFile(scene, "camera_image_0/002.jpg", 10);
+        writeFile(scene, RESULT + "/000.json", 2);
+        return scene;
+    }
+
+    private static SceneIndex build(File scene) throws IOException {
+        return SceneIndex.build(scene,
+                folder -> folder.getName().startsWith(Constants.LIDAR_POINT_CLOUD) || folder.getName().startsWith(Constants.CAMERA_IMAGE),
+                file -> true,
+                file -> file.getParentFile().getName().startsWith(Constants.LIDAR_POINT_CLOUD),
+                RESULT);
+    }
+
+    private static void writeFile(File scene, String path, int size) {
+        FileUtil.writeBytes(new byte[size], new File(scene, path));
+    }
+
+    private static Set<String> relativePaths(File scene, List<File> files) {
+        return files.stream().map(file -> FileUtil.subPath(scene.getAbsolutePath(), file).replace('\\', '/'))
+                .collect(Collectors.toSet());
+    }
+}
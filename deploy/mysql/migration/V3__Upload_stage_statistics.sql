@@ -0,0 +1,2 @@
+ALTER TABLE `upload_record`
+    ADD COLUMN `stage_statistics` json DEFAULT NULL COMMENT 'Per-stage throughput statistics' AFTER `parsed_data_num`;
@@ -0,0 +1,2 @@
+ALTER TABLE `export_record`
+    ADD COLUMN `loaded_num` int(11) DEFAULT '0' COMMENT 'Loaded number' AFTER `file_name`;
@@ -0,0 +1,2 @@
+ALTER TABLE `data`
+    ADD INDEX `idx_dataset_id_parent_id_type_created_at` (`dataset_id`, `parent_id`, `type`, `created_at`) USING BTREE;
@@ -0,0 +1,2 @@
+ALTER TABLE `data_annotation_object`
+    ADD INDEX `idx_data_id_source_id` (`data_id`, `source_id`) USING BTREE;
@@ -0,0 +1,7 @@
+UPDATE `data`
+SET `order_name` = LEFT(`order_name`, 760)
+WHERE CHAR_LENGTH(`order_name`) > 760;
+
+ALTER TABLE `data`
+    MODIFY COLUMN `order_name` varchar(760) DEFAULT NULL COMMENT 'Sort data name',
+    ADD INDEX `idx_dataset_id_parent_id_type_order_name_id` (`dataset_id`, `parent_id`, `type`, `order_name`, `id`) USING BTREE;